@@ -0,0 +1,228 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.common.dto;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Many scanned directories to import into the core server with one call.
+ *
+ * The batch is written in a compact binary format: strings are length prefixed
+ * and repeated strings, like the library settings and common path prefixes of
+ * the directories, are only written once and then referenced by index.
+ */
+public class ImportBatchDTO implements Externalizable {
+
+    private static final long serialVersionUID = 3920846619253718843L;
+    private static final int FORMAT_VERSION = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // markers for strings; values >= 0 are references to already written strings
+    private static final int NULL_STRING = -1;
+    private static final int NEW_STRING = -2;
+    private static final int NEW_PATH = -3;
+
+    private List<ImportDTO> imports = new ArrayList<>();
+
+    public List<ImportDTO> getImports() {
+        return imports;
+    }
+
+    public void setImports(List<ImportDTO> imports) {
+        this.imports = imports;
+    }
+
+    public void addImport(ImportDTO importDTO) {
+        this.imports.add(importDTO);
+    }
+
+    public int size() {
+        return imports.size();
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        final Map<String, Integer> table = new HashMap<>();
+
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(imports.size());
+        for (ImportDTO importDTO : imports) {
+            writeInterned(out, table, importDTO.getClient());
+            writeInterned(out, table, importDTO.getPlayerPath());
+            writeInterned(out, table, importDTO.getBaseDirectory());
+
+            StageDirectoryDTO stageDirectory = importDTO.getStageDirectory();
+            writePath(out, table, stageDirectory.getPath());
+            out.writeLong(stageDirectory.getDate());
+            out.writeInt(stageDirectory.getStageFiles().size());
+            for (StageFileDTO stageFile : stageDirectory.getStageFiles()) {
+                writeString(out, stageFile.getFileName());
+                out.writeLong(stageFile.getFileSize());
+                out.writeLong(stageFile.getFileDate());
+                writeString(out, stageFile.getContent());
+            }
+            out.writeInt(stageDirectory.getDeletedFiles().size());
+            for (String deletedFile : stageDirectory.getDeletedFiles()) {
+                writeString(out, deletedFile);
+            }
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        final List<String> table = new ArrayList<>();
+
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidObjectException("Unsupported import batch format version " + version);
+        }
+
+        final int importCount = in.readInt();
+        imports = new ArrayList<>(importCount);
+        for (int i = 0; i < importCount; i++) {
+            ImportDTO importDTO = new ImportDTO();
+            importDTO.setClient(readInterned(in, table));
+            importDTO.setPlayerPath(readInterned(in, table));
+            importDTO.setBaseDirectory(readInterned(in, table));
+
+            StageDirectoryDTO stageDirectory = new StageDirectoryDTO();
+            stageDirectory.setPath(readInterned(in, table));
+            stageDirectory.setDate(in.readLong());
+            final int fileCount = in.readInt();
+            List<StageFileDTO> stageFiles = new ArrayList<>(fileCount);
+            for (int f = 0; f < fileCount; f++) {
+                StageFileDTO stageFile = new StageFileDTO();
+                stageFile.setFileName(readString(in));
+                stageFile.setFileSize(in.readLong());
+                stageFile.setFileDate(in.readLong());
+                stageFile.setContent(readString(in));
+                stageFiles.add(stageFile);
+            }
+            stageDirectory.setStageFiles(stageFiles);
+            final int deletedCount = in.readInt();
+            List<String> deletedFiles = new ArrayList<>(deletedCount);
+            for (int d = 0; d < deletedCount; d++) {
+                deletedFiles.add(readString(in));
+            }
+            stageDirectory.setDeletedFiles(deletedFiles);
+
+            importDTO.setStageDirectory(stageDirectory);
+            imports.add(importDTO);
+        }
+    }
+
+    private static void writeInterned(ObjectOutput out, Map<String, Integer> table, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+
+        Integer index = table.get(value);
+        if (index != null) {
+            out.writeInt(index.intValue());
+        } else {
+            out.writeInt(NEW_STRING);
+            writeString(out, value);
+            table.put(value, table.size());
+        }
+    }
+
+    /**
+     * Write a path where every parent path is interned, so that directories
+     * of the same tree only write their own name.
+     */
+    private static void writePath(ObjectOutput out, Map<String, Integer> table, String path) throws IOException {
+        if (path == null || table.containsKey(path)) {
+            writeInterned(out, table, path);
+            return;
+        }
+
+        final int index = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        if (index <= 0) {
+            writeInterned(out, table, path);
+            return;
+        }
+
+        out.writeInt(NEW_PATH);
+        writePath(out, table, path.substring(0, index));
+        writeString(out, path.substring(index));
+        table.put(path, table.size());
+    }
+
+    private static String readInterned(ObjectInput in, List<String> table) throws IOException {
+        final int marker = in.readInt();
+        if (marker == NULL_STRING) {
+            return null;
+        }
+        if (marker >= 0) {
+            if (marker >= table.size()) {
+                throw new InvalidObjectException("Invalid string reference " + marker);
+            }
+            return table.get(marker);
+        }
+
+        final String value;
+        if (marker == NEW_STRING) {
+            value = readString(in);
+        } else if (marker == NEW_PATH) {
+            final String parent = readInterned(in, table);
+            value = parent + readString(in);
+        } else {
+            throw new InvalidObjectException("Invalid string marker " + marker);
+        }
+        table.add(value);
+        return value;
+    }
+
+    private static void writeString(ObjectOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+        } else {
+            // not using writeUTF cause it's limited to 64k, which NFO content may exceed
+            byte[] bytes = value.getBytes(UTF8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ObjectInput in) throws IOException {
+        final int length = in.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if (length < 0) {
+            throw new InvalidObjectException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
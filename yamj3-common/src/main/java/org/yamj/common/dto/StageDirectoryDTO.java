@@ -22,6 +22,8 @@
  */
 package org.yamj.common.dto;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,6 +39,7 @@ public class StageDirectoryDTO implements Serializable {
     private String path;
     private long date;
     private List<StageFileDTO> stageFiles = new ArrayList<>(0);
+    private List<String> deletedFiles = new ArrayList<>(0);
 
     public String getPath() {
         return path;
@@ -66,6 +69,31 @@ public class StageDirectoryDTO implements Serializable {
         this.stageFiles.add(stageFile);
     }
 
+    /**
+     * Get the names of the files which have been removed from the directory
+     *
+     * @return
+     */
+    public List<String> getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public void setDeletedFiles(List<String> deletedFiles) {
+        this.deletedFiles = deletedFiles;
+    }
+
+    public void addDeletedFile(String fileName) {
+        this.deletedFiles.add(fileName);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // older file scanners don't send deleted files
+        if (this.deletedFiles == null) {
+            this.deletedFiles = new ArrayList<>(0);
+        }
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
@@ -22,9 +22,17 @@
  */
 package org.yamj.common.remote.service;
 
+import org.yamj.common.dto.ImportBatchDTO;
 import org.yamj.common.dto.ImportDTO;
 
 public interface FileImportService {
 
     void importScanned(ImportDTO importDTO);
+
+    /**
+     * Import many scanned directories with one call.
+     * 
+     * @param importBatchDTO the scanned directories
+     */
+    void importScanned(ImportBatchDTO importBatchDTO);
 }
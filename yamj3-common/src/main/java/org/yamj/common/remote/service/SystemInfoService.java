@@ -22,6 +22,7 @@
  */
 package org.yamj.common.remote.service;
 
+import java.util.Set;
 import org.yamj.common.model.YamjInfo;
 
 /**
@@ -31,6 +32,15 @@ import org.yamj.common.model.YamjInfo;
  */
 public interface SystemInfoService {
 
+    /**
+     * Feature: the file import service accepts gzip compressed requests
+     */
+    String FEATURE_COMPRESSED_REQUESTS = "compressed-requests";
+    /**
+     * Feature: the file import service accepts batches of directories
+     */
+    String FEATURE_BATCH_IMPORT = "batch-import";
+
     /**
      * Simple method to return a "I'm running" response
      *
@@ -43,4 +53,24 @@ public interface SystemInfoService {
      * @return
      */
     YamjInfo systemInfo();
+
+    /**
+     * Get the identity of the core database.
+     *
+     * The identity changes when the database has been reset or replaced, so
+     * clients can drop state which refers to the content of the old database.
+     *
+     * @return
+     */
+    String getDatabaseIdentity();
+
+    /**
+     * Get the features of the remote services which are supported.
+     *
+     * Older cores don't know this method, so clients must fall back to the
+     * basic services if it is not available.
+     *
+     * @return
+     */
+    Set<String> getFeatures();
 }
@@ -0,0 +1,101 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.common.dto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.*;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class ImportBatchDTOTest {
+
+    private static ImportDTO createImport(String path, String... fileNames) {
+        StageDirectoryDTO stageDirectory = new StageDirectoryDTO();
+        stageDirectory.setPath(path);
+        stageDirectory.setDate(1388534400000L);
+        for (String fileName : fileNames) {
+            StageFileDTO stageFile = new StageFileDTO();
+            stageFile.setFileName(fileName);
+            stageFile.setFileSize(4711L);
+            stageFile.setFileDate(1388534400000L);
+            stageDirectory.addStageFile(stageFile);
+        }
+
+        ImportDTO importDTO = new ImportDTO();
+        importDTO.setClient("FileScanner");
+        importDTO.setPlayerPath(null);
+        importDTO.setBaseDirectory("/media/movies");
+        importDTO.setStageDirectory(stageDirectory);
+        return importDTO;
+    }
+
+    private static ImportBatchDTO roundTrip(ImportBatchDTO importBatch) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(importBatch);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            return (ImportBatchDTO) ois.readObject();
+        }
+    }
+
+    /**
+     * Test the binary format restores all values.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        ImportBatchDTO importBatch = new ImportBatchDTO();
+        importBatch.addImport(createImport("/media/movies/Avatar (2009)", "Avatar (2009).mkv", "Avatar (2009).nfo"));
+        importBatch.addImport(createImport("/media/movies/Avatar (2009)/extras", "Making of.avi"));
+        importBatch.addImport(createImport("C:\\media\\movies\\Alien (1979)"));
+        importBatch.addImport(createImport("/media/movies/Aliens (1986)", "Aliens.mkv"));
+        importBatch.getImports().get(0).getStageDirectory().getStageFiles().get(1).setContent(StringUtils.repeat("<movie/>", 10000));
+        importBatch.getImports().get(3).getStageDirectory().addDeletedFile("Aliens.avi");
+
+        ImportBatchDTO result = roundTrip(importBatch);
+
+        assertEquals(importBatch.size(), result.size());
+        for (int i = 0; i < importBatch.size(); i++) {
+            ImportDTO expected = importBatch.getImports().get(i);
+            ImportDTO actual = result.getImports().get(i);
+            assertEquals(expected.getClient(), actual.getClient());
+            assertNull(actual.getPlayerPath());
+            assertEquals(expected.getBaseDirectory(), actual.getBaseDirectory());
+            assertEquals(expected.getStageDirectory().getPath(), actual.getStageDirectory().getPath());
+            assertEquals(expected.getStageDirectory().getDate(), actual.getStageDirectory().getDate());
+            assertEquals(expected.getStageDirectory().getStageFiles().size(), actual.getStageDirectory().getStageFiles().size());
+            assertEquals(expected.getStageDirectory().getDeletedFiles(), actual.getStageDirectory().getDeletedFiles());
+
+            for (int f = 0; f < expected.getStageDirectory().getStageFiles().size(); f++) {
+                StageFileDTO expectedFile = expected.getStageDirectory().getStageFiles().get(f);
+                StageFileDTO actualFile = actual.getStageDirectory().getStageFiles().get(f);
+                assertEquals(expectedFile.getFileName(), actualFile.getFileName());
+                assertEquals(expectedFile.getFileSize(), actualFile.getFileSize());
+                assertEquals(expectedFile.getFileDate(), actualFile.getFileDate());
+                assertEquals(expectedFile.getContent(), actualFile.getContent());
+            }
+        }
+    }
+}
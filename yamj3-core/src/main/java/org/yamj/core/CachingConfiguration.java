@@ -45,6 +45,7 @@ public class CachingConfiguration implements CachingConfigurer {
 
     private static final String TMDB_ARTWORK = "tmdbArtworkCache";
     private static final String ATTACHMENTS = "attachmentCache";
+    private static final String TVDB_EPISODES = "tvdbEpisodesCache";
     private static final int TTL_10_MINUTES = 600;
     private static final int TTL_30_MINUTES = 1800;
     private static final int TTL_ONE_DAY = 86400;
@@ -62,6 +63,7 @@ public class CachingConfiguration implements CachingConfigurer {
                 .cache(cacheConfig(CachingNames.API_IMDB, 500, TTL_30_MINUTES))
                 .cache(cacheConfig(CachingNames.API_FANARTTV, 500, TTL_30_MINUTES))
                 .cache(cacheConfig(TMDB_ARTWORK, 100, TTL_30_MINUTES))
+                .cache(cacheConfig(TVDB_EPISODES, 50, TTL_30_MINUTES))
                 .cache(cacheConfig(ATTACHMENTS, 300, TTL_10_MINUTES))
                 
                 // caches for database objects
@@ -131,6 +133,11 @@ public class CachingConfiguration implements CachingConfigurer {
         return cacheManager().getCache(TMDB_ARTWORK);
     }
 
+    @Bean
+    public Cache tvdbEpisodesCache() {
+        return cacheManager().getCache(TVDB_EPISODES);
+    }
+
     @Bean
     public Cache attachmentCache() {
         return cacheManager().getCache(ATTACHMENTS);
@@ -22,16 +22,27 @@
  */
 package org.yamj.core.api.json;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import org.apache.commons.io.IOUtils;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.yamj.common.type.MetaDataType;
 import org.yamj.core.api.model.ApiStatus;
@@ -47,6 +58,7 @@ import org.yamj.core.database.service.CommonStorageService;
 import org.yamj.core.database.service.JsonApiStorageService;
 import org.yamj.core.scheduling.ArtworkProcessScheduler;
 import org.yamj.core.service.artwork.ArtworkLocatedProcessorService;
+import org.yamj.core.service.artwork.ArtworkTools;
 import org.yamj.core.service.artwork.ArtworkUploadService;
 import org.yamj.core.service.artwork.ImageDTO;
 import org.yamj.core.service.file.FileStorageService;
@@ -56,6 +68,9 @@ import org.yamj.core.service.file.FileStorageService;
 public class ArtworkController {
 
     private static final Logger LOG = LoggerFactory.getLogger(ArtworkController.class);
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    // one year, the maximum recommended for HTTP caching
+    private static final long IMMUTABLE_CACHE_SECONDS = 31536000L;
 
     @Autowired
     private JsonApiStorageService jsonApiStorageService;
@@ -71,6 +86,8 @@ public class ArtworkController {
     private ArtworkStorageService artworkStorageService;
     @Autowired
     private ArtworkLocatedProcessorService artworkLocatedProcessorService;
+    @Value("${yamj3.artwork.image.cacheSeconds:3600}")
+    private long imageCacheSeconds;
     
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
     public ApiWrapperSingle<ApiArtworkDTO> getArtwork(@PathVariable("id") Long id) {
@@ -145,12 +162,19 @@ public class ArtworkController {
         LOG.info("Ignore located artwork with ID {}", id);
 
         ApiStatus status;
-        Set<String> filesToDelete = this.commonStorageService.ignoreArtworkLocated(id);
-        if (filesToDelete != null) {
-            this.fileStorageService.deleteStorageFiles(filesToDelete);
-            status = ApiStatus.ok("Successfully marked located artwork " + id + " as ignored");
-        } else {
-            status = ApiStatus.notFound("Located artwork not found " + id);
+        // generated files may be shared, so they are deleted right after the check for references
+        final Lock sharedFileLock = this.fileStorageService.getSharedFileDeletionLock();
+        sharedFileLock.lock();
+        try {
+            Set<String> filesToDelete = this.commonStorageService.ignoreArtworkLocated(id);
+            if (filesToDelete != null) {
+                this.fileStorageService.deleteStorageFiles(filesToDelete);
+                status = ApiStatus.ok("Successfully marked located artwork " + id + " as ignored");
+            } else {
+                status = ApiStatus.notFound("Located artwork not found " + id);
+            }
+        } finally {
+            sharedFileLock.unlock();
         }
         return status;
     }
@@ -178,26 +202,122 @@ public class ArtworkController {
         return apiStatus;
     }
     
+    /**
+     * Get the image of a located artwork for a profile.
+     *
+     * The image file is streamed to the client; conditional requests (ETag and
+     * Last-Modified) and single byte ranges are supported.
+     *
+     * If the request names the content hash of an image generated from a content
+     * addressed original, the URL changes with the content, so the image may be
+     * cached for a year without revalidation.
+     *
+     * @param profile
+     * @param id
+     * @param hash the content hash of the image, may be null
+     * @param request
+     * @param response
+     * @throws IOException
+     */
     @RequestMapping(value = "/get/{profile}/{id}", method=RequestMethod.GET, produces = {MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_JPEG_VALUE})
-    public ResponseEntity<byte[]> getImage(@PathVariable("profile") String profile, @PathVariable("id") Long id) {
+    public void getImage(@PathVariable("profile") String profile, @PathVariable("id") Long id,
+            @RequestParam(value = "hash", required = false) String hash, HttpServletRequest request, HttpServletResponse response) throws IOException {
         final long start = System.currentTimeMillis();
         try {
             ImageDTO image = this.artworkLocatedProcessorService.getImage(id, profile);
-            if (image == null) {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            if (image != null && image.isInProgress()) {
+                // image generation is busy, so ask the client to retry
+                response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                response.setStatus(HttpStatus.ACCEPTED.value());
+                return;
+            }
+
+            File file = image == null ? null : new File(image.getResource());
+            if (file == null || !file.isFile()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
             }
-            
-            try (FileInputStream fos = new FileInputStream(image.getResource())) {
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(image.getMediaType());
-                return new ResponseEntity<>(IOUtils.toByteArray(fos), headers, HttpStatus.OK);
+
+            // the file name contains the profile and the artwork, the time changes on regeneration;
+            // the URL stays the same on regeneration, so the cache time must be short unless it names the content
+            final long lastModified = file.lastModified();
+            final String eTag = "\"" + Integer.toHexString(file.getName().hashCode()) + "-" + Long.toHexString(lastModified) + "\"";
+            if (hash != null && hash.equals(ArtworkTools.getContentHash(file.getName()))) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + IMMUTABLE_CACHE_SECONDS + ", immutable");
+            } else {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + imageCacheSeconds);
+            }
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+                // 304 with ETag and Last-Modified has been set
+                return;
             }
+
+            response.setContentType(image.getMediaType().toString());
+            sendFile(file, eTag, request, response);
         } catch (Exception ex) {
             LOG.warn("Failed to get image for ID {} and profile '{}': {}", id, profile, ex.getMessage());
             LOG.trace("Image retrieval error", ex);
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.BAD_REQUEST.value());
+            }
         } finally {
             LOG.trace("Image generation took {} ms", System.currentTimeMillis()-start);
         }
     }
+
+    /**
+     * Send the file or the requested byte range of it
+     */
+    private static void sendFile(File file, String eTag, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        final long length = file.length();
+        long first = 0;
+        long last = length - 1;
+
+        final String range = request.getHeader(HttpHeaders.RANGE);
+        final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+            Matcher matcher = BYTE_RANGE.matcher(range.trim());
+            if (matcher.matches()) {
+                // single byte range; multiple ranges are answered with the whole file
+                if (matcher.group(1).isEmpty()) {
+                    // suffix range
+                    first = matcher.group(2).isEmpty() ? length : Math.max(0, length - Long.parseLong(matcher.group(2)));
+                } else {
+                    first = Long.parseLong(matcher.group(1));
+                    if (!matcher.group(2).isEmpty()) {
+                        last = Math.min(last, Long.parseLong(matcher.group(2)));
+                    }
+                }
+
+                if (first > last) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + length);
+            }
+        }
+
+        final long count = last - first + 1;
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(count));
+
+        // transfer the file channel to the response, so the file is not copied through a heap buffer
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = first;
+            final long end = first + count;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    // file has been truncated meanwhile
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
 }
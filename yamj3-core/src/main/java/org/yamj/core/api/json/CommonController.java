@@ -22,6 +22,7 @@
  */
 package org.yamj.core.api.json;
 
+import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +36,8 @@ import org.springframework.web.bind.annotation.RestController;
 import org.yamj.common.type.MetaDataType;
 import org.yamj.common.type.StatusType;
 import org.yamj.core.api.model.ApiStatus;
+import org.yamj.core.api.model.HttpHostStatistics;
+import org.yamj.core.api.model.TrailerDownloadProgress;
 import org.yamj.core.api.model.dto.ApiAwardDTO;
 import org.yamj.core.api.model.dto.ApiBoxedSetDTO;
 import org.yamj.core.api.model.dto.ApiCertificationDTO;
@@ -54,6 +57,8 @@ import org.yamj.core.database.model.Studio;
 import org.yamj.core.database.service.JsonApiStorageService;
 import org.yamj.core.scheduling.ScanningScheduler;
 import org.yamj.core.scheduling.TrailerProcessScheduler;
+import org.yamj.core.service.trailer.TrailerDownloadService;
+import org.yamj.core.web.HttpGovernor;
 
 @RestController
 @RequestMapping(value = "/api", produces = "application/json; charset=utf-8")
@@ -68,6 +73,10 @@ public class CommonController {
     private ScanningScheduler scanningScheduler;
     @Autowired
     private TrailerProcessScheduler trailerProcessScheduler;
+    @Autowired
+    private TrailerDownloadService trailerDownloadService;
+    @Autowired
+    private HttpGovernor httpGovernor;
 
     //<editor-fold defaultstate="collapsed" desc="Alphabetical Methods">
     @RequestMapping(value = "/alphabetical/list", method = RequestMethod.GET)
@@ -205,6 +214,16 @@ public class CommonController {
         return apiStatus;
     }
 
+    @RequestMapping(value = "/trailer/downloads", method = RequestMethod.GET)
+    public List<TrailerDownloadProgress> trailerDownloads() {
+        return trailerDownloadService.getDownloadProgress();
+    }
+
+    @RequestMapping(value = "/http/hosts", method = RequestMethod.GET)
+    public List<HttpHostStatistics> httpHosts() {
+        return httpGovernor.getStatistics();
+    }
+
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Genre Methods">
@@ -22,6 +22,7 @@
  */
 package org.yamj.core.api.json;
 
+import java.util.List;
 import org.apache.commons.lang3.BooleanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +32,9 @@ import org.yamj.common.model.YamjInfo;
 import org.yamj.common.model.YamjInfoBuild;
 import org.yamj.common.type.MetaDataType;
 import org.yamj.core.api.model.CountTimestamp;
+import org.yamj.core.api.model.QueueStatistics;
 import org.yamj.core.database.service.JsonApiStorageService;
+import org.yamj.core.scheduling.QueueProcessEngine;
 
 @RestController
 @RequestMapping(value = "/system", method = RequestMethod.GET, produces = "application/json; charset=utf-8")
@@ -42,6 +45,8 @@ public class SystemInfoController {
     
     @Autowired
     private JsonApiStorageService jsonApiStorageService;
+    @Autowired
+    private QueueProcessEngine queueProcessEngine;
 
     @RequestMapping("")
     public String getSystemUp() {
@@ -69,4 +74,9 @@ public class SystemInfoController {
         }
         return YAMJ_INFO;
     }
+
+    @RequestMapping("/queues")
+    public List<QueueStatistics> getQueueStatistics() {
+        return queueProcessEngine.getStatistics();
+    }
 }
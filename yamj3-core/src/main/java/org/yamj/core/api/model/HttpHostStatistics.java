@@ -0,0 +1,135 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.api.model;
+
+public class HttpHostStatistics {
+
+    private String host;
+    private long requestsPerSecond = 0L;
+    private double concurrencyLimit = 0.0;
+    private int maxConcurrency = 0;
+    private int inFlight = 0;
+    private long requests = 0L;
+    private long throttled = 0L;
+    private long failures = 0L;
+    private long rejected = 0L;
+    private long averageQueueWait = 0L;
+    private long averageLatency = 0L;
+    private boolean circuitOpen = false;
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public long getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public void setRequestsPerSecond(long requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    public double getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(double concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getThrottled() {
+        return throttled;
+    }
+
+    public void setThrottled(long throttled) {
+        this.throttled = throttled;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public long getAverageQueueWait() {
+        return averageQueueWait;
+    }
+
+    public void setAverageQueueWait(long averageQueueWait) {
+        this.averageQueueWait = averageQueueWait;
+    }
+
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    public void setAverageLatency(long averageLatency) {
+        this.averageLatency = averageLatency;
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitOpen;
+    }
+
+    public void setCircuitOpen(boolean circuitOpen) {
+        this.circuitOpen = circuitOpen;
+    }
+}
@@ -25,10 +25,13 @@ package org.yamj.core.api.model.builder;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.HibernateException;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
-import org.hibernate.type.BasicType;
+import org.hibernate.type.*;
 
 /**
  * Builds a SQL statement and holds the scalars for the statement
@@ -37,9 +40,18 @@ import org.hibernate.type.BasicType;
  */
 public final class SqlScalars {
 
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\sORDER\\s+BY\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final String TOTAL_COUNT = "totalCount";
+    private static final String SEEK_VALUE = "seekValue";
+    private static final String SEEK_ID = "seekId";
+    private static final String ID = "id";
+
     private StringBuilder sql;
     private Map<String, BasicType> scalars;
     private final Map<String, Object> parameters;
+    private final Map<String, Type> parameterTypes = new HashMap<>();
+    private String sortColumn = null;
     private SQLQuery query = null;
 
     public SqlScalars() {
@@ -98,6 +110,26 @@ public final class SqlScalars {
         }
     }
 
+    /**
+     * Set the column alias the SQL is sorted on.
+     *
+     * Only SQL with a sort column can be used for keyset pagination.
+     *
+     * @param sortColumn
+     */
+    public void setSortColumn(String sortColumn) {
+        this.sortColumn = sortColumn;
+    }
+
+    /**
+     * Get the column alias the SQL is sorted on
+     *
+     * @return
+     */
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
     /**
      * Get the SQL as a string
      *
@@ -107,30 +139,152 @@ public final class SqlScalars {
         return StringUtils.normalizeSpace(sql.toString());
     }
 
+    /**
+     * Get the SQL without the trailing ORDER BY clause.
+     *
+     * Only an ORDER BY clause of the outer statement is removed, clauses of sub queries are kept.
+     *
+     * @return
+     */
+    public String getSqlWithoutOrder() {
+        String sqlString = getSql();
+        int orderPos = -1;
+        Matcher matcher = ORDER_BY_PATTERN.matcher(sqlString);
+        while (matcher.find()) {
+            orderPos = matcher.start();
+        }
+        if (orderPos < 0 || sqlString.indexOf(')', orderPos) >= 0) {
+            // no ORDER BY or ORDER BY of a sub query
+            return sqlString;
+        }
+        return sqlString.substring(0, orderPos);
+    }
+
     /**
      * Get the SQL as a query using the session
      *
      * @param session
      * @return
      */
-    @SuppressWarnings("rawtypes")
     public SQLQuery createSqlQuery(Session session) {
         if (this.query == null) {
             this.query = session.createSQLQuery(getSql());
-            // Add parameters
-            if (parameters != null) {
-                for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-                    if (entry.getValue() instanceof Collection) {
-                        query.setParameterList(entry.getKey(), (Collection) entry.getValue());
-                    } else if (entry.getValue() instanceof Object[]) {
-                        query.setParameterList(entry.getKey(), (Object[]) entry.getValue());
-                    } else {
-                        query.setParameter(entry.getKey(), entry.getValue());
-                    }
+            applyParameters(this.query);
+        }
+        return this.query;
+    }
+
+    /**
+     * Create a query which counts the rows of the SQL.
+     *
+     * The count query uses the same parameters but ignores the sorting of the SQL.
+     *
+     * @param session
+     * @return query with a single result holding the count as long
+     */
+    public SQLQuery createCountQuery(Session session) {
+        StringBuilder countSql = new StringBuilder();
+        countSql.append("SELECT COUNT(*) AS ").append(TOTAL_COUNT).append(" FROM (");
+        countSql.append(getSqlWithoutOrder());
+        countSql.append(") countsql");
+
+        SQLQuery countQuery = session.createSQLQuery(countSql.toString());
+        applyParameters(countQuery);
+        countQuery.addScalar(TOTAL_COUNT, LongType.INSTANCE);
+        return countQuery;
+    }
+
+    /**
+     * Sort the SQL for keyset pagination and restrict it to the rows after a given position.
+     *
+     * The SQL is wrapped and sorted by the sort column and the "id" column; both must be
+     * scalars of the SQL. Rows with a NULL value in the sort column are sorted last.
+     * 
+     * The seek value is bound with the type of the sort column scalar. If the last seen
+     * row had a NULL value in the sort column, the seek value must be null and only the
+     * rows with a NULL value after the seek ID are returned.
+     *
+     * @param sortColumn the column alias to sort on
+     * @param descending true for a descending sort
+     * @param seekValue the value of the sort column of the last seen row
+     * @param seekId the ID of the last seen row
+     * @return true if the seek condition has been applied, false if the SQL is unchanged
+     */
+    public boolean addSeekCondition(String sortColumn, boolean descending, String seekValue, Long seekId) {
+        if (seekValue == null && seekId == null) {
+            // no position given; keep the sorting of the SQL
+            return false;
+        }
+        if (this.query != null || sortColumn == null || !COLUMN_PATTERN.matcher(sortColumn).matches()
+            || !scalars.containsKey(sortColumn) || !scalars.containsKey(ID))
+        {
+            return false;
+        }
+
+        final Type sortType = scalars.get(sortColumn);
+        Object typedValue = seekValue;
+        if (seekValue != null && sortType instanceof AbstractStandardBasicType) {
+            try {
+                typedValue = ((AbstractStandardBasicType<?>) sortType).fromStringValue(seekValue);
+            } catch (HibernateException | IllegalArgumentException ex) { //NOSONAR
+                // invalid seek value; use the offset instead
+                return false;
+            }
+        }
+
+        final String compare = descending ? "<" : ">";
+        final String direction = descending ? " DESC" : " ASC";
+        final String column = "seek." + sortColumn;
+
+        StringBuilder seekSql = new StringBuilder();
+        seekSql.append("SELECT * FROM (");
+        seekSql.append(getSqlWithoutOrder());
+        seekSql.append(") seek");
+
+        if (typedValue != null) {
+            // NULL values are sorted after all other values
+            seekSql.append(" WHERE (").append(column).append(" IS NULL OR ");
+            seekSql.append(column).append(compare).append(":").append(SEEK_VALUE);
+            if (seekId != null) {
+                seekSql.append(" OR (").append(column).append("=:").append(SEEK_VALUE);
+                seekSql.append(" AND seek.id").append(compare).append(":").append(SEEK_ID).append(")");
+                this.parameters.put(SEEK_ID, seekId);
+            }
+            seekSql.append(")");
+            this.parameters.put(SEEK_VALUE, typedValue);
+            if (sortType != null) {
+                this.parameterTypes.put(SEEK_VALUE, sortType);
+            }
+        } else {
+            // last seen row had a NULL value
+            seekSql.append(" WHERE ").append(column).append(" IS NULL");
+            seekSql.append(" AND seek.id").append(compare).append(":").append(SEEK_ID);
+            this.parameters.put(SEEK_ID, seekId);
+        }
+
+        seekSql.append(" ORDER BY CASE WHEN ").append(column).append(" IS NULL THEN 1 ELSE 0 END, ");
+        seekSql.append(column).append(direction);
+        seekSql.append(", seek.id").append(direction);
+
+        setSql(seekSql.toString());
+        return true;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void applyParameters(SQLQuery sqlQuery) {
+        if (parameters != null) {
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                if (entry.getValue() instanceof Collection) {
+                    sqlQuery.setParameterList(entry.getKey(), (Collection) entry.getValue());
+                } else if (entry.getValue() instanceof Object[]) {
+                    sqlQuery.setParameterList(entry.getKey(), (Object[]) entry.getValue());
+                } else if (parameterTypes.containsKey(entry.getKey())) {
+                    sqlQuery.setParameter(entry.getKey(), entry.getValue(), parameterTypes.get(entry.getKey()));
+                } else {
+                    sqlQuery.setParameter(entry.getKey(), entry.getValue());
                 }
             }
         }
-        return this.query;
     }
 
     /**
@@ -149,7 +303,9 @@ public final class SqlScalars {
     public void clear() {
         sql = new StringBuilder();
         parameters.clear();
+        parameterTypes.clear();
         scalars.clear();
+        sortColumn = null;
     }
 
     /**
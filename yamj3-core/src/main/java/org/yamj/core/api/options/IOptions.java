@@ -35,9 +35,13 @@ public interface IOptions {
 
     void setLanguage(String language);
 
+    void setSkipcount(boolean skipcount);
+
     Integer getStart();
 
     Integer getMax();
 
     String getLanguage();
+
+    boolean isSkipcount();
 }
@@ -40,4 +40,12 @@ public interface IOptionsSort {
     String getSortString();
 
     String getSortString(String sortby);
+
+    void setAfter(String after);
+
+    void setAfterid(Long afterid);
+
+    String getAfter();
+
+    Long getAfterid();
 }
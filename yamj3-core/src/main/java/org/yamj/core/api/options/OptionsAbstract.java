@@ -50,6 +50,7 @@ public abstract class OptionsAbstract implements IOptions {
     @JsonIgnore
     private Integer perline = -1;
     private String language;
+    private boolean skipcount = false;
 
     @Override
     public void setStart(Integer start) {
@@ -129,6 +130,23 @@ public abstract class OptionsAbstract implements IOptions {
         return language;
     }
 
+    /**
+     * Skip the counting of the total number of results.
+     *
+     * If set, the total count is just the number of results up to the current page.
+     *
+     * @param skipcount
+     */
+    @Override
+    public void setSkipcount(boolean skipcount) {
+        this.skipcount = skipcount;
+    }
+
+    @Override
+    public boolean isSkipcount() {
+        return skipcount;
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
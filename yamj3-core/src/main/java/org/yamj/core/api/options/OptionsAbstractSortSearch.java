@@ -46,6 +46,8 @@ public abstract class OptionsAbstractSortSearch extends OptionsAbstract implemen
 
     private String sortby;
     private String sortdir;
+    private String after;
+    private Long afterid;
     private String field;
     private String search;
     // TODO: Change this to MatchMode
@@ -136,6 +138,46 @@ public abstract class OptionsAbstractSortSearch extends OptionsAbstract implemen
         }
         return sb.toString();
     }
+
+    /**
+     * Get the value of the sort field of the last seen result (keyset pagination)
+     *
+     * @return
+     */
+    @Override
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * Set the value of the sort field of the last seen result (keyset pagination)
+     *
+     * @param after
+     */
+    @Override
+    public void setAfter(String after) {
+        this.after = after;
+    }
+
+    /**
+     * Get the ID of the last seen result (keyset pagination)
+     *
+     * @return
+     */
+    @Override
+    public Long getAfterid() {
+        return afterid;
+    }
+
+    /**
+     * Set the ID of the last seen result (keyset pagination)
+     *
+     * @param afterid
+     */
+    @Override
+    public void setAfterid(Long afterid) {
+        this.afterid = afterid;
+    }
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Search Setters/Getters">
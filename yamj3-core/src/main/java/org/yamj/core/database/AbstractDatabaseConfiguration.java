@@ -49,6 +49,9 @@ public abstract class AbstractDatabaseConfiguration implements DatabaseConfigura
     @Value("${yamj3.database.statistics:false}")
     protected boolean generateStatistics;
 
+    @Value("${yamj3.database.batchSize:50}")
+    protected int batchSize;
+
     @Value("${yamj3.database.poolPreparedStatements:true}")
     protected boolean poolPreparedStatements;
 
@@ -90,6 +90,8 @@ public class H2DatabaseConfiguration extends AbstractDatabaseConfiguration {
         props.put("hibernate.hbm2ddl.auto", "update");
         props.put("hibernate.connection.isolation", TRANSACTION_READ_COMMITTED);
         props.put("hibernate.use_sql_comments", false);
+        props.put("hibernate.jdbc.batch_size", batchSize);
+        props.put("hibernate.order_updates", true);
         props.put("hibernate.cache.use_query_cache", false);
         props.put("hibernate.cache.use_second_level_cache", false);
         props.put("hibernate.connection.CharSet", "utf8");
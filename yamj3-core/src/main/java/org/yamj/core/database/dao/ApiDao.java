@@ -50,6 +50,8 @@ public class ApiDao extends HibernateDao {
 
     // LITERALS
     private static final String ID = "id";
+    private static final String IDS = "ids";
+    private static final String OWNER_ID = "ownerId";
     private static final String YEAR = "year";
     private static final String TITLE = "title";
     private static final String EPISODE = "episode";
@@ -103,6 +105,7 @@ public class ApiDao extends HibernateDao {
         IndexParams params = new IndexParams(options);
 
         SqlScalars sqlScalars = new SqlScalars(generateSqlForVideoList(params));
+        sqlScalars.setSortColumn(options.getSortby());
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(VIDEO_TYPE, StringType.INSTANCE);                      
         sqlScalars.addScalar(TITLE, StringType.INSTANCE);
@@ -132,73 +135,21 @@ public class ApiDao extends HibernateDao {
             return queryResults;
         }
             
-        if (params.hasDataItem(DataItem.GENRE)) {
-            LOG.trace("Adding genres to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setGenres(this.getGenresForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.STUDIO)) {
-            LOG.trace("Adding studios to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setStudios(this.getStudiosForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.COUNTRY)) {
-            LOG.trace("Adding countries to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setCountries(this.getCountriesForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.CERTIFICATION)) {
-            LOG.trace("Adding certifications to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setCertifications(this.getCertificationsForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.RATING)) {
-            LOG.trace("Adding ratings to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setRatings(this.getRatingsForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.AWARD)) {
-            LOG.trace("Adding awards to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setAwards(this.getAwardsForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.EXTERNALID)) {
-            LOG.trace("Adding external IDs to index videos");
+        if (CollectionUtils.isNotEmpty(params.getDataItems())) {
+            // group the videos by type to load the data items in batches
+            Map<MetaDataType, List<ApiVideoDTO>> videosByType = new EnumMap<>(MetaDataType.class);
             for (ApiVideoDTO video : queryResults) {
-                video.setExternalIds(this.getExternalIdsForId(video.getVideoType(), video.getId()));
+                List<ApiVideoDTO> videos = videosByType.get(video.getVideoType());
+                if (videos == null) {
+                    videos = new ArrayList<>();
+                    videosByType.put(video.getVideoType(), videos);
+                }
+                videos.add(video);
             }
-        }
 
-        if (params.hasDataItem(DataItem.BOXSET)) {
-            LOG.trace("Adding boxed sets to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setBoxedSets(this.getBoxedSetsForId(video.getVideoType(), video.getId()));
-            }
-        }
-
-        if (params.hasDataItem(DataItem.TRAILER)) {
-            LOG.trace("Adding trailers to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setTrailers(this.getTrailersForId(video.getVideoType(), video.getId()));
-            }
-        }
-        
-        if (params.hasDataItem(DataItem.VIDEOSOURCE)) {
-            LOG.trace("Adding video source to index videos");
-            for (ApiVideoDTO video : queryResults) {
-                video.setVideoSource(getVideoSource(video.getVideoType(), video.getId()));
+            for (Map.Entry<MetaDataType, List<ApiVideoDTO>> entry : videosByType.entrySet()) {
+                LOG.trace("Adding data items to {} index videos of type {}", entry.getValue().size(), entry.getKey());
+                addDataItems(entry.getKey(), entry.getValue(), params);
             }
         }
 
@@ -1152,7 +1103,8 @@ public class ApiDao extends HibernateDao {
 
             if (options.hasDataItem(DataItem.EXTERNALID)) {
                 LOG.trace("Adding external IDs for ID {}", options.getId());
-                person.setExternalIds(getExternalIdsForId(MetaDataType.PERSON, options.getId()));
+                Map<Long, List<ApiExternalIdDTO>> externalIds = getExternalIdsForIds(MetaDataType.PERSON, Collections.singletonList(options.getId()));
+                person.setExternalIds(getForId(externalIds, options.getId()));
             }
 
             if (options.hasDataItem(DataItem.FILMOGRAPHY_INSIDE)) {
@@ -1380,6 +1332,7 @@ public class ApiDao extends HibernateDao {
         sqlScalars.addToSql(options.getSearchString(Boolean.FALSE));
         // This will default to blank if there's no  required
         sqlScalars.addToSql(options.getSortString());
+        sqlScalars.setSortColumn(options.getSortby());
 
         // Add the ID
         sqlScalars.addParameter(ID, options.getId());
@@ -1441,6 +1394,7 @@ public class ApiDao extends HibernateDao {
             sqlScalars.addToSql(options.getSearchString(Boolean.FALSE));
             // This will default to blank if there's no sort required
             sqlScalars.addToSql(options.getSortString());
+            sqlScalars.setSortColumn(options.getSortby());
         }
 
         sqlScalars.addScalar(ID, LongType.INSTANCE);
@@ -1614,75 +1568,57 @@ public class ApiDao extends HibernateDao {
             }
         }
         
+        // series data items are loaded once for all series of the episodes
+        Set<Long> seriesIds = new HashSet<>();
+        for (ApiEpisodeDTO episode : results) {
+            seriesIds.add(episode.getSeriesId());
+        }
+
         if (options.hasDataItem(DataItem.GENRE)) {
             // use series genres
-            Map<Long, List<ApiGenreDTO>> map = new HashMap<>();
+            Map<Long, List<ApiGenreDTO>> genres = getGenresForIds(MetaDataType.SERIES, seriesIds);
             for (ApiEpisodeDTO episode : results) {
-                List<ApiGenreDTO> genres = map.get(episode.getSeriesId());
-                if (genres == null) {
-                    genres = getGenresForId(MetaDataType.SERIES, episode.getSeriesId());
-                    map.put(episode.getSeriesId(), genres);
-                }
-                episode.setGenres(genres);
+                episode.setGenres(getForId(genres, episode.getSeriesId()));
             }
         }
         
         if (options.hasDataItem(DataItem.COUNTRY)) {
             // use series countries
-            Map<Long, List<ApiCountryDTO>> map = new HashMap<>();
+            Map<Long, List<ApiCountryDTO>> countries = getCountriesForIds(MetaDataType.SERIES, seriesIds);
             for (ApiEpisodeDTO episode : results) {
-                List<ApiCountryDTO> countries = map.get(episode.getSeriesId());
-                if (countries == null) {
-                    countries = getCountriesForId(MetaDataType.SERIES, episode.getSeriesId());
-                    map.put(episode.getSeriesId(), countries);
-                }
-                episode.setCountries(countries);
+                episode.setCountries(getForId(countries, episode.getSeriesId()));
             }
         }
         
         if (options.hasDataItem(DataItem.STUDIO)) {
             // use series studios
-            Map<Long, List<Studio>> map = new HashMap<>();
+            Map<Long, List<Studio>> studios = getStudiosForIds(MetaDataType.SERIES, seriesIds);
             for (ApiEpisodeDTO episode : results) {
-                List<Studio> studios = map.get(episode.getSeriesId());
-                if (studios == null) {
-                    studios = getStudiosForId(MetaDataType.SERIES, episode.getSeriesId());
-                    map.put(episode.getSeriesId(), studios);
-                }
-                episode.setStudios(studios);
+                episode.setStudios(getForId(studios, episode.getSeriesId()));
             }
         }
         
         if (options.hasDataItem(DataItem.CERTIFICATION)) {
             // use series certifications
-            Map<Long, List<ApiCertificationDTO>> map = new HashMap<>();
+            Map<Long, List<ApiCertificationDTO>> certifications = getCertificationsForIds(MetaDataType.SERIES, seriesIds);
             for (ApiEpisodeDTO episode : results) {
-                List<ApiCertificationDTO> certifications = map.get(episode.getSeriesId());
-                if (certifications == null) {
-                    certifications = getCertificationsForId(MetaDataType.SERIES, episode.getSeriesId());
-                    map.put(episode.getSeriesId(), certifications);
-                }
-                episode.setCertifications(certifications);
+                episode.setCertifications(getForId(certifications, episode.getSeriesId()));
             }
         }
         
         if (options.hasDataItem(DataItem.AWARD)) {
             // use series awards
-            Map<Long, List<ApiAwardDTO>> map = new HashMap<>();
+            Map<Long, List<ApiAwardDTO>> awards = getAwardsForIds(MetaDataType.SERIES, seriesIds);
             for (ApiEpisodeDTO episode : results) {
-                List<ApiAwardDTO> awards = map.get(episode.getSeriesId());
-                if (awards == null) {
-                    awards = getAwardsForId(MetaDataType.SERIES, episode.getSeriesId());
-                    map.put(episode.getSeriesId(), awards);
-                }
-                episode.setAwards(awards);
+                episode.setAwards(getForId(awards, episode.getSeriesId()));
             }
         }
         
         if (options.hasDataItem(DataItem.RATING)) {
-            // use episode certifications
+            // use episode ratings
+            Map<Long, List<ApiRatingDTO>> ratings = getRatingsForIds(MetaDataType.EPISODE, generateIdList(results));
             for (ApiEpisodeDTO episode : results) {
-                episode.setRatings(getRatingsForId(MetaDataType.EPISODE, episode.getId()));
+                episode.setRatings(getForId(ratings, episode.getId()));
             }
         }
 
@@ -1764,54 +1700,9 @@ public class ApiDao extends HibernateDao {
         // get single video
         ApiVideoDTO video = queryResults.get(0);
 
-        if (params.hasDataItem(DataItem.GENRE)) {
-            LOG.trace("Adding genres for ID {}", options.getId());
-            video.setGenres(getGenresForId(type, options.getId()));
-        }
-
-        if (params.hasDataItem(DataItem.STUDIO)) {
-            LOG.trace("Adding studios for ID {}", options.getId());
-            video.setStudios(getStudiosForId(type, options.getId()));
-        }
-
-        if (options.hasDataItem(DataItem.COUNTRY)) {
-            LOG.trace("Adding countries for ID {}", options.getId());
-            video.setCountries(getCountriesForId(type, options.getId()));
-        }
-
-        if (params.hasDataItem(DataItem.CERTIFICATION)) {
-            LOG.trace("Adding certifications for ID {}", options.getId());
-            video.setCertifications(getCertificationsForId(type, options.getId()));
-        }
-
-        if (params.hasDataItem(DataItem.RATING)) {
-            LOG.trace("Adding ratings for ID {}", options.getId());
-            video.setRatings(getRatingsForId(type, options.getId()));
-        }
-
-        if (options.hasDataItem(DataItem.AWARD)) {
-            LOG.trace("Adding awards for ID {}", options.getId());
-            video.setAwards(getAwardsForId(type, options.getId()));
-        }
-
-        if (options.hasDataItem(DataItem.EXTERNALID)) {
-            LOG.trace("Adding external IDs for ID {}", options.getId());
-            video.setExternalIds(getExternalIdsForId(type, options.getId()));
-        }
-
-        if (options.hasDataItem(DataItem.BOXSET)) {
-            LOG.trace("Adding boxed sets for ID {}", options.getId());
-            video.setBoxedSets(getBoxedSetsForId(type, options.getId()));
-        }
-        
-        if (params.hasDataItem(DataItem.TRAILER)) {
-            LOG.trace("Adding trailers for ID {}", options.getId());
-            video.setTrailers(getTrailersForId(type, options.getId()));
-        }
-
-        if (params.hasDataItem(DataItem.VIDEOSOURCE)) {
-            LOG.trace("Adding video source for ID {}", options.getId());
-            video.setVideoSource(getVideoSource(type, options.getId()));
+        if (CollectionUtils.isNotEmpty(params.getDataItems())) {
+            LOG.trace("Adding data items for ID {}", options.getId());
+            addDataItems(type, Collections.singletonList(video), params);
         }
 
         if (params.hasDataItem(DataItem.FILES)) {
@@ -1859,33 +1750,133 @@ public class ApiDao extends HibernateDao {
         return video;
     }
 
-    private String getVideoSource(MetaDataType type, Long id) {
+    /**
+     * Add the requested data items to the videos.
+     *
+     * Each data item is loaded with one query for all videos.
+     *
+     * @param type the type of all videos
+     * @param videos the videos
+     * @param params the index parameters
+     */
+    private void addDataItems(MetaDataType type, List<ApiVideoDTO> videos, IndexParams params) {
+        List<Long> ids = generateIdList(videos);
+
+        if (params.hasDataItem(DataItem.GENRE)) {
+            Map<Long, List<ApiGenreDTO>> genres = getGenresForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setGenres(getForId(genres, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.STUDIO)) {
+            Map<Long, List<Studio>> studios = getStudiosForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setStudios(getForId(studios, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.COUNTRY)) {
+            Map<Long, List<ApiCountryDTO>> countries = getCountriesForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setCountries(getForId(countries, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.CERTIFICATION)) {
+            Map<Long, List<ApiCertificationDTO>> certifications = getCertificationsForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setCertifications(getForId(certifications, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.RATING)) {
+            Map<Long, List<ApiRatingDTO>> ratings = getRatingsForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setRatings(getForId(ratings, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.AWARD)) {
+            Map<Long, List<ApiAwardDTO>> awards = getAwardsForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setAwards(getForId(awards, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.EXTERNALID)) {
+            Map<Long, List<ApiExternalIdDTO>> externalIds = getExternalIdsForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setExternalIds(getForId(externalIds, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.BOXSET)) {
+            Map<Long, List<ApiBoxedSetDTO>> boxedSets = getBoxedSetsForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setBoxedSets(getForId(boxedSets, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.TRAILER)) {
+            Map<Long, List<ApiTrailerDTO>> trailers = getTrailersForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setTrailers(getForId(trailers, video.getId()));
+            }
+        }
+
+        if (params.hasDataItem(DataItem.VIDEOSOURCE)) {
+            Map<Long, String> videoSources = getVideoSourcesForIds(type, ids);
+            for (ApiVideoDTO video : videos) {
+                video.setVideoSource(videoSources.get(video.getId()));
+            }
+        }
+    }
+
+    /**
+     * Get the video sources for a list of video IDs
+     *
+     * @param type
+     * @param ids
+     * @return
+     */
+    private Map<Long, String> getVideoSourcesForIds(MetaDataType type, Collection<Long> ids) {
         StringBuilder sbSQL = new StringBuilder();
-        sbSQL.append("SELECT mf.video_source FROM mediafile_videodata mv ");
+        if (type == MetaDataType.SERIES) {
+            sbSQL.append("SELECT sea.series_id AS ownerId, ");
+        } else if (type == MetaDataType.SEASON) {
+            sbSQL.append("SELECT vd.season_id AS ownerId, ");
+        } else {
+            sbSQL.append("SELECT mv.videodata_id AS ownerId, ");
+        }
+        sbSQL.append("mf.video_source FROM mediafile_videodata mv ");
         sbSQL.append("JOIN mediafile mf on mf.id=mv.mediafile_id and mf.extra=0 and mf.video_source is not null ");
 
         if (type == MetaDataType.SERIES) {
             sbSQL.append("JOIN videodata vd on vd.id=mv.videodata_id ");
             sbSQL.append("JOIN season sea on sea.id=vd.season_id ");
-            sbSQL.append("WHERE sea.series_id=:id");
+            sbSQL.append("WHERE sea.series_id IN (:ids)");
         } else if (type == MetaDataType.SEASON) {
             sbSQL.append("JOIN videodata vd on vd.id=mv.videodata_id ");
-            sbSQL.append("WHERE vd.season_id=:id");
+            sbSQL.append("WHERE vd.season_id IN (:ids)");
         } else {
-            sbSQL.append("WHERE mv.videodata_id=:id");
+            sbSQL.append("WHERE mv.videodata_id IN (:ids)");
         }
         
         SqlScalars sqlScalars = new SqlScalars(sbSQL);
-        sqlScalars.addParameter(ID, id);
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar("video_source", StringType.INSTANCE);
-        List<String> videoSources = executeQueryWithTransform(String.class, sqlScalars, null);
+        Map<Long, List<String>> videoSources = executeGroupedQueryWithTransform(String.class, sqlScalars, OWNER_ID, IDS, ids);
         
-        if (videoSources.size() == 1) {
-            return videoSources.get(0);
-        } else if (videoSources.size() > 1) {
-            return MULTIPLE;
+        Map<Long, String> results = new HashMap<>(videoSources.size());
+        for (Map.Entry<Long, List<String>> entry : videoSources.entrySet()) {
+            if (entry.getValue().size() == 1) {
+                results.put(entry.getKey(), entry.getValue().get(0));
+            } else if (entry.getValue().size() > 1) {
+                results.put(entry.getKey(), MULTIPLE);
+            }
         }
-        return null;
+        return results;
     }
         
     /**
@@ -1967,33 +1958,39 @@ public class ApiDao extends HibernateDao {
     }
 
     /**
-     * Get a list of the files associated with a video ID.
+     * Get a list of the trailers associated with a list of video IDs.
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiTrailerDTO> getTrailersForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiTrailerDTO>> getTrailersForIds(MetaDataType type, Collection<Long> ids) {
         if (MetaDataType.SERIES != type && MetaDataType.MOVIE != type) {
             // just for movies and series
-            return Collections.emptyList();
+            return Collections.emptyMap();
         }
         
         // Build the SQL statement
         StringBuilder sbSQL = new StringBuilder();
-        sbSQL.append("SELECT t.id, t.title, t.url, t.source, t.hash_code as hashCode, t.cache_dir as cacheDir, t.cache_filename as cacheFilename ");
+        if (type == MetaDataType.SERIES) {
+            sbSQL.append("SELECT t.series_id AS ownerId, ");
+        } else {
+            sbSQL.append("SELECT t.videodata_id AS ownerId, ");
+        }
+        sbSQL.append("t.id, t.title, t.url, t.source, t.hash_code as hashCode, t.cache_dir as cacheDir, t.cache_filename as cacheFilename ");
         sbSQL.append("FROM trailer t ");
 
         if (type == MetaDataType.SERIES) {
-            sbSQL.append("WHERE t.series_id=:id ");
+            sbSQL.append("WHERE t.series_id IN (:ids) ");
         } else {
-            sbSQL.append("WHERE t.videodata_id=:id ");
+            sbSQL.append("WHERE t.videodata_id IN (:ids) ");
         }
         sbSQL.append("and t.status");
         sbSQL.append(SQL_IGNORE_STATUS_SET);
         sbSQL.append("order by t.id ");
         
         SqlScalars sqlScalars = new SqlScalars(sbSQL);
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(TITLE, StringType.INSTANCE);
         sqlScalars.addScalar("url", StringType.INSTANCE);
@@ -2001,9 +1998,8 @@ public class ApiDao extends HibernateDao {
         sqlScalars.addScalar("hashCode", StringType.INSTANCE);
         sqlScalars.addScalar("cacheDir", StringType.INSTANCE);
         sqlScalars.addScalar("cacheFilename", StringType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiTrailerDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiTrailerDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     private List<ApiAudioCodecDTO> getAudioCodecs(long mediaFileId) {
@@ -2043,15 +2039,22 @@ public class ApiDao extends HibernateDao {
     }
 
     /**
-     * Get a list of the genres for a given video ID
+     * Get a list of the genres for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiGenreDTO> getGenresForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiGenreDTO>> getGenresForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
         sqlScalars.addToSql("SELECT DISTINCT ");
+        if (type == MetaDataType.SERIES) {
+            sqlScalars.addToSql("sg.series_id AS ownerId, ");
+        } else if (type == MetaDataType.SEASON) {
+            sqlScalars.addToSql("sea.id AS ownerId, ");
+        } else {
+            sqlScalars.addToSql("vg.data_id AS ownerId, ");
+        }
         sqlScalars.addToSql("CASE ");
         sqlScalars.addToSql(" WHEN target_api is not null THEN target_api ");
         sqlScalars.addToSql(" WHEN target_xml is not null THEN target_xml ");
@@ -2059,137 +2062,150 @@ public class ApiDao extends HibernateDao {
         sqlScalars.addToSql("END as name ");
         if (type == MetaDataType.SERIES) {
             sqlScalars.addToSql("FROM series_genres sg, genre g ");
-            sqlScalars.addToSql("WHERE sg.series_id=:id ");
+            sqlScalars.addToSql("WHERE sg.series_id IN (:ids) ");
             sqlScalars.addToSql("AND sg.genre_id=g.id ");
         } else if (type == MetaDataType.SEASON) {
             sqlScalars.addToSql("FROM season sea, series_genres sg, genre g ");
-            sqlScalars.addToSql("WHERE sea.id=:id ");
+            sqlScalars.addToSql("WHERE sea.id IN (:ids) ");
             sqlScalars.addToSql("AND sg.series_id=sea.series_id ");
             sqlScalars.addToSql("AND sg.genre_id=g.id ");
         } else {
             // defaults to movie
             sqlScalars.addToSql("FROM videodata_genres vg, genre g ");
-            sqlScalars.addToSql("WHERE vg.data_id=:id ");
+            sqlScalars.addToSql("WHERE vg.data_id IN (:ids) ");
             sqlScalars.addToSql("AND vg.genre_id=g.id ");
         }
         sqlScalars.addToSql("ORDER BY name");
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(NAME, StringType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiGenreDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiGenreDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
-     * Get a list of the studios for a given video ID
+     * Get a list of the studios for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<Studio> getStudiosForId(MetaDataType type, Long id) {
+    private Map<Long, List<Studio>> getStudiosForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT DISTINCT s.id, s.name ");
-        sqlScalars.addToSql("FROM studio s ");
         if (type == MetaDataType.SERIES) {
-            sqlScalars.addToSql("JOIN series_studios ss ON s.id=ss.studio_id and ss.series_id=:id ");
+            sqlScalars.addToSql("SELECT DISTINCT ss.series_id AS ownerId, s.id, s.name ");
+            sqlScalars.addToSql("FROM studio s ");
+            sqlScalars.addToSql("JOIN series_studios ss ON s.id=ss.studio_id and ss.series_id IN (:ids) ");
         } else if (type == MetaDataType.SEASON) {
-            sqlScalars.addToSql("JOIN season sea ON sea.id = :id ");
+            sqlScalars.addToSql("SELECT DISTINCT sea.id AS ownerId, s.id, s.name ");
+            sqlScalars.addToSql("FROM studio s ");
+            sqlScalars.addToSql("JOIN season sea ON sea.id IN (:ids) ");
             sqlScalars.addToSql("JOIN series_studios ss ON s.id=ss.studio_id and ss.series_id=sea.series_id ");
         } else {
             // defaults to movie
-            sqlScalars.addToSql("JOIN videodata_studios vs ON s.id=vs.studio_id and vs.data_id=:id ");
+            sqlScalars.addToSql("SELECT DISTINCT vs.data_id AS ownerId, s.id, s.name ");
+            sqlScalars.addToSql("FROM studio s ");
+            sqlScalars.addToSql("JOIN videodata_studios vs ON s.id=vs.studio_id and vs.data_id IN (:ids) ");
         }
         sqlScalars.addToSql("ORDER BY name");
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(NAME, StringType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(Studio.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(Studio.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
-     * Get a list of the genres for a given video ID
+     * Get a list of the countries for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiCountryDTO> getCountriesForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiCountryDTO>> getCountriesForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT c.id, c.country_code as countryCode ");
         if (type == MetaDataType.SERIES) {
+            sqlScalars.addToSql("SELECT sc.series_id AS ownerId, c.id, c.country_code as countryCode ");
             sqlScalars.addToSql("FROM series_countries sc, country c ");
-            sqlScalars.addToSql("WHERE sc.series_id=:id AND sc.country_id=c.id ");
+            sqlScalars.addToSql("WHERE sc.series_id IN (:ids) AND sc.country_id=c.id ");
         } else if (type == MetaDataType.SEASON) {
+            sqlScalars.addToSql("SELECT sea.id AS ownerId, c.id, c.country_code as countryCode ");
             sqlScalars.addToSql("FROM season sea, series_countries sc, country c ");
-            sqlScalars.addToSql("WHERE sea.id=:id AND sc.series_id=sea.series_id AND sc.country_id=c.id ");
+            sqlScalars.addToSql("WHERE sea.id IN (:ids) AND sc.series_id=sea.series_id AND sc.country_id=c.id ");
         } else {
             // defaults to movie
+            sqlScalars.addToSql("SELECT vc.data_id AS ownerId, c.id, c.country_code as countryCode ");
             sqlScalars.addToSql("FROM videodata_countries vc, country c ");
-            sqlScalars.addToSql("WHERE vc.data_id=:id AND vc.country_id=c.id ");
+            sqlScalars.addToSql("WHERE vc.data_id IN (:ids) AND vc.country_id=c.id ");
         }
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(COUNTRY_CODE, StringType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiCountryDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiCountryDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
-     * Get a list of the certifications for a given video ID
+     * Get a list of the certifications for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiCertificationDTO> getCertificationsForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiCertificationDTO>> getCertificationsForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT DISTINCT c.id, c.country_code as countryCode, c.certificate ");
-        sqlScalars.addToSql("FROM certification c ");
         if (type == MetaDataType.SERIES) {
-            sqlScalars.addToSql("JOIN series_certifications sc ON c.id=sc.cert_id and sc.series_id=:id ");
+            sqlScalars.addToSql("SELECT DISTINCT sc.series_id AS ownerId, c.id, c.country_code as countryCode, c.certificate ");
+            sqlScalars.addToSql("FROM certification c ");
+            sqlScalars.addToSql("JOIN series_certifications sc ON c.id=sc.cert_id and sc.series_id IN (:ids) ");
         } else if (type == MetaDataType.SEASON) {
-            sqlScalars.addToSql("JOIN season sea ON sea.id = :id ");
+            sqlScalars.addToSql("SELECT DISTINCT sea.id AS ownerId, c.id, c.country_code as countryCode, c.certificate ");
+            sqlScalars.addToSql("FROM certification c ");
+            sqlScalars.addToSql("JOIN season sea ON sea.id IN (:ids) ");
             sqlScalars.addToSql("JOIN series_certifications sc ON c.id=sc.cert_id and sc.series_id=sea.series_id ");
         } else {
             // defaults to movie
-            sqlScalars.addToSql("JOIN videodata_certifications vc ON c.id=vc.cert_id and vc.data_id=:id ");
+            sqlScalars.addToSql("SELECT DISTINCT vc.data_id AS ownerId, c.id, c.country_code as countryCode, c.certificate ");
+            sqlScalars.addToSql("FROM certification c ");
+            sqlScalars.addToSql("JOIN videodata_certifications vc ON c.id=vc.cert_id and vc.data_id IN (:ids) ");
         }
         sqlScalars.addToSql("ORDER BY country_code, certificate");
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(COUNTRY_CODE, StringType.INSTANCE);
         sqlScalars.addScalar("certificate", StringType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiCertificationDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiCertificationDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
-     * Get a list of the awards for a given video ID
+     * Get a list of the awards for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiAwardDTO> getAwardsForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiAwardDTO>> getAwardsForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT DISTINCT a.event, a.category, a.sourcedb as source, c.year, c.won, c.nominated ");
         if (type == MetaDataType.SERIES) {
+            sqlScalars.addToSql("SELECT DISTINCT c.series_id AS ownerId, a.event, a.category, a.sourcedb as source, c.year, c.won, c.nominated ");
             sqlScalars.addToSql("FROM series_awards c JOIN award a ON c.award_id=a.id ");
-            sqlScalars.addToSql("WHERE c.series_id=:id ");
+            sqlScalars.addToSql("WHERE c.series_id IN (:ids) ");
         } else if (type == MetaDataType.SEASON) {
+            sqlScalars.addToSql("SELECT DISTINCT sea.id AS ownerId, a.event, a.category, a.sourcedb as source, c.year, c.won, c.nominated ");
             sqlScalars.addToSql("FROM series_awards c JOIN season sea ON c.series_id=sea.series_id ");
-            sqlScalars.addToSql("JOIN award a ON c.award_id=a.id WHERE sea.id=:id ");
+            sqlScalars.addToSql("JOIN award a ON c.award_id=a.id WHERE sea.id IN (:ids) ");
         } else {
+            sqlScalars.addToSql("SELECT DISTINCT c.videodata_id AS ownerId, a.event, a.category, a.sourcedb as source, c.year, c.won, c.nominated ");
             sqlScalars.addToSql("FROM videodata_awards c JOIN award a ON c.award_id=a.id ");
-            sqlScalars.addToSql("WHERE c.videodata_id=:id ");
+            sqlScalars.addToSql("WHERE c.videodata_id IN (:ids) ");
         }
         sqlScalars.addToSql("ORDER BY year, event");
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar("event", StringType.INSTANCE);
         sqlScalars.addScalar("category", StringType.INSTANCE);
         sqlScalars.addScalar(SOURCE, StringType.INSTANCE);
@@ -2197,54 +2213,60 @@ public class ApiDao extends HibernateDao {
         sqlScalars.addScalar("won", BooleanType.INSTANCE);
         sqlScalars.addScalar("nominated", BooleanType.INSTANCE);
 
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiAwardDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiAwardDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
-     * Get a list of the ratings for a given video ID
+     * Get a list of the ratings for given video IDs
      *
      * @param type
-     * @param id
+     * @param ids
      * @return
      */
-    private List<ApiRatingDTO> getRatingsForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiRatingDTO>> getRatingsForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT r1.rating, r1.sourcedb AS source, 2 AS sorting ");
         if (type == MetaDataType.SERIES) {
-            sqlScalars.addToSql("FROM series_ratings r1 WHERE r1.series_id=:id ");
+            sqlScalars.addToSql("SELECT r1.series_id AS ownerId, r1.rating, r1.sourcedb AS source, 2 AS sorting ");
+            sqlScalars.addToSql("FROM series_ratings r1 WHERE r1.series_id IN (:ids) ");
         } else if (type == MetaDataType.SEASON) {
-            sqlScalars.addToSql("FROM series_ratings r1, season sea WHERE sea.id=:id AND sea.series_id=r1.series_id ");
+            sqlScalars.addToSql("SELECT sea.id AS ownerId, r1.rating, r1.sourcedb AS source, 2 AS sorting ");
+            sqlScalars.addToSql("FROM series_ratings r1, season sea WHERE sea.id IN (:ids) AND sea.series_id=r1.series_id ");
         } else {
             // defaults to movie
-            sqlScalars.addToSql("FROM videodata_ratings r1 WHERE r1.videodata_id=:id ");
+            sqlScalars.addToSql("SELECT r1.videodata_id AS ownerId, r1.rating, r1.sourcedb AS source, 2 AS sorting ");
+            sqlScalars.addToSql("FROM videodata_ratings r1 WHERE r1.videodata_id IN (:ids) ");
         }
         sqlScalars.addToSql(SQL_UNION);
         // combined rating
-        sqlScalars.addToSql("SELECT round(grouped.average) AS rating, 'combined' AS source, 1 AS sorting FROM ");
-        sqlScalars.addToSql("(SELECT avg(r2.rating) as average ");
+        sqlScalars.addToSql("SELECT grouped.ownerId, round(grouped.average) AS rating, 'combined' AS source, 1 AS sorting FROM ");
         if (type == MetaDataType.SERIES) {
+            sqlScalars.addToSql("(SELECT r2.series_id AS ownerId, avg(r2.rating) as average ");
             sqlScalars.addToSql("FROM series_ratings r2 ");
-            sqlScalars.addToSql("WHERE r2.series_id=:id ");
+            sqlScalars.addToSql("WHERE r2.series_id IN (:ids) ");
+            sqlScalars.addToSql("GROUP BY r2.series_id ");
         } else if (type == MetaDataType.SEASON) {
+            sqlScalars.addToSql("(SELECT sea.id AS ownerId, avg(r2.rating) as average ");
             sqlScalars.addToSql("FROM series_ratings r2, season sea ");
-            sqlScalars.addToSql("WHERE sea.id=:id ");
+            sqlScalars.addToSql("WHERE sea.id IN (:ids) ");
             sqlScalars.addToSql("AND sea.series_id=r2.series_id ");
+            sqlScalars.addToSql("GROUP BY sea.id ");
         } else {
             // defaults to movie
+            sqlScalars.addToSql("(SELECT r2.videodata_id AS ownerId, avg(r2.rating) as average ");
             sqlScalars.addToSql("FROM videodata_ratings r2 ");
-            sqlScalars.addToSql("WHERE r2.videodata_id=:id ");
+            sqlScalars.addToSql("WHERE r2.videodata_id IN (:ids) ");
+            sqlScalars.addToSql("GROUP BY r2.videodata_id ");
         }
         sqlScalars.addToSql(") AS grouped ");
         sqlScalars.addToSql("WHERE grouped.average is not null ");
         sqlScalars.addToSql("ORDER BY sorting, source ");
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(SOURCE, StringType.INSTANCE);
         sqlScalars.addScalar("rating", IntegerType.INSTANCE);
-        sqlScalars.addParameter(ID, id);
 
-        return executeQueryWithTransform(ApiRatingDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiRatingDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
 
     /**
@@ -2416,29 +2438,59 @@ public class ApiDao extends HibernateDao {
         List<ApiSeriesInfoDTO> seriesResults = executeQueryWithTransform(ApiSeriesInfoDTO.class, sqlScalars, wrapper);
         LOG.debug("Found {} series for ID {}", seriesResults.size(), id);
 
+        if (seriesResults.isEmpty()) {
+            return seriesResults;
+        }
+
+        List<Long> seriesIds = Collections.singletonList(id);
+        Map<Long, List<ApiGenreDTO>> genres = null;
+        if (options.hasDataItem(DataItem.GENRE)) {
+            genres = getGenresForIds(MetaDataType.SERIES, seriesIds);
+        }
+        Map<Long, List<Studio>> studios = null;
+        if (options.hasDataItem(DataItem.STUDIO)) {
+            studios = getStudiosForIds(MetaDataType.SERIES, seriesIds);
+        }
+        Map<Long, List<ApiCountryDTO>> countries = null;
+        if (options.hasDataItem(DataItem.COUNTRY)) {
+            countries = getCountriesForIds(MetaDataType.SERIES, seriesIds);
+        }
+        Map<Long, List<ApiCertificationDTO>> certifications = null;
+        if (options.hasDataItem(DataItem.CERTIFICATION)) {
+            certifications = getCertificationsForIds(MetaDataType.SERIES, seriesIds);
+        }
+        Map<Long, List<ApiRatingDTO>> ratings = null;
+        if (options.hasDataItem(DataItem.RATING)) {
+            ratings = getRatingsForIds(MetaDataType.SERIES, seriesIds);
+        }
+        Map<Long, List<ApiAwardDTO>> awards = null;
+        if (options.hasDataItem(DataItem.AWARD)) {
+            awards = getAwardsForIds(MetaDataType.SERIES, seriesIds);
+        }
+
         for (ApiSeriesInfoDTO series : seriesResults) {
-            if (options.hasDataItem(DataItem.GENRE)) {
-                series.setGenres(getGenresForId(MetaDataType.SERIES, id));
+            if (genres != null) {
+                series.setGenres(getForId(genres, id));
             }
 
-            if (options.hasDataItem(DataItem.STUDIO)) {
-                series.setStudios(getStudiosForId(MetaDataType.SERIES, id));
+            if (studios != null) {
+                series.setStudios(getForId(studios, id));
             }
 
-            if (options.hasDataItem(DataItem.COUNTRY)) {
-                series.setCountries(getCountriesForId(MetaDataType.SERIES, id));
+            if (countries != null) {
+                series.setCountries(getForId(countries, id));
             }
 
-            if (options.hasDataItem(DataItem.CERTIFICATION)) {
-                series.setCertifications(getCertificationsForId(MetaDataType.SERIES, id));
+            if (certifications != null) {
+                series.setCertifications(getForId(certifications, id));
             }
 
-            if (options.hasDataItem(DataItem.RATING)) {
-                series.setRatings(getRatingsForId(MetaDataType.SERIES, id));
+            if (ratings != null) {
+                series.setRatings(getForId(ratings, id));
             }
 
-            if (options.hasDataItem(DataItem.AWARD)) {
-                series.setAwards(getAwardsForId(MetaDataType.SERIES, id));
+            if (awards != null) {
+                series.setAwards(getForId(awards, id));
             }
 
             if (options.hasDataItem(DataItem.ARTWORK)) {
@@ -2649,6 +2701,21 @@ public class ApiDao extends HibernateDao {
         return results;
     }
     
+    /**
+     * Get the list of items for an ID from a map of grouped items
+     *
+     * @param idMap map of ID and the items for that ID
+     * @param id the ID
+     * @return the items for the ID or an empty list if there are none
+     */
+    private static <T> List<T> getForId(Map<Long, List<T>> idMap, Long id) {
+        List<T> list = idMap.get(id);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
     private static void addExistsOrNot(boolean include, StringBuilder sb) {
         if (include) {
             sb.append(" AND exists (");
@@ -2661,68 +2728,80 @@ public class ApiDao extends HibernateDao {
 
     //<editor-fold defaultstate="collapsed" desc="External ID methods">
     /**
-     * Get list of external IDs for a metadata object.
+     * Get list of external IDs for metadata objects.
      * 
      * @param type the metadata type
-     * @param id the id of the metadata object
+     * @param ids the ids of the metadata objects
      * @return
      */
-    private List<ApiExternalIdDTO> getExternalIdsForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiExternalIdDTO>> getExternalIdsForIds(MetaDataType type, Collection<Long> ids) {
         SqlScalars sqlScalars = new SqlScalars();
 
         if (type == MetaDataType.SERIES) {
-            sqlScalars.addToSql("SELECT ids.series_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
+            sqlScalars.addToSql("SELECT ids.series_id AS ownerId, ids.series_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
             sqlScalars.addToSql("concat(coalesce(ser.skip_scan_api,''),';',coalesce(ser.skip_scan_nfo,'')) like concat('%',ids.sourcedb,'%') as skipped");
-            sqlScalars.addToSql("FROM series ser, series_ids ids WHERE ser.id=:id AND ids.series_id=ser.id");
+            sqlScalars.addToSql("FROM series ser, series_ids ids WHERE ser.id IN (:ids) AND ids.series_id=ser.id");
         } else if (type == MetaDataType.SEASON) {
-            sqlScalars.addToSql("SELECT ids.season_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb, 0 as skipped");
-            sqlScalars.addToSql("FROM season_ids ids WHERE ids.season_id=:id");
+            sqlScalars.addToSql("SELECT ids.season_id AS ownerId, ids.season_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb, 0 as skipped");
+            sqlScalars.addToSql("FROM season_ids ids WHERE ids.season_id IN (:ids)");
         } else if (type == MetaDataType.PERSON) {
-            sqlScalars.addToSql("SELECT ids.person_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
+            sqlScalars.addToSql("SELECT ids.person_id AS ownerId, ids.person_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
             sqlScalars.addToSql("coalesce(p.skip_scan_api,'') like concat('%',ids.sourcedb,'%') as skipped");
-            sqlScalars.addToSql("FROM person p, person_ids ids WHERE p.id=:id AND ids.person_id=p.id");
+            sqlScalars.addToSql("FROM person p, person_ids ids WHERE p.id IN (:ids) AND ids.person_id=p.id");
             sqlScalars.addToSql("AND p.status"+SQL_IGNORE_STATUS_SET);
         } else {
-            sqlScalars.addToSql("SELECT ids.videodata_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
+            sqlScalars.addToSql("SELECT ids.videodata_id AS ownerId, ids.videodata_id AS id, ids.sourcedb_id AS externalId, ids.sourcedb AS sourcedb,");
             sqlScalars.addToSql("concat(coalesce(vd.skip_scan_api,''),';',coalesce(vd.skip_scan_nfo,'')) like concat('%',ids.sourcedb,'%') as skipped");
-            sqlScalars.addToSql("FROM videodata vd, videodata_ids ids WHERE vd.id=:id AND ids.videodata_id=vd.id");
+            sqlScalars.addToSql("FROM videodata vd, videodata_ids ids WHERE vd.id IN (:ids) AND ids.videodata_id=vd.id");
         }
         
-        sqlScalars.addParameter(ID, id);
 
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar("externalId", StringType.INSTANCE);
         sqlScalars.addScalar("sourcedb", StringType.INSTANCE);
         sqlScalars.addScalar("skipped", BooleanType.INSTANCE);
         
-        return executeQueryWithTransform(ApiExternalIdDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiExternalIdDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="BoxSet methods">
-    private List<ApiBoxedSetDTO> getBoxedSetsForId(MetaDataType type, Long id) {
+    private Map<Long, List<ApiBoxedSetDTO>> getBoxedSetsForIds(MetaDataType type, Collection<Long> ids) {
+        final String ownerColumn;
+        if (type == MetaDataType.SERIES) {
+            ownerColumn = "bo.series_id";
+        } else if (type == MetaDataType.SEASON) {
+            ownerColumn = "sea.id";
+        } else if (type == MetaDataType.EPISODE) {
+            ownerColumn = "vd.id";
+        } else {
+            // defaults to movie
+            ownerColumn = "bo.videodata_id";
+        }
+
         SqlScalars sqlScalars = new SqlScalars();
-        sqlScalars.addToSql("SELECT bs.id, bs.name,(select count(bo2.id) from boxed_set_order bo2 where bo2.boxedset_id=bs.id) as memberCount");
+        sqlScalars.addToSql("SELECT " + ownerColumn + " AS ownerId, bs.id, bs.name,(select count(bo2.id) from boxed_set_order bo2 where bo2.boxedset_id=bs.id) as memberCount");
         sqlScalars.addToSql("FROM boxed_set bs JOIN boxed_set_order bo ON bs.id=bo.boxedset_id");
         if (type == MetaDataType.SERIES) {
-            sqlScalars.addToSql("WHERE bo.series_id=:id");
+            sqlScalars.addToSql("WHERE bo.series_id IN (:ids)");
         } else if (type == MetaDataType.SEASON) {
-            sqlScalars.addToSql("JOIN season sea ON sea.series_id=bo.series_id AND sea.id=:id");
+            sqlScalars.addToSql("JOIN season sea ON sea.series_id=bo.series_id AND sea.id IN (:ids)");
         } else if (type == MetaDataType.EPISODE) {
-            sqlScalars.addToSql("JOIN season sea ON sea.series_id=bo.series_id JOIN videodata vd ON vd.season_id=sea.id AND vd.id=:id");
+            sqlScalars.addToSql("JOIN season sea ON sea.series_id=bo.series_id JOIN videodata vd ON vd.season_id=sea.id AND vd.id IN (:ids)");
         } else {
             // defaults to movie
-            sqlScalars.addToSql("WHERE bo.videodata_id=:id");
+            sqlScalars.addToSql("WHERE bo.videodata_id IN (:ids)");
         }
-        sqlScalars.addToSql("GROUP BY bs.id, bs.name");
+        sqlScalars.addToSql("GROUP BY " + ownerColumn + ", bs.id, bs.name");
         
-        sqlScalars.addParameter(ID, id);
         
+        sqlScalars.addScalar(OWNER_ID, LongType.INSTANCE);
         sqlScalars.addScalar(ID, LongType.INSTANCE);
         sqlScalars.addScalar(NAME, StringType.INSTANCE);
         sqlScalars.addScalar("memberCount", IntegerType.INSTANCE);
 
-        return executeQueryWithTransform(ApiBoxedSetDTO.class, sqlScalars, null);
+        return executeGroupedQueryWithTransform(ApiBoxedSetDTO.class, sqlScalars, OWNER_ID, IDS, ids);
     }
     
     public List<ApiBoxedSetDTO> getBoxedSets(ApiWrapperList<ApiBoxedSetDTO> wrapper) {
@@ -2847,6 +2926,7 @@ public class ApiDao extends HibernateDao {
                 }
             }
             sqlScalars.addToSql(options.getSortString());
+            sqlScalars.setSortColumn(options.getSortby());
         }
 
         sqlScalars.addScalar(ID, LongType.INSTANCE);
@@ -2911,6 +2991,7 @@ public class ApiDao extends HibernateDao {
         sbSQL.append(options.getSortString(NAME));
 
         SqlScalars sqlScalars = new SqlScalars(sbSQL);
+        sqlScalars.setSortColumn(NAME);
         sqlScalars.addScalar(NAME, StringType.INSTANCE);
 
         return executeQueryWithTransform(ApiNameDTO.class, sqlScalars, wrapper);
@@ -2960,6 +3041,7 @@ public class ApiDao extends HibernateDao {
         sbSQL.append(options.getSortString("year"));
 
         SqlScalars sqlScalars = new SqlScalars(sbSQL);
+        sqlScalars.setSortColumn("year");
         sqlScalars.addScalar("year", IntegerType.INSTANCE);
 
         return executeQueryWithTransform(ApiYearDecadeDTO.class, sqlScalars, wrapper);
@@ -3011,6 +3093,7 @@ public class ApiDao extends HibernateDao {
         sbSQL.append(options.getSortString("decade"));
 
         SqlScalars sqlScalars = new SqlScalars(sbSQL);
+        sqlScalars.setSortColumn("decade");
         sqlScalars.addScalar("decade", IntegerType.INSTANCE);
 
         return executeQueryWithTransform(ApiYearDecadeDTO.class, sqlScalars, wrapper);
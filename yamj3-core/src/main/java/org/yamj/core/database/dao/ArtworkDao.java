@@ -29,6 +29,7 @@ import org.hibernate.Criteria;
 import org.hibernate.Query;
 import org.hibernate.SQLQuery;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.springframework.stereotype.Repository;
 import org.yamj.common.type.MetaDataType;
@@ -164,13 +165,30 @@ public class ArtworkDao extends HibernateDao {
         }
     }
     
-    public List<ArtworkLocated> getArtworkLocatedWithCacheFilename(long lastId) {
-        return currentSession().createCriteria(ArtworkLocated.class)
-                .add(Restrictions.isNotNull("cacheFilename"))
-                .add(Restrictions.ne("status", StatusType.DELETED))
-                .add(Restrictions.gt("id", lastId))
-                .addOrder(Order.asc("id"))
-                .setMaxResults(100)
+    public List<Object[]> getArtworkLocatedCacheFiles(long lastId, int maxResults) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SELECT loc.id, loc.cacheDirectory, loc.cacheFilename, art.artworkType, loc.status ");
+        sb.append("FROM ArtworkLocated loc JOIN loc.artwork art ");
+        sb.append("WHERE loc.cacheFilename is not null ");
+        sb.append("AND loc.id > :lastId ");
+        sb.append("ORDER BY loc.id ASC");
+
+        return currentSession().createQuery(sb.toString())
+                .setLong("lastId", lastId)
+                .setMaxResults(maxResults)
+                .list();
+    }
+
+    public List<Object[]> getArtworkGeneratedCacheFiles(long lastId, int maxResults) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("SELECT gen.id, gen.cacheDirectory, gen.cacheFilename, prof.artworkType ");
+        sb.append("FROM ArtworkGenerated gen JOIN gen.artworkProfile prof ");
+        sb.append("WHERE gen.id > :lastId ");
+        sb.append("ORDER BY gen.id ASC");
+
+        return currentSession().createQuery(sb.toString())
+                .setLong("lastId", lastId)
+                .setMaxResults(maxResults)
                 .list();
     }
     
@@ -189,4 +207,53 @@ public class ArtworkDao extends HibernateDao {
                 .setString("profileName", profileName)
                 .uniqueResult();
     }
+
+    public List<ArtworkLocated> getCachedArtworkLocated(ArtworkLocated located) {
+        return currentSession().createCriteria(ArtworkLocated.class)
+                .add(Restrictions.eq("source", located.getSource()))
+                .add(Restrictions.eq("hashCode", located.getHashCode()))
+                .add(Restrictions.eq("url", located.getUrl()))
+                .add(Restrictions.eq("status", StatusType.DONE))
+                .add(Restrictions.isNotNull("cacheFilename"))
+                .add(Restrictions.ne("id", located.getId()))
+                .setMaxResults(10)
+                .list();
+    }
+
+    public boolean isCacheFileReferenced(ArtworkLocated located) {
+        Long count = (Long)currentSession().createCriteria(ArtworkLocated.class)
+                .add(Restrictions.eq("cacheFilename", located.getCacheFilename()))
+                .add(Restrictions.eq("cacheDirectory", located.getCacheDirectory()))
+                .add(Restrictions.ne("id", located.getId()))
+                .setProjection(Projections.rowCount())
+                .uniqueResult();
+        return count != null && count.longValue() > 0;
+    }
+
+    public boolean isCacheFileReferenced(ArtworkGenerated generated) {
+        // generated images are shared by located artwork with the same original
+        Long count = (Long)currentSession().createCriteria(ArtworkGenerated.class)
+                .add(Restrictions.eq("cacheFilename", generated.getCacheFilename()))
+                .add(Restrictions.eq("cacheDirectory", generated.getCacheDirectory()))
+                .add(Restrictions.ne("id", generated.getId()))
+                .setProjection(Projections.rowCount())
+                .uniqueResult();
+        return count != null && count.longValue() > 0;
+    }
+
+    public boolean isCacheFileReferenced(String cacheFilename) {
+        // cache file names are unique over all cache directories
+        Long count = (Long)currentSession().createCriteria(ArtworkLocated.class)
+                .add(Restrictions.eq("cacheFilename", cacheFilename))
+                .setProjection(Projections.rowCount())
+                .uniqueResult();
+        if (count != null && count.longValue() > 0) {
+            return true;
+        }
+        count = (Long)currentSession().createCriteria(ArtworkGenerated.class)
+                .add(Restrictions.eq("cacheFilename", cacheFilename))
+                .setProjection(Projections.rowCount())
+                .uniqueResult();
+        return count != null && count.longValue() > 0;
+    }
 }
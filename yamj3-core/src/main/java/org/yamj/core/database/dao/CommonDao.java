@@ -112,6 +112,7 @@ public class CommonDao extends HibernateDao {
 
         sqlScalars.addToSql(options.getSearchString(addWhere));
         sqlScalars.addToSql(options.getSortString());
+        sqlScalars.setSortColumn(options.getSortby());
 
         return executeQueryWithTransform(ApiGenreDTO.class, sqlScalars, wrapper);
     }
@@ -181,6 +182,7 @@ public class CommonDao extends HibernateDao {
 
         sqlScalars.addToSql(options.getSearchString(addWhere));
         sqlScalars.addToSql(options.getSortString());
+        sqlScalars.setSortColumn(options.getSortby());
 
         sqlScalars.addScalar("id", LongType.INSTANCE);
         sqlScalars.addScalar("name", StringType.INSTANCE);
@@ -225,6 +227,7 @@ public class CommonDao extends HibernateDao {
         sqlScalars.addScalar("id", LongType.INSTANCE);
         sqlScalars.addScalar("countryCode", StringType.INSTANCE);
         sqlScalars.addToSql(options.getSortString());
+        sqlScalars.setSortColumn(options.getSortby());
 
         return executeQueryWithTransform(ApiCountryDTO.class, sqlScalars, wrapper);
     }
@@ -281,6 +284,7 @@ public class CommonDao extends HibernateDao {
         }
         sqlScalars.addToSql(options.getSearchString(true));
         sqlScalars.addToSql(options.getSortString(sortBy));
+        sqlScalars.setSortColumn(sortBy);
 
         sqlScalars.addScalar("id", LongType.INSTANCE);
         sqlScalars.addScalar("event", StringType.INSTANCE);
@@ -313,6 +317,7 @@ public class CommonDao extends HibernateDao {
         }
         sqlScalars.addToSql(options.getSearchString(true));
         sqlScalars.addToSql(options.getSortString(sortBy));
+        sqlScalars.setSortColumn(sortBy);
 
         sqlScalars.addScalar("id", LongType.INSTANCE);
         sqlScalars.addScalar("countryCode", StringType.INSTANCE);
@@ -72,6 +72,17 @@ public class StagingDao extends HibernateDao {
                 .load();
     }
 
+    public List<StageDirectory> getStageDirectories(Collection<String> directoryPaths, Library library) {
+        if (directoryPaths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        return currentSession().createQuery("FROM StageDirectory sd WHERE sd.library=:library AND sd.directoryPath in (:directoryPaths)")
+                .setParameter("library", library)
+                .setParameterList("directoryPaths", directoryPaths)
+                .list();
+    }
+
     @Cacheable(value=CachingNames.DB_STAGEFILE, key="#id", unless="#result==null")
     public StageFile getStageFile(long id) {
         return getById(StageFile.class, id);
@@ -85,6 +96,16 @@ public class StagingDao extends HibernateDao {
                 .load();
     }
 
+    public List<StageFile> getStageFiles(Collection<StageDirectory> stageDirectories) {
+        if (stageDirectories.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        return currentSession().createQuery("FROM StageFile sf WHERE sf.stageDirectory in (:stageDirectories)")
+                .setParameterList("stageDirectories", stageDirectories)
+                .list();
+    }
+
     public Long getNextStageFileId(FileType fileType, StatusType... statusTypes) {
         return (Long) currentSession().createCriteria(StageFile.class)
                 .add(Restrictions.eq("fileType", fileType))    
@@ -95,6 +116,38 @@ public class StagingDao extends HibernateDao {
                 .uniqueResult();
     }
 
+    /**
+     * Get the next stage files to process grouped by their stage directory.
+     * 
+     * @param fileType the file type
+     * @param lastId only stage files with a higher ID are returned
+     * @param maxResults the maximal number of stage files
+     * @param statusTypes the status types
+     * @return map of stage directory IDs to stage file IDs, in order of the stage file IDs
+     */
+    public Map<Long, List<Long>> getNextStageFileIds(FileType fileType, long lastId, int maxResults, StatusType... statusTypes) {
+        List<Object[]> objects = currentSession().createQuery(
+                "SELECT sf.id, sf.stageDirectory.id FROM StageFile sf WHERE sf.fileType=:fileType AND sf.status in (:statusTypes) AND sf.id>:lastId ORDER BY sf.id")
+                .setParameter("fileType", fileType)
+                .setParameterList("statusTypes", statusTypes)
+                .setLong("lastId", lastId)
+                .setMaxResults(maxResults)
+                .setReadOnly(true)
+                .list();
+        
+        Map<Long, List<Long>> result = new LinkedHashMap<>();
+        for (Object[] object : objects) {
+            final Long directoryId = (Long) object[1];
+            List<Long> ids = result.get(directoryId);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                result.put(directoryId, ids);
+            }
+            ids.add((Long) object[0]);
+        }
+        return result;
+    }
+
     public List<StageDirectory> getRootDirectories() {
         return currentSession().createCriteria(StageDirectory.class)
                 .add(Restrictions.isNull("parentDirectory"))
@@ -99,7 +99,7 @@ public abstract class AbstractScannable extends AbstractStateful implements ISca
 
     // TRANSIENT METHODS
     
-    public void addModifiedSource(String source) {
+    public synchronized void addModifiedSource(String source) {
         if (!"all".equalsIgnoreCase(source)) {
             if (modifiedSources == null) {
                 modifiedSources = new HashSet<>(1);
@@ -129,13 +129,15 @@ public abstract class AbstractScannable extends AbstractStateful implements ISca
     
     abstract Map<String, String> getSourceDbIdMap();
         
+    // source ids may be resolved by concurrent online scans of the same entity
+    
     @Override
-    public String getSourceDbId(String sourceDb) {
+    public synchronized String getSourceDbId(String sourceDb) {
         return getSourceDbIdMap().get(sourceDb);
     }
     
     @Override
-    public boolean setSourceDbId(String sourceDb, String id) {
+    public synchronized boolean setSourceDbId(String sourceDb, String id) {
         if (StringUtils.isBlank(sourceDb) || StringUtils.isBlank(id)) {
             return false;
         }
@@ -150,7 +152,7 @@ public abstract class AbstractScannable extends AbstractStateful implements ISca
     }
 
     @Override
-    public boolean removeSourceDbId(String sourceDb) {
+    public synchronized boolean removeSourceDbId(String sourceDb) {
         if (getSourceDbIdMap().remove(sourceDb) != null) {
             addModifiedSource(sourceDb);
             return true;
@@ -48,7 +48,9 @@ import org.yamj.core.database.model.type.ImageType;
 @Entity
 @Table(name = "artwork_located",
        uniqueConstraints = @UniqueConstraint(name = "UIX_ARTWORKLOCATED_NATURALID", columnNames = {"artwork_id", "source", "hash_code"}),
-       indexes = @Index(name = "IX_ARTWORKLOCATED_STATUS", columnList = "status")
+       indexes = {@Index(name = "IX_ARTWORKLOCATED_STATUS", columnList = "status"),
+                  @Index(name = "IX_ARTWORKLOCATED_HASHCODE", columnList = "source,hash_code"),
+                  @Index(name = "IX_ARTWORKLOCATED_CACHEFILE", columnList = "cache_filename")}
 )
 public class ArtworkLocated extends AbstractStatefulPrev {
 
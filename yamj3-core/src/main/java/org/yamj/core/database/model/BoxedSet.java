@@ -102,11 +102,11 @@ public class BoxedSet extends AbstractIdentifiable implements Serializable {
         this.sourceDbIdMap = sourceDbIdMap;
     }
     
-    public String getSourceDbId(String sourceDb) {
+    public synchronized String getSourceDbId(String sourceDb) {
         return getSourceDbIdMap().get(sourceDb);
     }
     
-    public boolean setSourceDbId(String sourceDb, String id) {
+    public synchronized boolean setSourceDbId(String sourceDb, String id) {
         if (StringUtils.isBlank(id) || StringUtils.isBlank(sourceDb)) {
             return false;
         }
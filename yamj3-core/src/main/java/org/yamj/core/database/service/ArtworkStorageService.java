@@ -189,6 +189,27 @@ public class ArtworkStorageService {
         return artworkDao.getArtworkGeneratedQueue(maxResults);
     }
 
+    /**
+     * Get another located artwork with the same source and URL, which original
+     * image is already stored content addressed.
+     *
+     * @param located
+     * @return the cached located artwork or null, if none found
+     */
+    @Transactional(readOnly = true)
+    public ArtworkLocated getCachedArtworkLocated(ArtworkLocated located) {
+        final StorageType storageType = ArtworkTools.getStorageType(located);
+        for (ArtworkLocated cached : this.artworkDao.getCachedArtworkLocated(located)) {
+            if (ArtworkTools.getContentHash(cached) != null
+                && storageType == ArtworkTools.getStorageType(cached)
+                && fileStorageService.existsFile(storageType, cached.getCacheDirectory(), cached.getCacheFilename()))
+            {
+                return cached;
+            }
+        }
+        return null;
+    }
+
     @Transactional(readOnly = true)
     public ArtworkLocated getRequiredArtworkLocated(Long id) {
         final StringBuilder sb = new StringBuilder();
@@ -298,38 +319,79 @@ public class ArtworkStorageService {
         return this.artworkDao.findUniqueByNamedParameters(Artwork.class, sb, params);
     }
 
+    /**
+     * Get the cache files of located artwork.
+     *
+     * @param lastId the last processed ID
+     * @param maxResults
+     * @return rows of ID, cache directory, cache file name, artwork type and status
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> getArtworkLocatedCacheFiles(long lastId, int maxResults) {
+        return this.artworkDao.getArtworkLocatedCacheFiles(lastId, maxResults);
+    }
+
+    /**
+     * Check if a cache file is referenced by any located or generated artwork.
+     *
+     * @param cacheFilename the cache file name without directory
+     * @return true if the cache file is referenced
+     */
+    @Transactional(readOnly = true)
+    public boolean isCacheFileReferenced(String cacheFilename) {
+        return this.artworkDao.isCacheFileReferenced(cacheFilename);
+    }
+
+    /**
+     * Get the cache files of generated artwork.
+     *
+     * @param lastId the last processed ID
+     * @param maxResults
+     * @return rows of ID, cache directory, cache file name and artwork type
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> getArtworkGeneratedCacheFiles(long lastId, int maxResults) {
+        return this.artworkDao.getArtworkGeneratedCacheFiles(lastId, maxResults);
+    }
+
+    /**
+     * Mark located artwork with missing original image for update.
+     *
+     * @param ids
+     * @return the number of updated located artwork
+     */
     @Transactional
-    public long checkArtworkSanity(long lastId) {
-        long newLastId = -1;
-        
-        for (ArtworkLocated located : this.artworkDao.getArtworkLocatedWithCacheFilename(lastId)) {
-            newLastId = Math.max(newLastId, located.getId());
-
-            // if original file does not exists, then also all generated artwork can be deleted
-            final StorageType storageType = ArtworkTools.getStorageType(located);
-            
-            if (!fileStorageService.existsFile(storageType, located.getCacheDirectory(), located.getCacheFilename())) {
-                LOG.trace("Mark located artwork {} for UPDATE due missing original image", located.getId());
-                
-                // reset status and cache file name
-                located.setStatus(StatusType.UPDATED);
-                located.setCacheDirectory(null);
-                located.setCacheFilename(null);
-                this.artworkDao.updateEntity(located);
-            } else {
-                // check if one of the generated images is missing
-                for (ArtworkGenerated generated : located.getGeneratedArtworks()) {
-                    if (!fileStorageService.existsFile(storageType, generated.getCacheDirectory(), generated.getCacheFilename())) {
-                        LOG.trace("Mark generated artwork {} for UPDATE due missing generated image", generated.getId());
-                        // set status of generated to UPDATED
-                        generated.setStatus(StatusType.UPDATED);
-                        this.artworkDao.updateEntity(generated);
-                    }
-                }
-            }
-        }
-        
-        return newLastId;
+    public int markArtworkLocatedMissing(Collection<Long> ids) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("UPDATE ArtworkLocated loc ");
+        sb.append("SET loc.status=:updated, loc.previousStatus=null, loc.cacheDirectory=null, loc.cacheFilename=null, loc.updateTimestamp=:now ");
+        sb.append("WHERE loc.id IN (:ids)");
+
+        Map<String,Object> params = new HashMap<>(3);
+        params.put("updated", StatusType.UPDATED);
+        params.put("now", new Date());
+        params.put("ids", ids);
+        return this.artworkDao.executeUpdate(sb, params);
+    }
+
+    /**
+     * Mark generated artwork with missing image for update.
+     *
+     * @param ids
+     * @return the number of updated generated artwork
+     */
+    @Transactional
+    public int markArtworkGeneratedMissing(Collection<Long> ids) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("UPDATE ArtworkGenerated gen ");
+        sb.append("SET gen.status=:updated, gen.updateTimestamp=:now ");
+        sb.append("WHERE gen.id IN (:ids)");
+
+        Map<String,Object> params = new HashMap<>(3);
+        params.put("updated", StatusType.UPDATED);
+        params.put("now", new Date());
+        params.put("ids", ids);
+        return this.artworkDao.executeUpdate(sb, params);
     }
 
     @Transactional(readOnly=true)
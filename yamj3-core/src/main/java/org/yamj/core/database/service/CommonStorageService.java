@@ -36,6 +36,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.yamj.common.type.StatusType;
 import org.yamj.core.CachingNames;
+import org.yamj.core.database.dao.ArtworkDao;
 import org.yamj.core.database.dao.StagingDao;
 import org.yamj.core.database.model.*;
 import org.yamj.core.database.model.dto.DeletionDTO;
@@ -55,6 +56,8 @@ public class CommonStorageService {
     @Autowired
     private StagingDao stagingDao;
     @Autowired
+    private ArtworkDao artworkDao;
+    @Autowired
     private FileStorageService fileStorageService;
     @Autowired
     private StagingService stagingService;
@@ -315,8 +318,8 @@ public class CommonStorageService {
             this.delete(generated, storageType, filesToDelete);
         }
 
-        // delete located file
-        if (located.isCached()) {
+        // delete located file; content addressed files may be shared
+        if (located.isCached() && !this.isSharedCacheFile(located)) {
             String filename = FilenameUtils.concat(located.getCacheDirectory(), located.getCacheFilename());
             filesToDelete.add(this.fileStorageService.getStorageDir(storageType, filename));
         }
@@ -325,11 +328,21 @@ public class CommonStorageService {
     }
 
     private void delete(ArtworkGenerated generated, StorageType storageType, Set<String> filesToDelete) {
-        String filename = FilenameUtils.concat(generated.getCacheDirectory(), generated.getCacheFilename());
-        filesToDelete.add(this.fileStorageService.getStorageDir(storageType, filename));
+        if (!this.isSharedCacheFile(generated)) {
+            String filename = FilenameUtils.concat(generated.getCacheDirectory(), generated.getCacheFilename());
+            filesToDelete.add(this.fileStorageService.getStorageDir(storageType, filename));
+        }
         this.stagingDao.deleteEntity(generated);
     }
 
+    private boolean isSharedCacheFile(ArtworkLocated located) {
+        return ArtworkTools.getContentHash(located) != null && this.artworkDao.isCacheFileReferenced(located);
+    }
+
+    private boolean isSharedCacheFile(ArtworkGenerated generated) {
+        return ArtworkTools.getContentHash(generated.getArtworkLocated()) != null && this.artworkDao.isCacheFileReferenced(generated);
+    }
+
     @Transactional(readOnly = true)
     public List<Long> getArtworkLocatedToDelete() {
         final StringBuilder sb = new StringBuilder();
@@ -0,0 +1,78 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.hibernate;
+
+import java.util.Arrays;
+import org.hibernate.transform.BasicTransformerAdapter;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.transform.Transformers;
+
+/**
+ * Result transformer which separates a group column from the remaining columns.
+ *
+ * Each tuple is transformed into an array holding the group value and the result of
+ * the remaining columns transformed into the entity class.
+ */
+final class GroupingResultTransformer extends BasicTransformerAdapter {
+
+    private static final long serialVersionUID = 5328173052349187624L;
+
+    private final String groupAlias;
+    private final ResultTransformer delegate;
+
+    GroupingResultTransformer(Class<?> entityClass, String groupAlias) {
+        this.groupAlias = groupAlias;
+        if (entityClass.equals(String.class) || entityClass.equals(Long.class) || entityClass.equals(Integer.class)) {
+            // no transformer needed
+            this.delegate = null;
+        } else {
+            this.delegate = Transformers.aliasToBean(entityClass);
+        }
+    }
+
+    @Override
+    public Object transformTuple(Object[] tuple, String[] aliases) {
+        int groupIndex = Arrays.asList(aliases).indexOf(groupAlias);
+        if (groupIndex < 0) {
+            throw new IllegalArgumentException("Group alias '" + groupAlias + "' not found in query result");
+        }
+
+        Object[] valueTuple = new Object[tuple.length - 1];
+        String[] valueAliases = new String[aliases.length - 1];
+        for (int i = 0, j = 0; i < tuple.length; i++) {
+            if (i != groupIndex) {
+                valueTuple[j] = tuple[i];
+                valueAliases[j] = aliases[i];
+                j++;
+            }
+        }
+
+        final Object value;
+        if (delegate == null) {
+            value = valueTuple.length > 0 ? valueTuple[0] : null;
+        } else {
+            value = delegate.transformTuple(valueTuple, valueAliases);
+        }
+        return new Object[]{tuple[groupIndex], value};
+    }
+}
@@ -35,6 +35,7 @@ import org.hibernate.transform.Transformers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.yamj.core.api.model.builder.SqlScalars;
 import org.yamj.core.api.options.IOptions;
+import org.yamj.core.api.options.IOptionsSort;
 import org.yamj.core.api.wrapper.IApiWrapper;
 
 /**
@@ -43,6 +44,8 @@ import org.yamj.core.api.wrapper.IApiWrapper;
 public abstract class HibernateDao {
 
     public static final String IDENTIFIER = "identifier";
+    // maximum number of values bound to one IN (...) list
+    private static final int MAX_IN_LIST_SIZE = 500;
 
     @Autowired
     private SessionFactory sessionFactory;
@@ -447,9 +450,12 @@ public abstract class HibernateDao {
     /**
      * Execute a query to return the results
      *
-     * Gets the options from the wrapper for start and max
+     * Gets the options from the wrapper for start and max; if the options contain
+     * the sort value of the last seen result and the SQL has a sort column, keyset
+     * pagination is used instead of the start offset.
      *
-     * Puts the total count returned from the query into the wrapper
+     * Puts the total count of the query into the wrapper using a separate count
+     * query, unless counting is skipped by the options.
      *
      * @param entityClass
      * @param sqlScalars
@@ -457,6 +463,22 @@ public abstract class HibernateDao {
      * @return
      */
     public <T> List<T> executeQueryWithTransform(Class<T> entityClass, SqlScalars sqlScalars, IApiWrapper wrapper) { //NOSONAR
+        IOptions options = (wrapper == null ? null : wrapper.getOptions());
+        boolean paged = options != null && (options.getStart() > 0 || options.getMax() > 0);
+
+        Long totalCount = null;
+        if (paged && !options.isSkipcount()) {
+            // count before a seek condition is applied to get the count of all results
+            totalCount = (Long) sqlScalars.createCountQuery(currentSession()).uniqueResult();
+        }
+
+        boolean seek = false;
+        if (paged && options instanceof IOptionsSort) {
+            IOptionsSort sortOptions = (IOptionsSort) options;
+            seek = sqlScalars.addSeekCondition(sqlScalars.getSortColumn(), "DESC".equalsIgnoreCase(sortOptions.getSortdir()),
+                            sortOptions.getAfter(), sortOptions.getAfterid());
+        }
+
         SQLQuery query = sqlScalars.createSqlQuery(currentSession());
         query.setReadOnly(true);
         query.setCacheable(true);
@@ -472,27 +494,78 @@ public abstract class HibernateDao {
         // Add the scalars to the query
         sqlScalars.populateScalars(query);
 
+        if (paged) {
+            if (options.getStart() > 0 && !seek) {
+                query.setFirstResult(options.getStart());
+            }
+            if (options.getMax() > 0) {
+                query.setMaxResults(options.getMax());
+            }
+        }
+
+        // This will get the trimmed list if paged
         List<T> queryResults = query.list();
 
-        // If the wrapper is populated, then run the query to get the maximum results
         if (wrapper != null) {
-            wrapper.setTotalCount(queryResults.size());
+            if (totalCount != null) {
+                wrapper.setTotalCount(totalCount.intValue());
+            } else if (paged && !seek) {
+                // counting skipped; total count is the count up to the current page
+                wrapper.setTotalCount(Math.max(0, options.getStart()) + queryResults.size());
+            } else {
+                wrapper.setTotalCount(queryResults.size());
+            }
+        }
 
-            // If there is a start or max set, we will need to re-run the query after setting the options
-            IOptions options = wrapper.getOptions();
-            if (options != null && (options.getStart() > 0 || options.getMax() > 0)) {
-                if (options.getStart() > 0) {
-                    query.setFirstResult(options.getStart());
-                }
+        return queryResults;
+    }
+
+    /**
+     * Execute a query and group the results by the value of the group column
+     *
+     * The group column is not transformed into the entity class, so the entity
+     * class don't need a property for it.
+     * 
+     * The IDs are bound to the given list parameter; large lists are split into
+     * several queries, so the database limits for IN lists are not exceeded.
+     *
+     * @param entityClass
+     * @param sqlScalars
+     * @param groupAlias the alias of the group column; must be a scalar of type long
+     * @param idsParam the name of the IN list parameter
+     * @param ids the IDs to bind to the IN list
+     * @return map of group value to the transformed results in query order
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<Long, List<T>> executeGroupedQueryWithTransform(Class<T> entityClass, SqlScalars sqlScalars, String groupAlias, String idsParam, Collection<Long> ids) { //NOSONAR
+        if (ids == null || ids.isEmpty()) {
+            // an empty IN list is no valid SQL
+            return new HashMap<>(0);
+        }
+        
+        final List<Long> idList = new ArrayList<>(ids);
+        sqlScalars.addParameter(idsParam, idList.subList(0, Math.min(idList.size(), MAX_IN_LIST_SIZE)));
+        SQLQuery query = sqlScalars.createSqlQuery(currentSession());
+        query.setReadOnly(true);
+        query.setCacheable(true);
+        query.setResultTransformer(new GroupingResultTransformer(entityClass, groupAlias));
+
+        // Add the scalars to the query
+        sqlScalars.populateScalars(query);
 
-                if (options.getMax() > 0) {
-                    query.setMaxResults(options.getMax());
+        Map<Long, List<T>> results = new HashMap<>();
+        for (int start = 0; start < idList.size(); start += MAX_IN_LIST_SIZE) {
+            query.setParameterList(idsParam, idList.subList(start, Math.min(idList.size(), start + MAX_IN_LIST_SIZE)));
+            for (Object[] row : (List<Object[]>) query.list()) {
+                Long groupId = (Long) row[0];
+                List<T> group = results.get(groupId);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    results.put(groupId, group);
                 }
-                // This will get the trimmed list
-                queryResults = query.list();
+                group.add((T) row[1]);
             }
         }
-
-        return queryResults;
+        return results;
     }
 }
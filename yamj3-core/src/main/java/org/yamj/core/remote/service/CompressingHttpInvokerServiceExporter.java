@@ -0,0 +1,61 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.remote.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.remoting.httpinvoker.HttpInvokerServiceExporter;
+
+/**
+ * HTTP invoker exporter which accepts gzip compressed requests and
+ * compresses the response if the client accepts it.
+ * 
+ * Uncompressed requests are still accepted, so the client decides which encoding to use.
+ */
+public class CompressingHttpInvokerServiceExporter extends HttpInvokerServiceExporter {
+
+    private static final String GZIP = "gzip";
+
+    @Override
+    protected InputStream decorateInputStream(HttpServletRequest request, InputStream is) throws IOException {
+        if (StringUtils.containsIgnoreCase(request.getHeader("Content-Encoding"), GZIP)) {
+            return new GZIPInputStream(is);
+        }
+        return is;
+    }
+
+    @Override
+    protected OutputStream decorateOutputStream(HttpServletRequest request, HttpServletResponse response, OutputStream os) throws IOException {
+        if (StringUtils.containsIgnoreCase(request.getHeader("Accept-Encoding"), GZIP)) {
+            response.setHeader("Content-Encoding", GZIP);
+            return new GZIPOutputStream(os);
+        }
+        return os;
+    }
+}
@@ -22,13 +22,20 @@
  */
 package org.yamj.core.remote.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.yamj.common.dto.ImportBatchDTO;
 import org.yamj.common.dto.ImportDTO;
+import org.yamj.common.dto.StageDirectoryDTO;
 import org.yamj.common.remote.service.FileImportService;
 import org.yamj.core.database.model.Library;
+import org.yamj.core.scheduling.DeletionScheduler;
 import org.yamj.core.scheduling.ImportScheduler;
 import org.yamj.core.service.staging.StagingService;
 
@@ -40,6 +47,8 @@ public class FileImportServiceImpl implements FileImportService {
     private StagingService stagingService;
     @Autowired
     private ImportScheduler importScheduler;
+    @Autowired
+    private DeletionScheduler deletionScheduler;
     
     @Override
     public void importScanned(ImportDTO importDTO) {
@@ -49,9 +58,76 @@ public class FileImportServiceImpl implements FileImportService {
             stagingService.storeStageDirectory(importDTO.getStageDirectory(), library);
             LOG.debug("Imported scanned directory: {}", importDTO.getStageDirectory().getPath());
             importScheduler.triggerProcess();
+            if (!importDTO.getStageDirectory().getDeletedFiles().isEmpty()) {
+                deletionScheduler.triggerProcess();
+            }
         } catch (Exception error) {
             LOG.error("Failed to import scanned directory: {}", importDTO.getStageDirectory().getPath(), error);
             throw new RuntimeException("Failed to import scanned directory: "+importDTO.getStageDirectory().getPath()); //NOSONAR
         }
     }
+
+    @Override
+    public void importScanned(ImportBatchDTO importBatchDTO) {
+        // group the directories by library
+        Map<String, List<ImportDTO>> libraries = new LinkedHashMap<>();
+        boolean deletions = false;
+        for (ImportDTO importDTO : importBatchDTO.getImports()) {
+            deletions = deletions || !importDTO.getStageDirectory().getDeletedFiles().isEmpty();
+            final String key = importDTO.getClient() + "#" + importDTO.getPlayerPath();
+            List<ImportDTO> directories = libraries.get(key);
+            if (directories == null) {
+                directories = new ArrayList<>();
+                libraries.put(key, directories);
+            }
+            directories.add(importDTO);
+        }
+        
+        List<String> failed = new ArrayList<>();
+        for (List<ImportDTO> directories : libraries.values()) {
+            final ImportDTO first = directories.get(0);
+            Library library;
+            try {
+                library = stagingService.storeLibrary(first);
+            } catch (Exception error) {
+                LOG.error("Failed to store library: {}", first.getBaseDirectory(), error);
+                for (ImportDTO importDTO : directories) {
+                    failed.add(importDTO.getStageDirectory().getPath());
+                }
+                continue;
+            }
+            
+            List<StageDirectoryDTO> stageDirectories = new ArrayList<>(directories.size());
+            for (ImportDTO importDTO : directories) {
+                stageDirectories.add(importDTO.getStageDirectory());
+            }
+            
+            try {
+                stagingService.storeStageDirectories(stageDirectories, library);
+                LOG.debug("Imported {} scanned directories of library: {}", directories.size(), first.getBaseDirectory());
+            } catch (Exception error) {
+                // the batch has been rolled back; import the directories one by one, so only the bad ones fail
+                LOG.warn("Failed to import {} scanned directories of library {} at once: {}", directories.size(), first.getBaseDirectory(), error.getMessage());
+                LOG.trace("Batch import error", error);
+                
+                for (StageDirectoryDTO stageDirectory : stageDirectories) {
+                    try {
+                        stagingService.storeStageDirectory(stageDirectory, library);
+                    } catch (Exception ex) {
+                        LOG.error("Failed to import scanned directory: {}", stageDirectory.getPath(), ex);
+                        failed.add(stageDirectory.getPath());
+                    }
+                }
+            }
+        }
+        
+        importScheduler.triggerProcess();
+        if (deletions) {
+            deletionScheduler.triggerProcess();
+        }
+        
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("Failed to import " + failed.size() + " scanned directories, first: " + failed.get(0)); //NOSONAR
+        }
+    }
 }
@@ -50,7 +50,8 @@ public class RemoteServiceConfiguration  {
 
     @Bean(name="/FileImportService")
     public HttpInvokerServiceExporter fileImportServiceExporter() {
-        HttpInvokerServiceExporter httpInvokerServiceExporter = new HttpInvokerServiceExporter();
+        // large payloads, so compression is supported
+        HttpInvokerServiceExporter httpInvokerServiceExporter = new CompressingHttpInvokerServiceExporter();
         httpInvokerServiceExporter.setService(fileImportService);
         httpInvokerServiceExporter.setServiceInterface(FileImportService.class);
         return httpInvokerServiceExporter;
@@ -22,15 +22,24 @@
  */
 package org.yamj.core.remote.service;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.yamj.common.model.YamjInfo;
 import org.yamj.common.model.YamjInfoBuild;
 import org.yamj.common.remote.service.SystemInfoService;
+import org.yamj.core.config.ConfigService;
 
 @Service("systemInfoService")
 public class SystemInfoServiceImpl implements SystemInfoService {
 
+    private static final String DATABASE_IDENTITY = "yamj3.database.identity";
     private YamjInfo yamjInfo = new YamjInfo(YamjInfoBuild.CORE);
+    @Autowired
+    private ConfigService configService;
 
     @Override
     public String ping() {
@@ -41,4 +50,23 @@ public class SystemInfoServiceImpl implements SystemInfoService {
     public YamjInfo systemInfo() {
         return yamjInfo;
     }
+
+    @Override
+    public synchronized String getDatabaseIdentity() {
+        String identity = configService.getProperty(DATABASE_IDENTITY);
+        if (StringUtils.isBlank(identity)) {
+            // a new database gets a new identity
+            identity = UUID.randomUUID().toString();
+            configService.setProperty(DATABASE_IDENTITY, identity);
+        }
+        return identity;
+    }
+
+    @Override
+    public Set<String> getFeatures() {
+        Set<String> features = new HashSet<>();
+        features.add(FEATURE_COMPRESSED_REQUESTS);
+        features.add(FEATURE_BATCH_IMPORT);
+        return features;
+    }
 }
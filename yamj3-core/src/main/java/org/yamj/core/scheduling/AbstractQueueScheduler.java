@@ -23,28 +23,16 @@
 package org.yamj.core.scheduling;
 
 import java.util.Collection;
-import java.util.concurrent.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.yamj.core.database.model.dto.QueueDTO;
 
 public abstract class AbstractQueueScheduler {
 
-    protected void threadedProcessing(Collection<QueueDTO> queueElements, int maxThreads, IQueueProcessService service) {
-        BlockingQueue<QueueDTO> queue = new LinkedBlockingQueue<>(queueElements);
-
-        ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
-        for (int i = 0; i < maxThreads; i++) {
-            executor.execute(new QueueProcessRunner(queue, service));
-        }
-        
-        executor.shutdown();
-
-        // run until all workers have finished
-        while (!executor.isTerminated()) {
-            try {
-                TimeUnit.SECONDS.sleep(5);
-            } catch (InterruptedException ignore) {
-                // interrupt in sleep can be ignored
-            }
-        }
+    @Autowired
+    private QueueProcessEngine queueProcessEngine;
+    
+    protected void threadedProcessing(String stageName, Collection<QueueDTO> queueElements, int maxThreads, IQueueProcessService service) {
+        // run until all elements have been processed
+        queueProcessEngine.processAll(stageName, maxThreads, queueElements, service);
     }
 }
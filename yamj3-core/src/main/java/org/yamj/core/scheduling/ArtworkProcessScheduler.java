@@ -96,7 +96,7 @@ public class ArtworkProcessScheduler extends AbstractQueueScheduler {
         List<QueueDTO> queueElements = artworkStorageService.getArtworLocatedQueue(maxResults);
         if (CollectionUtils.isNotEmpty(queueElements)) {
             LOG.info("Found {} artwork located objects to process; process with {} threads", queueElements.size(), maxThreads);
-            threadedProcessing(queueElements, maxThreads, artworkLocatedProcessorService);
+            threadedProcessing("artworkprocess", queueElements, maxThreads, artworkLocatedProcessorService);
         } else {
             // process generated artwork if no located artwork found for processing anymore
             queueElements = artworkStorageService.getArtworGeneratedQueue(maxResults);
@@ -108,7 +108,7 @@ public class ArtworkProcessScheduler extends AbstractQueueScheduler {
             }
             
             LOG.info("Found {} artwork generated objects to process; process with {} threads", queueElements.size(), maxThreads);
-            threadedProcessing(queueElements, maxThreads, artworkGeneratedProcessorService);
+            threadedProcessing("artworkprocess", queueElements, maxThreads, artworkGeneratedProcessorService);
             
         }
 
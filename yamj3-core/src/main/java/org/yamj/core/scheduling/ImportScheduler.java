@@ -22,7 +22,10 @@
  */
 package org.yamj.core.scheduling;
 
+import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,16 +34,20 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.yamj.common.type.StatusType;
+import org.yamj.core.config.ConfigService;
+import org.yamj.core.database.model.dto.QueueDTO;
 import org.yamj.core.database.model.type.FileType;
 import org.yamj.core.service.mediaimport.MediaImportService;
 import org.yamj.core.tools.ExceptionTools;
 
 @Component
-public class ImportScheduler {
+public class ImportScheduler extends AbstractQueueScheduler {
 
     private static final Logger LOG = LoggerFactory.getLogger(ImportScheduler.class);
     private static final ReentrantLock IMPORT_LOCK = new ReentrantLock();
     
+    @Autowired
+    private ConfigService configService;
     @Autowired
     private MediaImportService mediaImportService;
     @Autowired
@@ -67,167 +74,150 @@ public class ImportScheduler {
         }
     }
 
-    private void processStageFiles() { //NOSONAR
-        Long id = null;
-
+    private void processStageFiles() {
         // PROCESS VIDEOS
-        do {
-            id = null;
-            try {
-                // find next stage file to process
-                id = mediaImportService.getNextStageFileId(FileType.VIDEO, StatusType.NEW, StatusType.UPDATED);
-                if (id != null) {
-                    LOG.trace("Process video stage file: {}", id);
-                    mediaImportService.processVideo(id);
-                    LOG.info("Processed video stage file: {}", id);
-                } else {
-                    // trigger scan of media files and meta data
-                    scanningScheduler.triggerScanMediaFiles();
-                    scanningScheduler.triggerScanMetaData();
-                }
-            } catch (Exception error) {
-                if (ExceptionTools.isLockingError(error)) {
-                    LOG.warn("Locking error during import of video stage file {}", id);
-                } else if (id == null) {
-                    LOG.error("Failed to get next video stage file", error);
-                } else {
-                    LOG.error("Failed to process video stage file {}", id);
-                    LOG.error("Staging error", error);
-                    
-                    try {
-                        mediaImportService.processingError(id);
-                    } catch (Exception ex) {
-                        // leave status as it is in any error case
-                        LOG.trace("Database error", ex);
-                    }
-                }
-            }
-        } while (id != null);
+        processStageFiles(FileType.VIDEO);
+        // trigger scan of media files and meta data
+        scanningScheduler.triggerScanMediaFiles();
+        scanningScheduler.triggerScanMetaData();
 
         // PROCESS NFOS
-        do {
-            id = null;
-            try {
-                // find next stage file to process
-                id = mediaImportService.getNextStageFileId(FileType.NFO, StatusType.NEW, StatusType.UPDATED);
-                if (id != null) {
-                    LOG.trace("Process nfo stage file: {}", id);
-                    mediaImportService.processNfo(id);
-                    LOG.info("Processed nfo stage file: {}", id);
-                } else {
-                    // trigger scan of meta data
-                    scanningScheduler.triggerScanMetaData();
-                }
-            } catch (Exception error) {
-                if (ExceptionTools.isLockingError(error)) {
-                    LOG.warn("Locking error during import of nfo stage file {}", id);
-                } else if (id == null) {
-                    LOG.error("Failed to get next nfo stage file", error);
-                } else {
-                    LOG.error("Failed to process nfo stage file {}", id);
-                    LOG.warn("Staging error", error);
-                    
-                    try {
-                        mediaImportService.processingError(id);
-                    } catch (Exception ex) {
-                        // leave status as it is in any error case
-                        LOG.trace("Database error", ex);
-                    }
-                }
-            }
-        } while (id != null);
+        processStageFiles(FileType.NFO);
+        // trigger scan of meta data
+        scanningScheduler.triggerScanMetaData();
 
         // PROCESS IMAGES
-        do {
-            id = null;
+        processStageFiles(FileType.IMAGE);
+        // trigger scan of artwork
+        scanningScheduler.triggerScanArtwork();
+
+        // PROCESS WATCHED
+        processStageFiles(FileType.WATCHED);
+
+        // PROCESS SUBTITLE
+        processStageFiles(FileType.SUBTITLE);
+    }
+
+    /**
+     * Process the stage files of the given type in batches.
+     * 
+     * The stage files of a batch are grouped by their stage directory; each directory is
+     * imported by one worker, so that relations between files of the same directory stay
+     * consistent, while different directories are imported in parallel.
+     * 
+     * Directories are not grouped by series, so with more than one thread sibling
+     * directories of the same show may race to create the same series or season.
+     * The loser of such a race fails with a constraint violation and is imported again.
+     */
+    private void processStageFiles(final FileType fileType) {
+        final String stageName = fileType.name().toLowerCase() + "import";
+        final int maxThreads = Math.max(1, configService.getIntProperty("yamj3.scheduler.mediaimport.maxThreads", 4));
+        final int maxResults = Math.max(1, configService.getIntProperty("yamj3.scheduler.mediaimport.maxResults", 200));
+        
+        long lastId = 0;
+        while (true) {
+            final Map<Long, List<Long>> batch;
             try {
-                // find next stage file to process
-                id = mediaImportService.getNextStageFileId(FileType.IMAGE, StatusType.NEW, StatusType.UPDATED);
-                if (id != null) {
-                    LOG.trace("Process image stage file: {}", id);
-                    mediaImportService.processImage(id);
-                    LOG.info("Processed image stage file: {}", id);
-                } else {
-                    // trigger scan of artwork
-                    scanningScheduler.triggerScanArtwork();
-                }
+                batch = mediaImportService.getNextStageFileIds(fileType, lastId, maxResults, StatusType.NEW, StatusType.UPDATED);
             } catch (Exception error) {
-                if (ExceptionTools.isLockingError(error)) {
-                    LOG.warn("Locking error during import of image stage file {}", id);
-                } else if (id == null) {
-                    LOG.error("Failed to get next image stage file", error);
-                } else {
-                    LOG.error("Failed to process image stage file {}", id);
-                    LOG.warn("Staging error", error);
-                    
-                    try {
-                        mediaImportService.processingError(id);
-                    } catch (Exception ex) {
-                        // leave status as it is in any error case
-                        LOG.trace("Database error", ex);
-                    }
-                }
+                LOG.error("Failed to get next {} stage files", fileType.name().toLowerCase(), error);
+                return;
+            }
+            
+            if (batch.isEmpty()) {
+                return;
+            }
+            
+            List<QueueDTO> queueElements = new ArrayList<>(batch.size());
+            int files = 0;
+            for (Entry<Long, List<Long>> entry : batch.entrySet()) {
+                queueElements.add(new QueueDTO(entry.getKey()));
+                files += entry.getValue().size();
+                lastId = Math.max(lastId, Collections.max(entry.getValue()).longValue());
             }
-        } while (id != null);
+            
+            final long start = System.currentTimeMillis();
+            final DirectoryImport directoryImport = new DirectoryImport(fileType, batch);
+            threadedProcessing(stageName, queueElements, maxThreads, directoryImport);
 
-        // PROCESS WATCHED
-        do {
-            id = null;
+            LOG.info("Processed {} {} stage files in {} directories within {} ms; {} failed",
+                    files, fileType.name().toLowerCase(), batch.size(), System.currentTimeMillis() - start, directoryImport.getFailed());
+        }
+    }
+
+    /**
+     * Imports the stage files of one directory; the queue element is the stage directory.
+     */
+    private class DirectoryImport implements IQueueProcessService {
+
+        private final FileType fileType;
+        private final Map<Long, List<Long>> batch;
+        private final AtomicInteger failed = new AtomicInteger(0);
+
+        public DirectoryImport(FileType fileType, Map<Long, List<Long>> batch) {
+            this.fileType = fileType;
+            this.batch = batch;
+        }
+        
+        public int getFailed() {
+            return failed.get();
+        }
+        
+        @Override
+        public void processQueueElement(QueueDTO queueElement) {
+            final List<Long> ids = batch.get(queueElement.getId());
             try {
-                // find next stage file to process
-                id = mediaImportService.getNextStageFileId(FileType.WATCHED, StatusType.NEW, StatusType.UPDATED);
-                if (id != null) {
-                    LOG.trace("Process watched stage file: {}", id);
-                    mediaImportService.processWatched(id);
-                    LOG.info("Processed watched stage file: {}", id);
+                // import all files of the directory in one transaction
+                mediaImportService.processStageFiles(fileType, ids);
+                LOG.debug("Processed {} {} stage files of directory {}", ids.size(), fileType.name().toLowerCase(), queueElement.getId());
+            } catch (Exception batchError) {
+                if (ids.size() == 1) {
+                    processError(ids.get(0), batchError);
+                    return;
                 }
-            } catch (Exception error) {
-                if (ExceptionTools.isLockingError(error)) {
-                    LOG.warn("Locking error during import of watched stage file {}", id);
-                } else if (id == null) {
-                    LOG.error("Failed to get next watched stage file", error);
-                } else {
-                    LOG.error("Failed to process watched stage file {}", id);
-                    LOG.warn("Staging error", error);
-                    
+                
+                // import each file on its own to isolate the failing ones
+                LOG.debug("Failed to process stage files of directory {} in one transaction", queueElement.getId());
+                for (Long id : ids) {
                     try {
-                        mediaImportService.processingError(id);
-                    } catch (Exception ex) {
-                        // leave status as it is in any error case
-                        LOG.trace("Database error", ex);
+                        mediaImportService.processStageFile(fileType, id.longValue());
+                    } catch (Exception error) {
+                        processError(id, error);
                     }
                 }
             }
-        } while (id != null);
+        }
 
-        // PROCESS SUBTITLE
-        do {
-            id = null;
+        @Override
+        public void processErrorOccurred(QueueDTO queueElement, Exception error) {
+            LOG.error("Failed to process stage files of directory {}", queueElement.getId());
+            LOG.warn("Staging error", error);
+        }
+        
+        private void processError(Long id, Exception error) {
+            final String type = fileType.name().toLowerCase();
+            if (ExceptionTools.isLockingError(error)) {
+                // status stays as it is, so the file will be processed again with the next run
+                LOG.warn("Locking error during import of {} stage file {}", type, id);
+                return;
+            }
+            if (ExceptionTools.isConstraintViolation(error)) {
+                // a parallel import created the same entity; the next run will find it
+                LOG.warn("Constraint violation during import of {} stage file {}, will be retried", type, id);
+                LOG.trace("Staging error", error);
+                return;
+            }
+
+            failed.incrementAndGet();
+            LOG.error("Failed to process {} stage file {}", type, id);
+            LOG.warn("Staging error", error);
+            
             try {
-                // find next stage file to process
-                id = mediaImportService.getNextStageFileId(FileType.SUBTITLE, StatusType.NEW, StatusType.UPDATED);
-                if (id != null) {
-                    LOG.trace("Process subtitle stage file: {}", id);
-                    mediaImportService.processSubtitle(id);
-                    LOG.info("Processed subtitle stage file: {}", id);
-                }
-            } catch (Exception error) {
-                if (ExceptionTools.isLockingError(error)) {
-                    LOG.warn("Locking error during import of subtitle stage file {}", id);
-                } else if (id == null) {
-                    LOG.error("Failed to get next subtitle stage file", error);
-                } else {
-                    LOG.error("Failed to process subtitle stage file {}", id);
-                    LOG.warn("Staging error", error);
-                    
-                    try {
-                        mediaImportService.processingError(id);
-                    } catch (Exception ex) {
-                        // leave status as it is in any error case
-                        LOG.trace("Database error", ex);
-                    }
-                }
+                mediaImportService.processingError(id);
+            } catch (Exception ex) {
+                // leave status as it is in any error case
+                LOG.trace("Database error", ex);
             }
-        } while (id != null);
+        }
     }
 }
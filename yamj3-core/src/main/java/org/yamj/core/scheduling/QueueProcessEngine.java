@@ -0,0 +1,332 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.scheduling;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.yamj.core.api.model.QueueStatistics;
+import org.yamj.core.database.model.dto.QueueDTO;
+
+/**
+ * Shared execution engine for all queue processing stages.
+ * 
+ * Every stage has its own bounded queue; the number of workers draining a stage
+ * is limited by the maximum threads of the stage. All workers run in one pool
+ * which is sized to the sum of the maximum threads of all stages, so a stage
+ * blocked on database or network never takes the threads of another stage.
+ */
+@Component
+public class QueueProcessEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueueProcessEngine.class);
+
+    // minutes for the throughput calculation
+    private static final int THROUGHPUT_WINDOW = 5;
+
+    @Value("${yamj3.scheduler.queueSize:500}")
+    private int queueSize;
+    
+    private final ConcurrentMap<String, Stage> stages = new ConcurrentSkipListMap<>();
+    private ThreadPoolExecutor pool;
+    
+    @PostConstruct
+    public void init() {
+        // resized as soon as stages submit elements
+        pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new CustomizableThreadFactory("QueueProcess-"));
+        pool.allowCoreThreadTimeOut(true);
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Submit a queue element for processing without blocking.
+     * 
+     * @param stageName the name of the stage
+     * @param stageThreads the maximum number of threads for the stage
+     * @param queueElement the queue element
+     * @param service the service which processes the element
+     * @param onCompletion called after the element has been processed; may be null
+     * @return true if the element has been submitted, false if the queue of the stage is full
+     */
+    public boolean submit(String stageName, int stageThreads, QueueDTO queueElement, IQueueProcessService service, Runnable onCompletion) {
+        Stage stage = getStage(stageName);
+        setMaxThreads(stage, stageThreads);
+        
+        if (!stage.queue.offer(new Work(queueElement, service, onCompletion))) {
+            stage.rejected.incrementAndGet();
+            return false;
+        }
+        stage.submitted.incrementAndGet();
+        stage.spawnWorkers();
+        return true;
+    }
+
+    /**
+     * Process all queue elements and wait until all of them are finished.
+     * 
+     * @param stageName the name of the stage
+     * @param stageThreads the maximum number of threads for the stage
+     * @param queueElements the queue elements
+     * @param service the service which processes the elements
+     */
+    public void processAll(String stageName, int stageThreads, Collection<QueueDTO> queueElements, IQueueProcessService service) {
+        Stage stage = getStage(stageName);
+        setMaxThreads(stage, stageThreads);
+
+        final CountDownLatch latch = new CountDownLatch(queueElements.size());
+        final Runnable onCompletion = new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        
+        try {
+            for (QueueDTO queueElement : queueElements) {
+                // blocks if the queue of the stage is full
+                stage.queue.put(new Work(queueElement, service, onCompletion));
+                stage.submitted.incrementAndGet();
+                stage.spawnWorkers();
+            }
+            latch.await();
+        } catch (InterruptedException ex) {
+            LOG.trace("Interrupted while waiting for stage {}", stageName);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public List<QueueStatistics> getStatistics() {
+        List<QueueStatistics> result = new ArrayList<>(stages.size());
+        for (Stage stage : stages.values()) {
+            result.add(stage.getStatistics());
+        }
+        return result;
+    }
+    
+    private void setMaxThreads(Stage stage, int stageThreads) {
+        if (stage.maxThreads != stageThreads) {
+            stage.maxThreads = stageThreads;
+            resizePool();
+        }
+    }
+
+    /**
+     * Size the pool to the sum of the maximum threads of all stages.
+     * 
+     * The workers of a stage never exceed the maximum threads of the stage, so
+     * every worker gets a thread of its own.
+     */
+    private synchronized void resizePool() {
+        int threads = 0;
+        for (Stage stage : stages.values()) {
+            threads += Math.max(0, stage.maxThreads);
+        }
+        threads = Math.max(1, threads);
+
+        if (threads > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(threads);
+            pool.setCorePoolSize(threads);
+        } else if (threads < pool.getMaximumPoolSize()) {
+            pool.setCorePoolSize(threads);
+            pool.setMaximumPoolSize(threads);
+        }
+        LOG.debug("Queue process engine uses {} threads", threads);
+    }
+
+    private Stage getStage(String stageName) {
+        Stage stage = stages.get(stageName);
+        if (stage == null) {
+            Stage newStage = new Stage(stageName, queueSize);
+            stage = stages.putIfAbsent(stageName, newStage);
+            if (stage == null) {
+                stage = newStage;
+            }
+        }
+        return stage;
+    }
+
+    private static final class Work {
+        
+        private final QueueDTO queueElement;
+        private final IQueueProcessService service;
+        private final Runnable onCompletion;
+        
+        public Work(QueueDTO queueElement, IQueueProcessService service, Runnable onCompletion) {
+            this.queueElement = queueElement;
+            this.service = service;
+            this.onCompletion = onCompletion;
+        }
+    }
+    
+    private final class Stage {
+
+        private final String name;
+        private final BlockingQueue<Work> queue;
+        private final AtomicInteger activeWorkers = new AtomicInteger(0);
+        private final AtomicLong submitted = new AtomicLong(0);
+        private final AtomicLong processed = new AtomicLong(0);
+        private final AtomicLong failed = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+        private final AtomicLong processingMillis = new AtomicLong(0);
+        // processed elements per minute of the throughput window
+        private final long[] windowMinutes = new long[THROUGHPUT_WINDOW];
+        private final long[] windowCounts = new long[THROUGHPUT_WINDOW];
+        private final long started = System.currentTimeMillis();
+        private volatile int maxThreads = 0;
+
+        public Stage(String name, int queueSize) {
+            this.name = name;
+            this.queue = new LinkedBlockingQueue<>(Math.max(1, queueSize));
+        }
+        
+        public void spawnWorkers() {
+            while (!queue.isEmpty()) {
+                int active = activeWorkers.get();
+                if (active >= maxThreads) {
+                    return;
+                }
+                if (activeWorkers.compareAndSet(active, active + 1)) {
+                    pool.execute(new Worker(this));
+                }
+            }
+        }
+
+        public void process(Work work) {
+            final long start = System.currentTimeMillis();
+            try {
+                work.service.processQueueElement(work.queueElement);
+            } catch (Exception error) {
+                failed.incrementAndGet();
+                try {
+                    work.service.processErrorOccurred(work.queueElement, error);
+                } catch (Exception ex) {
+                    // leave status as it is in any error case
+                    LOG.trace("Database error", ex);
+                }
+            } finally {
+                processingMillis.addAndGet(System.currentTimeMillis() - start);
+                processed.incrementAndGet();
+                countProcessed();
+                complete(work);
+            }
+        }
+
+        private void complete(Work work) {
+            // always called, so that leases of the element are released
+            if (work.onCompletion != null) {
+                try {
+                    work.onCompletion.run();
+                } catch (Exception ex) {
+                    LOG.warn("Completion of stage {} failed: {}", name, ex.getMessage());
+                    LOG.trace("Completion error", ex);
+                }
+            }
+        }
+        
+        private synchronized void countProcessed() {
+            final long minute = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+            final int slot = (int) (minute % THROUGHPUT_WINDOW);
+            if (windowMinutes[slot] != minute) {
+                windowMinutes[slot] = minute;
+                windowCounts[slot] = 0;
+            }
+            windowCounts[slot]++;
+        }
+
+        /**
+         * Get the processed elements per minute within the throughput window.
+         */
+        private synchronized double getThroughput() {
+            final long now = System.currentTimeMillis();
+            final long minute = TimeUnit.MILLISECONDS.toMinutes(now);
+            long count = 0;
+            for (int slot = 0; slot < THROUGHPUT_WINDOW; slot++) {
+                if (minute - windowMinutes[slot] < THROUGHPUT_WINDOW) {
+                    count += windowCounts[slot];
+                }
+            }
+            // a young stage has a shorter window
+            final double minutes = Math.min(THROUGHPUT_WINDOW, Math.max(1.0d, (now - started) / 60000d));
+            return count / minutes;
+        }
+
+        public QueueStatistics getStatistics() {
+            QueueStatistics statistics = new QueueStatistics();
+            statistics.setStage(name);
+            statistics.setMaxThreads(maxThreads);
+            statistics.setActiveThreads(activeWorkers.get());
+            statistics.setQueued(queue.size());
+            statistics.setSubmitted(submitted.get());
+            statistics.setFailed(failed.get());
+            statistics.setRejected(rejected.get());
+            
+            final long count = processed.get();
+            statistics.setProcessed(count);
+            if (count > 0) {
+                statistics.setAverageMillis(processingMillis.get() / count);
+            }
+            statistics.setThroughput(getThroughput());
+            return statistics;
+        }
+    }
+    
+    private static final class Worker implements Runnable {
+
+        private final Stage stage;
+        
+        public Worker(Stage stage) {
+            this.stage = stage;
+        }
+        
+        @Override
+        public void run() {
+            Work work;
+            while ((work = stage.queue.poll()) != null) {
+                stage.process(work);
+                
+                if (stage.activeWorkers.get() > stage.maxThreads) {
+                    // stage has been shrunk
+                    break;
+                }
+            }
+            stage.activeWorkers.decrementAndGet();
+            
+            // an element may have been added after the last poll
+            stage.spawnWorkers();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.scheduling;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.collections.CollectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.core.config.ConfigService;
+import org.yamj.core.database.model.dto.QueueDTO;
+
+/**
+ * A single stage of the processing pipeline.
+ * 
+ * The status columns of the entities act as persistent queue; this stage leases
+ * every queue element handed out to the processing engine, so that refills of
+ * the stage never fetch elements which are still in progress.
+ * A lease is only released after the element has been processed, whether
+ * successful or not, so an element is never processed twice at the same time.
+ * Elements are refilled as soon as workers become free, hence the stage never
+ * waits for the slowest element of a batch.
+ * An element which has been completed while the queue was read may still be
+ * contained in the read result; such stale elements are dropped by comparing
+ * the completion generation with the generation at the start of the read.
+ */
+public abstract class QueueStage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueueStage.class);
+    
+    private final String name;
+    private final String description;
+    private final int defaultMaxThreads;
+    private final int defaultMaxResults;
+    private final ConfigService configService;
+    private final IQueueProcessService service;
+    private final QueueProcessEngine engine;
+    
+    private final Set<String> leases = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // generation of the latest completion per lease key; pruned once a later read reflects it
+    private final ConcurrentMap<String, Long> completions = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong(0);
+    private final AtomicInteger inProgress = new AtomicInteger(0);
+    private final AtomicBoolean watch = new AtomicBoolean(false);
+    private final ReentrantLock feedLock = new ReentrantLock();
+    private boolean messageDisabled = Boolean.FALSE;    // Have we already printed the disabled message
+
+    public QueueStage(String name, String description, int defaultMaxThreads, int defaultMaxResults, ConfigService configService, QueueProcessEngine engine, IQueueProcessService service) {
+        this.name = name;
+        this.description = description;
+        this.defaultMaxThreads = defaultMaxThreads;
+        this.defaultMaxResults = defaultMaxResults;
+        this.configService = configService;
+        this.engine = engine;
+        this.service = service;
+    }
+
+    /**
+     * Get the next ready elements of the queue.
+     * 
+     * @param maxResults the maximum number of elements
+     * @return the queue elements
+     */
+    protected abstract List<QueueDTO> getQueue(int maxResults);
+
+    /**
+     * Called after queue elements have been processed or if the stage
+     * has nothing to process anymore; used to trigger following stages.
+     */
+    protected void afterProcessing() {
+        // nothing to do per default
+    }
+
+    public String getName() {
+        return name;
+    }
+    
+    public void trigger() {
+        watch.set(true);
+    }
+
+    public boolean isTriggered() {
+        return watch.get();
+    }
+    
+    public int getInProgress() {
+        return inProgress.get();
+    }
+    
+    /**
+     * Feed the processing engine with new queue elements.
+     * 
+     * This method never blocks: if another thread is feeding the stage at the
+     * moment or the stage is saturated then nothing will be done.
+     */
+    public void feed() {
+        if (!watch.get() || !feedLock.tryLock()) {
+            return;
+        }
+        
+        try {
+            int maxThreads = configService.getIntProperty("yamj3.scheduler." + name + ".maxThreads", defaultMaxThreads);
+            if (maxThreads <= 0) {
+                if (!messageDisabled) {
+                    messageDisabled = Boolean.TRUE;
+                    LOG.info("{} is disabled", description);
+                }
+                watch.set(false);
+                afterProcessing();
+                return;
+            }
+            
+            if (messageDisabled) {
+                LOG.info("{} is enabled", description);
+                messageDisabled = Boolean.FALSE;
+            }
+
+            // refill if only the running elements are left, so that no worker becomes idle
+            if (inProgress.get() > maxThreads) {
+                return;
+            }
+            final int maxResults = configService.getIntProperty("yamj3.scheduler." + name + ".maxResults", defaultMaxResults);
+            final int capacity = Math.max(maxResults, 2 * maxThreads) - inProgress.get();
+
+            // completions up to now are reflected by the read
+            final long readGeneration = generation.get();
+            pruneCompletions(readGeneration);
+
+            // fetch more elements than needed cause leased elements are still in the queue
+            List<QueueDTO> queueElements = getQueue(capacity + leases.size());
+            int submitted = 0;
+            int stale = 0;
+            if (CollectionUtils.isNotEmpty(queueElements)) {
+                for (QueueDTO queueElement : queueElements) {
+                    if (submitted >= capacity) {
+                        break;
+                    }
+                    final String leaseKey = getLeaseKey(queueElement);
+                    if (leases.add(leaseKey)) {
+                        if (isCompletedAfter(leaseKey, readGeneration)) {
+                            // read before its processing has been completed; fetch it again with the next feed
+                            leases.remove(leaseKey);
+                            stale++;
+                            continue;
+                        }
+                        inProgress.incrementAndGet();
+                        if (engine.submit(name, maxThreads, queueElement, service, new LeaseRelease(leaseKey))) {
+                            submitted++;
+                        } else {
+                            // queue of the stage is full
+                            leases.remove(leaseKey);
+                            inProgress.decrementAndGet();
+                            break;
+                        }
+                    }
+                }
+            }
+            
+            if (submitted > 0) {
+                LOG.debug("Submitted {} elements for {}; {} elements in progress with {} threads", submitted, description.toLowerCase(), inProgress.get(), maxThreads);
+            } else if (inProgress.get() == 0 && stale == 0) {
+                LOG.trace("No elements found for {}", description.toLowerCase());
+                watch.set(false);
+                afterProcessing();
+            }
+        } finally {
+            feedLock.unlock();
+        }
+    }
+
+    private boolean isCompletedAfter(String leaseKey, long readGeneration) {
+        Long completed = completions.get(leaseKey);
+        return completed != null && completed.longValue() > readGeneration;
+    }
+
+    private void pruneCompletions(long readGeneration) {
+        Iterator<Long> iter = completions.values().iterator();
+        while (iter.hasNext()) {
+            if (iter.next().longValue() <= readGeneration) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static String getLeaseKey(QueueDTO queueElement) {
+        // IDs are only unique per entity type
+        StringBuilder sb = new StringBuilder();
+        if (queueElement.getMetadataType() != null) {
+            sb.append(queueElement.getMetadataType().name());
+        }
+        if (queueElement.getArtworkType() != null) {
+            sb.append(queueElement.getArtworkType().name());
+        }
+        sb.append("-").append(queueElement.getId());
+        return sb.toString();
+    }
+    
+    private class LeaseRelease implements Runnable {
+        
+        private final String leaseKey;
+        
+        public LeaseRelease(String leaseKey) {
+            this.leaseKey = leaseKey;
+        }
+        
+        @Override
+        public void run() {
+            // record the completion before the lease is released
+            completions.put(leaseKey, generation.incrementAndGet());
+            leases.remove(leaseKey);
+            inProgress.decrementAndGet();
+
+            afterProcessing();
+            
+            // refill the stage immediately
+            watch.set(true);
+            feed();
+        }
+    }
+}
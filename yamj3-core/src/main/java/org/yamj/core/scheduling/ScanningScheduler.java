@@ -23,9 +23,7 @@
 package org.yamj.core.scheduling;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
-import org.apache.commons.collections.CollectionUtils;
+import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,14 +38,15 @@ import org.yamj.core.service.metadata.MetadataScannerService;
 import org.yamj.core.service.trailer.TrailerScannerService;
 
 @Component
-public class ScanningScheduler extends AbstractQueueScheduler {
+public class ScanningScheduler {
 
     private static final Logger LOG = LoggerFactory.getLogger(ScanningScheduler.class);
-    private static final ReentrantLock SCANNING_LOCK = new ReentrantLock();
 
     @Autowired
     private ConfigService configService;
     @Autowired
+    private QueueProcessEngine queueProcessEngine;
+    @Autowired
     private MetadataStorageService metadataStorageService;
     @Autowired
     private MetadataScannerService metadataScannerService;
@@ -68,290 +67,144 @@ public class ScanningScheduler extends AbstractQueueScheduler {
     @Autowired
     private TrailerProcessScheduler trailerProcessScheduler;
     
-    private boolean messageDisabledMediaFiles = Boolean.FALSE;   // Have we already printed the disabled message
-    private boolean messageDisabledMetaData = Boolean.FALSE;     // Have we already printed the disabled message
-    private boolean messageDisabledPeople = Boolean.FALSE;       // Have we already printed the disabled message
-    private boolean messageDisabledFilmography = Boolean.FALSE;  // Have we already printed the disabled message
-    private boolean messageDisabledArtwork = Boolean.FALSE;      // Have we already printed the disabled message
-    private boolean messageDisabledTrailer = Boolean.FALSE;      // Have we already printed the disabled message
+    private QueueStage mediaFileStage;
+    private QueueStage metaDataStage;
+    private QueueStage peopleStage;
+    private QueueStage filmographyStage;
+    private QueueStage artworkStage;
+    private QueueStage trailerStage;
+
+    @PostConstruct
+    public void init() {
+        mediaFileStage = new QueueStage("mediafilescan", "Media file scanning", 10, 20, configService, queueProcessEngine, mediaInfoService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return mediaStorageService.getMediaFileQueueForScanning(maxResults);
+            }
+        };
+
+        metaDataStage = new QueueStage("metadatascan", "Metadata scanning", 1, 20, configService, queueProcessEngine, metadataScannerService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return metadataStorageService.getMetaDataQueueForScanning(maxResults);
+            }
+
+            @Override
+            protected void afterProcessing() {
+                // trigger scan for people data and trailer
+                peopleStage.trigger();
+                trailerStage.trigger();
+            }
+        };
+
+        peopleStage = new QueueStage("peoplescan", "People scanning", 1, 50, configService, queueProcessEngine, metadataScannerService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return metadataStorageService.getPersonQueueForScanning(maxResults);
+            }
+
+            @Override
+            protected void afterProcessing() {
+                // trigger scan for filmography
+                filmographyStage.trigger();
+            }
+        };
+
+        filmographyStage = new QueueStage("filmographyscan", "Filmography scanning", 1, 50, configService, queueProcessEngine, metadataScannerService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return metadataStorageService.getFilmographyQueueForScanning(maxResults);
+            }
+
+            @Override
+            protected void afterProcessing() {
+                // trigger scan for artwork
+                artworkStage.trigger();
+            }
+        };
+
+        artworkStage = new QueueStage("artworkscan", "Artwork scanning", 1, 30, configService, queueProcessEngine, artworkScannerService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return artworkStorageService.getArtworkQueueForScanning(maxResults);
+            }
+
+            @Override
+            protected void afterProcessing() {
+                // trigger artwork processing
+                artworkProcessScheduler.triggerProcess();
+            }
+        };
+
+        trailerStage = new QueueStage("trailerscan", "Trailer scanning", 0, 30, configService, queueProcessEngine, trailerScannerService) {
+            @Override
+            protected List<QueueDTO> getQueue(int maxResults) {
+                return trailerStorageService.getTrailerQueueForScanning(maxResults);
+            }
 
-    private final AtomicBoolean watchScanMediaFiles = new AtomicBoolean(false);
-    private final AtomicBoolean watchScanMetaData = new AtomicBoolean(false);
-    private final AtomicBoolean watchScanPeopleData = new AtomicBoolean(false);
-    private final AtomicBoolean watchScanFilmography = new AtomicBoolean(false);
-    private final AtomicBoolean watchScanArtwork = new AtomicBoolean(false);
-    private final AtomicBoolean watchScanTrailer = new AtomicBoolean(false);
+            @Override
+            protected void afterProcessing() {
+                // trigger trailer processing
+                trailerProcessScheduler.triggerProcess();
+            }
+        };
+    }
 
     @Scheduled(initialDelay = 1000, fixedDelay = 300000)
     public void triggerAllScans() {
         LOG.trace("Trigger scan for all");
-        watchScanMediaFiles.set(true);
-        watchScanMetaData.set(true);
-        watchScanPeopleData.set(true);
-        watchScanFilmography.set(true);
-        watchScanArtwork.set(true);
-        watchScanTrailer.set(true);
+        mediaFileStage.trigger();
+        metaDataStage.trigger();
+        peopleStage.trigger();
+        filmographyStage.trigger();
+        artworkStage.trigger();
+        trailerStage.trigger();
     }
     
     public void triggerScanMediaFiles() {
         LOG.trace("Trigger scan of media files");
-        watchScanMediaFiles.set(true);
+        mediaFileStage.trigger();
     }
 
     public void triggerScanMetaData() {
         LOG.trace("Trigger scan of meta data");
-        watchScanMetaData.set(true);
+        metaDataStage.trigger();
     }
     
     public void triggerScanPeopleData() {
         LOG.trace("Trigger scan of people data");
-        watchScanPeopleData.set(true);
+        peopleStage.trigger();
     }
 
     public void triggerScanFilmography() {
         LOG.trace("Trigger scan of filmogprahy");
-        watchScanFilmography.set(true);
+        filmographyStage.trigger();
     }
 
     public void triggerScanArtwork() {
         LOG.trace("Trigger scan of artwork");
-        watchScanArtwork.set(true);
+        artworkStage.trigger();
     }
 
     public void triggerScanTrailer() {
         LOG.trace("Trigger scan of trailer");
-        watchScanTrailer.set(true);
+        trailerStage.trigger();
     }
 
+    /**
+     * Feed the stages which have been triggered.
+     * 
+     * Each stage feeds itself as soon as queue elements have been processed,
+     * so this run only picks up triggers for idle stages. The stages are
+     * independent of each other, so a slow stage doesn't stall the others.
+     */
     @Scheduled(initialDelay = 2000, fixedDelay = 1000)
     public void runAllScans() {
-        if (SCANNING_LOCK.tryLock()) {
-            try {
-                if (watchScanMediaFiles.get()) {
-                    scanMediaFiles();
-                }
-                if (watchScanMetaData.get()) {
-                    scanMetaData();
-                }
-                if (watchScanPeopleData.get()) {
-                    scanPeopleData();
-                }
-                if (watchScanFilmography.get()) {
-                    scanFilmography();
-                }
-                if (watchScanArtwork.get()) {
-                    scanArtwork();
-                }
-                if (watchScanTrailer.get()) {
-                    scanTrailer();
-                }
-            } finally {
-                SCANNING_LOCK.unlock();
-            }
-        }
-    }
-    
-    private void scanMediaFiles() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.mediafilescan.maxThreads", 1);
-        if (maxThreads <= 0) {
-            if (!messageDisabledMediaFiles) {
-                messageDisabledMediaFiles = Boolean.TRUE;
-                LOG.info("Media file scanning is disabled");
-            }
-            watchScanMediaFiles.set(false);
-            return;
-        }
-        
-        if (messageDisabledMediaFiles) {
-            LOG.info("Media file scanning is enabled");
-            messageDisabledMediaFiles = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.mediafilescan.maxResults", 20);
-        List<QueueDTO> queueElements = mediaStorageService.getMediaFileQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No media files found to scan");
-            watchScanMediaFiles.set(false);
-            return;
-        }
-
-        LOG.info("Found {} media files to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, mediaInfoService);
-
-        LOG.debug("Finished media file scanning");
-    }
-
-    private void scanMetaData() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.metadatascan.maxThreads", 1);
-        if (maxThreads <= 0) {
-            if (!messageDisabledMetaData) {
-                messageDisabledMetaData = Boolean.TRUE;
-                LOG.info("Metadata scanning is disabled");
-            }
-            watchScanMetaData.set(false);
-            watchScanPeopleData.set(true);
-            watchScanTrailer.set(true);
-            return;
-        }
-        
-        if (messageDisabledMetaData) {
-            LOG.info("Metadata scanning is enabled");
-            messageDisabledMetaData = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.metadatascan.maxResults", 20);
-        List<QueueDTO> queueElements = metadataStorageService.getMetaDataQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No metadata found to scan");
-            watchScanMetaData.set(false);
-            watchScanPeopleData.set(true);
-            watchScanTrailer.set(true);
-            return;
-        }
-
-        LOG.info("Found {} metadata objects to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, metadataScannerService);
-
-        // trigger scan for people data and trailer
-        watchScanPeopleData.set(true);
-        watchScanTrailer.set(true);
-        
-        LOG.debug("Finished metadata scanning");
-    }
-
-    private void scanPeopleData() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.peoplescan.maxThreads", 1);
-        if (maxThreads <= 0) {
-            if (!messageDisabledPeople) {
-                messageDisabledPeople = Boolean.TRUE;
-                LOG.info("People scanning is disabled");
-            }
-            watchScanPeopleData.set(false);
-            watchScanFilmography.set(true);
-            return;
-        }
-        
-        if (messageDisabledPeople) {
-            LOG.info("People scanning is enabled");
-            messageDisabledPeople = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.peoplescan.maxResults", 50);
-        List<QueueDTO> queueElements = metadataStorageService.getPersonQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No people data found to scan");
-            watchScanPeopleData.set(false);
-            watchScanFilmography.set(true);
-            return;
-        }
-
-        LOG.info("Found {} people objects to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, metadataScannerService);
-
-        // trigger scan for filmography
-        watchScanFilmography.set(true);
-        
-        LOG.debug("Finished people data scanning");
-    }
-
-    private void scanFilmography() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.filmographyscan.maxThreads", 1);
-        if (maxThreads <= 0) { 
-            if (!messageDisabledFilmography) {
-                messageDisabledFilmography = Boolean.TRUE;
-                LOG.info("Filmography scanning is disabled");
-            }
-            watchScanFilmography.set(false);
-            watchScanArtwork.set(true);
-            return;
-        }
-        
-        if (messageDisabledFilmography) {
-            LOG.info("Filmography scanning is enabled");
-            messageDisabledFilmography = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.filmographyscan.maxResults", 50);
-        List<QueueDTO> queueElements = metadataStorageService.getFilmographyQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No filmography data found to scan");
-            watchScanFilmography.set(false);
-            watchScanArtwork.set(true);
-            return;
-        }
-
-        LOG.info("Found {} filmography objects to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, metadataScannerService);
-
-        // trigger scan for artwork
-        watchScanArtwork.set(true);
-        
-        LOG.debug("Finished filmography data scanning");
-    }
-
-    private void scanArtwork() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.artworkscan.maxThreads", 1);
-        if (maxThreads <= 0) {
-            if (!messageDisabledArtwork) {
-                messageDisabledArtwork = Boolean.TRUE;
-                LOG.info("Artwork scanning is disabled");
-            }
-            watchScanArtwork.set(false);
-            return;
-        }
-        
-        if (messageDisabledArtwork) {
-            LOG.info("Artwork scanning is enabled");
-            messageDisabledArtwork = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.artworkscan.maxResults", 30);
-        List<QueueDTO> queueElements = artworkStorageService.getArtworkQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No artwork found to scan");
-            watchScanArtwork.set(false);
-            return;
-        }
-
-        LOG.info("Found {} artwork objects to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, artworkScannerService);
-
-        // trigger artwork processing
-        this.artworkProcessScheduler.triggerProcess();
-        
-        LOG.debug("Finished artwork scanning");
-    }
-
-    private void scanTrailer() {
-        int maxThreads = configService.getIntProperty("yamj3.scheduler.trailerscan.maxThreads", 0);
-        if (maxThreads <= 0) {
-            if (!messageDisabledTrailer) {
-                messageDisabledTrailer = Boolean.TRUE;
-                LOG.info("Trailer scanning is disabled");
-            }
-            watchScanTrailer.set(false);
-            return;
-        }
-        
-        if (messageDisabledTrailer) {
-            LOG.info("Trailer scanning is enabled");
-            messageDisabledTrailer = Boolean.FALSE;
-        }
-
-        int maxResults = configService.getIntProperty("yamj3.scheduler.trailerscan.maxResults", 30);
-        List<QueueDTO> queueElements = trailerStorageService.getTrailerQueueForScanning(maxResults);
-        if (CollectionUtils.isEmpty(queueElements)) {
-            LOG.trace("No trailer found to scan");
-            watchScanTrailer.set(false);
-            return;
-        }
-
-        LOG.info("Found {} trailer objects to process; scan with {} threads", queueElements.size(), maxThreads);
-        threadedProcessing(queueElements, maxThreads, trailerScannerService);
-
-        // trigger trailer processing
-        this.trailerProcessScheduler.triggerProcess();
-        
-        LOG.debug("Finished trailer scanning");
+        mediaFileStage.feed();
+        metaDataStage.feed();
+        peopleStage.feed();
+        filmographyStage.feed();
+        artworkStage.feed();
+        trailerStage.feed();
     }
 }
@@ -97,7 +97,7 @@ public class TrailerProcessScheduler extends AbstractQueueScheduler {
         }
 
         LOG.info("Found {} trailer objects to process; process with {} threads", queueElements.size(), maxThreads);
-        this.threadedProcessing(queueElements, maxThreads, trailerProcessorService);
+        this.threadedProcessing("trailerprocess", queueElements, maxThreads, trailerProcessorService);
         
         LOG.debug("Finished trailer processing");
     }
@@ -22,10 +22,21 @@
  */
 package org.yamj.core.service.artwork;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.apache.sanselan.ImageReadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.yamj.core.database.model.ArtworkLocated;
 import org.yamj.core.database.model.ArtworkProfile;
 import org.yamj.core.database.model.type.ScalingType;
@@ -34,6 +45,7 @@ import org.yamj.core.scheduling.IQueueProcessService;
 import org.yamj.core.service.file.FileStorageService;
 import org.yamj.core.service.file.StorageType;
 import org.yamj.core.tools.image.GraphicTools;
+import org.yamj.core.tools.image.GraphicTools.DecodedImage;
 
 public abstract class AbstractArtworkProcessorService implements IQueueProcessService {
 
@@ -44,52 +56,210 @@ public abstract class AbstractArtworkProcessorService implements IQueueProcessSe
     @Autowired
     protected FileStorageService fileStorageService;
 
+    @Value("${yamj3.artwork.draw.maxThreads:0}")
+    private int drawMaxThreads;
+
+    // draws the profile images; the callers are no fork join workers
+    private ForkJoinPool drawPool;
+
+    @PostConstruct
+    public void initDrawPool() {
+        final int threads = drawMaxThreads > 0 ? drawMaxThreads : Runtime.getRuntime().availableProcessors();
+        this.drawPool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void destroyDrawPool() {
+        this.drawPool.shutdownNow();
+    }
+
+    /**
+     * Load the original image of the located artwork.
+     *
+     * The image is only decoded with the resolution needed by the largest profile.
+     * The decoded image must be closed after the images have been created from it.
+     *
+     * @param located
+     * @param profiles the profiles the image is loaded for
+     * @return the decoded image
+     * @throws IOException if the original image could not be found
+     * @throws ImageReadException if the original image is invalid
+     */
+    protected DecodedImage loadOriginalImage(ArtworkLocated located, Collection<ArtworkProfile> profiles) throws IOException, ImageReadException {
+        final StorageType storageType = ArtworkTools.getStorageType(located);
+        final File imageFile = this.fileStorageService.getFile(storageType, located.getCacheFilename());
+
+        // set dimension of original image if not done before
+        if (imageFile.exists() && (located.getWidth() <= 0 || located.getHeight() <= 0)) {
+            try {
+                Dimension dimension = GraphicTools.getDimension(imageFile);
+                located.setWidth(dimension.width);
+                located.setHeight(dimension.height);
+            } catch (IOException ex) {
+                LOG.trace("Failed to read dimension of {}: {}", located, ex.getMessage());
+            }
+        }
+
+        int minWidth = 0;
+        int minHeight = 0;
+        for (ArtworkProfile profile : profiles) {
+            minWidth = Math.max(minWidth, (int) Math.ceil(profile.getWidth() * profile.getRounderCornerQuality()));
+            minHeight = Math.max(minHeight, (int) Math.ceil(profile.getHeight() * profile.getRounderCornerQuality()));
+        }
+        return GraphicTools.decodeJPEGImage(imageFile, minWidth, minHeight);
+    }
+
     protected void createAndStoreImage(ArtworkLocated located, ArtworkProfile profile, String cacheFilename) throws Exception {
-        final StorageType storageType = ArtworkTools.getStorageType(profile);
-        
         LOG.trace("Generate image for {} with profile {}", located, profile.getProfileName());
-        BufferedImage imageGraphic = GraphicTools.loadJPEGImage(this.fileStorageService.getFile(storageType, located.getCacheFilename()));
-    
-        // set dimension of original image if not done before
-        if (located.getWidth() <= 0 || located.getHeight() <= 0) {
-            located.setWidth(imageGraphic.getWidth());
-            located.setHeight(imageGraphic.getHeight());
+        Map<ArtworkProfile, Exception> errors;
+        try (DecodedImage original = loadOriginalImage(located, Collections.singleton(profile))) {
+            errors = createAndStoreImages(original.getImage(), Collections.singletonMap(profile, cacheFilename));
+        }
+        if (errors.containsKey(profile)) {
+            throw errors.get(profile);
         }
-    
-        // draw the image
-        BufferedImage image = drawImage(imageGraphic, profile);
-    
-        // store image on stage system
-        fileStorageService.storeImage(cacheFilename, storageType, image, profile.getImageType(), profile.getQuality());
     }
-    
-    private static BufferedImage drawImage(BufferedImage imageGraphic, ArtworkProfile profile) {
-        BufferedImage bi = imageGraphic;
 
+    /**
+     * Create and store the images for several profiles from one decoded original.
+     *
+     * The original is successively scaled down by half as long as the result is
+     * still large enough for a profile, and each profile is drawn from the smallest
+     * fitting copy. The profiles are drawn and stored in parallel in the bounded draw pool.
+     *
+     * @param original the decoded original image
+     * @param cacheFilenames the profiles with the cache file names to store the images with
+     * @return the profiles which failed with their errors
+     */
+    protected Map<ArtworkProfile, Exception> createAndStoreImages(BufferedImage original, Map<ArtworkProfile, String> cacheFilenames) {
+        final int origWidth = original.getWidth();
+        final int origHeight = original.getHeight();
+
+        // the original and its scaled down copies, largest first
+        List<BufferedImage> scaled = new ArrayList<>();
+        scaled.add(original);
+
+        final List<DrawImageTask> tasks = new ArrayList<>(cacheFilenames.size());
+        for (Entry<ArtworkProfile, String> entry : cacheFilenames.entrySet()) {
+            final Dimension target = getTargetSize(origWidth, origHeight, entry.getKey());
+
+            BufferedImage source = original;
+            if (target != null) {
+                BufferedImage smallest = scaled.get(scaled.size() - 1);
+                while (smallest.getWidth() / 2 >= target.width && smallest.getHeight() / 2 >= target.height) {
+                    smallest = GraphicTools.scaleToHalf(smallest);
+                    scaled.add(smallest);
+                }
+                for (int i = scaled.size() - 1; i > 0; i--) {
+                    if (scaled.get(i).getWidth() >= target.width && scaled.get(i).getHeight() >= target.height) {
+                        source = scaled.get(i);
+                        break;
+                    }
+                }
+            }
+
+            tasks.add(new DrawImageTask(entry.getKey(), entry.getValue(), source, target));
+        }
+
+        try {
+            drawPool.invoke(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            // release the scaled copies right away
+            for (BufferedImage image : scaled) {
+                image.flush();
+            }
+            scaled.clear();
+        }
+
+        Map<ArtworkProfile, Exception> errors = new HashMap<>();
+        for (DrawImageTask task : tasks) {
+            if (task.error != null) {
+                errors.put(task.profile, task.error);
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Get the size the original image is scaled to for the profile
+     *
+     * @param origWidth
+     * @param origHeight
+     * @param profile
+     * @return the size or null if the original image is used as it is
+     */
+    private static Dimension getTargetSize(int origWidth, int origHeight, ArtworkProfile profile) {
         // TODO more graphic options
-        
-        int origWidth = imageGraphic.getWidth();
-        int origHeight = imageGraphic.getHeight();
+
         float ratio = profile.getRatio();
         float rcqFactor = profile.getRounderCornerQuality();
 
         if (ScalingType.NORMALIZE == profile.getScalingType()) {
             if (origWidth < profile.getWidth() && origHeight < profile.getWidth()) {
             	// normalize image if below profile settings
-                bi = GraphicTools.scaleToSizeNormalized((int) (origHeight * rcqFactor * ratio), (int) (origHeight * rcqFactor), bi);
-            } else {
-            	// normalize image
-                bi = GraphicTools.scaleToSizeNormalized((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor), bi);
+                return new Dimension((int) (origHeight * rcqFactor * ratio), (int) (origHeight * rcqFactor));
             }
+            // normalize image
+            return new Dimension((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor));
         } else if (ScalingType.STRETCH == profile.getScalingType()) {
         	// stretch image
-            bi = GraphicTools.scaleToSizeStretch((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor), bi);
+            return new Dimension((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor));
         } else if ((origWidth != profile.getWidth()) || (origHeight != profile.getHeight())) {
         	// scale image to given size
-            bi = GraphicTools.scaleToSize((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor), bi);
+            return new Dimension((int) (profile.getWidth() * rcqFactor), (int) (profile.getHeight() * rcqFactor));
+        }
+
+        // no scaling needed
+        return null;
+    }
+
+    private static BufferedImage drawImage(BufferedImage source, Dimension target, ArtworkProfile profile) {
+        if (target == null) {
+            return source;
         }
 
-        // return image
-        return bi;
+        if (ScalingType.NORMALIZE == profile.getScalingType()) {
+            return GraphicTools.scaleToSizeNormalized(target.width, target.height, source);
+        } else if (ScalingType.STRETCH == profile.getScalingType()) {
+            return GraphicTools.scaleToSizeStretch(target.width, target.height, source);
+        }
+        return GraphicTools.scaleToSize(target.width, target.height, source);
+    }
+
+    /**
+     * Draws and stores the image for one profile
+     */
+    private final class DrawImageTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ArtworkProfile profile;
+        private final String cacheFilename;
+        private final transient BufferedImage source;
+        private final Dimension target;
+        private transient Exception error;
+
+        public DrawImageTask(ArtworkProfile profile, String cacheFilename, BufferedImage source, Dimension target) {
+            this.profile = profile;
+            this.cacheFilename = cacheFilename;
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                BufferedImage image = drawImage(source, target, profile);
+                fileStorageService.storeImage(cacheFilename, ArtworkTools.getStorageType(profile), image, profile.getImageType(), profile.getQuality());
+            } catch (Exception ex) { //NOSONAR
+                this.error = ex;
+            }
+        }
     }
-}
\ No newline at end of file
+}
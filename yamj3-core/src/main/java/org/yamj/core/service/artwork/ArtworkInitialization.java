@@ -26,6 +26,7 @@ import javax.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 import org.yamj.common.type.MetaDataType;
@@ -33,9 +34,10 @@ import org.yamj.core.database.model.ArtworkProfile;
 import org.yamj.core.database.model.type.ArtworkType;
 import org.yamj.core.database.model.type.ScalingType;
 import org.yamj.core.database.service.ArtworkStorageService;
+import org.yamj.core.tools.image.GraphicTools;
 
 /**
- * Just used for initialization of artwork profiles at startup.
+ * Just used for initialization of artwork profiles and image settings at startup.
  */
 @Component("artworkInitialization")
 @DependsOn("upgradeDatabaseService")
@@ -45,9 +47,13 @@ public class ArtworkInitialization {
     
     @Autowired
     private ArtworkStorageService artworkStorageService;
+    @Value("${yamj3.image.decode.maxPixels:67108864}")
+    private long maxDecodePixels;
 
     @PostConstruct
     public void init() {
+        GraphicTools.setMaxDecodePixels(maxDecodePixels);
+
         LOG.debug("Initialize artwork profiles");
         initArtworkProfile("default", MetaDataType.MOVIE, ArtworkType.FANART, 1280, 720); 
         initArtworkProfile("default", MetaDataType.SERIES, ArtworkType.FANART, 1280, 720); 
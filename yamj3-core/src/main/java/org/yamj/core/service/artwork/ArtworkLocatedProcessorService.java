@@ -28,15 +28,24 @@ import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sanselan.ImageReadException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.yamj.common.type.MetaDataType;
 import org.yamj.common.type.StatusType;
@@ -45,15 +54,41 @@ import org.yamj.core.database.model.ArtworkLocated;
 import org.yamj.core.database.model.ArtworkProfile;
 import org.yamj.core.database.model.dto.QueueDTO;
 import org.yamj.core.database.model.type.ArtworkType;
+import org.yamj.core.database.model.type.ImageType;
 import org.yamj.core.service.file.FileTools;
 import org.yamj.core.service.file.StorageType;
 import org.yamj.core.tools.image.GraphicTools;
+import org.yamj.core.tools.image.GraphicTools.DecodedImage;
 
 @Service("artworkLocatedProcessorService")
 @DependsOn("artworkInitialization")
 public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ArtworkLocatedProcessorService.class);
+
+    @Value("${yamj3.artwork.generate.maxThreads:2}")
+    private int generateMaxThreads;
+    @Value("${yamj3.artwork.generate.queueSize:50}")
+    private int generateQueueSize;
+    @Value("${yamj3.artwork.generate.waitSeconds:10}")
+    private int generateWaitSeconds;
+
+    // images generated on request, by located and profile
+    private final ConcurrentMap<String, Future<ArtworkGenerated>> pendingImages = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor imageExecutor;
+
+    @PostConstruct
+    public void init() {
+        final int threads = Math.max(1, generateMaxThreads);
+        this.imageExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(Math.max(1, generateQueueSize)), new CustomizableThreadFactory("ImageGenerator-"));
+        this.imageExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        this.imageExecutor.shutdownNow();
+    }
     
     @Override
     public void processQueueElement(QueueDTO queueElement) {
@@ -62,19 +97,15 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
         final StorageType storageType = ArtworkTools.getStorageType(located);
         LOG.debug("Process located artwork: {}", located);
 
+        if (located.isNotCached() && located.getStageFile() == null && fileStorageService.isArtworkContentAddressed()) {
+            // skip the download if the image of the URL is already stored
+            this.useCachedArtwork(located);
+        }
+
         if (located.isNotCached()) {
             // just processed if cache file name not stored before
             // which means that no original image has been created
             
-            // validate artwork
-            boolean valid = checkArtworkQuality(located);
-            if (!valid) {
-                LOG.warn("Located artwork {} is not valid", located);
-                located.setStatus(StatusType.INVALID);
-                artworkStorageService.updateArtworkLocated(located);
-                return;
-            }
-    
             if (SOURCE_UPLOAD.equals(located.getSource())) {
                 LOG.info("Located artwork {} needs an upload", located);
                 located.setStatus(StatusType.INVALID);
@@ -114,6 +145,27 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
                 return;
             }
 
+            // validate artwork; the dimension is read from the stored image,
+            // so the image has only been downloaded once
+            boolean valid = checkArtworkQuality(located, storageType, cacheFilename);
+            if (!valid) {
+                LOG.warn("Located artwork {} is not valid", located);
+                fileStorageService.deleteFile(storageType, cacheFilename);
+                located.setStatus(StatusType.INVALID);
+                artworkStorageService.updateArtworkLocated(located);
+                return;
+            }
+
+            if (fileStorageService.isArtworkContentAddressed()) {
+                // store identical images only once
+                try {
+                    cacheFilename = fileStorageService.storeByContent(storageType, cacheFilename, ArtworkTools.buildContentSuffix(located));
+                } catch (IOException ex) {
+                    LOG.warn("Failed to store artwork {} by content: {}", located, ex.getMessage());
+                    LOG.trace("Storage error", ex);
+                }
+            }
+
             // set values in located artwork
             String cacheDirectory = FileTools.createDirHash(cacheFilename);
             located.setCacheDirectory(StringUtils.removeEnd(cacheDirectory, File.separator + cacheFilename));
@@ -125,47 +177,21 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
 
         // after that: try preProcessing of images
         List<ArtworkProfile> profiles = artworkStorageService.getPreProcessArtworkProfiles(located);
-        for (ArtworkProfile profile : profiles) {
-            try {
-                // generate image for a profiles
-                generateImage(located, profile);
-            } catch (IOException ex)  {
-                LOG.warn("Original image is not found: {}/{}", located.getCacheDirectory(), located.getCacheFilename());
-                LOG.trace("Image generation error", ex);
-                
-                // reset cache values and mark located artwork for update
-                located.setCacheDirectory(null);
-                located.setCacheFilename(null);
-                located.setStatus(StatusType.UPDATED);
-
-                // no further processing for that located image
-                break;
-            } catch (OutOfMemoryError ex) {
-                LOG.error("Failed to load/transform image due to memory constraints: {}", located);
-                LOG.trace("Out of memory", ex);
-
-                // mark located artwork as error
-                located.setStatus(StatusType.ERROR);
-
-                // no further processing for that located image
-                break;
-             } catch (ImageReadException ex) {
-                LOG.warn("Original image is invalid: {}", located);
-                LOG.trace("Invalid image error", ex);
-
-                // mark located artwork as invalid
-                located.setStatus(StatusType.INVALID);
-
-                // no further processing for that located image
-                break;
-            } catch (Exception ex) {
-                LOG.error("Failed to generate image for {} with profile {}", located, profile.getProfileName());
-                LOG.warn("Image generation error", ex);
-            }
+        if (!profiles.isEmpty()) {
+            generateImages(located, profiles);
         }
 
         // update located artwork in database
         artworkStorageService.updateArtworkLocated(located);
+
+        if (ArtworkTools.getContentHash(located) != null && !fileStorageService.isSharedFileStored(storageType, located.getCacheFilename())) {
+            // the shared original has been deleted before the reference was stored
+            LOG.debug("Shared image of {} has been deleted, will be stored again", located);
+            located.setCacheDirectory(null);
+            located.setCacheFilename(null);
+            located.setStatus(StatusType.UPDATED);
+            artworkStorageService.updateArtworkLocated(located);
+        }
     }
 
     @Override
@@ -175,6 +201,21 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
         artworkStorageService.errorArtworkLocated(queueElement.getId());
     }
 
+    private void useCachedArtwork(ArtworkLocated located) {
+        if (StringUtils.isBlank(located.getUrl())) {
+            return;
+        }
+        
+        ArtworkLocated cached = artworkStorageService.getCachedArtworkLocated(located);
+        if (cached != null) {
+            LOG.debug("Use stored image of {} for {}", cached, located);
+            located.setWidth(cached.getWidth());
+            located.setHeight(cached.getHeight());
+            located.setCacheDirectory(cached.getCacheDirectory());
+            located.setCacheFilename(cached.getCacheFilename());
+        }
+    }
+
     private boolean storedAttachedArwork(StorageType storageType, ArtworkLocated located, String cacheFilename) {
         // file contains attached artwork
         int attachmentId = 1;
@@ -188,54 +229,142 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
         return fileStorageService.store(storageType, cacheFilename, located.getStageFile(), attachmentId);
     }
     
+    private void generateImages(ArtworkLocated located, List<ArtworkProfile> profiles) {
+        Map<ArtworkProfile, String> cacheFilenames = new LinkedHashMap<>(profiles.size());
+        Map<ArtworkProfile, String> imagesToCreate = new LinkedHashMap<>(profiles.size());
+        for (ArtworkProfile profile : profiles) {
+            final String cacheFilename = ArtworkTools.buildCacheFilename(located, profile);
+            cacheFilenames.put(profile, cacheFilename);
+            if (!isSharedImageStored(located, profile, cacheFilename)) {
+                imagesToCreate.put(profile, cacheFilename);
+            }
+        }
+
+        Map<ArtworkProfile, Exception> errors = Collections.emptyMap();
+        try {
+            if (!imagesToCreate.isEmpty()) {
+                // decode the original image only once for all profiles
+                try (DecodedImage original = loadOriginalImage(located, imagesToCreate.keySet())) {
+                    errors = createAndStoreImages(original.getImage(), imagesToCreate);
+                }
+            }
+        } catch (IOException ex)  {
+            LOG.warn("Original image is not found: {}/{}", located.getCacheDirectory(), located.getCacheFilename());
+            LOG.trace("Image generation error", ex);
+
+            // reset cache values and mark located artwork for update
+            located.setCacheDirectory(null);
+            located.setCacheFilename(null);
+            located.setStatus(StatusType.UPDATED);
+            return;
+        } catch (OutOfMemoryError ex) {
+            LOG.error("Failed to load/transform image due to memory constraints: {}", located);
+            LOG.trace("Out of memory", ex);
+
+            // mark located artwork as error
+            located.setStatus(StatusType.ERROR);
+            return;
+        } catch (ImageReadException ex) {
+            LOG.warn("Original image is invalid: {}", located);
+            LOG.trace("Invalid image error", ex);
+
+            // mark located artwork as invalid
+            located.setStatus(StatusType.INVALID);
+            return;
+        }
+
+        for (Entry<ArtworkProfile, String> entry : cacheFilenames.entrySet()) {
+            final ArtworkProfile profile = entry.getKey();
+            if (errors.containsKey(profile)) {
+                LOG.error("Failed to generate image for {} with profile {}", located, profile.getProfileName());
+                LOG.warn("Image generation error", errors.get(profile));
+                continue;
+            }
+
+            try {
+                storeArtworkGenerated(located, profile, entry.getValue());
+                checkSharedImageStored(located, profile, entry.getValue());
+            } catch (Exception ex) {
+                LOG.error("Failed to generate image for {} with profile {}", located, profile.getProfileName());
+                LOG.warn("Image generation error", ex);
+            }
+        }
+    }
+
     private ArtworkGenerated generateImage(ArtworkLocated located, ArtworkProfile profile) throws Exception {
         // build cache filename
         final String cacheFilename = ArtworkTools.buildCacheFilename(located, profile);
         
         // create and store image
-        createAndStoreImage(located, profile, cacheFilename);
-        
+        if (!isSharedImageStored(located, profile, cacheFilename)) {
+            createAndStoreImage(located, profile, cacheFilename);
+        }
+
+        ArtworkGenerated generated = storeArtworkGenerated(located, profile, cacheFilename);
+        checkSharedImageStored(located, profile, cacheFilename);
+        return generated;
+    }
+
+    /**
+     * Create a shared image again if it has been deleted before the reference to it was stored
+     *
+     * @param located
+     * @param profile
+     * @param cacheFilename
+     * @throws Exception
+     */
+    private void checkSharedImageStored(ArtworkLocated located, ArtworkProfile profile, String cacheFilename) throws Exception {
+        final StorageType storageType = ArtworkTools.getStorageType(profile);
+        if (ArtworkTools.getContentHash(located) != null && !fileStorageService.isSharedFileStored(storageType, cacheFilename)) {
+            LOG.debug("Shared image {} has been deleted, will be created again", cacheFilename);
+            createAndStoreImage(located, profile, cacheFilename);
+        }
+    }
+
+    private ArtworkGenerated storeArtworkGenerated(ArtworkLocated located, ArtworkProfile profile, String cacheFilename) {
         try {
             final String cacheDir = StringUtils.removeEnd(FileTools.createDirHash(cacheFilename), File.separator + cacheFilename);
             return artworkStorageService.storeArtworkGenerated(located, profile, cacheDir, cacheFilename);
         } catch (Exception ex) {
             // delete generated file storage element also
             LOG.trace("Failed to generate file storage for {}, error: {}", cacheFilename, ex.getMessage());
-            final StorageType storageType = ArtworkTools.getStorageType(profile);
-            fileStorageService.deleteFile(storageType, cacheFilename);
+            if (ArtworkTools.getContentHash(located) == null) {
+                final StorageType storageType = ArtworkTools.getStorageType(profile);
+                fileStorageService.deleteFile(storageType, cacheFilename);
+            }
             throw ex;
         }
     }
 
-    private static boolean checkArtworkQuality(ArtworkLocated located) {
-        if (StringUtils.isNotBlank(located.getUrl())) {
-
-            if (located.getWidth() <= 0 || located.getHeight() <= 0) {
-                // retrieve dimension
-                try {
-                    // get dimension
-                    Dimension dimension = GraphicTools.getDimension(located.getUrl());
-                    if (dimension.getHeight() <= 0 || dimension.getWidth() <= 0) {
-                        LOG.warn("No valid image dimension determined: {}", located);
-                        return Boolean.FALSE;
-                    }
+    private boolean isSharedImageStored(ArtworkLocated located, ArtworkProfile profile, String cacheFilename) {
+        // images generated from a content addressed original are shared
+        if (ArtworkTools.getContentHash(located) == null) {
+            return false;
+        }
+        return fileStorageService.getFile(ArtworkTools.getStorageType(profile), cacheFilename).isFile();
+    }
 
-                    // set values for later usage
-                    located.setWidth((int) dimension.getWidth());
-                    located.setHeight((int) dimension.getHeight());
-                } catch (IOException ex) {
-                    LOG.warn("Could not determine image dimension cause invalid image: {}", located);
-                    LOG.trace("Invalid image error", ex);
+    private boolean checkArtworkQuality(ArtworkLocated located, StorageType storageType, String cacheFilename) {
+        if (located.getWidth() <= 0 || located.getHeight() <= 0) {
+            // retrieve dimension from image header
+            try {
+                Dimension dimension = GraphicTools.getDimension(fileStorageService.getFile(storageType, cacheFilename));
+                if (dimension.getHeight() <= 0 || dimension.getWidth() <= 0) {
+                    LOG.warn("No valid image dimension determined: {}", located);
                     return Boolean.FALSE;
                 }
-            }
 
-            // TODO check quality of artwork?
-        } else {
-            // TODO stage file needs no image validation??
-            LOG.trace("Located URL was blank for {}", located);
+                // set values for later usage
+                located.setWidth((int) dimension.getWidth());
+                located.setHeight((int) dimension.getHeight());
+            } catch (IOException ex) {
+                LOG.warn("Could not determine image dimension cause invalid image: {}", located);
+                LOG.trace("Invalid image error", ex);
+                return Boolean.FALSE;
+            }
         }
 
+        // TODO check quality of artwork?
         return Boolean.TRUE;
     }
     
@@ -247,7 +376,7 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
             final StorageType storageType = ArtworkTools.getStorageType(generated.getArtworkProfile().getArtworkType());
             final String filename = FilenameUtils.concat(generated.getCacheDirectory(), generated.getCacheFilename());
             result.setResource(this.fileStorageService.getStorageName(storageType, filename));
-            result.setMediaType(MediaType.IMAGE_JPEG);
+            result.setMediaType(getMediaType(generated.getArtworkProfile()));
             return result;
         }
 
@@ -273,13 +402,77 @@ public class ArtworkLocatedProcessorService extends AbstractArtworkProcessorServ
         }
         
         // create the image and the database entry
-        generated = this.generateImage(located, profile);
+        generated = this.generateImageOnDemand(located, profile);
+        if (generated == null) {
+            // generation is queued or still running
+            result.setInProgress(true);
+            return result;
+        }
         
         // return the image
         final StorageType storageType = ArtworkTools.getStorageType(located);
         final String filename = FilenameUtils.concat(generated.getCacheDirectory(), generated.getCacheFilename());
         result.setResource(this.fileStorageService.getStorageName(storageType, filename));
-        result.setMediaType(MediaType.IMAGE_JPEG);
+        result.setMediaType(getMediaType(profile));
         return result;
     }
+
+    /**
+     * Generate an image requested by a client.
+     *
+     * Concurrent requests for the same image share one generation, which runs in
+     * a bounded pool, so request threads are not tied up by image scaling.
+     *
+     * @param located
+     * @param profile
+     * @return the generated artwork or null if the generation did not finish in time
+     * @throws Exception
+     */
+    private ArtworkGenerated generateImageOnDemand(final ArtworkLocated located, final ArtworkProfile profile) throws Exception {
+        final String key = located.getId() + "#" + profile.getId();
+
+        Future<ArtworkGenerated> future = this.pendingImages.get(key);
+        if (future == null) {
+            FutureTask<ArtworkGenerated> task = new FutureTask<ArtworkGenerated>(new Callable<ArtworkGenerated>() {
+                @Override
+                public ArtworkGenerated call() throws Exception {
+                    return generateImage(located, profile);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    pendingImages.remove(key, this);
+                }
+            };
+
+            future = this.pendingImages.putIfAbsent(key, task);
+            if (future == null) {
+                future = task;
+                try {
+                    this.imageExecutor.execute(task);
+                } catch (RejectedExecutionException ex) { //NOSONAR
+                    LOG.debug("Image generation queue is full, rejected {} with profile {}", located, profile.getProfileName());
+                    this.pendingImages.remove(key, task);
+                    return null;
+                }
+            }
+        }
+
+        try {
+            return future.get(this.generateWaitSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) { //NOSONAR
+            LOG.debug("Image generation for {} with profile {} still running", located, profile.getProfileName());
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static MediaType getMediaType(ArtworkProfile profile) {
+        // images are stored as PNG or else as JPEG
+        return ImageType.PNG == profile.getImageType() ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+    }
 }
\ No newline at end of file
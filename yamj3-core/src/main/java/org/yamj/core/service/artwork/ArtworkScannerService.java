@@ -23,9 +23,14 @@
 package org.yamj.core.service.artwork;
 
 import java.util.*;
+import java.util.concurrent.*;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.yamj.common.type.StatusType;
 import org.yamj.core.config.ConfigServiceWrapper;
@@ -66,6 +71,29 @@ public class ArtworkScannerService implements IQueueProcessService {
     private ConfigServiceWrapper configServiceWrapper;
     @Autowired
     private AttachmentScannerService attachmentScannerService;
+
+    @Value("${yamj3.artwork.scanner.online.maxThreads:16}")
+    private int onlineMaxThreads;
+
+    private ThreadPoolExecutor onlineExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (onlineMaxThreads > 0) {
+            // a full executor rejects the scan, which then falls back to the sequential loop
+            this.onlineExecutor = new ThreadPoolExecutor(onlineMaxThreads, onlineMaxThreads, 60, TimeUnit.SECONDS,
+                            new SynchronousQueue<Runnable>(), new CustomizableThreadFactory("ArtworkOnlineScanner-"),
+                            new ThreadPoolExecutor.AbortPolicy());
+            this.onlineExecutor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (this.onlineExecutor != null) {
+            this.onlineExecutor.shutdownNow();
+        }
+    }
     
     public void registerArtworkScanner(IArtworkScanner artworkScanner) {
         final String scannerName = artworkScanner.getScannerName().toLowerCase();
@@ -201,7 +229,7 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksAttached(artwork, attachments, locatedArtworks);
     }
 
-    private void scanPosterOnline(Artwork artwork, List<ArtworkLocated> locatedArtworks) {
+    private void scanPosterOnline(final Artwork artwork, List<ArtworkLocated> locatedArtworks) {
         if (!configServiceWrapper.isOnlineArtworkScanEnabled(artwork, locatedArtworks)) {
             LOG.trace("Online poster scan disabled: {}", artwork);
             return;
@@ -215,42 +243,36 @@ public class ArtworkScannerService implements IQueueProcessService {
             // CASE: boxed set poster
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.poster.boxset.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.poster.boxset.priorities", registeredBoxedSetPosterScanner.keySet())) {
-                IBoxedSetPosterScanner scanner = registeredBoxedSetPosterScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                posters = scanner.getPosters(artwork.getBoxedSet());
-                if (!posters.isEmpty()) {
-                    break;
+            posters = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.poster.boxset.priorities", registeredBoxedSetPosterScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    return registeredBoxedSetPosterScanner.get(prio).getPosters(artwork.getBoxedSet());
                 }
-            }
+            });
         } else if (artwork.getVideoData() != null && artwork.getVideoData().isMovie()) {
             // CASE: movie poster
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.poster.movie.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.poster.movie.priorities", registeredMoviePosterScanner.keySet())) {
-                IMoviePosterScanner scanner = registeredMoviePosterScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                posters = scanner.getPosters(artwork.getVideoData());
-                if (!posters.isEmpty()) {
-                    break;
+            posters = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.poster.movie.priorities", registeredMoviePosterScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    return registeredMoviePosterScanner.get(prio).getPosters(artwork.getVideoData());
                 }
-            }
+            });
         } else if (artwork.getSeason() != null || artwork.getSeries() != null) {
             // CASE: TV show poster scan
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.poster.tvshow.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.poster.tvshow.priorities", registeredTvShowPosterScanner.keySet())) {
-                ITvShowPosterScanner scanner = registeredTvShowPosterScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                if (artwork.getSeries() != null) {
-                    posters = scanner.getPosters(artwork.getSeries());
-                } else {
-                    posters = scanner.getPosters(artwork.getSeason());
-                }
-                if (!posters.isEmpty()) {
-                    break;
+            posters = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.poster.tvshow.priorities", registeredTvShowPosterScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    if (artwork.getSeries() != null) {
+                        return registeredTvShowPosterScanner.get(prio).getPosters(artwork.getSeries());
+                    } else {
+                        return registeredTvShowPosterScanner.get(prio).getPosters(artwork.getSeason());
+                    }
                 }
-            }
+            });
         }
 
         if (posters.isEmpty()) {
@@ -302,7 +324,7 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksAttached(artwork, attachments, locatedArtworks);
     }
 
-    private void scanFanartOnline(Artwork artwork, List<ArtworkLocated> locatedArtworks) {
+    private void scanFanartOnline(final Artwork artwork, List<ArtworkLocated> locatedArtworks) {
         if (!configServiceWrapper.isOnlineArtworkScanEnabled(artwork, locatedArtworks)) {
             LOG.trace("Online fanart scan disabled: {}", artwork);
             return;
@@ -316,42 +338,36 @@ public class ArtworkScannerService implements IQueueProcessService {
             // CASE: boxed set fanart
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.fanart.boxset.maxResults", 5);
             
-            for (String prio : determinePriorities("yamj3.artwork.scanner.fanart.boxset.priorities", registeredBoxedSetFanartScanner.keySet())) {
-                IBoxedSetFanartScanner scanner = registeredBoxedSetFanartScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                fanarts = scanner.getFanarts(artwork.getBoxedSet());
-                if (!fanarts.isEmpty()) {
-                    break;
+            fanarts = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.fanart.boxset.priorities", registeredBoxedSetFanartScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    return registeredBoxedSetFanartScanner.get(prio).getFanarts(artwork.getBoxedSet());
                 }
-            }
+            });
         } else if (artwork.getVideoData() != null && artwork.getVideoData().isMovie()) {
             // CASE: movie fanart
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.fanart.movie.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.fanart.movie.priorities", registeredMovieFanartScanner.keySet())) {
-                IMovieFanartScanner scanner = registeredMovieFanartScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                fanarts = scanner.getFanarts(artwork.getVideoData());
-                if (!fanarts.isEmpty()) {
-                    break;
+            fanarts = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.fanart.movie.priorities", registeredMovieFanartScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    return registeredMovieFanartScanner.get(prio).getFanarts(artwork.getVideoData());
                 }
-            }
+            });
         } else if (artwork.getSeason() != null || artwork.getSeries() != null) {
             // CASE: TV show fanart
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.fanart.tvshow.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.fanart.tvshow.priorities", registeredTvShowFanartScanner.keySet())) {
-                ITvShowFanartScanner scanner = registeredTvShowFanartScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                if (artwork.getSeries() != null) {
-                    fanarts = scanner.getFanarts(artwork.getSeries());
-                } else {
-                    fanarts = scanner.getFanarts(artwork.getSeason());
-                }
-                if (!fanarts.isEmpty()) {
-                    break;
+            fanarts = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.fanart.tvshow.priorities", registeredTvShowFanartScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    if (artwork.getSeries() != null) {
+                        return registeredTvShowFanartScanner.get(prio).getFanarts(artwork.getSeries());
+                    } else {
+                        return registeredTvShowFanartScanner.get(prio).getFanarts(artwork.getSeason());
+                    }
                 }
-            }
+            });
         }
 
 
@@ -401,7 +417,7 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksAttached(artwork, attachments, locatedArtworks);
     }
 
-    private void scanBannerOnline(Artwork artwork, List<ArtworkLocated> locatedArtworks) {
+    private void scanBannerOnline(final Artwork artwork, List<ArtworkLocated> locatedArtworks) {
         if (!configServiceWrapper.isOnlineArtworkScanEnabled(artwork, locatedArtworks)) {
             LOG.trace("Online banner scan disabled: {}", artwork);
             return;
@@ -415,30 +431,26 @@ public class ArtworkScannerService implements IQueueProcessService {
             // CASE: boxed set banner
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.banner.boxset.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.banner.boxset.priorities", registeredBoxedSetBannerScanner.keySet())) {
-                IBoxedSetBannerScanner scanner = registeredBoxedSetBannerScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                banners = scanner.getBanners(artwork.getBoxedSet());
-                if (!banners.isEmpty()) {
-                    break;
+            banners = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.banner.boxset.priorities", registeredBoxedSetBannerScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    return registeredBoxedSetBannerScanner.get(prio).getBanners(artwork.getBoxedSet());
                 }
-            }
+            });
         } else if (artwork.getSeason() != null || artwork.getSeries() != null) {
             // CASE: TV show banner
             maxResults = this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.banner.tvshow.maxResults", 5);
 
-            for (String prio : determinePriorities("yamj3.artwork.scanner.banner.tvshow.priorities", registeredTvShowBannerScanner.keySet())) {
-                ITvShowBannerScanner scanner = registeredTvShowBannerScanner.get(prio);
-                LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-                if (artwork.getSeries() != null) {
-                    banners = scanner.getBanners(artwork.getSeries());
-                } else {
-                    banners = scanner.getBanners(artwork.getSeason());
-                }
-                if (!banners.isEmpty()) {
-                    break;
+            banners = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.banner.tvshow.priorities", registeredTvShowBannerScanner.keySet()), new IOnlineScan() {
+                @Override
+                public List<ArtworkDetailDTO> scan(String prio) {
+                    if (artwork.getSeries() != null) {
+                        return registeredTvShowBannerScanner.get(prio).getBanners(artwork.getSeries());
+                    } else {
+                        return registeredTvShowBannerScanner.get(prio).getBanners(artwork.getSeason());
+                    }
                 }
-            }
+            });
         }
 
         if (banners.isEmpty()) {
@@ -482,29 +494,25 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksAttached(artwork, attachments, locatedArtworks);
     }
     
-    private void scanVideoImageOnline(Artwork artwork, List<ArtworkLocated> locatedArtworks) {
+    private void scanVideoImageOnline(final Artwork artwork, List<ArtworkLocated> locatedArtworks) {
         if (!configServiceWrapper.isOnlineArtworkScanEnabled(artwork, locatedArtworks)) {
             LOG.trace("Online episode image scan disabled: {}", artwork);
             return;
         }
 
-        VideoData videoData = artwork.getVideoData();
+        final VideoData videoData = artwork.getVideoData();
         if (videoData == null || videoData.isMovie()) {
             LOG.warn("No associated episode found for artwork: {}", artwork);
             return;
         }
 
         LOG.debug("Scan online for TV show episode image: {}", artwork);
-        List<ArtworkDetailDTO> videoimages = Collections.emptyList();
-        
-        for (String prio : determinePriorities("yamj3.artwork.scanner.videoimage.priorities", registeredTvShowVideoImageScanner.keySet())) {
-            ITvShowVideoImageScanner scanner = registeredTvShowVideoImageScanner.get(prio);
-            LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), artwork);
-            videoimages = scanner.getVideoImages(videoData);
-            if (!videoimages.isEmpty()) {
-                break;
+        List<ArtworkDetailDTO> videoimages = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.videoimage.priorities", registeredTvShowVideoImageScanner.keySet()), new IOnlineScan() {
+            @Override
+            public List<ArtworkDetailDTO> scan(String prio) {
+                return registeredTvShowVideoImageScanner.get(prio).getVideoImages(videoData);
             }
-        }
+        });
 
         if (videoimages.isEmpty()) {
             LOG.info("No TV show episode image found for: {}", artwork);
@@ -537,29 +545,25 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksLocal(artwork, photos, locatedArtworks);
     }
 
-    private void scanPhotoOnline(Artwork artwork, List<ArtworkLocated> locatedArtworks) {
+    private void scanPhotoOnline(final Artwork artwork, List<ArtworkLocated> locatedArtworks) {
         if (!configServiceWrapper.isOnlineArtworkScanEnabled(artwork, locatedArtworks)) {
             LOG.trace("Online photo scan disabled: {}", artwork);
             return;
         }
 
-        Person person = artwork.getPerson();
+        final Person person = artwork.getPerson();
         if (person == null) {
             LOG.warn("No associated person found for artwork: {}", artwork);
             return;
         }
 
         LOG.debug("Scan online for photo: {}", artwork);
-        List<ArtworkDetailDTO> photos = Collections.emptyList();
-
-        for (String prio : determinePriorities("yamj3.artwork.scanner.photo.priorities", registeredPhotoScanner.keySet())) {
-            IPhotoScanner scanner = registeredPhotoScanner.get(prio);
-            LOG.debug(USE_SCANNER_FOR, scanner.getScannerName(), person);
-            photos = scanner.getPhotos(person);
-            if (!photos.isEmpty()) {
-                break;
+        List<ArtworkDetailDTO> photos = scanOnline(artwork, determinePriorities("yamj3.artwork.scanner.photo.priorities", registeredPhotoScanner.keySet()), new IOnlineScan() {
+            @Override
+            public List<ArtworkDetailDTO> scan(String prio) {
+                return registeredPhotoScanner.get(prio).getPhotos(person);
             }
-        }
+        });
 
         if (photos.isEmpty()) {
             LOG.info("No photos found for: {}", artwork);
@@ -575,6 +579,100 @@ public class ArtworkScannerService implements IQueueProcessService {
         createLocatedArtworksOnline(artwork, photos, locatedArtworks);
     }
 
+    /**
+     * Scan the online artwork scanners in the order of their priority.
+     * 
+     * The first scanners are queried concurrently; the result of the scanner with
+     * the highest priority which found artwork is used and the others are cancelled.
+     * Scanners which didn't answer before the deadline of the artwork type are skipped.
+     * If the executor is busy, the remaining scanners are queried one after another.
+     *
+     * @param artwork
+     * @param priorities
+     * @param onlineScan
+     * @return the found artwork details, may be empty
+     */
+    private List<ArtworkDetailDTO> scanOnline(Artwork artwork, Set<String> priorities, final IOnlineScan onlineScan) {
+        final int concurrent = (onlineExecutor == null) ? 1 : Math.min(priorities.size(), 
+                        this.configServiceWrapper.getIntProperty("yamj3.artwork.scanner.online.concurrent", 3));
+
+        if (concurrent < 2) {
+            for (String prio : priorities) {
+                LOG.debug(USE_SCANNER_FOR, prio, artwork);
+                List<ArtworkDetailDTO> dtos = onlineScan.scan(prio);
+                if (!dtos.isEmpty()) {
+                    return dtos;
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        final String timeoutKey = "yamj3.artwork.scanner." + artwork.getArtworkType().name().toLowerCase() + ".timeout";
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.configServiceWrapper.getIntProperty(timeoutKey, 30));
+        final List<String> prios = new ArrayList<>(priorities);
+        final List<Future<List<ArtworkDetailDTO>>> futures = new ArrayList<>(prios.size());
+        boolean rejected = false;
+
+        // each scan resolves the source ids it needs itself; setting them is synchronized
+        try {
+            for (int i = 0; i < prios.size(); i++) {
+                // keep the next scanners running while waiting for the current one
+                while (!rejected && futures.size() < Math.min(prios.size(), i + concurrent) && System.nanoTime() < deadline) {
+                    final String prio = prios.get(futures.size());
+                    try {
+                        futures.add(onlineExecutor.submit(new Callable<List<ArtworkDetailDTO>>() {
+                            @Override
+                            public List<ArtworkDetailDTO> call() {
+                                return onlineScan.scan(prio);
+                            }
+                        }));
+                        LOG.debug(USE_SCANNER_FOR, prio, artwork);
+                    } catch (RejectedExecutionException ex) { //NOSONAR
+                        LOG.debug("Online scan executor is busy, scanning one after another for: {}", artwork);
+                        rejected = true;
+                    }
+                }
+
+                List<ArtworkDetailDTO> dtos;
+                if (i < futures.size()) {
+                    dtos = awaitOnlineScan(futures.get(i), deadline, prios.get(i), artwork);
+                } else if (rejected) {
+                    LOG.debug(USE_SCANNER_FOR, prios.get(i), artwork);
+                    dtos = onlineScan.scan(prios.get(i));
+                } else {
+                    LOG.info("Online scan timed out for: {}", artwork);
+                    break;
+                }
+                if (!dtos.isEmpty()) {
+                    return dtos;
+                }
+            }
+            return Collections.emptyList();
+        } finally {
+            // cancel scans which are not needed anymore
+            for (Future<List<ArtworkDetailDTO>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static List<ArtworkDetailDTO> awaitOnlineScan(Future<List<ArtworkDetailDTO>> future, long deadline, String prio, Artwork artwork) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) { //NOSONAR
+            LOG.debug("Scanner {} timed out for {}", prio, artwork);
+        } catch (InterruptedException ex) { //NOSONAR
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // same behavior as for a sequential scan
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            }
+            throw new IllegalStateException("Online artwork scan failed", ex.getCause());
+        }
+        return Collections.emptyList();
+    }
+
     private static void createLocatedArtworksOnline(Artwork artwork, List<ArtworkDetailDTO> dtos, List<ArtworkLocated> locatedArtworks) {
         for (ArtworkDetailDTO dto : dtos) {
             ArtworkLocated located = new ArtworkLocated();
@@ -637,4 +735,9 @@ public class ArtworkScannerService implements IQueueProcessService {
         LOG.trace("{} --> {}", configkey, result);
         return result;
     }
+
+    private interface IOnlineScan {
+
+        List<ArtworkDetailDTO> scan(String prio);
+    }
 }
@@ -40,6 +40,8 @@ public final class ArtworkTools {
     private static final String TYPE_MOVIE_SCANNER = "movie_scanner";
     private static final String TYPE_SERIES_SCANNER = "series_scanner";
     private static final String TYPE_PERSON_SCANNER = "person_scanner";
+    private static final String CONTENT_ORIGINAL = ".original.";
+    private static final int CONTENT_HASH_LENGTH = 40;
 
     private ArtworkTools() {
         throw new UnsupportedOperationException("Utility class cannot be instantiated");
@@ -66,6 +68,18 @@ public final class ArtworkTools {
     }
 
     public static String buildCacheFilename(ArtworkLocated located, ArtworkProfile artworkProfile) {
+        if (artworkProfile != null) {
+            // images generated from content addressed originals are shared as well;
+            // profile names are only unique per meta data type and artwork type
+            final String contentHash = getContentHash(located);
+            if (contentHash != null) {
+                return contentHash + "." + artworkProfile.getMetaDataType().name().toLowerCase()
+                        + "." + artworkProfile.getArtworkType().name().toLowerCase()
+                        + "." + artworkProfile.getProfileName().toLowerCase()
+                        + "." + artworkProfile.getImageType().name().toLowerCase();
+            }
+        }
+
         StringBuilder sb = new StringBuilder();
         
         // 1. video name
@@ -122,6 +136,49 @@ public final class ArtworkTools {
         return sb.toString();
     }
 
+    /**
+     * Get the suffix for an original image stored under the hash of its content.
+     *
+     * @param located
+     * @return the suffix
+     */
+    public static String buildContentSuffix(ArtworkLocated located) {
+        return CONTENT_ORIGINAL + located.getImageType().name().toLowerCase();
+    }
+
+    /**
+     * Get the content hash of the cached original image.
+     *
+     * @param located
+     * @return the content hash or null, if the original is not stored content addressed
+     */
+    public static String getContentHash(ArtworkLocated located) {
+        final String cacheFilename = located.getCacheFilename();
+        if (cacheFilename == null || cacheFilename.length() <= CONTENT_HASH_LENGTH
+            || !cacheFilename.startsWith(CONTENT_ORIGINAL, CONTENT_HASH_LENGTH))
+        {
+            return null;
+        }
+
+        final String contentHash = cacheFilename.substring(0, CONTENT_HASH_LENGTH);
+        return StringUtils.containsOnly(contentHash, "0123456789abcdef") ? contentHash : null;
+    }
+
+    /**
+     * Get the content hash of a generated image file.
+     *
+     * @param filename the name of the generated image file
+     * @return the content hash or null, if the image has not been generated from a content addressed original
+     */
+    public static String getContentHash(String filename) {
+        if (filename == null || filename.length() <= CONTENT_HASH_LENGTH || filename.charAt(CONTENT_HASH_LENGTH) != '.') {
+            return null;
+        }
+
+        final String contentHash = filename.substring(0, CONTENT_HASH_LENGTH);
+        return StringUtils.containsOnly(contentHash, "0123456789abcdef") ? contentHash : null;
+    }
+
     public static MetaDataType getMetaDataType(ArtworkLocated located) {
         return getMetaDataType(located.getArtwork());
     }
@@ -28,6 +28,7 @@ public class ImageDTO {
 
     private String resource;
     private MediaType mediaType;
+    private boolean inProgress;
 
     public String getResource() {
         return resource;
@@ -44,4 +45,17 @@ public class ImageDTO {
     public void setMediaType(MediaType mediaType) {
         this.mediaType = mediaType;
     }
-}
\ No newline at end of file
+
+    /**
+     * The image is being generated and not available yet
+     *
+     * @return
+     */
+    public boolean isInProgress() {
+        return inProgress;
+    }
+
+    public void setInProgress(boolean inProgress) {
+        this.inProgress = inProgress;
+    }
+}
@@ -22,9 +22,11 @@
  */
 package org.yamj.core.service.attachment;
 
-import static org.yamj.core.tools.Constants.LANGUAGE_EN;
-
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import javax.annotation.PostConstruct;
 import org.apache.commons.io.FilenameUtils;
@@ -33,12 +35,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
-import org.yamj.common.tools.PropertyTools;
 import org.yamj.core.config.ConfigServiceWrapper;
 import org.yamj.core.database.model.Artwork;
 import org.yamj.core.database.model.StageFile;
 import org.yamj.core.database.model.type.ArtworkType;
 import org.yamj.core.database.model.type.ImageType;
+import org.yamj.core.service.attachment.MatroskaAttachmentReader.MatroskaAttachment;
 import org.yamj.core.service.file.FileTools;
 import org.yamj.core.service.staging.StagingService;
 
@@ -50,16 +52,6 @@ public class AttachmentScannerService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AttachmentScannerService.class);
     
-    // mkvToolnix command line, depend on OS
-    private static final File MT_PATH = new File(PropertyTools.getProperty("mkvtoolnix.home", "./mkvToolnix/"));
-    private static final List<String> MT_INFO_EXE = new ArrayList<>();
-    private static final List<String> MT_EXTRACT_EXE = new ArrayList<>();
-    private static final String MT_INFO_FILENAME_WINDOWS = "mkvinfo.exe";
-    private static final String MT_INFO_FILENAME_LINUX = "mkvinfo";
-    private static final String MT_EXTRACT_FILENAME_WINDOWS = "mkvextract.exe";
-    private static final String MT_EXTRACT_FILENAME_LINUX = "mkvextract";
-    // flag to indicate if scanner is activated
-    private boolean isActivated = Boolean.FALSE;
     // valid MIME types
     private Set<String> validMimeTypesText;
     private Map<String, ImageType> validMimeTypesImage;
@@ -75,66 +67,18 @@ public class AttachmentScannerService {
     public void init() {
         LOG.debug("Initialize attachment scanner service");
 
-        boolean isWindows = System.getProperty("os.name").contains("Windows");
-        LOG.debug("MKV Toolnix Path : {}", MT_PATH);
+        // add valid mime types (text)
+        validMimeTypesText = new HashSet<>(3);
+        validMimeTypesText.add("text/xml");
+        validMimeTypesText.add("application/xml");
+        validMimeTypesText.add("text/html");
 
-        File mkvInfoFile;
-        File mkvExtractFile;
-        if (isWindows) {
-            mkvInfoFile = new File(MT_PATH.getAbsolutePath() + File.separator + MT_INFO_FILENAME_WINDOWS);
-            mkvExtractFile = new File(MT_PATH.getAbsolutePath() + File.separator + MT_EXTRACT_FILENAME_WINDOWS);
-        } else {
-            mkvInfoFile = new File(MT_PATH.getAbsolutePath() + File.separator + MT_INFO_FILENAME_LINUX);
-            mkvExtractFile = new File(MT_PATH.getAbsolutePath() + File.separator + MT_EXTRACT_FILENAME_LINUX);
-        }
-        
-        if (!mkvInfoFile.canExecute()) {
-            LOG.info( "Couldn't find MKV toolnix executable tool 'mkvinfo'");
-            isActivated = Boolean.FALSE;
-        } else if (!mkvExtractFile.canExecute()) {
-            LOG.info( "Couldn't find MKV toolnix executable tool 'mkvextract'");
-            isActivated = Boolean.FALSE;
-        } else {
-            isActivated = Boolean.TRUE;
-            
-            // activate tools
-            if (isWindows) {
-                MT_INFO_EXE.clear();
-                MT_INFO_EXE.add("cmd.exe");
-                MT_INFO_EXE.add("/E:1900");
-                MT_INFO_EXE.add("/C");
-                MT_INFO_EXE.add(mkvInfoFile.getName());
-                MT_INFO_EXE.add("--ui-language");
-                MT_INFO_EXE.add(LANGUAGE_EN);
-                
-                MT_EXTRACT_EXE.clear();
-                MT_EXTRACT_EXE.add("cmd.exe");
-                MT_EXTRACT_EXE.add("/E:1900");
-                MT_EXTRACT_EXE.add("/C");
-                MT_EXTRACT_EXE.add(mkvExtractFile.getName());
-            } else {
-                MT_INFO_EXE.clear();
-                MT_INFO_EXE.add("./" + mkvInfoFile.getName());
-                MT_INFO_EXE.add("--ui-language");
-                MT_INFO_EXE.add("en_US");
-    
-                MT_EXTRACT_EXE.clear();
-                MT_EXTRACT_EXE.add("./" + mkvExtractFile.getName());
-            }
-            
-            // add valid mime types (text)
-            validMimeTypesText = new HashSet<>(3);
-            validMimeTypesText.add("text/xml");
-            validMimeTypesText.add("application/xml");
-            validMimeTypesText.add("text/html");
-
-            // add valid mime types (image)
-            validMimeTypesImage = new HashMap<>(4);
-            validMimeTypesImage.put("image/jpeg", ImageType.JPG);
-            validMimeTypesImage.put("image/png", ImageType.PNG);
-            validMimeTypesImage.put("image/gif", ImageType.GIF);
-            validMimeTypesImage.put("image/x-ms-bmp", ImageType.BMP);
-        }
+        // add valid mime types (image)
+        validMimeTypesImage = new HashMap<>(4);
+        validMimeTypesImage.put("image/jpeg", ImageType.JPG);
+        validMimeTypesImage.put("image/png", ImageType.PNG);
+        validMimeTypesImage.put("image/gif", ImageType.GIF);
+        validMimeTypesImage.put("image/x-ms-bmp", ImageType.BMP);
     }
 
     /**
@@ -157,10 +101,6 @@ public class AttachmentScannerService {
      * @param movie
      */
     public List<Attachment> scan(Artwork artwork) {
-        if (!isActivated) {
-            return Collections.emptyList();
-        }
-
         if (artwork.getPerson() != null || artwork.getBoxedSet() != null) {
             // no attachments for persons or boxed sets
             return Collections.emptyList();
@@ -197,7 +137,7 @@ public class AttachmentScannerService {
      */
     private List<Attachment> scanAttachments(StageFile stageFile) {
         if (!isFileScanable(stageFile)) {
-            Collections.emptyList();
+            return Collections.emptyList();
         }
         
         final String cacheKey = Long.toString(stageFile.getId());
@@ -211,43 +151,17 @@ public class AttachmentScannerService {
         attachments = new ArrayList<>();
 
         LOG.debug("Scanning file for attachments {}",  stageFile.getFileName());
-        int attachmentId = 0;
-        try {
-            // create the command line
-            List<String> commandMkvInfo = new ArrayList<>(MT_INFO_EXE);
-            commandMkvInfo.add(stageFile.getFullPath());
-
-            ProcessBuilder pb = new ProcessBuilder(commandMkvInfo);
-            pb.directory(MT_PATH);
-
-            Process p = pb.start();
-            BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()));
-
-            String line = FileTools.readLine(input);
-            while (line != null) {
-                if (line.contains("+ Attached")) {
-                    // increase the attachment id
-                    attachmentId++;
-                    // next line contains file name
-                    String fileNameLine = FileTools.readLine(input);
-                    // next line contains MIME type
-                    String mimeTypeLine = FileTools.readLine(input);
-
-                    Attachment attachment = createAttachment(attachmentId, fileNameLine, mimeTypeLine);
-                    if (attachment != null) {
-                        attachment.setStageFile(stageFile);
-                        attachments.add(attachment);
-                    }
+        try (FileChannel channel = FileChannel.open(Paths.get(stageFile.getFullPath()), StandardOpenOption.READ)) {
+            for (MatroskaAttachment matroskaAttachment : MatroskaAttachmentReader.readAttachments(channel)) {
+                Attachment attachment = createAttachment(matroskaAttachment);
+                if (attachment != null) {
+                    attachment.setStageFile(stageFile);
+                    attachments.add(attachment);
                 }
-
-                line = FileTools.readLine(input);
-            }
-
-            if (p.waitFor() != 0) {
-                LOG.error("Error during attachment retrieval - ErrorCode={}",  p.exitValue());
             }
-        } catch (IOException | InterruptedException ex) {
-            LOG.error("Attachment scanner error", ex);
+        } catch (IOException ex) {
+            LOG.error("Attachment scanner error for file {}: {}", stageFile.getFullPath(), ex.getMessage());
+            LOG.trace("Attachment scanner error", ex);
         }
         
         // put into cache
@@ -258,20 +172,13 @@ public class AttachmentScannerService {
     /**
      * Creates an attachment.
      *
-     * @param id
-     * @param filename
-     * @param mimetype
+     * @param matroskaAttachment
      * @return Attachment or null
      */
-    private Attachment createAttachment(int id, String filename, String mimetype) {
-        String fixedFileName = null;
-        if (filename.contains("File name:")) {
-            fixedFileName = filename.substring(filename.indexOf("File name:") + 10).trim();
-        }
-        String fixedMimeType = null;
-        if (mimetype.contains("Mime type:")) {
-            fixedMimeType = mimetype.substring(mimetype.indexOf("Mime type:") + 10).trim();
-        }
+    private Attachment createAttachment(MatroskaAttachment matroskaAttachment) {
+        final String fixedFileName = matroskaAttachment.getFileName();
+        final String fixedMimeType = matroskaAttachment.getMimeType();
+        final int id = matroskaAttachment.getAttachmentId();
 
         AttachmentContent content = determineContent(fixedFileName, fixedMimeType);
 
@@ -376,23 +283,20 @@ public class AttachmentScannerService {
 
         LOG.trace("Extract attachement {} from stage file {}",  attachmentId, stageFile.getFullPath());
         
-        boolean stored = true;
-        try {
-            // Create the command line
-            List<String> commandMedia = new ArrayList<>(MT_EXTRACT_EXE);
-            commandMedia.add("attachments");
-            commandMedia.add(stageFile.getFullPath());
-            commandMedia.add(attachmentId + ":" + dst.getAbsolutePath());
-
-            ProcessBuilder pb = new ProcessBuilder(commandMedia);
-            pb.directory(MT_PATH);
-            Process p = pb.start();
-
-            if (p.waitFor() != 0) {
-                LOG.error("Error during extraction - ErrorCode={}",  p.exitValue());
-                stored = false;
+        boolean stored = false;
+        try (FileChannel channel = FileChannel.open(Paths.get(stageFile.getFullPath()), StandardOpenOption.READ)) {
+            for (MatroskaAttachment matroskaAttachment : MatroskaAttachmentReader.readAttachments(channel)) {
+                if (matroskaAttachment.getAttachmentId() == attachmentId) {
+                    MatroskaAttachmentReader.transferAttachment(channel, matroskaAttachment, dst);
+                    stored = true;
+                    break;
+                }
+            }
+            
+            if (!stored) {
+                LOG.error("Attachment {} not found in file {}", attachmentId, stageFile.getFullPath());
             }
-        } catch (IOException | InterruptedException ex) {
+        } catch (IOException ex) {
             LOG.error("Attachment extraction error", ex);
             stored = false;
         }
@@ -0,0 +1,417 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.service.attachment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal EBML reader for the attachments of a MATROSKA file.
+ *
+ * Only the element headers on the way to the attachments are read; the SeekHead is used
+ * to jump directly to the Attachments element so that the clusters are never touched.
+ * Without a SeekHead entry the top level elements are walked by their headers.
+ */
+final class MatroskaAttachmentReader {
+
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_SEEKHEAD = 0x114D9B74;
+    private static final int ID_SEEK = 0x4DBB;
+    private static final int ID_SEEK_ID = 0x53AB;
+    private static final int ID_SEEK_POSITION = 0x53AC;
+    private static final int ID_ATTACHMENTS = 0x1941A469;
+    private static final int ID_ATTACHED_FILE = 0x61A7;
+    private static final int ID_FILE_NAME = 0x466E;
+    private static final int ID_FILE_MIME_TYPE = 0x4660;
+    private static final int ID_FILE_DATA = 0x465C;
+
+    private static final long UNKNOWN_SIZE = -1L;
+    // maximum size of an element header: 4 bytes ID and 8 bytes size
+    private static final int MAX_HEADER_SIZE = 12;
+    // upper limits for elements which are read completely
+    private static final int MAX_SEEKHEAD_SIZE = 64 * 1024;
+    private static final int MAX_STRING_SIZE = 4 * 1024;
+    // number of chained SeekHead elements to follow
+    private static final int MAX_SEEKHEAD_DEPTH = 2;
+
+    private MatroskaAttachmentReader() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Read the attachments of a MATROSKA file.
+     *
+     * @param channel the channel of the MATROSKA file
+     * @return list of attachments; the attachment ID is the 1-based position within the file
+     * @throws IOException if the file could not be read or is no MATROSKA file
+     */
+    static List<MatroskaAttachment> readAttachments(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+
+        Element header = readElement(channel, 0, fileSize);
+        if (header == null || header.id != ID_EBML || header.size == UNKNOWN_SIZE) {
+            throw new IOException("No EBML header found");
+        }
+        Element segment = readElement(channel, header.getEnd(), fileSize);
+        if (segment == null || segment.id != ID_SEGMENT) {
+            throw new IOException("No MATROSKA segment found");
+        }
+        final long segmentEnd = segment.getEnd(fileSize);
+
+        long attachmentsPosition = findAttachments(channel, segment.dataOffset, segmentEnd);
+        if (attachmentsPosition < 0) {
+            return Collections.emptyList();
+        }
+        Element attachments = readElement(channel, attachmentsPosition, segmentEnd);
+        if (attachments == null || attachments.id != ID_ATTACHMENTS) {
+            throw new IOException("Invalid attachments position " + attachmentsPosition);
+        }
+
+        final long end = attachments.getEnd(segmentEnd);
+        List<MatroskaAttachment> result = new ArrayList<>();
+        int attachmentId = 0;
+        long position = attachments.dataOffset;
+        while (position < end) {
+            Element element = readElement(channel, position, end);
+            if (element == null || element.size == UNKNOWN_SIZE) {
+                break;
+            }
+            if (element.id == ID_ATTACHED_FILE) {
+                attachmentId++;
+                MatroskaAttachment attachment = readAttachedFile(channel, element, attachmentId);
+                if (attachment != null) {
+                    result.add(attachment);
+                }
+            }
+            position = element.getEnd();
+        }
+        return result;
+    }
+
+    /**
+     * Copy the content of an attachment into the destination file without buffering it on the heap.
+     *
+     * @param channel the channel of the MATROSKA file
+     * @param attachment the attachment
+     * @param dst the destination file
+     * @throws IOException if the copy failed
+     */
+    static void transferAttachment(FileChannel channel, MatroskaAttachment attachment, File dst) throws IOException {
+        if (attachment.getDataOffset() + attachment.getDataSize() > channel.size()) {
+            throw new IOException("Attachment " + attachment.getAttachmentId() + " exceeds file size");
+        }
+
+        try (FileOutputStream fos = new FileOutputStream(dst);
+             FileChannel out = fos.getChannel())
+        {
+            long position = attachment.getDataOffset();
+            long remaining = attachment.getDataSize();
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    throw new IOException("Failed to transfer attachment " + attachment.getAttachmentId());
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Find the position of the attachments element.
+     *
+     * If the segment has a SeekHead which lists the attachments then its position is used,
+     * else the top level elements are walked until an element with unknown size is found.
+     */
+    private static long findAttachments(FileChannel channel, long segmentStart, long segmentEnd) throws IOException {
+        boolean seekHeadRead = false;
+        long position = segmentStart;
+        while (position < segmentEnd) {
+            Element element = readElement(channel, position, segmentEnd);
+            if (element == null) {
+                break;
+            }
+            if (element.id == ID_ATTACHMENTS) {
+                return position;
+            }
+            if (element.id == ID_SEEKHEAD && !seekHeadRead) {
+                seekHeadRead = true;
+                long attachmentsPosition = readSeekHead(channel, element, segmentStart, segmentEnd, 0);
+                if (attachmentsPosition >= 0) {
+                    return attachmentsPosition;
+                }
+                // attachments are not listed, so go on with the next top level element
+            }
+            if (element.size == UNKNOWN_SIZE) {
+                break;
+            }
+            position = element.getEnd();
+        }
+        return -1;
+    }
+
+    private static long readSeekHead(FileChannel channel, Element seekHead, long segmentStart, long segmentEnd, int depth) throws IOException {
+        if (seekHead.size == UNKNOWN_SIZE || seekHead.size > MAX_SEEKHEAD_SIZE) {
+            return -1;
+        }
+
+        ByteBuffer buffer = read(channel, seekHead.dataOffset, (int) seekHead.size);
+        long chainedSeekHead = -1;
+        while (buffer.hasRemaining()) {
+            Element seek = parseElement(buffer, 0);
+            if (seek == null || seek.size == UNKNOWN_SIZE || seek.size > buffer.remaining()) {
+                break;
+            }
+
+            ByteBuffer seekBuffer = slice(buffer, (int) seek.size);
+            if (seek.id == ID_SEEK) {
+                int seekId = 0;
+                long seekPosition = -1;
+                while (seekBuffer.hasRemaining()) {
+                    Element child = parseElement(seekBuffer, 0);
+                    if (child == null || child.size == UNKNOWN_SIZE || child.size > seekBuffer.remaining()) {
+                        break;
+                    }
+                    ByteBuffer childBuffer = slice(seekBuffer, (int) child.size);
+                    if (child.id == ID_SEEK_ID) {
+                        seekId = (int) readUnsigned(childBuffer);
+                    } else if (child.id == ID_SEEK_POSITION) {
+                        seekPosition = readUnsigned(childBuffer);
+                    }
+                }
+
+                if (seekPosition >= 0) {
+                    if (seekId == ID_ATTACHMENTS) {
+                        return segmentStart + seekPosition;
+                    }
+                    if (seekId == ID_SEEKHEAD && segmentStart + seekPosition != seekHead.offset) {
+                        chainedSeekHead = segmentStart + seekPosition;
+                    }
+                }
+            }
+        }
+
+        if (chainedSeekHead >= 0 && depth < MAX_SEEKHEAD_DEPTH) {
+            Element chained = readElement(channel, chainedSeekHead, segmentEnd);
+            if (chained != null && chained.id == ID_SEEKHEAD) {
+                return readSeekHead(channel, chained, segmentStart, segmentEnd, depth + 1);
+            }
+        }
+        return -1;
+    }
+
+    private static MatroskaAttachment readAttachedFile(FileChannel channel, Element attachedFile, int attachmentId) throws IOException {
+        final long end = attachedFile.getEnd();
+
+        String fileName = null;
+        String mimeType = null;
+        long dataOffset = -1;
+        long dataSize = 0;
+        long position = attachedFile.dataOffset;
+        while (position < end) {
+            Element element = readElement(channel, position, end);
+            if (element == null || element.size == UNKNOWN_SIZE) {
+                break;
+            }
+            if (element.id == ID_FILE_NAME) {
+                fileName = readString(channel, element, StandardCharsets.UTF_8);
+            } else if (element.id == ID_FILE_MIME_TYPE) {
+                mimeType = readString(channel, element, StandardCharsets.US_ASCII);
+            } else if (element.id == ID_FILE_DATA) {
+                dataOffset = element.dataOffset;
+                dataSize = element.size;
+            }
+            position = element.getEnd();
+        }
+
+        if (dataOffset < 0) {
+            return null;
+        }
+        return new MatroskaAttachment(attachmentId, fileName, mimeType, dataOffset, dataSize);
+    }
+
+    private static String readString(FileChannel channel, Element element, Charset charset) throws IOException {
+        if (element.size > MAX_STRING_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = read(channel, element.dataOffset, (int) element.size);
+        int length = buffer.limit();
+        // strings may be padded with zero bytes
+        while (length > 0 && buffer.get(length - 1) == 0) {
+            length--;
+        }
+        return new String(buffer.array(), 0, length, charset);
+    }
+
+    private static Element readElement(FileChannel channel, long position, long limit) throws IOException {
+        int length = (int) Math.min(MAX_HEADER_SIZE, limit - position);
+        if (length < 2) {
+            return null;
+        }
+        Element element = parseElement(read(channel, position, length), position);
+        if (element == null || element.dataOffset > limit) {
+            return null;
+        }
+        return element;
+    }
+
+    private static Element parseElement(ByteBuffer buffer, long offset) {
+        final int start = buffer.position();
+
+        // element ID keeps its length marker
+        int idLength = vintLength(buffer, 4);
+        if (idLength < 0) {
+            return null;
+        }
+        int id = 0;
+        for (int i = 0; i < idLength; i++) {
+            id = (id << 8) | (buffer.get() & 0xFF);
+        }
+
+        // element size without its length marker
+        int sizeLength = vintLength(buffer, 8);
+        if (sizeLength < 0) {
+            return null;
+        }
+        long size = buffer.get() & (0xFF >> sizeLength);
+        boolean unknown = size == (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int b = buffer.get() & 0xFF;
+            unknown &= b == 0xFF;
+            size = (size << 8) | b;
+        }
+
+        long dataOffset = offset + buffer.position() - start;
+        return new Element(id, offset, dataOffset, unknown ? UNKNOWN_SIZE : size);
+    }
+
+    private static int vintLength(ByteBuffer buffer, int maxLength) {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int first = buffer.get(buffer.position()) & 0xFF;
+        int length = Integer.numberOfLeadingZeros(first) - 23;
+        if (first == 0 || length > maxLength || length > buffer.remaining()) {
+            return -1;
+        }
+        return length;
+    }
+
+    private static long readUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        while (buffer.hasRemaining()) {
+            value = (value << 8) | (buffer.get() & 0xFF);
+        }
+        return value;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static final class Element {
+
+        private final int id;
+        private final long offset;
+        private final long dataOffset;
+        private final long size;
+
+        Element(int id, long offset, long dataOffset, long size) {
+            this.id = id;
+            this.offset = offset;
+            this.dataOffset = dataOffset;
+            this.size = size;
+        }
+
+        long getEnd() {
+            return dataOffset + size;
+        }
+
+        long getEnd(long parentEnd) {
+            return size == UNKNOWN_SIZE ? parentEnd : Math.min(getEnd(), parentEnd);
+        }
+    }
+
+    /**
+     * Attachment as stored in a MATROSKA file.
+     */
+    static final class MatroskaAttachment {
+
+        private final int attachmentId;
+        private final String fileName;
+        private final String mimeType;
+        private final long dataOffset;
+        private final long dataSize;
+
+        MatroskaAttachment(int attachmentId, String fileName, String mimeType, long dataOffset, long dataSize) {
+            this.attachmentId = attachmentId;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.dataOffset = dataOffset;
+            this.dataSize = dataSize;
+        }
+
+        int getAttachmentId() {
+            return attachmentId;
+        }
+
+        String getFileName() {
+            return fileName;
+        }
+
+        String getMimeType() {
+            return mimeType;
+        }
+
+        long getDataOffset() {
+            return dataOffset;
+        }
+
+        long getDataSize() {
+            return dataSize;
+        }
+    }
+}
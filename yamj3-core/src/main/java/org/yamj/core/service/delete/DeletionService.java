@@ -25,6 +25,7 @@ package org.yamj.core.service.delete;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,15 +68,20 @@ public class DeletionService {
     
     private void doExecuteAllDeletions() {
         Set<String> filesToDelete = new HashSet<>();
+        // artwork files may be shared, so they are deleted right after the check for references
+        final Lock sharedFileLock = this.fileStorageService.getSharedFileDeletionLock();
 
         try {
             List<Long> ids = this.commonStorageService.getStageFilesToDelete();
             // delete stage files
             for (Long id : ids) {
+                sharedFileLock.lock();
                 try {
-                    filesToDelete.addAll(this.commonStorageService.deleteStageFile(id));
+                    this.fileStorageService.deleteStorageFiles(this.commonStorageService.deleteStageFile(id));
                 } catch (Exception ex) {
                     LOG.error("Failed to delete stage file ID: "+id, ex);
+                } finally {
+                    sharedFileLock.unlock();
                 }
             }
         } catch (Exception ex) {
@@ -88,12 +94,15 @@ public class DeletionService {
                 
             // delete stage files
             for (Long id : ids) {
+                sharedFileLock.lock();
                 try {
                     DeletionDTO dto = this.commonStorageService.deleteArtworkLocated(id);
-                    filesToDelete.addAll(dto.getFilesToDelete());
+                    this.fileStorageService.deleteStorageFiles(dto.getFilesToDelete());
                     updateTrigger = updateTrigger || dto.isUpdateTrigger();
                 } catch (Exception ex) {
                     LOG.error("Failed to delete located artwork ID: "+id, ex);
+                } finally {
+                    sharedFileLock.unlock();
                 }
             }
             
@@ -128,10 +137,13 @@ public class DeletionService {
             try {
                 List<Long> ids = this.commonStorageService.getOrphanPersons();
                 for (Long id : ids) {
+                    sharedFileLock.lock();
                     try {
-                        filesToDelete.addAll(this.commonStorageService.deletePerson(id));
+                        this.fileStorageService.deleteStorageFiles(this.commonStorageService.deletePerson(id));
                     } catch (Exception ex) {
                         LOG.error("Failed to delete person ID: "+id, ex);
+                    } finally {
+                        sharedFileLock.unlock();
                     }
                 }
             } catch (Exception ex) {
@@ -180,10 +192,13 @@ public class DeletionService {
             try {
                 List<Long> ids = this.commonStorageService.getOrphanBoxedSets();
                 for (Long id : ids) {
+                    sharedFileLock.lock();
                     try {
-                        filesToDelete.addAll(this.commonStorageService.deleteBoxedSet(id));
+                        this.fileStorageService.deleteStorageFiles(this.commonStorageService.deleteBoxedSet(id));
                     } catch (Exception ex) {
                         LOG.error("Failed to delete boxed set ID: "+id, ex);
+                    } finally {
+                        sharedFileLock.unlock();
                     }
                 }
             } catch (Exception ex) {
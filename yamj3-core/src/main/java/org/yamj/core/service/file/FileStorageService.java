@@ -26,9 +26,16 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.PostConstruct;
 import javax.imageio.*;
 import javax.imageio.stream.FileImageOutputStream;
@@ -42,6 +49,7 @@ import org.apache.http.HttpEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.yamj.api.common.http.PoolingHttpClient;
 import org.yamj.common.tools.PropertyTools;
@@ -62,6 +70,9 @@ public class FileStorageService {
     private String storagePathPhoto;
     private String storagePathSkin;
     private String storagePathTrailer;
+    private boolean artworkContentAddressed;
+    // guards shared files from the check for references until their deletion
+    private final ReadWriteLock sharedFileLock = new ReentrantReadWriteLock();
     
     @Autowired
     private PoolingHttpClient httpClient;
@@ -119,8 +130,102 @@ public class FileStorageService {
         }
         this.storagePathTrailer = FilenameUtils.normalizeNoEndSeparator(FilenameUtils.concat(this.storageResourceDir, value), true).concat("/");
         LOG.info("Trailer storage path set to '{}'", this.storagePathTrailer);
+
+        this.artworkContentAddressed = PropertyTools.getBooleanProperty("yamj3.file.storage.artwork.contentAddressed", Boolean.FALSE);
+        LOG.info("Content addressed artwork storage {}", this.artworkContentAddressed ? "enabled" : "disabled");
 }
 
+    /**
+     * Determine if artwork is stored under the hash of its content, so that
+     * identical images are stored only once.
+     *
+     * @return true, if artwork storage is content addressed
+     */
+    public boolean isArtworkContentAddressed() {
+        return artworkContentAddressed;
+    }
+
+    /**
+     * Get the lock which must be held from checking that a shared file is not
+     * referenced anymore until the file has been deleted.
+     *
+     * @return the lock
+     */
+    public Lock getSharedFileDeletionLock() {
+        return sharedFileLock.writeLock();
+    }
+
+    /**
+     * Check if a shared file exists.
+     *
+     * Must be called after the reference to the file has been stored; a file
+     * which exists then will not be deleted anymore.
+     *
+     * @param type
+     * @param filename
+     * @return true if the file exists
+     */
+    public boolean isSharedFileStored(StorageType type, String filename) {
+        sharedFileLock.readLock().lock();
+        try {
+            return getFile(type, filename).isFile();
+        } finally {
+            sharedFileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Move a stored file to a file named by the SHA-1 hash of its content.
+     *
+     * If a file with the same content is already stored, the given file will be
+     * deleted and the existing file is used.
+     *
+     * @param type the storage type
+     * @param filename the name of the stored file
+     * @param suffix the suffix to append to the content hash
+     * @return the content addressed filename
+     * @throws IOException
+     */
+    public String storeByContent(StorageType type, String filename, String suffix) throws IOException {
+        final File source = getFile(type, filename);
+        final String contentFilename = hashContent(source) + suffix;
+
+        final File target = getFile(type, contentFilename);
+        if (target.isFile() && target.length() == source.length()) {
+            LOG.debug("File {} has same content as {}", filename, contentFilename);
+            if (!source.delete()) {
+                LOG.trace("Failed to delete duplicate file {}", source);
+            }
+        } else if (!source.renameTo(target) && !FileTools.copyFile(source, target, true)) {
+            throw new IOException("Failed to move " + filename + " to " + contentFilename);
+        }
+        return contentFilename;
+    }
+
+    private static String hashContent(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+
+        byte[] buffer = new byte[8192];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
     public boolean store(StorageType type, String filename, URL url) throws IOException {
         LOG.debug("Store file {}; source url: {}", filename, url.toString());
         String storageFileName = getStorageName(type, filename);
@@ -374,6 +479,83 @@ public class FileStorageService {
         return false;
     }
     
+    /**
+     * Index all files of a storage.
+     *
+     * The sub directories of the storage are walked in parallel, reading the
+     * file attributes along with the directory listing.
+     *
+     * An incomplete index is never returned, cause callers treat files which
+     * are not indexed as missing.
+     *
+     * @param type the storage type
+     * @param threads the number of threads to use
+     * @return the paths of the stored files relative to the storage directory
+     * @throws IOException if the storage could not be indexed completely
+     */
+    public Set<String> indexStorageFiles(StorageType type, int threads) throws IOException {
+        final Path root = Paths.get(getStorageDir(type, StringUtils.EMPTY));
+        final Set<String> files = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+        if (!Files.isDirectory(root)) {
+            return files;
+        }
+        
+        final AtomicInteger failures = new AtomicInteger();
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(root.relativize(file).toString());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException ex) {
+                LOG.warn("Failed to index storage file {}: {}", file, ex.getMessage());
+                failures.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root)) {
+            for (final Path path : stream) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            Files.walkFileTree(path, visitor);
+                            return null;
+                        }
+                    });
+                } else {
+                    visitor.visitFile(path, Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS));
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), new CustomizableThreadFactory("StorageIndex-"));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Indexing of storage " + type + " interrupted");
+        } catch (ExecutionException ex) {
+            throw new IOException("Indexing of storage " + type + " failed", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        if (failures.get() > 0) {
+            throw new IOException("Indexing of storage " + type + " incomplete, " + failures.get() + " entries could not be read");
+        }
+        LOG.debug("Indexed {} files in {} storage", files.size(), type);
+        return files;
+    }
+
     public void deleteStorageFiles(Set<String> filesToDelete) {
         if (filesToDelete.isEmpty()) {
             LOG.trace("No files to delete in storage");
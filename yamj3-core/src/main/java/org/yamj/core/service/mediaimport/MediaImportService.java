@@ -103,6 +103,48 @@ public class MediaImportService {
         return this.stagingDao.getNextStageFileId(fileType, statusTypes);
     }
 
+    @Transactional(readOnly = true)
+    public Map<Long, List<Long>> getNextStageFileIds(final FileType fileType, final long lastId, final int maxResults, final StatusType... statusTypes) {
+        return this.stagingDao.getNextStageFileIds(fileType, lastId, maxResults, statusTypes);
+    }
+
+    /**
+     * Process stage files of the same type in one transaction.
+     * 
+     * @param fileType the file type
+     * @param ids the IDs of the stage files
+     */
+    @Transactional
+    public void processStageFiles(FileType fileType, Collection<Long> ids) {
+        for (Long id : ids) {
+            processStageFile(fileType, id.longValue());
+        }
+    }
+
+    @Transactional
+    public void processStageFile(FileType fileType, long id) {
+        switch (fileType) {
+        case VIDEO:
+            processVideo(id);
+            break;
+        case NFO:
+            processNfo(id);
+            break;
+        case IMAGE:
+            processImage(id);
+            break;
+        case WATCHED:
+            processWatched(id);
+            break;
+        case SUBTITLE:
+            processSubtitle(id);
+            break;
+        default:
+            LOG.warn("No import for stage file {} of type {}", id, fileType);
+            break;
+        }
+    }
+
     @Transactional
     public void processVideo(long id) {
         StageFile stageFile = stagingDao.getStageFile(id);
@@ -0,0 +1,282 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.service.mediainfo;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs the MediaInfo command line tool for many files at once.
+ * 
+ * Requests of concurrent callers are collected while all processes are busy;
+ * the next free process probes all of them in one invocation. The output is
+ * split per file while it is read, so each caller gets its result as soon as
+ * its file has been probed. Results are cached by path, size and modification
+ * date of the file.
+ */
+public class MediaInfoProbe {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MediaInfoProbe.class);
+    private static final Set<String> GENERAL_SECTIONS = new HashSet<>(Arrays.asList("General", "Géneral", "* Général"));
+    private static final String COMPLETE_NAME = "Complete name";
+    // stderr is not parsed, but must be consumed so a noisy process does not block
+    private static final File NULL_FILE = new File(File.separatorChar == '\\' ? "NUL" : "/dev/null");
+    
+    private final List<String> command;
+    private final File workingDirectory;
+    private final int maxBatchSize;
+    private final long fileTimeout;
+    private final Semaphore processes;
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> cache;
+    private final ScheduledExecutorService watchdog;
+    
+    public MediaInfoProbe(List<String> command, File workingDirectory, int maxProcesses, int maxBatchSize, long fileTimeout, final int cacheSize) {
+        this.command = command;
+        this.workingDirectory = workingDirectory;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.fileTimeout = fileTimeout;
+        this.processes = new Semaphore(Math.max(1, maxProcesses));
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 6313524727812867467L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("MediaInfoWatchdog-"));
+        executor.setRemoveOnCancelPolicy(true);
+        this.watchdog = executor;
+    }
+
+    /**
+     * Get the MediaInfo output of a file.
+     * 
+     * @param file the file to probe
+     * @return the MediaInfo output
+     * @throws IOException if the file could not be probed
+     */
+    public String probe(File file) throws IOException {
+        final String cacheKey = file.getPath() + "|" + file.length() + "|" + file.lastModified();
+        String output = this.cache.get(cacheKey);
+        if (output != null) {
+            LOG.trace("Use cached MediaInfo output for {}", file);
+            return output;
+        }
+        
+        Request request = new Request(file);
+        this.pending.add(request);
+        try {
+            while (!request.isDone()) {
+                // probe pending files if a process is free, else wait for being probed by another caller
+                if (!this.pending.isEmpty() && this.processes.tryAcquire()) {
+                    try {
+                        this.runBatch();
+                    } finally {
+                        this.processes.release();
+                    }
+                } else {
+                    request.await(20);
+                }
+            }
+        } catch (InterruptedException ex) { //NOSONAR
+            this.pending.remove(request);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("MediaInfo probe interrupted");
+        }
+        
+        output = request.getOutput();
+        this.cache.put(cacheKey, output);
+        return output;
+    }
+    
+    public void shutdown() {
+        this.watchdog.shutdownNow();
+    }
+    
+    private void runBatch() {
+        List<Request> batch = new ArrayList<>(this.maxBatchSize);
+        Request request;
+        while (batch.size() < this.maxBatchSize && (request = this.pending.poll()) != null) {
+            if (request.single && !batch.isEmpty()) {
+                // must be probed on its own
+                this.pending.add(request);
+                break;
+            }
+            batch.add(request);
+            if (request.single) {
+                break;
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<String> commandLine = new ArrayList<>(this.command);
+        Map<String, Request> requests = new HashMap<>();
+        for (Request req : batch) {
+            commandLine.add(req.file.getPath());
+            requests.put(req.file.getPath(), req);
+        }
+        LOG.debug("Probe {} files with MediaInfo", batch.size());
+
+        Process process = null;
+        final AtomicBoolean timedOut = new AtomicBoolean(false);
+        boolean unmatched = false;
+        ScheduledFuture<?> timeout = null;
+        try {
+            ProcessBuilder pb = new ProcessBuilder(commandLine);
+            pb.directory(this.workingDirectory);
+            pb.redirectError(ProcessBuilder.Redirect.to(NULL_FILE));
+            process = pb.start();
+            process.getOutputStream().close();
+            
+            timeout = this.scheduleTimeout(process, timedOut);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
+                StringBuilder section = new StringBuilder();
+                String completeName = null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (GENERAL_SECTIONS.contains(line.trim()) && section.length() > 0) {
+                        // output of next file starts
+                        unmatched |= !complete(batch, requests, completeName, section.toString());
+                        section.setLength(0);
+                        completeName = null;
+                        timeout.cancel(false);
+                        timeout = this.scheduleTimeout(process, timedOut);
+                    }
+                    
+                    int index = line.indexOf(" : ");
+                    if (completeName == null && index > 0 && COMPLETE_NAME.equals(line.substring(0, index).trim())) {
+                        completeName = line.substring(index + 3).trim();
+                    }
+                    section.append(line).append('\n');
+                }
+                if (section.length() > 0 && !timedOut.get()) {
+                    unmatched |= !complete(batch, requests, completeName, section.toString());
+                }
+            }
+        } catch (Exception ex) {
+            LOG.warn("MediaInfo execution failed: {}", ex.getMessage());
+            LOG.trace("MediaInfo error", ex);
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (process != null) {
+                process.destroy();
+            }
+        }
+
+        for (Request req : batch) {
+            if (req.isDone()) {
+                continue;
+            }
+            if (batch.size() == 1) {
+                req.fail(new IOException((timedOut.get() ? "MediaInfo timed out for " : "No MediaInfo output for ") + req.file));
+            } else if (timedOut.get() || unmatched) {
+                // unknown which file hangs or which output belongs to the file, so probe the remaining files on their own
+                req.single = true;
+                this.pending.add(req);
+            } else {
+                req.fail(new IOException("No MediaInfo output for " + req.file));
+            }
+        }
+    }
+
+    private ScheduledFuture<?> scheduleTimeout(final Process process, final AtomicBoolean timedOut) {
+        return this.watchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                LOG.warn("MediaInfo did not finish a file within {} seconds", TimeUnit.MILLISECONDS.toSeconds(fileTimeout));
+                timedOut.set(true);
+                process.destroy();
+            }
+        }, this.fileTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Complete the request the output belongs to.
+     *
+     * @return false if the output could not be assigned to a request
+     */
+    private static boolean complete(List<Request> batch, Map<String, Request> requests, String completeName, String output) {
+        Request request = completeName == null ? null : requests.get(completeName);
+        if (request == null && batch.size() == 1) {
+            // the only file of the batch, even if MediaInfo reports another name
+            request = batch.get(0);
+        }
+        if (request == null || request.isDone()) {
+            LOG.debug("MediaInfo output for '{}' does not belong to a probed file", completeName);
+            return false;
+        }
+        request.complete(output);
+        return true;
+    }
+
+    private static final class Request {
+        
+        private final File file;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String output;
+        private volatile IOException error;
+        private volatile boolean single = false;
+        
+        Request(File file) {
+            this.file = file;
+        }
+        
+        void await(long millis) throws InterruptedException {
+            done.await(millis, TimeUnit.MILLISECONDS);
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+        
+        void complete(String output) {
+            this.output = output;
+            this.done.countDown();
+        }
+
+        void fail(IOException error) {
+            this.error = error;
+            this.done.countDown();
+        }
+        
+        String getOutput() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            return output;
+        }
+    }
+}
@@ -26,9 +26,11 @@ import static org.yamj.core.tools.Constants.DEFAULT_SPLITTER;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
@@ -66,6 +68,7 @@ public class MediaInfoService implements IQueueProcessService {
     private boolean isMediaInfoRar = Boolean.FALSE;
     private boolean isActivated = Boolean.TRUE;
     private static final List<String> RAR_DISK_IMAGES = new ArrayList<>();
+    private MediaInfoProbe mediaInfoProbe;
 
     @Autowired
     private MediaStorageService mediaStorageService;
@@ -126,6 +129,13 @@ public class MediaInfoService implements IQueueProcessService {
                 LOG.info("MediaInfo tool will be used to extract video data. But not RAR and ISO formats");
             }
             isActivated = Boolean.TRUE;
+
+            // files are probed in batches by a limited number of processes
+            mediaInfoProbe = new MediaInfoProbe(execMediaInfo, MEDIAINFO_PATH,
+                            PropertyTools.getIntProperty("mediainfo.maxProcesses", 2),
+                            PropertyTools.getIntProperty("mediainfo.batchSize", 10),
+                            TimeUnit.SECONDS.toMillis(PropertyTools.getIntProperty("mediainfo.fileTimeout", 60)),
+                            PropertyTools.getIntProperty("mediainfo.cacheSize", 100));
         }
 
         // Add a list of supported extensions
@@ -134,6 +144,13 @@ public class MediaInfoService implements IQueueProcessService {
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        if (mediaInfoProbe != null) {
+            mediaInfoProbe.shutdown();
+        }
+    }
+
     @Override
     public void processQueueElement(QueueDTO queueElement) {
         MediaFile mediaFile = mediaStorageService.getRequiredMediaFile(queueElement.getId());
@@ -441,16 +458,7 @@ public class MediaInfoService implements IQueueProcessService {
     }
 
     private MediaInfoStream createStream(String movieFilePath) throws IOException {
-        // Create the command line
-        List<String> commandMedia = new ArrayList<>(execMediaInfo);
-        commandMedia.add(movieFilePath);
-
-        ProcessBuilder pb = new ProcessBuilder(commandMedia);
-
-        // set up the working directory
-        pb.directory(MEDIAINFO_PATH);
-
-        return new MediaInfoStream(pb.start());
+        return new MediaInfoStream(mediaInfoProbe.probe(new File(movieFilePath)));
     }
 
     private static void parseMediaInfo(MediaInfoStream stream,
@@ -51,7 +51,7 @@ import org.yamj.core.web.apis.ImdbSearchEngine;
 import org.yamj.core.web.apis.SearchEngineTools;
 
 @Service("allocineScanner")
-public class AllocineScanner implements IMovieScanner, ISeriesScanner, IPersonScanner, IFilmographyScanner {
+public class AllocineScanner implements IMovieScanner, ISeriesScanner, IPersonScanner, IFilmographyScanner, IPrefetchScanner {
 
     private static final String SCANNER_ID = "allocine";
     private static final Logger LOG = LoggerFactory.getLogger(AllocineScanner.class);
@@ -183,6 +183,30 @@ public class AllocineScanner implements IMovieScanner, ISeriesScanner, IPersonSc
         return allocineId;
     }
 
+    @Override
+    public void prefetchMovie(VideoData videoData) {
+        String allocineId = videoData.getSourceDbId(SCANNER_ID);
+        if (StringUtils.isBlank(allocineId)) {
+            // search engines are left to the scan, cause they share one search suffix
+            allocineId = allocineApiWrapper.getAllocineMovieId(videoData.getTitle(), videoData.getPublicationYear(), false);
+        }
+        if (StringUtils.isNotBlank(allocineId)) {
+            allocineApiWrapper.getMovieInfos(allocineId, false);
+        }
+    }
+
+    @Override
+    public void prefetchSeries(Series series) {
+        String allocineId = series.getSourceDbId(SCANNER_ID);
+        if (StringUtils.isBlank(allocineId)) {
+            // search engines are left to the scan, cause they share one search suffix
+            allocineId = allocineApiWrapper.getAllocineSeriesId(series.getTitle(), series.getStartYear(), false);
+        }
+        if (StringUtils.isNotBlank(allocineId)) {
+            allocineApiWrapper.getTvSeriesInfos(allocineId, false);
+        }
+    }
+
     @Override
     public String getPersonId(Person person) {
         return getPersonId(person, false);
@@ -0,0 +1,40 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.service.metadata.online;
+
+import org.yamj.core.database.model.Series;
+import org.yamj.core.database.model.VideoData;
+
+/**
+ * Scanner which is able to load its online data ahead of the scan, so that the scan itself
+ * is served from the caches of the API wrappers and the HTTP client.
+ * 
+ * Prefetching runs concurrently with other scanners and may outlive its timeout, so it gets a
+ * detached copy holding only the titles, the year and the source ids.
+ */
+public interface IPrefetchScanner {
+
+    void prefetchMovie(VideoData videoData);
+
+    void prefetchSeries(Series series);
+}
@@ -49,7 +49,7 @@ import org.yamj.core.web.apis.ImdbEpisodeDTO;
 import org.yamj.core.web.apis.ImdbSearchEngine;
 
 @Service("imdbScanner")
-public class ImdbScanner implements IMovieScanner, ISeriesScanner, IPersonScanner {
+public class ImdbScanner implements IMovieScanner, ISeriesScanner, IPersonScanner, IPrefetchScanner {
 
     public static final String SCANNER_ID = "imdb";
 
@@ -113,6 +113,31 @@ public class ImdbScanner implements IMovieScanner, ISeriesScanner, IPersonScanne
         return imdbId;
     }
 
+    @Override
+    public void prefetchMovie(VideoData videoData) {
+        // search engines are left to the scan, cause their results are not cached
+        prefetchDetails(videoData.getSourceDbId(SCANNER_ID));
+    }
+
+    @Override
+    public void prefetchSeries(Series series) {
+        // search engines are left to the scan, cause their results are not cached
+        prefetchDetails(series.getSourceDbId(SCANNER_ID));
+    }
+
+    private void prefetchDetails(String imdbId) {
+        if (StringUtils.isBlank(imdbId)) {
+            return;
+        }
+        
+        imdbApiWrapper.getMovieDetails(imdbId, localeService.getLocaleForConfig(SCANNER_ID));
+        try {
+            imdbApiWrapper.getMovieDetailsXML(imdbId, false);
+        } catch (IOException ex) {
+            LOG.trace("Failed to prefetch IMDb details for {}: {}", imdbId, ex.getMessage());
+        }
+    }
+
     @Override
     public String getPersonId(Person person) {
         return getPersonId(person, false);
@@ -23,9 +23,14 @@
 package org.yamj.core.service.metadata.online;
 
 import java.util.*;
+import java.util.concurrent.*;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.yamj.common.tools.PropertyTools;
 import org.yamj.common.type.MetaDataType;
@@ -45,6 +50,7 @@ public class OnlineScannerService {
     public static final Set<String> PERSON_SCANNER = PropertyTools.getPropertyAsOrderedSet("yamj3.sourcedb.scanner.person", "tmdb,imdb");
     public static final Set<String> FILMOGRAPHY_SCANNER = PropertyTools.getPropertyAsOrderedSet("yamj3.sourcedb.scanner.filmography", "tmdb");
     private static final String SCANNING_ERROR = "Scanning error";
+    private static final String PREFETCH_SOURCE = "prefetch";
     
     private final HashMap<String, IMovieScanner> registeredMovieScanner = new HashMap<>();
     private final HashMap<String, ISeriesScanner> registeredSeriesScanner = new HashMap<>();
@@ -53,6 +59,29 @@ public class OnlineScannerService {
 
     @Autowired
     private ConfigService configService;
+
+    @Value("${yamj3.sourcedb.scanner.prefetch.maxThreads:4}")
+    private int prefetchMaxThreads;
+    @Value("${yamj3.sourcedb.scanner.prefetch.timeout:30}")
+    private int prefetchTimeout;
+
+    private ThreadPoolExecutor prefetchExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (prefetchMaxThreads > 0) {
+            this.prefetchExecutor = new ThreadPoolExecutor(prefetchMaxThreads, prefetchMaxThreads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(prefetchMaxThreads * 4), new CustomizableThreadFactory("ScannerPrefetch-"));
+            this.prefetchExecutor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (this.prefetchExecutor != null) {
+            this.prefetchExecutor.shutdownNow();
+        }
+    }
     
     /**
      * Register a metadata scanner
@@ -85,10 +114,29 @@ public class OnlineScannerService {
      * 
      * @param videoData
      */
-    public void scanMovie(VideoData videoData) {
+    public void scanMovie(final VideoData videoData) {
         boolean useAlternate = this.configService.getBooleanProperty("yamj3.sourcedb.scanner.movie.alternate.always", Boolean.FALSE);
         ScanResult scanResult = null;
         
+        if (useAlternate) {
+            // load the online data of all scanners at once; the scan below applies them in order
+            List<Callable<Void>> prefetches = new ArrayList<>(MOVIE_SCANNER.size());
+            for (String scanner : MOVIE_SCANNER) {
+                final IMovieScanner movieScanner = registeredMovieScanner.get(scanner);
+                if (movieScanner instanceof IPrefetchScanner && !videoData.isSkippedScan(movieScanner.getScannerName())) {
+                    final VideoData copy = prefetchCopy(videoData);
+                    prefetches.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            ((IPrefetchScanner)movieScanner).prefetchMovie(copy);
+                            return null;
+                        }
+                    });
+                }
+            }
+            prefetch(prefetches, videoData.getTitle());
+        }
+        
     	loop: for (String scanner : MOVIE_SCANNER) {
     	    // holds the inner scan result
     	    ScanResult innerResult = ScanResult.ERROR;
@@ -155,10 +203,29 @@ public class OnlineScannerService {
      * 
      * @param series
      */
-    public void scanSeries(Series series) {
+    public void scanSeries(final Series series) {
         boolean useAlternate = this.configService.getBooleanProperty("yamj3.sourcedb.scanner.series.alternate.always", Boolean.FALSE);
 		ScanResult scanResult = null;
 
+        if (useAlternate) {
+            // load the online data of all scanners at once; the scan below applies them in order
+            List<Callable<Void>> prefetches = new ArrayList<>(SERIES_SCANNER.size());
+            for (String scanner : SERIES_SCANNER) {
+                final ISeriesScanner seriesScanner = registeredSeriesScanner.get(scanner);
+                if (seriesScanner instanceof IPrefetchScanner && !series.isSkippedScan(seriesScanner.getScannerName())) {
+                    final Series copy = prefetchCopy(series);
+                    prefetches.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            ((IPrefetchScanner)seriesScanner).prefetchSeries(copy);
+                            return null;
+                        }
+                    });
+                }
+            }
+            prefetch(prefetches, series.getTitle());
+        }
+
     	loop: for (String scanner : SERIES_SCANNER) {
             // holds the inner scan result
             ScanResult innerResult = ScanResult.ERROR;
@@ -220,6 +287,79 @@ public class OnlineScannerService {
         }
     }
 
+    /**
+     * Create a detached copy with the values used for finding the movie.
+     * 
+     * Prefetches may outlive their timeout, so they must never touch the scanned entity.
+     *
+     * @param videoData
+     * @return the copy
+     */
+    private static VideoData prefetchCopy(VideoData videoData) {
+        VideoData copy = new VideoData(videoData.getIdentifier());
+        copy.setTitle(videoData.getTitle(), PREFETCH_SOURCE);
+        copy.setTitleOriginal(videoData.getTitleOriginal(), PREFETCH_SOURCE);
+        copy.setPublicationYear(videoData.getPublicationYear(), PREFETCH_SOURCE);
+        copy.setSourceDbIdMap(new HashMap<>(videoData.getSourceDbIdMap()));
+        return copy;
+    }
+
+    /**
+     * Create a detached copy with the values used for finding the series.
+     * 
+     * Prefetches may outlive their timeout, so they must never touch the scanned entity.
+     *
+     * @param series
+     * @return the copy
+     */
+    private static Series prefetchCopy(Series series) {
+        Series copy = new Series(series.getIdentifier());
+        copy.setTitle(series.getTitle(), PREFETCH_SOURCE);
+        copy.setTitleOriginal(series.getTitleOriginal(), PREFETCH_SOURCE);
+        copy.setStartYear(series.getStartYear(), PREFETCH_SOURCE);
+        copy.setSourceDbIdMap(new HashMap<>(series.getSourceDbIdMap()));
+        return copy;
+    }
+
+    /**
+     * Run the prefetches concurrently and wait until they are done or timed out.
+     * 
+     * Errors are ignored, cause the following scan will request the data again.
+     *
+     * @param prefetches
+     * @param title
+     */
+    private void prefetch(List<Callable<Void>> prefetches, String title) {
+        if (prefetchExecutor == null || prefetches.size() < 2) {
+            // nothing to gain
+            return;
+        }
+        
+        List<Future<Void>> futures = new ArrayList<>(prefetches.size());
+        for (Callable<Void> prefetch : prefetches) {
+            try {
+                futures.add(prefetchExecutor.submit(prefetch));
+            } catch (RejectedExecutionException ex) { //NOSONAR
+                // executor is busy; the scan will load the data itself
+            }
+        }
+        
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(prefetchTimeout);
+        for (Future<Void> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException ex) { //NOSONAR
+                LOG.debug("Prefetch for '{}' timed out", title);
+                future.cancel(true);
+            } catch (ExecutionException ex) {
+                LOG.debug("Prefetch for '{}' failed: {}", title, ex.getCause().getMessage());
+            } catch (InterruptedException ex) { //NOSONAR
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            }
+        }
+    }
+
     /**
      * Scan a person.
      * 
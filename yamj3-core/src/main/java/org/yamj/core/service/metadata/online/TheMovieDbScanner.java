@@ -52,7 +52,7 @@ import org.yamj.core.tools.PersonNameDTO;
 import org.yamj.core.web.apis.TheMovieDbApiWrapper;
 
 @Service("tmdbScanner")
-public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPersonScanner, IFilmographyScanner {
+public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPersonScanner, IFilmographyScanner, IPrefetchScanner {
 
     public static final String SCANNER_ID = "tmdb";
     private static final Logger LOG = LoggerFactory.getLogger(TheMovieDbScanner.class);
@@ -87,7 +87,15 @@ public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPerson
         return getMovieId(videoData, tmdbLocale, false);
     }
 
-    private String getMovieId(VideoData videoData, Locale tmdbLocale, boolean throwTempError) { //NOSONAR
+    private String getMovieId(VideoData videoData, Locale tmdbLocale, boolean throwTempError) {
+        String tmdbId = findMovieId(videoData, tmdbLocale, throwTempError);
+        if (StringUtils.isNumeric(tmdbId) && !tmdbId.equals(videoData.getSourceDbId(SCANNER_ID))) {
+            videoData.setSourceDbId(SCANNER_ID, tmdbId);
+        }
+        return tmdbId;
+    }
+
+    private String findMovieId(VideoData videoData, Locale tmdbLocale, boolean throwTempError) { //NOSONAR
         String tmdbId = videoData.getSourceDbId(SCANNER_ID);
         if (StringUtils.isNumeric(tmdbId)) {
             return tmdbId;
@@ -113,12 +121,7 @@ public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPerson
             tmdbId = tmdbApiWrapper.getMovieId(videoData.getTitleOriginal(), videoData.getPublicationYear(), tmdbLocale, throwTempError);
         }
 
-        if (StringUtils.isNumeric(tmdbId)) {
-            videoData.setSourceDbId(SCANNER_ID, tmdbId);
-            return tmdbId;
-        }
-
-        return null;
+        return StringUtils.isNumeric(tmdbId) ? tmdbId : null;
     }
 
     @Override
@@ -128,6 +131,14 @@ public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPerson
     }
 
     private String getSeriesId(Series series, Locale tmdbLocale, boolean throwTempError) {
+        String tmdbId = findSeriesId(series, tmdbLocale, throwTempError);
+        if (StringUtils.isNumeric(tmdbId) && !tmdbId.equals(series.getSourceDbId(SCANNER_ID))) {
+            series.setSourceDbId(SCANNER_ID, tmdbId);
+        }
+        return tmdbId;
+    }
+
+    private String findSeriesId(Series series, Locale tmdbLocale, boolean throwTempError) {
         String tmdbId = series.getSourceDbId(SCANNER_ID);
         if (StringUtils.isNumeric(tmdbId)) {
             return tmdbId;
@@ -141,12 +152,25 @@ public class TheMovieDbScanner implements IMovieScanner, ISeriesScanner, IPerson
             tmdbId = tmdbApiWrapper.getMovieId(series.getTitleOriginal(), series.getStartYear(), tmdbLocale, throwTempError);
         }
 
+        return StringUtils.isNumeric(tmdbId) ? tmdbId : null;
+    }
+
+    @Override
+    public void prefetchMovie(VideoData videoData) {
+        final Locale tmdbLocale = localeService.getLocaleForConfig("themoviedb");
+        final String tmdbId = findMovieId(videoData, tmdbLocale, false);
         if (StringUtils.isNumeric(tmdbId)) {
-            series.setSourceDbId(SCANNER_ID, tmdbId);
-            return tmdbId;
+            tmdbApiWrapper.getMovieInfoByTMDB(Integer.parseInt(tmdbId), tmdbLocale, false);
         }
+    }
 
-        return null;
+    @Override
+    public void prefetchSeries(Series series) {
+        final Locale tmdbLocale = localeService.getLocaleForConfig("themoviedb");
+        final String tmdbId = findSeriesId(series, tmdbLocale, false);
+        if (StringUtils.isNumeric(tmdbId)) {
+            tmdbApiWrapper.getSeriesInfo(Integer.parseInt(tmdbId), tmdbLocale, false);
+        }
     }
 
     @Override
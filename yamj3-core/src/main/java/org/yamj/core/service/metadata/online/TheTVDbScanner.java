@@ -44,7 +44,7 @@ import org.yamj.core.tools.OverrideTools;
 import org.yamj.core.web.apis.TheTVDbApiWrapper;
 
 @Service("tvdbScanner")
-public class TheTVDbScanner implements ISeriesScanner {
+public class TheTVDbScanner implements ISeriesScanner, IPrefetchScanner {
 
     public static final String SCANNER_ID = "tvdb";
     private static final Logger LOG = LoggerFactory.getLogger(TheTVDbScanner.class);
@@ -86,6 +86,30 @@ public class TheTVDbScanner implements ISeriesScanner {
         return tvdbId;
     }
     
+    @Override
+    public void prefetchMovie(VideoData videoData) {
+        // no movie scanner
+    }
+
+    @Override
+    public void prefetchSeries(Series series) {
+        final Locale tvdbLocale = localeService.getLocaleForConfig("thetvdb");
+        String tvdbId = series.getSourceDbId(SCANNER_ID);
+        if (StringUtils.isBlank(tvdbId)) {
+            tvdbId = tvdbApiWrapper.getSeriesId(series.getTitle(), series.getStartYear(), tvdbLocale.getLanguage(), false);
+        }
+        if (StringUtils.isBlank(tvdbId)) {
+            return;
+        }
+        
+        com.omertron.thetvdbapi.model.Series tvdbSeries = tvdbApiWrapper.getSeries(tvdbId, tvdbLocale.getLanguage(), false);
+        if (tvdbSeries != null) {
+            tvdbApiWrapper.getActors(tvdbSeries.getId(), false);
+        }
+        // loads all episodes of the series
+        tvdbApiWrapper.getSeasonYear(tvdbId, 1, tvdbLocale.getLanguage());
+    }
+
     @Override
     public ScanResult scanSeries(Series series) {
         Locale tvdbLocale = localeService.getLocaleForConfig("thetvdb");
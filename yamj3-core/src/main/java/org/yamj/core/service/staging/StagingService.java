@@ -23,9 +23,8 @@
 package org.yamj.core.service.staging;
 
 import java.io.File;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.Map.Entry;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -62,6 +61,10 @@ public class StagingService {
     private String watchedFolderName;
     @Value("${yamj3.folder.name.subtitle:null}")
     private String subtitleFolderName;
+    @Value("${yamj3.database.dialect:null}")
+    private String databaseDialect;
+    @Value("${yamj3.database.ignoreCase:false}")
+    private boolean databaseIgnoreCase;
 
     @Transactional
     public Library storeLibrary(ImportDTO libraryDTO) {
@@ -84,37 +87,119 @@ public class StagingService {
 
         StageDirectory stageDirectory = stagingDao.getStageDirectory(normalized, library);
         if (stageDirectory == null) {
-            // used to set the directory name
-            File dirFile = new File(normalized);
-
-            stageDirectory = new StageDirectory();
-            stageDirectory.setDirectoryPath(normalized);
-            stageDirectory.setDirectoryName(dirFile.getName());
-            stageDirectory.setLibrary(library);
-            stageDirectory.setDirectoryDate(getDateWithoutMilliseconds(stageDirectoryDTO.getDate()));
-
             // getById parent stage directory
+            StageDirectory parent = null;
             int lastIndex = normalized.lastIndexOf('/');
             if (lastIndex > 0) {
-                String parentPath = normalized.substring(0, lastIndex);
-                StageDirectory parent = stagingDao.getStageDirectory(parentPath, library);
-                if (parent != null) {
-                    stageDirectory.setParentDirectory(parent);
-                }
+                parent = stagingDao.getStageDirectory(normalized.substring(0, lastIndex), library);
             }
-
-            LOG.debug("New directory: {}", stageDirectory.getDirectoryPath());
-            stagingDao.saveEntity(stageDirectory);
+            stageDirectory = createStageDirectory(normalized, stageDirectoryDTO, library, parent);
+            
+            // new directory has no stage files yet
+            storeStageFiles(stageDirectoryDTO, stageDirectory, new HashMap<String,StageFile>());
         } else {
-            Date newDate = getDateWithoutMilliseconds(stageDirectoryDTO.getDate());
-            if (newDate.compareTo(stageDirectory.getDirectoryDate()) != 0) {
-                stageDirectory.setDirectoryDate(newDate);
+            updateStageDirectory(stageDirectoryDTO, stageDirectory);
+            storeStageFiles(stageDirectoryDTO, stageDirectory, null);
+        }
+    }
 
-                LOG.debug("Updated directory: {}", stageDirectory.getDirectoryPath());
-                stagingDao.updateEntity(stageDirectory);
+    /**
+     * Store many stage directories of a library in one transaction.
+     * 
+     * Existing directories and their stage files are looked up with one query each
+     * instead of one query per directory and file.
+     * 
+     * @param stageDirectoryDTOs the stage directories
+     * @param library the library
+     */
+    @Transactional
+    public void storeStageDirectories(Collection<StageDirectoryDTO> stageDirectoryDTOs, Library library) {
+        // normalized paths sorted so that parents are stored before their children
+        final TreeMap<String, StageDirectoryDTO> directories = new TreeMap<>();
+        for (StageDirectoryDTO stageDirectoryDTO : stageDirectoryDTOs) {
+            directories.put(FilenameUtils.normalizeNoEndSeparator(stageDirectoryDTO.getPath(), true), stageDirectoryDTO);
+        }
+        
+        // look up directories and their parents at once
+        Set<String> lookupPaths = new HashSet<>(directories.keySet());
+        for (String normalized : directories.keySet()) {
+            int lastIndex = normalized.lastIndexOf('/');
+            if (lastIndex > 0) {
+                lookupPaths.add(normalized.substring(0, lastIndex));
             }
         }
+        Map<String, StageDirectory> stageDirectories = new HashMap<>();
+        for (StageDirectory stageDirectory : stagingDao.getStageDirectories(lookupPaths, library)) {
+            stageDirectories.put(getLookupKey(stageDirectory.getDirectoryPath()), stageDirectory);
+        }
+
+        // look up stage files of the existing directories at once
+        List<StageDirectory> existing = new ArrayList<>();
+        for (String normalized : directories.keySet()) {
+            StageDirectory stageDirectory = stageDirectories.get(getLookupKey(normalized));
+            if (stageDirectory != null) {
+                existing.add(stageDirectory);
+            }
+        }
+        Map<String, StageFile> stageFiles = new HashMap<>();
+        for (StageFile stageFile : stagingDao.getStageFiles(existing)) {
+            stageFiles.put(getStageFileKey(stageFile.getStageDirectory(), stageFile.getBaseName(), stageFile.getExtension()), stageFile);
+        }
+
+        for (Entry<String, StageDirectoryDTO> entry : directories.entrySet()) {
+            final String normalized = entry.getKey();
+            StageDirectory stageDirectory = stageDirectories.get(getLookupKey(normalized));
+            if (stageDirectory == null) {
+                StageDirectory parent = null;
+                int lastIndex = normalized.lastIndexOf('/');
+                if (lastIndex > 0) {
+                    parent = stageDirectories.get(getLookupKey(normalized.substring(0, lastIndex)));
+                }
+                stageDirectory = createStageDirectory(normalized, entry.getValue(), library, parent);
+                stageDirectories.put(getLookupKey(normalized), stageDirectory);
+            } else {
+                updateStageDirectory(entry.getValue(), stageDirectory);
+            }
+            storeStageFiles(entry.getValue(), stageDirectory, stageFiles);
+        }
+    }
+
+    private StageDirectory createStageDirectory(String normalized, StageDirectoryDTO stageDirectoryDTO, Library library, StageDirectory parent) {
+        // used to set the directory name
+        File dirFile = new File(normalized);
+
+        StageDirectory stageDirectory = new StageDirectory();
+        stageDirectory.setDirectoryPath(normalized);
+        stageDirectory.setDirectoryName(dirFile.getName());
+        stageDirectory.setLibrary(library);
+        stageDirectory.setDirectoryDate(getDateWithoutMilliseconds(stageDirectoryDTO.getDate()));
+        if (parent != null) {
+            stageDirectory.setParentDirectory(parent);
+        }
 
+        LOG.debug("New directory: {}", stageDirectory.getDirectoryPath());
+        stagingDao.saveEntity(stageDirectory);
+        return stageDirectory;
+    }
+
+    private void updateStageDirectory(StageDirectoryDTO stageDirectoryDTO, StageDirectory stageDirectory) {
+        Date newDate = getDateWithoutMilliseconds(stageDirectoryDTO.getDate());
+        if (newDate.compareTo(stageDirectory.getDirectoryDate()) != 0) {
+            stageDirectory.setDirectoryDate(newDate);
+
+            LOG.debug("Updated directory: {}", stageDirectory.getDirectoryPath());
+            stagingDao.updateEntity(stageDirectory);
+        }
+    }
+
+    /**
+     * Store the stage files of a directory.
+     * 
+     * @param stageDirectoryDTO the stage directory DTO
+     * @param stageDirectory the stage directory
+     * @param stageFiles the already known stage files; if null then stage files are looked up one by one
+     */
+    private void storeStageFiles(StageDirectoryDTO stageDirectoryDTO, StageDirectory stageDirectory, Map<String, StageFile> stageFiles) {
         for (StageFileDTO stageFileDTO : stageDirectoryDTO.getStageFiles()) {
             String baseName = FilenameUtils.getBaseName(stageFileDTO.getFileName());
             String extension = FilenameUtils.getExtension(stageFileDTO.getFileName());
@@ -130,14 +215,20 @@ public class StagingService {
                 continue;
             }
 
-            StageFile stageFile = stagingDao.getStageFile(baseName, extension, stageDirectory);
+            StageFile stageFile;
+            if (stageFiles == null) {
+                stageFile = stagingDao.getStageFile(baseName, extension, stageDirectory);
+            } else {
+                stageFile = stageFiles.get(getStageFileKey(stageDirectory, baseName, extension));
+            }
+            
             if (stageFile == null) {
                 // create new stage file entry
                 stageFile = new StageFile();
                 stageFile.setBaseName(baseName);
                 stageFile.setExtension(extension);
                 stageFile.setStageDirectory(stageDirectory);
-                stageFile.setFileType(filenameScanner.determineFileType(extension));
+                stageFile.setFileType(fileType);
                 stageFile.setFullPath(FilenameUtils.concat(stageDirectoryDTO.getPath(), stageFileDTO.getFileName()));
                 stageFile.setStatus(StatusType.NEW);
 
@@ -146,6 +237,10 @@ public class StagingService {
 
                 LOG.debug("New {} file: {}", stageFile.getFileType().name().toLowerCase(), stageFile.getFullPath());
                 stagingDao.saveEntity(stageFile);
+                if (stageFiles != null) {
+                    // same file may be sent with another case
+                    stageFiles.put(getStageFileKey(stageDirectory, baseName, extension), stageFile);
+                }
             } else {
                 Date newDate = getDateWithoutMilliseconds(stageFileDTO.getFileDate());
                 if ((newDate.compareTo(stageFile.getFileDate()) != 0) || (stageFile.getFileSize() != stageFileDTO.getFileSize())) {
@@ -168,6 +263,50 @@ public class StagingService {
                 }
             }
         }
+
+        // mark files as deleted which have been removed from the directory
+        for (String fileName : stageDirectoryDTO.getDeletedFiles()) {
+            String baseName = FilenameUtils.getBaseName(fileName);
+            String extension = FilenameUtils.getExtension(fileName);
+            if (StringUtils.isBlank(baseName) || StringUtils.isBlank(extension)) {
+                continue;
+            }
+
+            StageFile stageFile;
+            if (stageFiles == null) {
+                stageFile = stagingDao.getStageFile(baseName, extension, stageDirectory);
+            } else {
+                stageFile = stageFiles.get(getStageFileKey(stageDirectory, baseName, extension));
+            }
+            
+            if (stageFile != null && !StatusType.DELETED.equals(stageFile.getStatus())) {
+                stageFile.setStatus(StatusType.DELETED);
+                LOG.debug("Deleted {} file: {}", stageFile.getFileType().name().toLowerCase(), stageFile.getFullPath());
+                stagingDao.updateEntity(stageFile);
+            }
+        }
+    }
+
+    private String getStageFileKey(StageDirectory stageDirectory, String baseName, String extension) {
+        return getLookupKey(stageDirectory.getDirectoryPath() + "/" + baseName + "." + extension);
+    }
+
+    /**
+     * Get the key for the lookup maps.
+     * 
+     * Paths are matched exactly, unless the database is a MySQL database configured with
+     * a case and accent insensitive collation; then the natural ID lookups in the database
+     * ignore case and accents, so the keys must be compared the same way; otherwise a file
+     * would be stored twice.
+     * 
+     * @param path
+     * @return the lookup key
+     */
+    private String getLookupKey(String path) {
+        if (databaseIgnoreCase && StringUtils.containsIgnoreCase(databaseDialect, "mysql")) {
+            return StringUtils.stripAccents(path).toLowerCase(Locale.ENGLISH);
+        }
+        return path;
     }
 
     private static void setChangeableValues(StageFile stageFile, StageFileDTO stageFileDTO) {
@@ -22,21 +22,40 @@
  */
 package org.yamj.core.service.tasks;
 
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.PostConstruct;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.yamj.common.type.StatusType;
+import org.yamj.core.config.ConfigService;
+import org.yamj.core.database.model.type.ArtworkType;
 import org.yamj.core.database.service.ArtworkStorageService;
 import org.yamj.core.scheduling.ArtworkProcessScheduler;
+import org.yamj.core.service.artwork.ArtworkTools;
+import org.yamj.core.service.file.FileStorageService;
+import org.yamj.core.service.file.StorageType;
 
 /**
  * Task for checking artwork sanity.
+ * 
+ * The artwork storages are indexed once and compared with the cache files
+ * stored in the database, so that no file has to be checked on its own.
+ * Files which are not referenced by any artwork are reported as orphans and
+ * deleted if the task is executed with option "cleanup".
  */
 @Component
 public class ArtworkSanityTask implements ITask {
 
     private static final Logger LOG = LoggerFactory.getLogger(ArtworkSanityTask.class);
+    private static final int BATCH_SIZE = 1000;
+    // orphans must be older, so that files of artwork in progress are not deleted
+    private static final long ORPHAN_MIN_AGE = 3600000L;
 
     @Autowired
     private ExecutionTaskService executionTaskService;
@@ -44,6 +63,10 @@ public class ArtworkSanityTask implements ITask {
     private ArtworkStorageService artworkStorageService;
     @Autowired
     private ArtworkProcessScheduler artworkProcessScheduler;
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private ConfigService configService;
     
     @Override
     public String getTaskName() {
@@ -58,15 +81,138 @@ public class ArtworkSanityTask implements ITask {
     @Override
     public void execute(String options) throws Exception {
         LOG.debug("Execute artwork sanity task");
+        final long start = System.currentTimeMillis();
         
+        // index the storages; photos may be stored in the artwork storage.
+        // if a storage can't be indexed completely, then nothing is marked or deleted
+        final int threads = this.configService.getIntProperty("yamj3.artwork.sanity.threads", 4);
+        Map<StorageType, Set<String>> storedFiles = new EnumMap<>(StorageType.class);
+        storedFiles.put(StorageType.ARTWORK, this.fileStorageService.indexStorageFiles(StorageType.ARTWORK, threads));
+        if (isSameStorage(StorageType.ARTWORK, StorageType.PHOTO)) {
+            storedFiles.put(StorageType.PHOTO, storedFiles.get(StorageType.ARTWORK));
+        } else {
+            storedFiles.put(StorageType.PHOTO, this.fileStorageService.indexStorageFiles(StorageType.PHOTO, threads));
+        }
+
+        // all files not referenced by any artwork are orphans
+        Map<StorageType, Set<String>> orphanFiles = new EnumMap<>(StorageType.class);
+        orphanFiles.put(StorageType.ARTWORK, new HashSet<>(storedFiles.get(StorageType.ARTWORK)));
+        if (storedFiles.get(StorageType.PHOTO) == storedFiles.get(StorageType.ARTWORK)) {
+            orphanFiles.put(StorageType.PHOTO, orphanFiles.get(StorageType.ARTWORK));
+        } else {
+            orphanFiles.put(StorageType.PHOTO, new HashSet<>(storedFiles.get(StorageType.PHOTO)));
+        }
+
+        // check located artwork; if the original is missing, then the located artwork must be updated
+        List<Long> missing = new ArrayList<>();
+        int locatedMissing = 0;
+        List<Object[]> rows;
         long lastId = -1;
         do {
-            lastId = this.artworkStorageService.checkArtworkSanity(lastId);
-        } while (lastId > 0);
+            rows = this.artworkStorageService.getArtworkLocatedCacheFiles(lastId, BATCH_SIZE);
+            for (Object[] row : rows) {
+                lastId = (Long) row[0];
+                // files of deleted located artwork are still referenced, cause the deletion may be reverted
+                if (!checkFile(row, storedFiles, orphanFiles) && StatusType.DELETED != row[4]) {
+                    LOG.trace("Mark located artwork {} for UPDATE due missing original image", lastId);
+                    missing.add(lastId);
+                }
+            }
+            if (missing.size() >= BATCH_SIZE || (rows.size() < BATCH_SIZE && !missing.isEmpty())) {
+                locatedMissing += this.artworkStorageService.markArtworkLocatedMissing(missing);
+                missing.clear();
+            }
+        } while (rows.size() == BATCH_SIZE);
 
+        // check generated artwork
+        int generatedMissing = 0;
+        lastId = -1;
+        do {
+            rows = this.artworkStorageService.getArtworkGeneratedCacheFiles(lastId, BATCH_SIZE);
+            for (Object[] row : rows) {
+                lastId = (Long) row[0];
+                if (!checkFile(row, storedFiles, orphanFiles)) {
+                    LOG.trace("Mark generated artwork {} for UPDATE due missing generated image", lastId);
+                    missing.add(lastId);
+                }
+            }
+            if (missing.size() >= BATCH_SIZE || (rows.size() < BATCH_SIZE && !missing.isEmpty())) {
+                generatedMissing += this.artworkStorageService.markArtworkGeneratedMissing(missing);
+                missing.clear();
+            }
+        } while (rows.size() == BATCH_SIZE);
+
+        LOG.info("Artwork sanity: {} located and {} generated artwork with missing image", locatedMissing, generatedMissing);
+
+        // report and clean up orphan files
+        final boolean cleanup = StringUtils.containsIgnoreCase(options, "cleanup");
+        this.handleOrphans(StorageType.ARTWORK, orphanFiles.get(StorageType.ARTWORK), cleanup, start);
+        if (orphanFiles.get(StorageType.PHOTO) != orphanFiles.get(StorageType.ARTWORK)) {
+            this.handleOrphans(StorageType.PHOTO, orphanFiles.get(StorageType.PHOTO), cleanup, start);
+        }
+        
         // trigger artwork processing in any case
         this.artworkProcessScheduler.triggerProcess();
 
-        LOG.debug("Finished artwork sanity task");
+        LOG.debug("Finished artwork sanity task after {} ms", System.currentTimeMillis() - start);
+    }
+
+    private boolean isSameStorage(StorageType type1, StorageType type2) {
+        String dir1 = FilenameUtils.normalizeNoEndSeparator(this.fileStorageService.getStorageDir(type1, StringUtils.EMPTY));
+        String dir2 = FilenameUtils.normalizeNoEndSeparator(this.fileStorageService.getStorageDir(type2, StringUtils.EMPTY));
+        return StringUtils.equals(dir1, dir2);
+    }
+
+    private boolean checkFile(Object[] row, Map<StorageType, Set<String>> storedFiles, Map<StorageType, Set<String>> orphanFiles) {
+        final StorageType storageType = ArtworkTools.getStorageType((ArtworkType) row[3]);
+        final String filename = FilenameUtils.concat((String) row[1], (String) row[2]);
+        if (filename == null) {
+            return false;
+        }
+        if (storedFiles.get(storageType).contains(filename)) {
+            orphanFiles.get(storageType).remove(filename);
+            return true;
+        }
+        // the file may have been stored after indexing
+        return this.fileStorageService.existsFile(storageType, (String) row[1], (String) row[2]);
+    }
+
+    private void handleOrphans(StorageType storageType, Set<String> orphans, boolean cleanup, long start) {
+        if (orphans.isEmpty()) {
+            return;
+        }
+        
+        LOG.info("Artwork sanity: {} orphan files in {} storage", orphans.size(), storageType);
+
+        // shared files may be referenced again after indexing, so check again right before deletion
+        final Lock sharedFileLock = this.fileStorageService.getSharedFileDeletionLock();
+        int deleted = 0;
+        for (String filename : orphans) {
+            LOG.debug("Orphan file in {} storage: {}", storageType, filename);
+
+            if (cleanup) {
+                File file = new File(this.fileStorageService.getStorageDir(storageType, filename));
+                if (file.lastModified() >= start - ORPHAN_MIN_AGE) {
+                    continue;
+                }
+                
+                sharedFileLock.lock();
+                try {
+                    if (this.artworkStorageService.isCacheFileReferenced(file.getName())) {
+                        LOG.trace("Orphan file is referenced again: {}", filename);
+                    } else if (file.delete()) {
+                        deleted++;
+                    }
+                } catch (Exception ex) {
+                    LOG.warn("Failed to delete orphan file {}: {}", filename, ex.getMessage());
+                } finally {
+                    sharedFileLock.unlock();
+                }
+            }
+        }
+
+        if (cleanup) {
+            LOG.info("Artwork sanity: deleted {} orphan files in {} storage", deleted, storageType);
+        }
     }
 }
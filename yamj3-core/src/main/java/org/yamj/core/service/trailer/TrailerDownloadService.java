@@ -0,0 +1,391 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.service.trailer;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.yamj.api.common.http.PoolingHttpClient;
+import org.yamj.core.api.model.TrailerDownloadProgress;
+import org.yamj.core.service.file.FileStorageService;
+import org.yamj.core.service.file.StorageType;
+
+/**
+ * Downloads trailers into the trailer storage.
+ * 
+ * A trailer is written to a partial file first, which is resumed with a HTTP
+ * range request if the download breaks, and renamed to the storage file after
+ * completion. The validator of the response (ETag or Last-Modified) is stored
+ * next to the partial file and sent as If-Range, so a changed trailer is
+ * downloaded again instead of being appended to the old one. All downloads
+ * share one bandwidth limit.
+ */
+@Service("trailerDownloadService")
+public class TrailerDownloadService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrailerDownloadService.class);
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".validator";
+    private static final long MAX_RETRY_DELAY_SECONDS = 300;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\*|(\\d+)-\\d+)/(\\d+|\\*)");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private PoolingHttpClient httpClient;
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${yamj3.trailer.download.maxBytesPerSecond:0}")
+    private long maxBytesPerSecond;
+    @Value("${yamj3.trailer.download.retries:3}")
+    private int retries;
+    @Value("${yamj3.trailer.download.retryDelaySeconds:5}")
+    private long retryDelaySeconds;
+    @Value("${yamj3.trailer.download.partialMaxAgeHours:24}")
+    private long partialMaxAgeHours;
+
+    // time in nanoseconds from which the bandwidth is free again
+    private final AtomicLong bandwidthFreeTime = new AtomicLong(System.nanoTime());
+    private final ConcurrentMap<Long, Download> downloads = new ConcurrentHashMap<>();
+    
+    /**
+     * Download a trailer.
+     * 
+     * @param trailerId the trailer ID
+     * @param url the URL of the trailer
+     * @param cacheFilename the file name in the trailer storage
+     * @return true, if the trailer has been stored; false if the trailer is not available
+     * @throws IOException if the download failed after all retries
+     */
+    public boolean download(Long trailerId, URL url, String cacheFilename) throws IOException {
+        final File target = fileStorageService.getFile(StorageType.TRAILER, cacheFilename);
+        final File partial = new File(target.getPath() + PARTIAL_SUFFIX);
+        final File validator = new File(target.getPath() + PARTIAL_SUFFIX + VALIDATOR_SUFFIX);
+        if (partial.exists() && System.currentTimeMillis() - partial.lastModified() > TimeUnit.HOURS.toMillis(this.partialMaxAgeHours)) {
+            // too old to be resumed, the trailer may have changed meanwhile
+            LOG.debug("Delete stale partial download of trailer {}", trailerId);
+            deletePartial(partial, validator);
+        }
+        
+        final Download download = new Download(trailerId, cacheFilename);
+        this.downloads.put(trailerId, download);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                download.attempt = attempt;
+                try {
+                    if (!this.transfer(url, partial, validator, download)) {
+                        deletePartial(partial, validator);
+                        return false;
+                    }
+                    break;
+                } catch (IOException ex) {
+                    if (ex instanceof InterruptedIOException) {
+                        throw ex;
+                    }
+                    if (attempt > this.retries) {
+                        if (!validator.exists()) {
+                            // can not be resumed safely
+                            deletePartial(partial, validator);
+                        }
+                        throw ex;
+                    }
+                    final long delay = Math.min(MAX_RETRY_DELAY_SECONDS, this.retryDelaySeconds << Math.min(attempt - 1, 16));
+                    LOG.warn("Download of trailer {} failed at {} bytes, resuming in {} seconds: {}", trailerId, partial.length(), delay, ex.getMessage());
+                    sleep(delay);
+                }
+            }
+        } finally {
+            this.downloads.remove(trailerId, download);
+        }
+
+        try {
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) { //NOSONAR
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        deletePartial(null, validator);
+        return true;
+    }
+
+    private static void deletePartial(File partial, File validator) {
+        if (partial != null && partial.exists() && !partial.delete()) {
+            LOG.warn("Failed to delete partial download '{}'", partial.getName());
+        }
+        if (validator.exists() && !validator.delete()) {
+            LOG.warn("Failed to delete '{}'", validator.getName());
+        }
+    }
+
+    private static void sleep(long seconds) throws InterruptedIOException {
+        try {
+            TimeUnit.SECONDS.sleep(seconds);
+        } catch (InterruptedException ex) { //NOSONAR
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Trailer download interrupted");
+        }
+    }
+
+    /**
+     * Get the progress of the running downloads.
+     * 
+     * @return list of download progress
+     */
+    public List<TrailerDownloadProgress> getDownloadProgress() {
+        List<TrailerDownloadProgress> result = new ArrayList<>();
+        for (Download download : this.downloads.values()) {
+            TrailerDownloadProgress progress = new TrailerDownloadProgress();
+            progress.setTrailerId(download.trailerId);
+            progress.setFilename(download.filename);
+            progress.setAttempt(download.attempt);
+            
+            final long downloaded = download.downloaded.get();
+            progress.setDownloaded(downloaded);
+            progress.setSize(download.size);
+            if (download.size > 0) {
+                progress.setProgress(Math.round(downloaded * 1000d / download.size) / 10d);
+            }
+            
+            final long millis = System.currentTimeMillis() - download.startTime;
+            if (millis > 0) {
+                progress.setBytesPerSecond((downloaded - download.resumedAt) * 1000L / millis);
+            }
+            result.add(progress);
+        }
+        return result;
+    }
+    
+    private boolean transfer(URL url, File partial, File validator, Download download) throws IOException {
+        long offset = partial.length();
+        final String storedValidator = readValidator(validator);
+        if (offset > 0 && storedValidator == null) {
+            // without a validator the partial file may belong to another version of the trailer
+            offset = 0;
+        }
+
+        HttpGet httpGet;
+        try {
+            httpGet = new HttpGet(url.toURI());
+        } catch (URISyntaxException ex) {
+            throw new IOException("Invalid trailer URL: " + url, ex);
+        }
+        if (offset > 0) {
+            httpGet.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+            httpGet.setHeader(HttpHeaders.IF_RANGE, storedValidator);
+        }
+
+        HttpResponse response = this.httpClient.execute(httpGet);
+        try {
+            final int statusCode = response.getStatusLine().getStatusCode();
+            final HttpEntity entity = response.getEntity();
+            long size;
+            
+            if (statusCode == HttpStatus.SC_PARTIAL_CONTENT) {
+                Matcher matcher = matchContentRange(response);
+                if (offset == 0 || matcher == null || matcher.group(2) == null || Long.parseLong(matcher.group(2)) != offset) {
+                    throw new IOException("Invalid content range for resumed download");
+                }
+                final String responseValidator = getValidator(response);
+                if (responseValidator != null && !responseValidator.equals(storedValidator)) {
+                    // the server ignored If-Range
+                    deletePartial(partial, validator);
+                    throw new IOException("Trailer has changed since the partial download");
+                }
+                size = "*".equals(matcher.group(3)) ? -1L : Long.parseLong(matcher.group(3));
+            } else if (statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset > 0) {
+                // partial file may already be complete
+                EntityUtils.consumeQuietly(entity);
+                Matcher matcher = matchContentRange(response);
+                if (matcher != null && !"*".equals(matcher.group(3)) && Long.parseLong(matcher.group(3)) == offset) {
+                    download.setProgress(offset, offset);
+                    return true;
+                }
+                deletePartial(partial, validator);
+                throw new IOException("Partial download does not match trailer");
+            } else if (statusCode == HttpStatus.SC_OK) {
+                // server does not support ranges or the trailer has changed, so start from scratch
+                offset = 0;
+                size = entity == null ? -1L : entity.getContentLength();
+                writeValidator(validator, getValidator(response));
+            } else {
+                EntityUtils.consumeQuietly(entity);
+                if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    throw new IOException("Server error " + statusCode + " for " + url);
+                }
+                LOG.warn("Trailer not available, status {} for {}", statusCode, url);
+                return false;
+            }
+            
+            if (entity == null) {
+                throw new IOException("No content for " + url);
+            }
+
+            download.setProgress(offset, size);
+            try (InputStream in = entity.getContent();
+                 OutputStream out = new FileOutputStream(partial, offset > 0))
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    this.acquireBandwidth(read);
+                    out.write(buffer, 0, read);
+                    download.downloaded.addAndGet(read);
+                }
+            }
+            
+            if (size >= 0 && partial.length() != size) {
+                throw new IOException("Incomplete download, got " + partial.length() + " of " + size + " bytes");
+            }
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            // do not read the rest of the response
+            httpGet.abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the validator of the response which may be sent as If-Range.
+     *
+     * Weak entity tags are not allowed in If-Range, so Last-Modified is used then.
+     */
+    private static String getValidator(HttpResponse response) {
+        Header eTag = response.getFirstHeader(HttpHeaders.ETAG);
+        if (eTag != null && eTag.getValue().startsWith("\"")) {
+            return eTag.getValue();
+        }
+        Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        return lastModified == null ? null : lastModified.getValue();
+    }
+
+    private static String readValidator(File validator) {
+        if (!validator.isFile()) {
+            return null;
+        }
+        try {
+            return StringUtils.trimToNull(FileUtils.readFileToString(validator, "UTF-8"));
+        } catch (IOException ex) {
+            LOG.trace("Failed to read '{}': {}", validator.getName(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeValidator(File validator, String value) throws IOException {
+        if (value == null) {
+            if (validator.exists() && !validator.delete()) {
+                throw new IOException("Failed to delete '" + validator.getName() + "'");
+            }
+        } else {
+            FileUtils.writeStringToFile(validator, value, "UTF-8");
+        }
+    }
+
+    private static Matcher matchContentRange(HttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(header.getValue());
+        return matcher.matches() ? matcher : null;
+    }
+
+    /**
+     * Wait until the bytes may be transferred within the bandwidth limit.
+     * 
+     * Each caller reserves the time slot for its bytes, so concurrent downloads
+     * share the limit without blocking each other while waiting.
+     */
+    private void acquireBandwidth(int bytes) throws InterruptedIOException {
+        if (this.maxBytesPerSecond <= 0) {
+            return;
+        }
+        
+        final long duration = TimeUnit.SECONDS.toNanos(bytes) / this.maxBytesPerSecond;
+        long now;
+        long free;
+        long start;
+        do {
+            now = System.nanoTime();
+            free = this.bandwidthFreeTime.get();
+            start = Math.max(free, now);
+        } while (!this.bandwidthFreeTime.compareAndSet(free, start + duration));
+
+        final long wait = start - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException ex) { //NOSONAR
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Trailer download interrupted");
+            }
+        }
+    }
+    
+    private static final class Download {
+
+        private final long trailerId;
+        private final String filename;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicLong downloaded = new AtomicLong();
+        private volatile long resumedAt = 0L;
+        private volatile long size = -1L;
+        private volatile int attempt = 0;
+        
+        Download(long trailerId, String filename) {
+            this.trailerId = trailerId;
+            this.filename = filename;
+        }
+        
+        void setProgress(long offset, long size) {
+            this.downloaded.set(offset);
+            if (this.attempt == 1) {
+                this.resumedAt = offset;
+            }
+            this.size = size;
+        }
+    }
+}
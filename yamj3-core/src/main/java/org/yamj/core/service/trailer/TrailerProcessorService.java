@@ -35,9 +35,7 @@ import org.yamj.core.database.model.dto.QueueDTO;
 import org.yamj.core.database.model.type.ContainerType;
 import org.yamj.core.database.service.TrailerStorageService;
 import org.yamj.core.scheduling.IQueueProcessService;
-import org.yamj.core.service.file.FileStorageService;
 import org.yamj.core.service.file.FileTools;
-import org.yamj.core.service.file.StorageType;
 import org.yamj.core.service.trailer.online.YouTubeDownloadParser;
 
 @Service("trailerProcessorService")
@@ -48,7 +46,7 @@ public class TrailerProcessorService implements IQueueProcessService {
     @Autowired
     private TrailerStorageService trailerStorageService;
     @Autowired
-    private FileStorageService fileStorageService;
+    private TrailerDownloadService trailerDownloadService;
     @Autowired
     private YouTubeDownloadParser youTubeDownloadParser;
     
@@ -96,7 +94,7 @@ public class TrailerProcessorService implements IQueueProcessService {
 
         boolean stored = false;
         try {
-            stored = fileStorageService.store(StorageType.TRAILER, cacheFilename, dto.getUrl());
+            stored = trailerDownloadService.download(trailer.getId(), dto.getUrl(), cacheFilename);
             if (!stored) {
                 LOG.error("Failed to store trailer in file cache: {}", cacheFilename);
             }
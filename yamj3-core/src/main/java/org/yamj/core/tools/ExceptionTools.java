@@ -22,12 +22,15 @@
  */
 package org.yamj.core.tools;
 
+import java.sql.SQLIntegrityConstraintViolationException;
 import javax.persistence.OptimisticLockException;
 import org.hibernate.StaleObjectStateException;
 import org.hibernate.StaleStateException;
 import org.hibernate.dialect.lock.OptimisticEntityLockException;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.exception.LockAcquisitionException;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
 
 /**
  * Exception tools
@@ -77,4 +80,28 @@ public final class ExceptionTools {
 
         return false;
     }
+
+    /**
+     * Check if the exception or one of its causes is a violated database constraint,
+     * like a unique key which has been inserted by a concurrent transaction.
+     *
+     * @param e
+     * @return
+     */
+    public static boolean isConstraintViolation(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataIntegrityViolationException) {
+                return true;
+            }
+
+            if (t instanceof ConstraintViolationException) {
+                return true;
+            }
+
+            if (t instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -30,6 +30,7 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URL;
 import java.util.Iterator;
+import java.util.concurrent.Semaphore;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
@@ -40,16 +41,39 @@ import org.slf4j.LoggerFactory;
 public final class GraphicTools {
 
     private static final Logger LOG = LoggerFactory.getLogger(GraphicTools.class);
+    // pixels are counted in units of 1024 to fit into the permits of a semaphore
+    private static final int PIXEL_UNIT = 1024;
+    private static volatile DecodeBudget decodeBudget = new DecodeBudget(65536);
 
     private GraphicTools() {
         throw new UnsupportedOperationException("Utility class cannot be instantiated");
     }
 
-    public static Dimension getDimension(String url) throws IOException {
-        try (InputStream in = new URL(url).openStream();
-             ImageInputStream iis = ImageIO.createImageInputStream(in))
-         {
+    /**
+     * Get the dimension of an image file.
+     *
+     * Only the image header is read; for formats which are not known by the
+     * header reader the image reader of ImageIO is used.
+     *
+     * @param fileImage
+     * @return the dimension, which is empty if no image reader has been found
+     * @throws IOException
+     */
+    public static Dimension getDimension(File fileImage) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(fileImage))) {
+            Dimension dimension = ImageHeaderReader.readDimension(in);
+            if (dimension != null) {
+                return dimension;
+            }
+        }
+
+        try (InputStream in = new FileInputStream(fileImage)) {
+            return getDimension(in);
+        }
+    }
 
+    private static Dimension getDimension(InputStream in) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(in)) {
             final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
             if (readers.hasNext()) {
                 ImageReader reader = readers.next();
@@ -68,6 +92,17 @@ public final class GraphicTools {
         return new Dimension();
     }
 
+    /**
+     * Set the maximum number of pixels which may be decoded at the same time.
+     *
+     * @param maxPixels
+     */
+    public static void setMaxDecodePixels(long maxPixels) {
+        int permits = (int) Math.min(Integer.MAX_VALUE, Math.max(1L, maxPixels / PIXEL_UNIT));
+        decodeBudget = new DecodeBudget(permits);
+        LOG.debug("Decoding images with up to {} pixels at the same time", maxPixels);
+    }
+
     /**
      * Load a JPG image from a file
      *
@@ -77,16 +112,72 @@ public final class GraphicTools {
      * @throws ImageReadException
      */
     public static BufferedImage loadJPEGImage(File fileImage) throws IOException, ImageReadException { //NOSONAR
+        try (DecodedImage decoded = decodeJPEGImage(fileImage, 0, 0)) {
+            return decoded.getImage();
+        }
+    }
+
+    /**
+     * Decode a JPG image from a file with at least the given size.
+     *
+     * Large images are decoded with subsampling, so that only as many pixels are
+     * read as needed for the given size. Subsampling skips pixels and would alias
+     * when used for the whole reduction, so the image is decoded with at least
+     * twice the given size and has to be scaled down with filtering afterwards;
+     * this needs up to four times the memory of the given size.
+     *
+     * The number of pixels decoded at the same time is limited, so concurrent
+     * decoding of large images waits for memory instead of running out of it.
+     * The pixels are counted until the returned image is closed, so it must be
+     * closed when the image and all copies of it are not needed anymore.
+     *
+     * @param fileImage
+     * @param minWidth the minimum width of the image, 0 for the full image
+     * @param minHeight the minimum height of the image, 0 for the full image
+     * @return the decoded image
+     * @throws IOException
+     * @throws ImageReadException
+     */
+    public static DecodedImage decodeJPEGImage(File fileImage, int minWidth, int minHeight) throws IOException, ImageReadException { //NOSONAR
         if (!fileImage.exists()) {
             throw new FileNotFoundException("Image file '" + fileImage.getName() + "' does not exist");
         }
-        JpegReader jr = new JpegReader();
-        BufferedImage bi = jr.readImage(fileImage);
+
+        Dimension dimension;
+        try {
+            dimension = getDimension(fileImage);
+        } catch (IOException ex) {
+            // let the reader decide if the image is valid
+            LOG.trace("Failed to read dimension of image '{}': {}", fileImage.getName(), ex.getMessage());
+            dimension = new Dimension();
+        }
+
+        int subsampling = 1;
+        if (minWidth > 0 && minHeight > 0 && dimension.width > 0 && dimension.height > 0) {
+            subsampling = Math.max(1, Math.min(dimension.width / (2 * minWidth), dimension.height / (2 * minHeight)));
+        }
+        long pixels = (long) ((dimension.width + subsampling - 1) / subsampling) * ((dimension.height + subsampling - 1) / subsampling);
+        if (subsampling > 1) {
+            LOG.trace("Decode image '{}' with subsampling {}", fileImage.getName(), subsampling);
+        }
+
+        final DecodeBudget budget = decodeBudget;
+        final int permits = budget.acquire(pixels);
+        BufferedImage bi = null;
+        try {
+            JpegReader jr = new JpegReader();
+            bi = jr.readImage(fileImage, subsampling);
+        } finally {
+            if (bi == null) {
+                budget.release(permits);
+            }
+        }
+
         if (bi == null) {
             // null means: the image is invalid and couldn't be loaded
             throw new ImageReadException("Image file '" + fileImage.getName() + "' is invalid");
         }
-        return bi;
+        return new DecodedImage(bi, budget, permits);
     }
 
     /**
@@ -139,6 +230,28 @@ public final class GraphicTools {
         return bi;
     }
 
+    /**
+     * Scale an image down to half of its size.
+     *
+     * Used to create intermediate images, so that several smaller images can be
+     * drawn from one large image without scaling the large image every time.
+     *
+     * @param imgSrc
+     * @return
+     */
+    public static BufferedImage scaleToHalf(BufferedImage imgSrc) {
+        int width = Math.max(1, imgSrc.getWidth() / 2);
+        int height = Math.max(1, imgSrc.getHeight() / 2);
+        int type = imgSrc.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage bi = new BufferedImage(width, height, type);
+        Graphics2D g = bi.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(imgSrc, 0, 0, width, height, null);
+        g.dispose();
+        return bi;
+    }
+
     public static BufferedImage scaleToSizeStretch(int nMaxWidth, int nMaxHeight, BufferedImage imgSrc) {
         /* determine thumbnail size from WIDTH and HEIGHT */
 
@@ -341,4 +454,55 @@ public final class GraphicTools {
         }
         return perspectiveFilter.filter(bi, null);
     }
+
+    /**
+     * A decoded image which counts against the decode budget until it is closed
+     */
+    public static final class DecodedImage implements AutoCloseable {
+
+        private final BufferedImage image;
+        private final DecodeBudget budget;
+        private int permits;
+
+        private DecodedImage(BufferedImage image, DecodeBudget budget, int permits) {
+            this.image = image;
+            this.budget = budget;
+            this.permits = permits;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        @Override
+        public synchronized void close() {
+            budget.release(permits);
+            permits = 0;
+        }
+    }
+
+    /**
+     * Limits the number of pixels being decoded at the same time
+     */
+    private static final class DecodeBudget {
+
+        private final Semaphore semaphore;
+        private final int maxPermits;
+
+        public DecodeBudget(int maxPermits) {
+            this.semaphore = new Semaphore(maxPermits, true);
+            this.maxPermits = maxPermits;
+        }
+
+        public int acquire(long pixels) {
+            // an image larger than the budget is decoded alone
+            int permits = (int) Math.min(maxPermits, Math.max(1L, pixels / PIXEL_UNIT));
+            semaphore.acquireUninterruptibly(permits);
+            return permits;
+        }
+
+        public void release(int permits) {
+            semaphore.release(permits);
+        }
+    }
 }
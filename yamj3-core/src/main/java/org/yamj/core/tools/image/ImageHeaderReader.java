@@ -0,0 +1,199 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.tools.image;
+
+import java.awt.Dimension;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the dimension of an image from its header without decoding the image.
+ *
+ * Supports JPEG (SOF marker), PNG (IHDR chunk), GIF (logical screen) and
+ * WebP (VP8, VP8L and VP8X chunks); only the bytes up to the size information
+ * are read from the stream.
+ */
+public final class ImageHeaderReader {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private ImageHeaderReader() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+
+    /**
+     * Read the dimension of an image
+     *
+     * @param in the stream positioned at the start of the image
+     * @return the dimension or null if the image format is not supported
+     * @throws IOException if the stream could not be read
+     */
+    public static Dimension readDimension(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        try {
+            final int first = dis.readUnsignedByte();
+            final int second = dis.readUnsignedByte();
+
+            if (first == 0xFF && second == 0xD8) {
+                return readJpeg(dis);
+            }
+            if (first == (PNG_SIGNATURE[0] & 0xFF) && second == PNG_SIGNATURE[1]) {
+                return readPng(dis);
+            }
+            if (first == 'G' && second == 'I') {
+                return readGif(dis);
+            }
+            if (first == 'R' && second == 'I') {
+                return readWebp(dis);
+            }
+        } catch (EOFException ex) { //NOSONAR
+            // header is truncated
+        }
+        return null;
+    }
+
+    private static Dimension readJpeg(DataInputStream dis) throws IOException {
+        while (true) {
+            int marker = dis.readUnsignedByte();
+            if (marker != 0xFF) {
+                // not a marker; invalid JPEG
+                return null;
+            }
+            // skip fill bytes
+            while (marker == 0xFF) {
+                marker = dis.readUnsignedByte();
+            }
+
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // markers without length
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan before a frame header
+                return null;
+            }
+
+            final int length = dis.readUnsignedShort();
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                // start of frame: precision, height, width
+                dis.readUnsignedByte();
+                final int height = dis.readUnsignedShort();
+                final int width = dis.readUnsignedShort();
+                return new Dimension(width, height);
+            }
+            skipFully(dis, length - 2);
+        }
+    }
+
+    private static Dimension readPng(DataInputStream dis) throws IOException {
+        for (int i = 2; i < PNG_SIGNATURE.length; i++) {
+            if (dis.readUnsignedByte() != (PNG_SIGNATURE[i] & 0xFF)) {
+                return null;
+            }
+        }
+        // chunk length and type of the IHDR chunk
+        dis.readInt();
+        if (dis.readInt() != 0x49484452) {
+            return null;
+        }
+        final int width = dis.readInt();
+        final int height = dis.readInt();
+        return new Dimension(width, height);
+    }
+
+    private static Dimension readGif(DataInputStream dis) throws IOException {
+        // rest of "GIF87a" or "GIF89a"
+        if (dis.readUnsignedByte() != 'F') {
+            return null;
+        }
+        skipFully(dis, 3);
+        final int width = readLittleEndian(dis, 2);
+        final int height = readLittleEndian(dis, 2);
+        return new Dimension(width, height);
+    }
+
+    private static Dimension readWebp(DataInputStream dis) throws IOException {
+        // rest of "RIFF", file size
+        if (dis.readUnsignedByte() != 'F' || dis.readUnsignedByte() != 'F') {
+            return null;
+        }
+        skipFully(dis, 4);
+        if (dis.readInt() != 0x57454250) {
+            // not "WEBP"
+            return null;
+        }
+
+        final int chunkType = dis.readInt();
+        // chunk size
+        skipFully(dis, 4);
+
+        if (chunkType == 0x56503858) {
+            // "VP8X": flags and reserved bytes, then canvas size minus one
+            skipFully(dis, 4);
+            final int width = readLittleEndian(dis, 3) + 1;
+            final int height = readLittleEndian(dis, 3) + 1;
+            return new Dimension(width, height);
+        }
+        if (chunkType == 0x5650384C) {
+            // "VP8L": signature, then 14 bits each for width and height minus one
+            if (dis.readUnsignedByte() != 0x2F) {
+                return null;
+            }
+            final int bits = readLittleEndian(dis, 4);
+            final int width = (bits & 0x3FFF) + 1;
+            final int height = ((bits >> 14) & 0x3FFF) + 1;
+            return new Dimension(width, height);
+        }
+        if (chunkType == 0x56503820) {
+            // "VP8 ": frame tag and start code, then 14 bits each for width and height
+            skipFully(dis, 6);
+            final int width = readLittleEndian(dis, 2) & 0x3FFF;
+            final int height = readLittleEndian(dis, 2) & 0x3FFF;
+            return new Dimension(width, height);
+        }
+        return null;
+    }
+
+    private static int readLittleEndian(DataInputStream dis, int bytes) throws IOException {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value |= dis.readUnsignedByte() << (8 * i);
+        }
+        return value;
+    }
+
+    private static void skipFully(DataInputStream dis, int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            int skipped = dis.skipBytes(remaining);
+            if (skipped <= 0) {
+                // skipBytes may stop early, so check for the end of the stream
+                dis.readUnsignedByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import org.apache.sanselan.ImageReadException;
@@ -66,6 +67,21 @@ public class JpegReader {
      * @throws IOException
      */
     public BufferedImage readImage(File file) throws IOException {
+        return readImage(file, 1);
+    }
+
+    /**
+     * Used to read a JPEG image with reduced resolution to a BufferedImage.
+     *
+     * Only every n-th pixel of every n-th row is decoded, so the memory needed
+     * for the image is reduced by the square of the subsampling.
+     *
+     * @param file
+     * @param subsampling the subsampling in both directions, 1 for the full image
+     * @return
+     * @throws IOException
+     */
+    public BufferedImage readImage(File file, int subsampling) throws IOException {
         colorType = COLOR_TYPE_RGB;
         hasAdobeMarker = Boolean.FALSE;
 
@@ -81,11 +97,15 @@ public class JpegReader {
             while (iter.hasNext()) {
                 ImageReader reader = iter.next();
                 reader.setInput(stream);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
     
                 try {
-                    image = reader.read(0);
+                    image = reader.read(0, param);
                 } catch (CMMException | IIOException ex) {
-                    image = readImageCmyk(file, reader);
+                    image = readImageCmyk(file, reader, param);
                 } finally {
                     reader.dispose();
                 }
@@ -104,15 +124,16 @@ public class JpegReader {
      *
      * @param file
      * @param reader
+     * @param param
      * @return
      */
-    private BufferedImage readImageCmyk(File file, ImageReader reader) {
+    private BufferedImage readImageCmyk(File file, ImageReader reader, ImageReadParam param) {
         colorType = COLOR_TYPE_CMYK;
         BufferedImage image;
         try {
             checkAdobeMarker(file);
             ICC_Profile profile = Sanselan.getICCProfile(file);
-            WritableRaster raster = (WritableRaster) reader.readRaster(0, null);
+            WritableRaster raster = (WritableRaster) reader.readRaster(0, param);
 
             if (colorType == COLOR_TYPE_YCCK) {
                 convertYcckToCmyk(raster);
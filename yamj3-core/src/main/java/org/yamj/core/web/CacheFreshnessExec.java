@@ -0,0 +1,125 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.execchain.ClientExecChain;
+
+/**
+ * Overrides the freshness of responses from hosts with a configured time to live.
+ *
+ * Placed below the caching execution, so the cache stores these responses for the given time
+ * regardless of the headers sent by the source. ETag and Last-Modified are left untouched, so
+ * expired entries are revalidated with a conditional request.
+ *
+ * Responses with a non textual content type, like artwork or trailers, are marked as not storable,
+ * so downloads of binary files do not evict the API responses from the cache.
+ */
+public class CacheFreshnessExec implements ClientExecChain {
+
+    private final ClientExecChain backend;
+    private final Map<Pattern, Integer> timeToLive;
+
+    /**
+     * @param backend the next element of the execution chain
+     * @param timeToLive host pattern to time to live in seconds; the last matching pattern wins
+     */
+    public CacheFreshnessExec(ClientExecChain backend, Map<Pattern, Integer> timeToLive) {
+        this.backend = backend;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context, HttpExecutionAware execAware) throws IOException, HttpException {
+        CloseableHttpResponse response = backend.execute(route, request, context, execAware);
+        if (!HttpGet.METHOD_NAME.equals(request.getRequestLine().getMethod())) {
+            return response;
+        }
+
+        if (isBinary(response.getFirstHeader(HttpHeaders.CONTENT_TYPE))) {
+            response.removeHeaders(HttpHeaders.EXPIRES);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            return response;
+        }
+
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if (timeToLive.isEmpty() || (statusCode != HttpStatus.SC_OK && statusCode != HttpStatus.SC_NOT_MODIFIED)) {
+            return response;
+        }
+
+        final Integer seconds = getTimeToLive(route.getTargetHost().getHostName());
+        if (seconds != null && seconds.intValue() > 0) {
+            response.removeHeaders(HttpHeaders.EXPIRES);
+            response.removeHeaders(HttpHeaders.PRAGMA);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "max-age=" + seconds);
+        }
+        return response;
+    }
+
+    /**
+     * Check if the content type is not textual; responses without content type are not touched.
+     */
+    static boolean isBinary(Header contentType) {
+        if (contentType == null || contentType.getValue() == null) {
+            return false;
+        }
+
+        String mimeType = contentType.getValue().toLowerCase(Locale.ENGLISH);
+        int index = mimeType.indexOf(';');
+        if (index >= 0) {
+            mimeType = mimeType.substring(0, index);
+        }
+        mimeType = mimeType.trim();
+
+        if (mimeType.isEmpty() || mimeType.startsWith("text/")) {
+            return false;
+        }
+        return !(mimeType.endsWith("/json") || mimeType.endsWith("+json")
+                 || mimeType.endsWith("/xml") || mimeType.endsWith("+xml")
+                 || mimeType.endsWith("/javascript"));
+    }
+
+    private Integer getTimeToLive(String hostName) {
+        Integer result = null;
+        for (Entry<Pattern, Integer> entry : timeToLive.entrySet()) {
+            if (entry.getKey().matcher(hostName).matches()) {
+                result = entry.getValue();
+            }
+        }
+        return result;
+    }
+}
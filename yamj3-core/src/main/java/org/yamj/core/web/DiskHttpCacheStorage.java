@@ -0,0 +1,238 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.client.cache.*;
+import org.apache.http.impl.client.cache.DefaultHttpCacheEntrySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP cache storage which keeps the cache entries compressed on disk, so they survive restarts.
+ *
+ * The size of the storage is bounded; the least recently used entries are evicted first.
+ */
+public class DiskHttpCacheStorage implements HttpCacheStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskHttpCacheStorage.class);
+    private static final String SUFFIX = ".gz";
+    private static final int LOCK_STRIPES = 64;
+
+    private final File cacheDir;
+    private final long maxBytes;
+    private final HttpCacheEntrySerializer serializer = new DefaultHttpCacheEntrySerializer();
+    // file name to file size in access order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(1000, 0.75f, true);
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private long totalBytes = 0;
+
+    public DiskHttpCacheStorage(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            LOG.warn("Failed to create HTTP cache directory {}", cacheDir.getAbsolutePath());
+        }
+        loadIndex();
+    }
+
+    /**
+     * Build the index from the files on disk; the modification time reflects the last access.
+     */
+    private void loadIndex() {
+        File[] files = cacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+
+        synchronized (index) {
+            for (File file : files) {
+                index.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+            evict();
+        }
+        LOG.info("HTTP cache contains {} entries with {} KB", files.length, totalBytes / 1024);
+    }
+
+    @Override
+    public HttpCacheEntry getEntry(String key) throws IOException {
+        final String fileName = fileName(key);
+        synchronized (index) {
+            if (index.get(fileName) == null) {
+                return null;
+            }
+        }
+        return read(key, fileName);
+    }
+
+    @Override
+    public void putEntry(String key, HttpCacheEntry entry) throws IOException {
+        synchronized (lock(key)) {
+            write(key, fileName(key), entry);
+        }
+    }
+
+    @Override
+    public void removeEntry(String key) throws IOException {
+        final String fileName = fileName(key);
+        synchronized (lock(key)) {
+            synchronized (index) {
+                Long size = index.remove(fileName);
+                if (size != null) {
+                    totalBytes -= size;
+                }
+            }
+            delete(fileName);
+        }
+    }
+
+    @Override
+    public void updateEntry(String key, HttpCacheUpdateCallback callback) throws IOException, HttpCacheUpdateException {
+        final String fileName = fileName(key);
+        synchronized (lock(key)) {
+            boolean cached;
+            synchronized (index) {
+                cached = index.get(fileName) != null;
+            }
+            HttpCacheEntry existing = cached ? read(key, fileName) : null;
+            write(key, fileName, callback.update(existing));
+        }
+    }
+
+    private HttpCacheEntry read(String key, String fileName) throws IOException {
+        final File file = new File(cacheDir, fileName);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (!key.equals(in.readUTF())) {
+                // hash collision; treat as cache miss
+                return null;
+            }
+            HttpCacheEntry entry = serializer.readFrom(in);
+            // remember the access for the next start
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (FileNotFoundException ex) {
+            forget(fileName);
+            return null;
+        } catch (IOException ex) {
+            LOG.debug("Removing unreadable HTTP cache entry {}: {}", fileName, ex.getMessage());
+            forget(fileName);
+            delete(fileName);
+            return null;
+        }
+    }
+
+    private void write(String key, String fileName, HttpCacheEntry entry) throws IOException {
+        final File tempFile = File.createTempFile("entry", ".tmp", cacheDir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeUTF(key);
+                serializer.writeTo(entry, out);
+            }
+            Files.move(tempFile.toPath(), new File(cacheDir, fileName).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+
+        final long size = new File(cacheDir, fileName).length();
+        synchronized (index) {
+            Long previous = index.put(fileName, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evict();
+        }
+    }
+
+    private void forget(String fileName) {
+        synchronized (index) {
+            Long size = index.remove(fileName);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used entries; must be called while holding the index lock.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iter = index.entrySet().iterator();
+        while (totalBytes > maxBytes && iter.hasNext()) {
+            Map.Entry<String, Long> eldest = iter.next();
+            totalBytes -= eldest.getValue();
+            iter.remove();
+            delete(eldest.getKey());
+        }
+    }
+
+    private void delete(String fileName) {
+        File file = new File(cacheDir, fileName);
+        if (file.exists() && !file.delete()) {
+            LOG.trace("Failed to delete HTTP cache file {}", fileName);
+        }
+    }
+
+    private Object lock(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + SUFFIX.length());
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-1 is available in every JRE
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.core.api.model.HttpHostStatistics;
+
+/**
+ * Governs the outbound HTTP requests per host.
+ *
+ * Each host gets a request rate limit, a concurrency limit which adapts to the responses of
+ * the host (additive increase while the latency is good, multiplicative decrease on throttling
+ * or errors) and a circuit breaker which rejects requests after repeated failures.
+ */
+public class HttpGovernor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpGovernor.class);
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 600000;
+    // latency above this factor of the best latency is treated as queueing at the host
+    private static final int LATENCY_FACTOR = 2;
+
+    private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final Map<Pattern, Integer> requestsPerSecond;
+    private final Map<Pattern, Integer> concurrencyLimits;
+    private final int maxConcurrency;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long maxWaitNanos;
+
+    /**
+     * @param requestsPerSecond host pattern to allowed requests per second; the last matching pattern wins
+     * @param concurrencyLimits host pattern to upper bound of concurrent requests; the last matching pattern wins
+     * @param maxConcurrency upper bound of concurrent requests for each host
+     * @param failureThreshold consecutive failures which open the circuit of a host
+     * @param openSeconds seconds until a host with open circuit is tried again
+     * @param maxWaitMillis maximum time to wait for a request slot
+     */
+    public HttpGovernor(Map<Pattern, Integer> requestsPerSecond, Map<Pattern, Integer> concurrencyLimits,
+            int maxConcurrency, int failureThreshold, int openSeconds, int maxWaitMillis)
+    {
+        this.requestsPerSecond = requestsPerSecond;
+        this.concurrencyLimits = concurrencyLimits;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Wait for a request slot of the host.
+     *
+     * @param hostName the target host
+     * @return the state of the host, which must be given back with one of the release methods
+     * @throws IOException if the circuit of the host is open or no slot became free in time
+     */
+    public HostState acquire(String hostName) throws IOException {
+        final HostState state = getHostState(hostName);
+        final long start = System.nanoTime();
+        final long deadline = start + maxWaitNanos;
+
+        long rateWait;
+        synchronized (state) {
+            long now = start;
+            if (state.circuitOpenUntil != 0) {
+                if (now - state.circuitOpenUntil < 0 || state.circuitTrial) {
+                    state.rejected++;
+                    throw new IOException("Circuit open for host " + hostName);
+                }
+                // half open: let one request through as trial
+                state.circuitTrial = true;
+            }
+            final boolean trial = state.circuitTrial;
+
+            while (state.inFlight >= (int) state.limit || state.blockedUntil - now > 0) {
+                long wait = deadline - now;
+                if (wait <= 0) {
+                    state.rejected++;
+                    if (trial) {
+                        state.circuitTrial = false;
+                    }
+                    throw new ConnectionPoolTimeoutException("Timeout waiting for request slot of host " + hostName);
+                }
+                if (state.blockedUntil - now > 0) {
+                    wait = Math.min(wait, state.blockedUntil - now);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(state, wait);
+                } catch (InterruptedException ex) {
+                    if (trial) {
+                        state.circuitTrial = false;
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for host " + hostName);
+                }
+                now = System.nanoTime();
+            }
+            state.inFlight++;
+
+            // reserve the next slot of the request rate
+            if (state.nextSlot - now < 0) {
+                state.nextSlot = now;
+            }
+            rateWait = state.nextSlot - now;
+            state.nextSlot += state.slotNanos;
+        }
+
+        if (rateWait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(rateWait);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                synchronized (state) {
+                    state.inFlight--;
+                    state.circuitTrial = false;
+                    state.notifyAll();
+                }
+                throw new InterruptedIOException("Interrupted while waiting for host " + hostName);
+            }
+        }
+
+        synchronized (state) {
+            state.queueWaitNanos += System.nanoTime() - start;
+        }
+        return state;
+    }
+
+    /**
+     * Give back the request slot after the host answered.
+     *
+     * @param state the state returned by acquire
+     * @param latencyNanos time until the response arrived
+     * @param response the response
+     */
+    public void completed(HostState state, long latencyNanos, HttpResponse response) {
+        final int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode == SC_TOO_MANY_REQUESTS || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+            final long retryAfter = getRetryAfterMillis(response);
+            synchronized (state) {
+                state.throttled++;
+                state.blockedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfter);
+            }
+            LOG.debug("Host {} throttled requests, retry after {} ms", state.host, retryAfter);
+        }
+
+        if (statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            release(state, latencyNanos, false);
+        } else if (statusCode == SC_TOO_MANY_REQUESTS) {
+            synchronized (state) {
+                // the host is alive, but wants less load
+                state.limit = Math.max(1d, state.limit / 2);
+                state.consecutiveFailures = 0;
+                state.circuitOpenUntil = 0;
+                state.circuitTrial = false;
+                finish(state, latencyNanos);
+            }
+        } else {
+            release(state, latencyNanos, true);
+        }
+    }
+
+    /**
+     * Give back the request slot after the request failed.
+     *
+     * @param state the state returned by acquire
+     * @param latencyNanos time until the failure
+     */
+    public void failed(HostState state, long latencyNanos) {
+        release(state, latencyNanos, false);
+    }
+
+    private void release(HostState state, long latencyNanos, boolean success) {
+        synchronized (state) {
+            if (success) {
+                state.consecutiveFailures = 0;
+                state.circuitOpenUntil = 0;
+
+                if (state.bestLatencyNanos == 0 || latencyNanos < state.bestLatencyNanos) {
+                    state.bestLatencyNanos = latencyNanos;
+                } else {
+                    // let the best latency follow slowly, so one lucky response does not stop the growth
+                    state.bestLatencyNanos += (latencyNanos - state.bestLatencyNanos) / 64;
+                }
+
+                if (latencyNanos <= LATENCY_FACTOR * state.bestLatencyNanos) {
+                    state.limit = Math.min(state.maxLimit, state.limit + 1d / state.limit);
+                } else {
+                    state.limit = Math.max(1d, state.limit * 0.9d);
+                }
+            } else {
+                state.failures++;
+                state.consecutiveFailures++;
+                state.limit = Math.max(1d, state.limit / 2);
+
+                if (state.circuitTrial || state.consecutiveFailures >= failureThreshold) {
+                    state.circuitOpenUntil = System.nanoTime() + openNanos;
+                    LOG.warn("Circuit opened for host {} after {} failures", state.host, state.consecutiveFailures);
+                }
+            }
+            state.circuitTrial = false;
+            finish(state, latencyNanos);
+        }
+    }
+
+    private static void finish(HostState state, long latencyNanos) {
+        state.inFlight--;
+        state.requests++;
+        state.latencyNanos += latencyNanos;
+        state.notifyAll();
+    }
+
+    private static long getRetryAfterMillis(HttpResponse response) {
+        final Header header = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (header == null || StringUtils.isBlank(header.getValue())) {
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+
+        final String value = header.getValue().trim();
+        long millis;
+        if (NumberUtils.isDigits(value)) {
+            millis = TimeUnit.SECONDS.toMillis(NumberUtils.toLong(value));
+        } else {
+            Date date = DateUtils.parseDate(value);
+            millis = date == null ? DEFAULT_RETRY_AFTER_MILLIS : date.getTime() - System.currentTimeMillis();
+        }
+        return Math.max(0, Math.min(millis, MAX_RETRY_AFTER_MILLIS));
+    }
+
+    private HostState getHostState(String hostName) {
+        HostState state = hosts.get(hostName);
+        if (state == null) {
+            Integer rate = getRule(requestsPerSecond, hostName);
+            Integer limit = getRule(concurrencyLimits, hostName);
+            int maxLimit = limit == null ? maxConcurrency : Math.max(1, Math.min(limit.intValue(), maxConcurrency));
+            long slotNanos = (rate == null || rate.intValue() <= 0) ? 0 : TimeUnit.SECONDS.toNanos(1) / rate.intValue();
+
+            HostState newState = new HostState(hostName, slotNanos, maxLimit);
+            state = hosts.putIfAbsent(hostName, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    private static Integer getRule(Map<Pattern, Integer> rules, String hostName) {
+        Integer result = null;
+        for (Entry<Pattern, Integer> entry : rules.entrySet()) {
+            if (entry.getKey().matcher(hostName).matches()) {
+                result = entry.getValue();
+            }
+        }
+        return result;
+    }
+
+    public List<HttpHostStatistics> getStatistics() {
+        List<HttpHostStatistics> result = new ArrayList<>(hosts.size());
+        final long now = System.nanoTime();
+        for (HostState state : hosts.values()) {
+            HttpHostStatistics statistics = new HttpHostStatistics();
+            synchronized (state) {
+                statistics.setHost(state.host);
+                statistics.setRequestsPerSecond(state.slotNanos == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / state.slotNanos);
+                statistics.setConcurrencyLimit(state.limit);
+                statistics.setMaxConcurrency(state.maxLimit);
+                statistics.setInFlight(state.inFlight);
+                statistics.setRequests(state.requests);
+                statistics.setThrottled(state.throttled);
+                statistics.setFailures(state.failures);
+                statistics.setRejected(state.rejected);
+                if (state.requests > 0) {
+                    statistics.setAverageQueueWait(TimeUnit.NANOSECONDS.toMillis(state.queueWaitNanos / state.requests));
+                    statistics.setAverageLatency(TimeUnit.NANOSECONDS.toMillis(state.latencyNanos / state.requests));
+                }
+                statistics.setCircuitOpen(state.circuitOpenUntil != 0 && state.circuitOpenUntil - now > 0);
+            }
+            result.add(statistics);
+        }
+
+        Collections.sort(result, new Comparator<HttpHostStatistics>() {
+            @Override
+            public int compare(HttpHostStatistics s1, HttpHostStatistics s2) {
+                return s1.getHost().compareTo(s2.getHost());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Request state of one host; all fields are guarded by the instance.
+     */
+    public static final class HostState {
+
+        private final String host;
+        private final long slotNanos;
+        private final int maxLimit;
+        private double limit = 1d;
+        private int inFlight = 0;
+        private long nextSlot = System.nanoTime();
+        private long blockedUntil = System.nanoTime();
+        private long bestLatencyNanos = 0;
+        private int consecutiveFailures = 0;
+        private long circuitOpenUntil = 0;
+        private boolean circuitTrial = false;
+        // statistics
+        private long requests = 0;
+        private long throttled = 0;
+        private long failures = 0;
+        private long rejected = 0;
+        private long queueWaitNanos = 0;
+        private long latencyNanos = 0;
+
+        HostState(String host, long slotNanos, int maxLimit) {
+            this.host = host;
+            this.slotNanos = slotNanos;
+            this.maxLimit = maxLimit;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import java.io.IOException;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.execchain.ClientExecChain;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.yamj.core.web.HttpGovernor.HostState;
+
+/**
+ * Passes every request which is not answered by the cache through the {@link HttpGovernor}.
+ *
+ * The request slot is held until the response head arrived; the connection pool still
+ * bounds the connections used for reading the response bodies.
+ *
+ * The latency reported to the governor starts when the request is sent over a leased
+ * connection, so waiting for a pooled connection is not mistaken for a slow host.
+ */
+public class HttpGovernorExec implements ClientExecChain {
+
+    static final String REQUEST_START = "yamj3.governor.requestStart";
+
+    private final ClientExecChain backend;
+    private final HttpGovernor governor;
+
+    public HttpGovernorExec(ClientExecChain backend, HttpGovernor governor) {
+        this.backend = backend;
+        this.governor = governor;
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context, HttpExecutionAware execAware) throws IOException, HttpException {
+        final HostState state = governor.acquire(route.getTargetHost().getHostName());
+        final long start = System.nanoTime();
+        context.removeAttribute(REQUEST_START);
+
+        CloseableHttpResponse response;
+        try {
+            response = backend.execute(route, request, context, execAware);
+        } catch (IOException | HttpException | RuntimeException ex) {
+            governor.failed(state, getLatency(context, start));
+            throw ex;
+        }
+
+        governor.completed(state, getLatency(context, start), response);
+        return response;
+    }
+
+    /**
+     * Get the time since the request was sent; falls back to the given start if the request
+     * never got a connection.
+     */
+    static long getLatency(HttpContext context, long start) {
+        final Object requestStart = context.getAttribute(REQUEST_START);
+        final long from = requestStart instanceof Long ? ((Long) requestStart).longValue() : start;
+        return System.nanoTime() - from;
+    }
+
+    /**
+     * Request executor which records the time the request is sent over the leased connection.
+     */
+    public static class TimingRequestExecutor extends HttpRequestExecutor {
+
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+            if (context != null) {
+                context.setAttribute(REQUEST_START, Long.valueOf(System.nanoTime()));
+            }
+            return super.execute(request, conn, context);
+        }
+    }
+}
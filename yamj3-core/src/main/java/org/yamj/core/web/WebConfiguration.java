@@ -30,7 +30,10 @@ import com.omertron.rottentomatoesapi.RottenTomatoesApi;
 import com.omertron.themoviedbapi.TheMovieDbApi;
 import com.omertron.thetvdbapi.TheTVDBApi;
 import com.omertron.tvrageapi.TVRageApi;
+import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
@@ -47,6 +50,7 @@ import org.apache.http.impl.client.SystemDefaultCredentialsProvider;
 import org.apache.http.impl.client.cache.CacheConfig;
 import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.execchain.ClientExecChain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -89,12 +93,33 @@ public class WebConfiguration  {
     @Value("${yamj3.http.connections.maxTotal:20}")
     private int connectionsMaxTotal;
     
-    @Value("${yamj3.http.connections.maxPerRoute:1}")
-    private int connectionsMaxPerRoute;
-
     @Value("${yamj3.http.maxDownloadSlots:null}")
     private String maxDownloadSlots;
 
+    @Value("${yamj3.http.cache.directory:}")
+    private String cacheDirectory;
+
+    @Value("${yamj3.http.cache.maxSize:256}")
+    private int cacheMaxSize;
+
+    @Value("${yamj3.http.cache.maxObjectSize:512}")
+    private int cacheMaxObjectSize;
+
+    @Value("${yamj3.http.cache.timeToLive:null}")
+    private String cacheTimeToLive;
+
+    @Value("${yamj3.http.governor.requestsPerSecond:null}")
+    private String governorRequestsPerSecond;
+
+    @Value("${yamj3.http.governor.maxConcurrency:8}")
+    private int governorMaxConcurrency;
+
+    @Value("${yamj3.http.governor.failureThreshold:5}")
+    private int governorFailureThreshold;
+
+    @Value("${yamj3.http.governor.openSeconds:60}")
+    private int governorOpenSeconds;
+
     @Value("${APIKEY.themoviedb}")
     private String theMovieDbApiKey;
 
@@ -155,16 +180,33 @@ public class WebConfiguration  {
       
         PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
         connManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build());
-        connManager.setMaxTotal(connectionsMaxTotal);
-        connManager.setDefaultMaxPerRoute(connectionsMaxPerRoute);
+        // the governor bounds the concurrent requests per host, so the pool must not be stricter
+        connManager.setDefaultMaxPerRoute(Math.max(1, governorMaxConcurrency));
+        connManager.setMaxTotal(Math.max(connectionsMaxTotal, governorMaxConcurrency));
         
         CacheConfig cacheConfig = CacheConfig.custom()
                         .setMaxCacheEntries(1000)
-                        .setMaxObjectSize(8192)
+                        .setMaxObjectSize(cacheMaxObjectSize * 1024L)
                         .build();
         
-        HttpClientBuilder builder = CachingHttpClientBuilder.create()
-                .setCacheConfig(cacheConfig)
+        final Map<Pattern, Integer> timeToLive = getHostRules(cacheTimeToLive);
+        final HttpGovernor governor = httpGovernor();
+        CachingHttpClientBuilder cachingBuilder = new CachingHttpClientBuilder() {
+            @Override
+            protected ClientExecChain decorateMainExec(ClientExecChain mainExec) {
+                // govern only requests missing the cache and override freshness before the response reaches the cache
+                return super.decorateMainExec(new CacheFreshnessExec(new HttpGovernorExec(mainExec, governor), timeToLive));
+            }
+        };
+        cachingBuilder.setCacheConfig(cacheConfig);
+        cachingBuilder.setRequestExecutor(new HttpGovernorExec.TimingRequestExecutor());
+        
+        if (StringUtils.isNotBlank(cacheDirectory)) {
+            LOG.debug("Using persistent HTTP cache: {}", cacheDirectory);
+            cachingBuilder.setHttpCacheStorage(new DiskHttpCacheStorage(new File(cacheDirectory), cacheMaxSize * 1024L * 1024L));
+        }
+        
+        HttpClientBuilder builder = cachingBuilder
                 .setConnectionManager(connManager)
                 .setProxy(proxy)
                 .setDefaultCredentialsProvider(credentialsProvider)
@@ -185,7 +227,7 @@ public class WebConfiguration  {
         // build the client
         PoolingHttpClient wrapper = new PoolingHttpClient(builder.build(), connManager);
         wrapper.setUserAgentSelector(new WebBrowserUserAgentSelector());
-        wrapper.addGroupLimit(".*", 1); // default limit, can be overwritten
+        wrapper.addGroupLimit(".*", governorMaxConcurrency); // default limit, can be overwritten
         
         if (StringUtils.isNotBlank(maxDownloadSlots)) {
             LOG.debug("Using download limits: {}", maxDownloadSlots);
@@ -207,6 +249,33 @@ public class WebConfiguration  {
         return wrapper;
     }
 
+    @Bean
+    public HttpGovernor httpGovernor() {
+        LOG.trace("Create new http governor");
+        // download slots are the upper bounds of the adaptive concurrency
+        return new HttpGovernor(getHostRules(governorRequestsPerSecond), getHostRules(maxDownloadSlots),
+                        governorMaxConcurrency, governorFailureThreshold, governorOpenSeconds, connectionRequestTimeout);
+    }
+
+    private static Map<Pattern, Integer> getHostRules(String rules) {
+        Map<Pattern, Integer> hostRules = new LinkedHashMap<>();
+        if (StringUtils.isNotBlank(rules)) {
+            LOG.debug("Using host rules: {}", rules);
+  
+            Pattern pattern = Pattern.compile(",?\\s*([^=]+)=(\\d+)");
+            Matcher matcher = pattern.matcher(rules);
+            while (matcher.find()) {
+                String host = matcher.group(1);
+                try {
+                    hostRules.put(Pattern.compile(host), Integer.valueOf(matcher.group(2)));
+                } catch (RuntimeException error) {
+                    LOG.debug("Rule '{}' is no valid regexp, ignored", host);
+                }
+            }
+        }
+        return hostRules;
+    }
+
     @Bean
     public TheMovieDbApi theMovieDbApi() throws Exception {
         LOG.trace("Initialize TheMovieDbApi");
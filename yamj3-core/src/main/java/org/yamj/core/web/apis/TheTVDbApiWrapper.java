@@ -25,13 +25,16 @@ package org.yamj.core.web.apis;
 import com.omertron.thetvdbapi.TheTVDBApi;
 import com.omertron.thetvdbapi.TvDbException;
 import com.omertron.thetvdbapi.model.*;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.yamj.api.common.tools.ResponseTools;
@@ -46,11 +49,27 @@ public class TheTVDbApiWrapper {
     private static final int YEAR_MIN = 1900;
     private static final int YEAR_MAX = 2100;
     private static final String API_ERROR = "TheTVDb error";
+    private static final int LOCK_STRIPES = 16;
+    // a series whose episodes failed to load is not requested again for this time
+    private static final long EPISODES_RETRY_MILLIS = 300000L;
     
     @Autowired
     private ConfigService configService;
     @Autowired
     private TheTVDBApi tvdbApi;
+    @Autowired
+    private Cache tvdbEpisodesCache;
+
+    // avoid loading the same series concurrently
+    private final Object[] episodeLocks = new Object[LOCK_STRIPES];
+    // the time until a failed series is not requested again, by cache key
+    private final ConcurrentMap<String, Long> failedEpisodes = new ConcurrentHashMap<>();
+
+    public TheTVDbApiWrapper() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            episodeLocks[i] = new Object();
+        }
+    }
     
     @Cacheable(value=CachingNames.API_TVDB, key="{#root.methodName, #id}", unless="#result==null")
     public Banners getBanners(String id) {
@@ -167,42 +186,135 @@ public class TheTVDbApiWrapper {
         return actorList;
     }
 
+    /**
+     * Get the year of a season, which is the year the first episode aired.
+     *
+     * @param id
+     * @param season
+     * @param language
+     * @return the year or null
+     */
     public String getSeasonYear(String id, int season, String language) {
-        String year = null;
-        try {
+        String year = getFirstAiredYear(findEpisode(getAllEpisodes(id, language), season, 1), id, season);
+        if (year == null) {
             String altLanguage = configService.getProperty("thetvdb.language.alternate", language);
-
-            year = tvdbApi.getSeasonYear(id, season, language);
-            if (StringUtils.isBlank(year) && !altLanguage.equalsIgnoreCase(language)) {
-                year = tvdbApi.getSeasonYear(id, season, altLanguage);
+            if (!altLanguage.equalsIgnoreCase(language)) {
+                year = getFirstAiredYear(findEpisode(getAllEpisodes(id, altLanguage), season, 1), id, season);
             }
-        } catch (TvDbException ex) {
-            LOG.error("Failed to season year for TVDb ID {} and season {}: {}", id, season, ex.getMessage());
-            LOG.trace(API_ERROR, ex);
         }
-        
         return year;
     }
-        
-    @Cacheable(value=CachingNames.API_TVDB, key="{#root.methodName, #id, #season, #episode, #language}", unless="#result==null")
-    public Episode getEpisode(String id, int season, int episode, String language) {
-        Episode tvdbEpisode = null;
+
+    private static String getFirstAiredYear(Episode tvdbEpisode, String id, int season) {
+        if (tvdbEpisode == null || StringUtils.isBlank(tvdbEpisode.getFirstAired())) {
+            return null;
+        }
         
         try {
+            return String.valueOf(DateTime.parse(tvdbEpisode.getFirstAired()).getYear());
+        } catch (IllegalArgumentException ex) {
+            LOG.trace("Failed to parse first aired date '{}' of TVDb ID {} and season {}", tvdbEpisode.getFirstAired(), id, season);
+            return null;
+        }
+    }
+        
+    /**
+     * Get an episode; served from the episodes of the series which are loaded at once.
+     *
+     * @param id
+     * @param season
+     * @param episode
+     * @param language
+     * @return the episode or null
+     */
+    public Episode getEpisode(String id, int season, int episode, String language) {
+        Episode tvdbEpisode = findEpisode(getAllEpisodes(id, language), season, episode);
+        if (tvdbEpisode == null) {
             String altLanguage = configService.getProperty("thetvdb.language.alternate", language);
-
-            tvdbEpisode = tvdbApi.getEpisode(id, season, episode, language);
-            if (tvdbEpisode == null && !altLanguage.equalsIgnoreCase(language)) {
-                tvdbEpisode = tvdbApi.getEpisode(id, season, episode, altLanguage);
+            if (!altLanguage.equalsIgnoreCase(language)) {
+                tvdbEpisode = findEpisode(getAllEpisodes(id, altLanguage), season, episode);
             }
-        } catch (TvDbException ex) {
-            LOG.error("Failed to get episode {} for TVDb ID {} and season {}: {}", episode, id, season, ex.getMessage());
-            LOG.trace(API_ERROR, ex);
         }
-        
         return tvdbEpisode;
     }
 
+    private static Episode findEpisode(Map<Integer, Map<Integer, Episode>> allEpisodes, int season, int episode) {
+        if (allEpisodes == null) {
+            return null;
+        }
+        Map<Integer, Episode> seasonEpisodes = allEpisodes.get(season);
+        return seasonEpisodes == null ? null : seasonEpisodes.get(episode);
+    }
+
+    /**
+     * Get all episodes of a series indexed by season and episode number.
+     *
+     * The full series record is requested once instead of one request per episode.
+     * If the request fails, the series is not requested again for a few minutes.
+     *
+     * @param id
+     * @param language
+     * @return the episodes or null, if the series could not be retrieved
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Integer, Map<Integer, Episode>> getAllEpisodes(String id, String language) {
+        final String cacheKey = id + "###" + language;
+        Map<Integer, Map<Integer, Episode>> allEpisodes = tvdbEpisodesCache.get(cacheKey, Map.class);
+        if (allEpisodes != null) {
+            return allEpisodes;
+        }
+
+        if (isRetryDelayed(cacheKey)) {
+            return null;
+        }
+        
+        synchronized (episodeLocks[(cacheKey.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+            // may have been loaded by another thread in the meantime
+            allEpisodes = tvdbEpisodesCache.get(cacheKey, Map.class);
+            if (allEpisodes != null || isRetryDelayed(cacheKey)) {
+                return allEpisodes;
+            }
+
+            List<Episode> episodes;
+            try {
+                episodes = tvdbApi.getAllEpisodes(id, language);
+            } catch (TvDbException ex) {
+                LOG.error("Failed to get episodes for TVDb ID {}: {}", id, ex.getMessage());
+                LOG.trace(API_ERROR, ex);
+                failedEpisodes.put(cacheKey, System.currentTimeMillis() + EPISODES_RETRY_MILLIS);
+                return null;
+            }
+
+            allEpisodes = new HashMap<>();
+            if (episodes != null) {
+                for (Episode episode : episodes) {
+                    Map<Integer, Episode> seasonEpisodes = allEpisodes.get(episode.getSeasonNumber());
+                    if (seasonEpisodes == null) {
+                        seasonEpisodes = new HashMap<>();
+                        allEpisodes.put(episode.getSeasonNumber(), seasonEpisodes);
+                    }
+                    seasonEpisodes.put(episode.getEpisodeNumber(), episode);
+                }
+            }
+            LOG.debug("Loaded {} episodes for TVDb ID {} and language {}", episodes == null ? 0 : episodes.size(), id, language);
+            
+            tvdbEpisodesCache.put(cacheKey, allEpisodes);
+            return allEpisodes;
+        }
+    }
+
+    private boolean isRetryDelayed(String cacheKey) {
+        Long retryTime = failedEpisodes.get(cacheKey);
+        if (retryTime == null) {
+            return false;
+        }
+        if (retryTime.longValue() > System.currentTimeMillis()) {
+            return true;
+        }
+        failedEpisodes.remove(cacheKey, retryTime);
+        return false;
+    }
+
     private static void checkTempError(boolean throwTempError, TvDbException ex) {
         if (throwTempError && ResponseTools.isTemporaryError(ex)) {
             throw new TemporaryUnavailableException("TheTVDb service temporary not available: " + ex.getResponseCode(), ex);
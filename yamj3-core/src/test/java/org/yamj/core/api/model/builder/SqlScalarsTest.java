@@ -0,0 +1,76 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.api.model.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.LongType;
+import org.hibernate.type.StringType;
+import org.junit.Test;
+
+public class SqlScalarsTest {
+
+    private static SqlScalars createScalars() {
+        SqlScalars sqlScalars = new SqlScalars("SELECT v.id, v.title, v.publication_year AS year FROM videodata v ORDER BY title ASC");
+        sqlScalars.addScalar("id", LongType.INSTANCE);
+        sqlScalars.addScalar("title", StringType.INSTANCE);
+        sqlScalars.addScalar("year", IntegerType.INSTANCE);
+        return sqlScalars;
+    }
+
+    @Test
+    public void testFirstPageUnchanged() {
+        SqlScalars sqlScalars = createScalars();
+        assertFalse(sqlScalars.addSeekCondition("title", false, null, null));
+        assertEquals("SELECT v.id, v.title, v.publication_year AS year FROM videodata v ORDER BY title ASC", sqlScalars.getSql());
+    }
+
+    @Test
+    public void testSeekAfterValue() {
+        SqlScalars sqlScalars = createScalars();
+        assertTrue(sqlScalars.addSeekCondition("year", true, "2001", 12L));
+        assertEquals("SELECT * FROM (SELECT v.id, v.title, v.publication_year AS year FROM videodata v) seek "
+                        + "WHERE (seek.year IS NULL OR seek.year<:seekValue OR (seek.year=:seekValue AND seek.id<:seekId)) "
+                        + "ORDER BY CASE WHEN seek.year IS NULL THEN 1 ELSE 0 END, seek.year DESC, seek.id DESC", sqlScalars.getSql());
+    }
+
+    @Test
+    public void testSeekAfterNullValue() {
+        SqlScalars sqlScalars = createScalars();
+        assertTrue(sqlScalars.addSeekCondition("title", false, null, 12L));
+        assertEquals("SELECT * FROM (SELECT v.id, v.title, v.publication_year AS year FROM videodata v) seek "
+                        + "WHERE seek.title IS NULL AND seek.id>:seekId "
+                        + "ORDER BY CASE WHEN seek.title IS NULL THEN 1 ELSE 0 END, seek.title ASC, seek.id ASC", sqlScalars.getSql());
+    }
+
+    @Test
+    public void testNoSeek() {
+        // unknown sort column
+        assertFalse(createScalars().addSeekCondition("rating", false, "5", null));
+        // invalid value for the type of the sort column
+        assertFalse(createScalars().addSeekCondition("year", false, "unknown", null));
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.service.attachment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yamj.core.service.attachment.MatroskaAttachmentReader.MatroskaAttachment;
+
+public class MatroskaAttachmentReaderTest {
+
+    private static final int ID_EBML = 0x1A45DFA3;
+    private static final int ID_DOCTYPE = 0x4282;
+    private static final int ID_SEGMENT = 0x18538067;
+    private static final int ID_SEEKHEAD = 0x114D9B74;
+    private static final int ID_SEEK = 0x4DBB;
+    private static final int ID_SEEK_ID = 0x53AB;
+    private static final int ID_SEEK_POSITION = 0x53AC;
+    private static final int ID_INFO = 0x1549A966;
+    private static final int ID_CLUSTER = 0x1F43B675;
+    private static final int ID_ATTACHMENTS = 0x1941A469;
+    private static final int ID_ATTACHED_FILE = 0x61A7;
+    private static final int ID_FILE_NAME = 0x466E;
+    private static final int ID_FILE_MIME_TYPE = 0x4660;
+    private static final int ID_FILE_DATA = 0x465C;
+    private static final byte[] COVER = {1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] element(int id, boolean unknownSize, byte[]... children) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if ((id >>> shift) != 0) {
+                out.write(id >>> shift);
+            }
+        }
+
+        long size = 0;
+        for (byte[] child : children) {
+            size += child.length;
+        }
+        // sizes are always coded with 8 bytes
+        out.write(0x01);
+        for (int shift = 48; shift >= 0; shift -= 8) {
+            out.write(unknownSize ? 0xFF : (int) (size >>> shift));
+        }
+
+        for (byte[] child : children) {
+            out.write(child, 0, child.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] element(int id, byte[]... children) {
+        return element(id, false, children);
+    }
+
+    private static byte[] uint(long value) {
+        byte[] data = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            data[i] = (byte) (value >>> (56 - 8 * i));
+        }
+        return data;
+    }
+
+    private static byte[] string(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] header() {
+        return element(ID_EBML, element(ID_DOCTYPE, string("matroska")));
+    }
+
+    private static byte[] attachments() {
+        return element(ID_ATTACHMENTS,
+                element(ID_ATTACHED_FILE,
+                        element(ID_FILE_NAME, string("cover.jpg")),
+                        element(ID_FILE_MIME_TYPE, string("image/jpeg")),
+                        element(ID_FILE_DATA, COVER)));
+    }
+
+    private static byte[] seekHead(int seekId, long seekPosition) {
+        return element(ID_SEEKHEAD,
+                element(ID_SEEK,
+                        element(ID_SEEK_ID, uint(seekId)),
+                        element(ID_SEEK_POSITION, uint(seekPosition))));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private List<MatroskaAttachment> readAttachments(byte[] data) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), data);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel())
+        {
+            return MatroskaAttachmentReader.readAttachments(channel);
+        }
+    }
+
+    private static void assertCover(List<MatroskaAttachment> attachments) {
+        assertEquals(1, attachments.size());
+        MatroskaAttachment attachment = attachments.get(0);
+        assertEquals(1, attachment.getAttachmentId());
+        assertEquals("cover.jpg", attachment.getFileName());
+        assertEquals("image/jpeg", attachment.getMimeType());
+        assertEquals(COVER.length, attachment.getDataSize());
+    }
+
+    @Test
+    public void testWithSeekHead() throws IOException {
+        // the cluster has an unknown size, so the attachments can only be found by the SeekHead
+        byte[] info = element(ID_INFO, new byte[4]);
+        byte[] cluster = element(ID_CLUSTER, true, new byte[16]);
+        long seekHeadLength = seekHead(ID_ATTACHMENTS, 0).length;
+        byte[] seekHead = seekHead(ID_ATTACHMENTS, seekHeadLength + info.length);
+        byte[] segment = element(ID_SEGMENT, seekHead, info, attachments(), cluster);
+
+        assertCover(readAttachments(concat(header(), segment)));
+    }
+
+    @Test
+    public void testWithoutSeekHead() throws IOException {
+        byte[] segment = element(ID_SEGMENT, element(ID_INFO, new byte[4]), element(ID_CLUSTER, new byte[32]), attachments());
+
+        assertCover(readAttachments(concat(header(), segment)));
+    }
+
+    @Test
+    public void testSeekHeadWithoutAttachments() throws IOException {
+        byte[] info = element(ID_INFO, new byte[4]);
+        long seekHeadLength = seekHead(ID_INFO, 0).length;
+        byte[] seekHead = seekHead(ID_INFO, seekHeadLength);
+        byte[] segment = element(ID_SEGMENT, seekHead, info, element(ID_CLUSTER, new byte[32]), attachments());
+
+        assertCover(readAttachments(concat(header(), segment)));
+    }
+
+    @Test
+    public void testUnknownSizeSegment() throws IOException {
+        byte[] segment = element(ID_SEGMENT, true, element(ID_INFO, new byte[4]), attachments());
+
+        assertCover(readAttachments(concat(header(), segment)));
+    }
+
+    @Test
+    public void testUnknownSizeClusterBeforeAttachments() throws IOException {
+        // without a SeekHead the elements after an unknown size element can not be found
+        byte[] segment = element(ID_SEGMENT, element(ID_CLUSTER, true, new byte[16]), attachments());
+
+        assertTrue(readAttachments(concat(header(), segment)).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoMatroska() throws IOException {
+        readAttachments(string("no matroska file"));
+    }
+
+    @Test
+    public void testTransferAttachment() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), concat(header(), element(ID_SEGMENT, attachments())));
+        File dst = folder.newFile();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel())
+        {
+            List<MatroskaAttachment> attachments = MatroskaAttachmentReader.readAttachments(channel);
+            MatroskaAttachmentReader.transferAttachment(channel, attachments.get(0), dst);
+        }
+        assertArrayEquals(COVER, Files.readAllBytes(dst.toPath()));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.tools.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.junit.Test;
+
+public class ImageHeaderReaderTest {
+
+    private static byte[] writeImage(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    private static byte[] writeProgressiveJpeg(int width, int height) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static Dimension read(byte[] data) throws IOException {
+        return ImageHeaderReader.readDimension(new ByteArrayInputStream(data));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+
+    @Test
+    public void testBaselineJpeg() throws IOException {
+        assertEquals(new Dimension(320, 200), read(writeImage("jpg", 320, 200)));
+    }
+
+    @Test
+    public void testProgressiveJpeg() throws IOException {
+        assertEquals(new Dimension(123, 45), read(writeProgressiveJpeg(123, 45)));
+    }
+
+    @Test
+    public void testExtendedJpegWithFillBytes() throws IOException {
+        // SOI, APP0 with 2 bytes payload, fill bytes, SOF1 with precision 8, height 600, width 800
+        byte[] data = bytes(0xFF, 0xD8,
+                0xFF, 0xE0, 0x00, 0x04, 0x00, 0x00,
+                0xFF, 0xFF, 0xFF, 0xC1, 0x00, 0x0B, 0x08, 0x02, 0x58, 0x03, 0x20, 0x01, 0x01, 0x11, 0x00);
+        assertEquals(new Dimension(800, 600), read(data));
+    }
+
+    @Test
+    public void testJpegWithoutFrame() throws IOException {
+        // SOI, DHT and start of scan without a frame header
+        byte[] data = bytes(0xFF, 0xD8, 0xFF, 0xC4, 0x00, 0x02, 0xFF, 0xDA, 0x00, 0x02);
+        assertNull(read(data));
+    }
+
+    @Test
+    public void testPng() throws IOException {
+        assertEquals(new Dimension(640, 480), read(writeImage("png", 640, 480)));
+    }
+
+    @Test
+    public void testGif() throws IOException {
+        assertEquals(new Dimension(17, 9), read(writeImage("gif", 17, 9)));
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        byte[] jpeg = writeImage("jpg", 320, 200);
+        assertNull(read(Arrays.copyOf(jpeg, 4)));
+
+        byte[] png = writeImage("png", 640, 480);
+        assertNull(read(Arrays.copyOf(png, 20)));
+
+        byte[] gif = writeImage("gif", 17, 9);
+        assertNull(read(Arrays.copyOf(gif, 7)));
+
+        assertNull(read(new byte[0]));
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        // JPEG without marker after SOI
+        assertNull(read(bytes(0xFF, 0xD8, 0x12, 0x34, 0x56)));
+        // PNG with broken signature
+        assertNull(read(bytes(0x89, 'P', 'N', 'X', '\r', '\n', 0x1A, '\n')));
+        // PNG without IHDR as first chunk
+        assertNull(read(bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'D', 'A', 'T', 0, 0, 0, 1, 0, 0, 0, 1)));
+        // unknown format
+        assertNull(read("BM not supported".getBytes("US-ASCII")));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+public class CacheFreshnessExecTest {
+
+    private static boolean isBinary(String contentType) {
+        return CacheFreshnessExec.isBinary(new BasicHeader(HttpHeaders.CONTENT_TYPE, contentType));
+    }
+
+    @Test
+    public void testTextualContentTypes() {
+        assertFalse(CacheFreshnessExec.isBinary(null));
+        assertFalse(isBinary("text/html; charset=UTF-8"));
+        assertFalse(isBinary("application/json;charset=utf-8"));
+        assertFalse(isBinary("application/xml"));
+        assertFalse(isBinary("application/rss+xml"));
+        assertFalse(isBinary("application/vnd.api+json"));
+        assertFalse(isBinary("application/javascript"));
+    }
+
+    @Test
+    public void testBinaryContentTypes() {
+        assertTrue(isBinary("image/jpeg"));
+        assertTrue(isBinary("IMAGE/PNG"));
+        assertTrue(isBinary("video/mp4"));
+        assertTrue(isBinary("application/octet-stream"));
+        assertTrue(isBinary("application/zip"));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.cache.HttpCacheEntry;
+import org.apache.http.client.cache.HttpCacheUpdateCallback;
+import org.apache.http.impl.client.cache.HeapResource;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskHttpCacheStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static HttpCacheEntry entry(String body) {
+        Date now = new Date();
+        return new HttpCacheEntry(now, now, new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"),
+                        new Header[]{new BasicHeader("Content-Type", "application/json")},
+                        new HeapResource(body.getBytes()));
+    }
+
+    private static String body(HttpCacheEntry entry) throws IOException {
+        try (InputStream in = entry.getResource().getInputStream()) {
+            return IOUtils.toString(in);
+        }
+    }
+
+    private static String[] files(File dir) {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        assertNull(storage.getEntry("http://api.example.org/movie/1"));
+
+        storage.putEntry("http://api.example.org/movie/1", entry("{\"id\":1}"));
+        HttpCacheEntry cached = storage.getEntry("http://api.example.org/movie/1");
+        assertNotNull(cached);
+        assertEquals("{\"id\":1}", body(cached));
+        assertEquals("application/json", cached.getFirstHeader("Content-Type").getValue());
+        assertEquals(1, files(folder.getRoot()).length);
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        storage.putEntry("key", entry("value"));
+        storage.removeEntry("key");
+
+        assertNull(storage.getEntry("key"));
+        assertEquals(0, files(folder.getRoot()).length);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        storage.putEntry("key", entry("old"));
+        storage.updateEntry("key", new HttpCacheUpdateCallback() {
+            @Override
+            public HttpCacheEntry update(HttpCacheEntry existing) throws IOException {
+                assertEquals("old", body(existing));
+                return entry("new");
+            }
+        });
+
+        assertEquals("new", body(storage.getEntry("key")));
+    }
+
+    @Test
+    public void testSurvivesRestart() throws IOException {
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        storage.putEntry("key", entry("value"));
+
+        DiskHttpCacheStorage restarted = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        assertEquals("value", body(restarted.getEntry("key")));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException {
+        // measure the size of one entry on disk to size the storage for two entries
+        File probeDir = folder.newFolder();
+        new DiskHttpCacheStorage(probeDir, Long.MAX_VALUE).putEntry("key1", entry("value1"));
+        long entrySize = probeDir.listFiles()[0].length();
+
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.newFolder(), 2 * entrySize + entrySize / 2);
+        storage.putEntry("key1", entry("value1"));
+        storage.putEntry("key2", entry("value2"));
+        // access the first entry, so the second one is the least recently used
+        assertNotNull(storage.getEntry("key1"));
+        storage.putEntry("key3", entry("value3"));
+
+        assertNotNull(storage.getEntry("key1"));
+        assertNull(storage.getEntry("key2"));
+        assertNotNull(storage.getEntry("key3"));
+    }
+
+    @Test
+    public void testUnreadableEntryIsRemoved() throws IOException {
+        DiskHttpCacheStorage storage = new DiskHttpCacheStorage(folder.getRoot(), 1024L * 1024L);
+        storage.putEntry("key", entry("value"));
+        File file = folder.getRoot().listFiles()[0];
+        FileUtils.writeStringToFile(file, "corrupt");
+
+        assertNull(storage.getEntry("key"));
+        assertEquals(0, files(folder.getRoot()).length);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.core.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+import org.yamj.core.api.model.HttpHostStatistics;
+import org.yamj.core.web.HttpGovernor.HostState;
+
+public class HttpGovernorTest {
+
+    private static final String HOST = "api.example.org";
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static HttpGovernor governor(int maxConcurrency, int failureThreshold) {
+        Map<Pattern, Integer> none = Collections.emptyMap();
+        return new HttpGovernor(none, none, maxConcurrency, failureThreshold, 60, 50);
+    }
+
+    private static HttpResponse response(int statusCode) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+    }
+
+    private static HttpHostStatistics statistics(HttpGovernor governor) {
+        return governor.getStatistics().get(0);
+    }
+
+    @Test
+    public void testConcurrencyStartsAtOne() throws IOException {
+        HttpGovernor governor = governor(4, 5);
+        HostState state = governor.acquire(HOST);
+        try {
+            governor.acquire(HOST);
+            fail("Second request must wait for the slot");
+        } catch (ConnectionPoolTimeoutException expected) {
+            // expected
+        }
+
+        governor.completed(state, LATENCY, response(HttpStatus.SC_OK));
+        HttpHostStatistics statistics = statistics(governor);
+        assertEquals(1, statistics.getRequests());
+        assertEquals(1, statistics.getRejected());
+        assertEquals(0, statistics.getInFlight());
+    }
+
+    @Test
+    public void testConcurrencyGrowsUpToMaximum() throws IOException {
+        HttpGovernor governor = governor(3, 5);
+        for (int i = 0; i < 50; i++) {
+            governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_OK));
+        }
+        assertEquals(3d, statistics(governor).getConcurrencyLimit(), 0.001d);
+
+        // three slots can be used concurrently now
+        HostState s1 = governor.acquire(HOST);
+        HostState s2 = governor.acquire(HOST);
+        HostState s3 = governor.acquire(HOST);
+        assertEquals(3, statistics(governor).getInFlight());
+        governor.completed(s1, LATENCY, response(HttpStatus.SC_OK));
+        governor.completed(s2, LATENCY, response(HttpStatus.SC_OK));
+        governor.completed(s3, LATENCY, response(HttpStatus.SC_OK));
+    }
+
+    @Test
+    public void testConcurrencyLimitOfHost() throws IOException {
+        Map<Pattern, Integer> limits = new LinkedHashMap<>();
+        limits.put(Pattern.compile(".*example.*"), 2);
+        HttpGovernor governor = new HttpGovernor(Collections.<Pattern, Integer>emptyMap(), limits, 8, 5, 60, 50);
+        governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_OK));
+
+        assertEquals(2, statistics(governor).getMaxConcurrency());
+    }
+
+    @Test
+    public void testSlowResponsesReduceConcurrency() throws IOException {
+        HttpGovernor governor = governor(4, 5);
+        for (int i = 0; i < 30; i++) {
+            governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_OK));
+        }
+        double limit = statistics(governor).getConcurrencyLimit();
+
+        governor.completed(governor.acquire(HOST), 10 * LATENCY, response(HttpStatus.SC_OK));
+        assertTrue(statistics(governor).getConcurrencyLimit() < limit);
+    }
+
+    @Test
+    public void testTooManyRequests() throws IOException {
+        HttpGovernor governor = governor(4, 5);
+        for (int i = 0; i < 30; i++) {
+            governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_OK));
+        }
+        double limit = statistics(governor).getConcurrencyLimit();
+
+        HttpResponse throttled = response(429);
+        throttled.setHeader("Retry-After", "60");
+        governor.completed(governor.acquire(HOST), LATENCY, throttled);
+
+        HttpHostStatistics statistics = statistics(governor);
+        assertEquals(1, statistics.getThrottled());
+        assertEquals(limit / 2, statistics.getConcurrencyLimit(), 0.001d);
+        assertFalse(statistics.isCircuitOpen());
+        try {
+            governor.acquire(HOST);
+            fail("Host must be blocked until the retry time");
+        } catch (ConnectionPoolTimeoutException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailures() throws IOException {
+        HttpGovernor governor = governor(4, 3);
+        governor.failed(governor.acquire(HOST), LATENCY);
+        governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+        assertFalse(statistics(governor).isCircuitOpen());
+
+        governor.failed(governor.acquire(HOST), LATENCY);
+        assertTrue(statistics(governor).isCircuitOpen());
+        assertEquals(3, statistics(governor).getFailures());
+
+        try {
+            governor.acquire(HOST);
+            fail("Circuit must reject requests");
+        } catch (IOException expected) {
+            assertEquals("Circuit open for host " + HOST, expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testSuccessResetsFailures() throws IOException {
+        HttpGovernor governor = governor(4, 2);
+        governor.failed(governor.acquire(HOST), LATENCY);
+        governor.completed(governor.acquire(HOST), LATENCY, response(HttpStatus.SC_OK));
+        governor.failed(governor.acquire(HOST), LATENCY);
+
+        assertFalse(statistics(governor).isCircuitOpen());
+    }
+
+    @Test
+    public void testLatencyExcludesConnectionWait() throws InterruptedException {
+        HttpContext context = new BasicHttpContext();
+        long start = System.nanoTime();
+        Thread.sleep(50);
+        // without a sent request the whole time counts
+        assertTrue(HttpGovernorExec.getLatency(context, start) >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        context.setAttribute(HttpGovernorExec.REQUEST_START, Long.valueOf(System.nanoTime()));
+        assertTrue(HttpGovernorExec.getLatency(context, start) < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
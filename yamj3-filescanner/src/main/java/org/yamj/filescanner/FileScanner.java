@@ -104,6 +104,7 @@ public final class FileScanner {
         parser.addOption(new CmdLineOption("d", "direcctory", "The directory to process", false, true));
         parser.addOption(new CmdLineOption("w", "watcher", "Keep watching the directories for changes", false, true));
         parser.addOption(new CmdLineOption("l", "library", "The library file to read", false, true));
+        parser.addOption(new CmdLineOption("f", "fullscan", "Send all directories instead of the changes since the last scan", false, true));
         return parser;
     }
 
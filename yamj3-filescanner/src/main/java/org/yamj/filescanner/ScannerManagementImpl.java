@@ -24,12 +24,20 @@ package org.yamj.filescanner;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
-import org.apache.commons.io.FileUtils;
+import javax.annotation.PreDestroy;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.concurrent.ConcurrentUtils;
@@ -53,10 +61,11 @@ import org.yamj.common.type.DirectoryType;
 import org.yamj.common.type.ExitType;
 import org.yamj.common.type.StatusType;
 import org.yamj.common.util.KeywordMap;
-import org.yamj.filescanner.comparator.FileTypeComparator;
 import org.yamj.filescanner.model.*;
+import org.yamj.filescanner.service.LibrarySendScheduler;
 import org.yamj.filescanner.service.SystemInfoCore;
 import org.yamj.filescanner.tools.DirectoryEnding;
+import org.yamj.filescanner.tools.WatchListener;
 import org.yamj.filescanner.tools.Watcher;
 
 /**
@@ -70,17 +79,24 @@ public class ScannerManagementImpl implements ScannerManagement {
 
     /*
      * TODO: choose between watcher process and simple re-scan
-     * TODO: determine what files have changed between scans
      */
     private static final Logger LOG = LoggerFactory.getLogger(ScannerManagementImpl.class);
     // The default watched status
     private static final Boolean DEFAULT_WATCH_STATE = PropertyTools.getBooleanProperty("filescanner.watch.default", Boolean.FALSE);
+    // Send only the changes since the last scan
+    private static final boolean MANIFEST_ENABLED = PropertyTools.getBooleanProperty("filescanner.manifest.enabled", Boolean.TRUE);
+    // Default number of threads to scan a library with
+    private static final int SCAN_THREADS = Math.max(1, PropertyTools.getIntProperty("filescanner.scan.threads", 4));
     @Autowired
     private LibraryCollection libraryCollection;
     @Autowired
     private SystemInfoCore pingCore;
     @Autowired
     private GitHubService githubService;
+    @Autowired
+    private LibrarySendScheduler librarySendScheduler;
+    // Pools to scan the directory trees, by number of threads
+    private final Map<Integer, ForkJoinPool> scanPools = new HashMap<>();
     // ImportDTO constants
     private static final String DEFAULT_CLIENT = PropertyTools.getProperty("filescanner.default.client", "FileScanner");
     private static final String DEFAULT_PLAYER_PATH = PropertyTools.getProperty("filescanner.default.playerpath", "");
@@ -181,6 +197,7 @@ public class ScannerManagementImpl implements ScannerManagement {
         String directoryProperty = parser.getParsedOptionValue("d");
         boolean watchEnabled = parseWatchStatus(parser.getParsedOptionValue("w"));
         String libraryFilename = parser.getParsedOptionValue("l");
+        boolean fullScan = Boolean.parseBoolean(parser.getParsedOptionValue("f"));
 
         if (StringUtils.isNotBlank(libraryFilename)) {
             List<String> libraryList = Arrays.asList(libraryFilename.split(DEFAULT_SPLIT));
@@ -202,11 +219,14 @@ public class ScannerManagementImpl implements ScannerManagement {
             return ExitType.NO_DIRECTORY;
         }
 
+        // The manifests are only valid for the same core database
+        String databaseIdentity = MANIFEST_ENABLED ? pingCore.getDatabaseIdentity() : null;
+
         // Send all libraries to be scanned
         ExitType status = ExitType.SUCCESS;
         for (Library library : libraryCollection.getLibraries()) {
             library.getStatistics().setTime(TimeType.START);
-            status = scan(library);
+            status = scan(library, databaseIdentity, fullScan);
             library.getStatistics().setTime(TimeType.END);
             library.setScanningComplete(Boolean.TRUE);
             LOG.info("Scanning completed.");
@@ -231,6 +251,13 @@ public class ScannerManagementImpl implements ScannerManagement {
             }
         } while (!allDone);
 
+        // Remember what has been sent for the next scan
+        for (Library library : libraryCollection.getLibraries()) {
+            if (library.getManifest() != null) {
+                library.getManifest().commit(library);
+            }
+        }
+
         if (LOG.isInfoEnabled()) {
             LOG.info(StringUtils.repeat("*", DIVIDER_LINE_LENGTH));
             LOG.info("Completed initial sending of all libraries ({} total)", libraryCollection.size());
@@ -252,7 +279,8 @@ public class ScannerManagementImpl implements ScannerManagement {
             }
 
             if (wd != null) {
-                Boolean directoriesToWatch = Boolean.TRUE;
+                Boolean directoriesToWatch = Boolean.FALSE;
+                wd.setListener(new LibraryWatchListener());
 
                 for (Library library : libraryCollection.getLibraries()) {
                     String dirToWatch = library.getImportDTO().getBaseDirectory();
@@ -285,9 +313,11 @@ public class ScannerManagementImpl implements ScannerManagement {
      * Start scanning a library.
      *
      * @param library
+     * @param databaseIdentity the identity of the core database
+     * @param fullScan true to send all directories of the library
      * @return
      */
-    private ExitType scan(Library library) {
+    private ExitType scan(Library library, String databaseIdentity, boolean fullScan) {
         library.getStatistics().setTime(TimeType.SCANNING_START);
 
         ExitType status = ExitType.SUCCESS;
@@ -299,139 +329,233 @@ public class ScannerManagementImpl implements ScannerManagement {
             return ExitType.NO_DIRECTORY;
         }
 
-        scanDir(library, baseDirectory);
+        if (MANIFEST_ENABLED) {
+            library.setManifest(LibraryManifest.load(library.getImportDTO(), databaseIdentity, fullScan));
+
+            if (isEmptied(library, baseDirectory)) {
+                // most likely an unmounted share, so don't remove the whole library
+                LOG.warn("Library directory '{}' lists nothing but had content at the last scan; run a full scan to accept the empty library", baseDirectory.getAbsolutePath());
+                return ExitType.NO_DIRECTORY;
+            }
+        }
+
+        scanTree(library, baseDirectory);
+
+        if (library.getManifest() != null) {
+            // Directories which have vanished since the last scan
+            queueRemoved(library, baseDirectory);
+        }
 
         library.getStatistics().setTime(TimeType.SCANNING_END);
         return status;
     }
 
     /**
-     * Scan a directory (and recursively any other directories contained
+     * Check if a directory lists nothing although it had content at the last scan
      *
      * @param library
-     * @param parentDto
      * @param directory
+     * @return
      */
-    private StageDirectoryDTO scanDir(Library library, File directory) {
-        DirectoryType dirType = DirectoryEnding.check(directory);
-        StageDirectoryDTO stageDir;
+    private static boolean isEmptied(Library library, File directory) {
+        String[] entries = directory.list();
+        if (entries != null && entries.length > 0) {
+            return false;
+        }
+        return library.getManifest().hasContent(directory.getAbsolutePath());
+    }
 
-        LOG.info("Scanning directory '{}', detected type - {}", library.getRelativeDir(directory), dirType);
+    /**
+     * Queue the directories of the tree which have been removed since the last scan
+     *
+     * @param library
+     * @param directory
+     */
+    private static void queueRemoved(Library library, File directory) {
+        for (StageDirectoryDTO removedDir : library.getManifest().getRemoved(directory.getAbsolutePath())) {
+            LOG.info("Directory '{}' has been removed", library.getRelativeDir(removedDir.getPath()));
+            library.addDirectory(removedDir);
+            queueForSending(library, removedDir);
+        }
+    }
+
+    /**
+     * Scan a directory tree in parallel with the number of threads configured for the library
+     *
+     * @param library
+     * @param directory
+     */
+    private void scanTree(Library library, File directory) {
+        final int threads = library.getScanThreads() > 0 ? library.getScanThreads() : SCAN_THREADS;
+        getScanPool(threads).invoke(new DirectoryScanTask(library, directory.toPath(), null));
+    }
+
+    /**
+     * Get the pool to scan with the given number of threads; the pools are kept for the life of the scanner
+     *
+     * @param threads
+     * @return
+     */
+    private synchronized ForkJoinPool getScanPool(int threads) {
+        ForkJoinPool pool = scanPools.get(threads);
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+            scanPools.put(threads, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Stop the scan pools before exiting
+     */
+    @PreDestroy
+    public synchronized void cleanUp() {
+        for (ForkJoinPool pool : scanPools.values()) {
+            pool.shutdownNow();
+        }
+        scanPools.clear();
+    }
+
+    /**
+     * Scan a single directory.
+     *
+     * The attributes of each entry are read with a single call, which keeps
+     * the number of requests low on network shares.
+     *
+     * @param library
+     * @param directory
+     * @param attributes the attributes of the directory, null if not known yet
+     * @param subDirectories filled with the sub-directories to scan, may be null
+     * @return the scanned directory or null if the directory is excluded
+     */
+    private static StageDirectoryDTO scanDir(Library library, Path directory, BasicFileAttributes attributes, Map<Path, BasicFileAttributes> subDirectories) {
+        final File dirFile = directory.toFile();
+        DirectoryType dirType = DirectoryEnding.check(dirFile);
+
+        LOG.info("Scanning directory '{}', detected type - {}", library.getRelativeDir(dirFile), dirType);
 
         if (dirType == DirectoryType.BLURAY || dirType == DirectoryType.DVD) {
             // Don't scan BLURAY or DVD structures
-            LOG.info("Skipping directory '{}' as its a {} type", directory.getAbsolutePath(), dirType);
+            LOG.info("Skipping directory '{}' as its a {} type", dirFile.getAbsolutePath(), dirType);
             library.getStatistics().increment(dirType == DirectoryType.BLURAY ? StatType.BLURAY : StatType.DVD);
-            stageDir = null;
-        } else if (DIR_EXCLUSIONS.containsKey(directory.getName().toLowerCase())) {
-            LOG.info("Skipping directory '{}' as its in the exclusion list.", directory.getAbsolutePath());
-            stageDir = null;
-        } else {
+            return null;
+        }
+
+        if (DIR_EXCLUSIONS.containsKey(dirFile.getName().toLowerCase())) {
+            LOG.info("Skipping directory '{}' as its in the exclusion list.", dirFile.getAbsolutePath());
+            return null;
+        }
+
+        BasicFileAttributes dirAttributes = attributes;
+        if (dirAttributes == null) {
             try {
-                if (FileUtils.directoryContains(directory, new File(directory, FILE_MJBIGNORE))) {
-                    LOG.debug("Exclusion file '{}' found, skipping scanning of directory {}.", FILE_MJBIGNORE, directory.getName());
-                    return null;
-                }
+                dirAttributes = Files.readAttributes(directory, BasicFileAttributes.class);
             } catch (IOException ex) {
-                LOG.trace("Failed to seach for '{}' in the directory {}", FILE_MJBIGNORE, directory.getName());
+                LOG.warn("Failed to read directory '{}': {}", dirFile.getAbsolutePath(), ex.getMessage());
                 LOG.trace("IO error", ex);
+                if (library.getManifest() != null) {
+                    library.getManifest().keep(dirFile.getAbsolutePath());
+                }
+                return null;
             }
+        }
 
-            stageDir = new StageDirectoryDTO();
-            stageDir.setPath(directory.getAbsolutePath());
-            stageDir.setDate(directory.lastModified());
+        StageDirectoryDTO stageDir = new StageDirectoryDTO();
+        stageDir.setPath(dirFile.getAbsolutePath());
+        stageDir.setDate(dirAttributes.lastModifiedTime().toMillis());
 
-            library.getStatistics().increment(StatType.DIRECTORY);
+        library.getStatistics().increment(StatType.DIRECTORY);
 
-            File[] files = directory.listFiles();
-            if (files == null) {
-                return stageDir;
-            }
-            
-            final List<File> currentFileList = Arrays.asList(files);
-            final FileTypeComparator comp = new FileTypeComparator(false);
-            Collections.sort(currentFileList, comp);
-
-            /*
-             * We need to scan the directory and look for any of the exclusion filenames.
-             *
-             * We then build a list of those excluded extensions, so that when we scan the filename list we can exclude the unwanted files.
-             */
-            List<String> exclusions = new ArrayList<>();
-            for (File file : currentFileList) {
-                if (!file.isFile()) {
-                    // First directory we find, we can stop (because we sorted the files first)
-                    break;
-                }
-                
-                final String lcFilename = file.getName().toLowerCase();
-                if (DIR_EXCLUSIONS.containsKey(lcFilename)) {
-                    if (CollectionUtils.isEmpty(DIR_EXCLUSIONS.get(lcFilename))) {
-                        // Because the value is null or empty we exclude the whole directory, so quit now.
-                        LOG.debug("Exclusion file '{}' found, skipping scanning of directory {}.", lcFilename, file.getParent());
-                        // All files to be excluded, so quit
-                        return null;
+        // Read the directory entries, sorted by name
+        Map<Path, BasicFileAttributes> files = new TreeMap<>();
+        Map<Path, BasicFileAttributes> directories = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                try {
+                    BasicFileAttributes entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (entryAttributes.isRegularFile()) {
+                        files.put(entry, entryAttributes);
+                    } else if (entryAttributes.isDirectory()) {
+                        directories.put(entry, entryAttributes);
                     }
-
-                    // We found a match, so add it to our local copy
-                    LOG.debug("Exclusion file '{}' found, will exclude all {} file types", lcFilename, DIR_EXCLUSIONS.get(lcFilename).toString());
-                    exclusions.addAll(DIR_EXCLUSIONS.get(lcFilename));
-                    // Skip to the next file, theres no need of further processing
+                } catch (IOException ex) {
+                    LOG.debug("Failed to read '{}': {}", entry, ex.getMessage());
                 }
             }
+        } catch (IOException | DirectoryIteratorException ex) {
+            LOG.warn("Failed to read directory '{}': {}", dirFile.getAbsolutePath(), ex.getMessage());
+            LOG.trace("IO error", ex);
+            if (library.getManifest() != null) {
+                // Unknown content, so keep the last state of the whole tree
+                library.getManifest().keep(stageDir.getPath());
+            }
+            return stageDir;
+        }
 
-            // Create a precompiled Matcher for use later (Doesn't matter what the values are)
-            Matcher matcher = Pattern.compile(FILE_MJBIGNORE).matcher(FILE_MJBIGNORE);
-
-            // Scan the directory properly
-            for (File file : currentFileList) {
-                if (!file.isFile()) {
-                    // First directory we find, we can stop (because we sorted the files first)
-                    break;
-                }
-
-                boolean excluded = false;
-                String lcFilename = file.getName().toLowerCase();
-                if (exclusions.contains(FilenameUtils.getExtension(lcFilename)) || DIR_EXCLUSIONS.containsKey(lcFilename)) {
-                    LOG.debug("File name '{}' excluded because it's listed in the exlusion list for this directory", file.getName());
-                    continue;
-                }
-
-                // Process the DIR_IGNORE_FILES
-                for (Pattern pattern : DIR_IGNORE_FILES) {
-                    matcher.reset(lcFilename).usePattern(pattern);
-                    if (matcher.matches()) {
-                        // Found the file pattern, so skip the file
-                        LOG.debug("File name '{}' excluded because it matches exlusion pattern '{}'", file.getName(), pattern.pattern());
-                        excluded = Boolean.TRUE;
-                        break;
-                    }
+        /*
+         * We need to scan the directory and look for any of the exclusion filenames.
+         *
+         * We then build a list of those excluded extensions, so that when we scan the filename list we can exclude the unwanted files.
+         */
+        List<String> exclusions = new ArrayList<>();
+        for (Path file : files.keySet()) {
+            final String lcFilename = file.getFileName().toString().toLowerCase();
+            if (DIR_EXCLUSIONS.containsKey(lcFilename)) {
+                if (CollectionUtils.isEmpty(DIR_EXCLUSIONS.get(lcFilename))) {
+                    // Because the value is null or empty we exclude the whole directory, so quit now.
+                    LOG.debug("Exclusion file '{}' found, skipping scanning of directory {}.", lcFilename, dirFile.getName());
+                    // All files to be excluded, so quit
+                    return null;
                 }
 
-                if (!excluded) {
-                    stageDir.addStageFile(scanFile(file));
-                    library.getStatistics().increment(StatType.FILE);
-                }
+                // We found a match, so add it to our local copy
+                LOG.debug("Exclusion file '{}' found, will exclude all {} file types", lcFilename, DIR_EXCLUSIONS.get(lcFilename).toString());
+                exclusions.addAll(DIR_EXCLUSIONS.get(lcFilename));
+                // Skip to the next file, theres no need of further processing
             }
+        }
 
-            library.addDirectory(stageDir);
-            queueForSending(library, stageDir);
+        // Create a precompiled Matcher for use later (Doesn't matter what the values are)
+        Matcher matcher = Pattern.compile(FILE_MJBIGNORE).matcher(FILE_MJBIGNORE);
 
-            // Resort the files with directories first
-            comp.setDirectoriesFirst(true);
-            Collections.sort(currentFileList, comp);
+        // Scan the directory properly
+        for (Entry<Path, BasicFileAttributes> file : files.entrySet()) {
+            final String fileName = file.getKey().getFileName().toString();
+            final String lcFilename = fileName.toLowerCase();
+            if (exclusions.contains(FilenameUtils.getExtension(lcFilename)) || DIR_EXCLUSIONS.containsKey(lcFilename)) {
+                LOG.debug("File name '{}' excluded because it's listed in the exlusion list for this directory", fileName);
+                continue;
+            }
 
-            // Now scan the directories
-            for (File scanDir : currentFileList) {
-                if (!scanDir.isDirectory()) {
-                    // First file we find, we can stop (because we are sorted directories first)
+            // Process the DIR_IGNORE_FILES
+            boolean excluded = false;
+            for (Pattern pattern : DIR_IGNORE_FILES) {
+                matcher.reset(lcFilename).usePattern(pattern);
+                if (matcher.matches()) {
+                    // Found the file pattern, so skip the file
+                    LOG.debug("File name '{}' excluded because it matches exlusion pattern '{}'", fileName, pattern.pattern());
+                    excluded = Boolean.TRUE;
                     break;
                 }
-                
-                if (scanDir(library, scanDir) == null) {
-                    LOG.info("Not adding directory '{}', no files found or all excluded", scanDir.getAbsolutePath());
-                }
             }
+
+            if (!excluded) {
+                stageDir.addStageFile(scanFile(fileName, file.getValue()));
+                library.getStatistics().increment(StatType.FILE);
+            }
+        }
+
+        StageDirectoryDTO changedDir = library.getManifest() == null ? stageDir : library.getManifest().getDelta(stageDir);
+        if (changedDir == null) {
+            LOG.debug("Directory '{}' has not changed since the last scan", library.getRelativeDir(dirFile));
+            library.getStatistics().increment(StatType.UNCHANGED);
+        } else {
+            library.addDirectory(changedDir);
+            queueForSending(library, changedDir);
+        }
+
+        if (subDirectories != null) {
+            subDirectories.putAll(directories);
         }
         return stageDir;
     }
@@ -439,13 +563,16 @@ public class ScannerManagementImpl implements ScannerManagement {
     /**
      * Scan an individual file
      *
-     * @param library
-     * @param parentDto
-     * @param file
+     * @param fileName
+     * @param attributes
      */
-    private static StageFileDTO scanFile(File file) {
-        LOG.info("Scanning file '{}'", file.getName());
-        return new StageFileDTO(file);
+    private static StageFileDTO scanFile(String fileName, BasicFileAttributes attributes) {
+        LOG.info("Scanning file '{}'", fileName);
+        StageFileDTO stageFile = new StageFileDTO();
+        stageFile.setFileName(fileName);
+        stageFile.setFileSize(attributes.size());
+        stageFile.setFileDate(attributes.lastModifiedTime().toMillis());
+        return stageFile;
     }
 
     /**
@@ -490,4 +617,108 @@ public class ScannerManagementImpl implements ScannerManagement {
     private static void queueForSending(Library library, StageDirectoryDTO stageDir) {
         library.addDirectoryStatus(stageDir.getPath(), ConcurrentUtils.constantFuture(StatusType.NEW));
     }
+
+    /**
+     * Find the library which contains the directory
+     *
+     * @param directory
+     * @return the library or null if the directory is not part of a library
+     */
+    private Library findLibrary(File directory) {
+        final String path = directory.getAbsolutePath();
+        for (Library library : libraryCollection.getLibraries()) {
+            final String basePath = new File(library.getImportDTO().getBaseDirectory()).getAbsolutePath();
+            if (path.equals(basePath) || path.startsWith(basePath + File.separator)) {
+                return library;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLibraryRoot(Library library, File directory) {
+        return directory.getAbsolutePath().equals(new File(library.getImportDTO().getBaseDirectory()).getAbsolutePath());
+    }
+
+    /**
+     * Rescan the directories reported by the watcher and send the changes to the core
+     */
+    private final class LibraryWatchListener implements WatchListener {
+
+        @Override
+        public void directoryChanged(File directory, boolean subtree) {
+            Library library = findLibrary(directory);
+            if (library == null) {
+                LOG.debug("Directory '{}' does not belong to a library", directory.getAbsolutePath());
+                return;
+            }
+
+            if (library.getManifest() != null && isLibraryRoot(library, directory) && isEmptied(library, directory)) {
+                LOG.warn("Library directory '{}' lists nothing but had content at the last scan; run a full scan to accept the empty library", directory.getAbsolutePath());
+                return;
+            }
+
+            LOG.info("Rescanning {} '{}'", subtree ? "directory tree" : "directory", library.getRelativeDir(directory));
+            if (!directory.isDirectory()) {
+                LOG.debug("Directory '{}' does not exist anymore", directory.getAbsolutePath());
+            } else if (subtree) {
+                scanTree(library, directory);
+            } else {
+                scanDir(library, directory.toPath(), null, null);
+            }
+
+            if (library.getManifest() != null && (subtree || !directory.exists())) {
+                queueRemoved(library, directory);
+            }
+        }
+
+        @Override
+        public void changesProcessed() {
+            // don't wait for the next scheduled run
+            librarySendScheduler.sendLibraries();
+        }
+
+        @Override
+        public void idle() {
+            for (Library library : libraryCollection.getLibraries()) {
+                if (library.getManifest() != null && library.getManifest().hasChanges() && library.isSendingComplete()) {
+                    library.getManifest().commit(library);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans a directory and forks the scanning of its sub-directories
+     */
+    private static final class DirectoryScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final transient Library library;
+        private final transient Path directory;
+        private final transient BasicFileAttributes attributes;
+
+        public DirectoryScanTask(Library library, Path directory, BasicFileAttributes attributes) {
+            this.library = library;
+            this.directory = directory;
+            this.attributes = attributes;
+        }
+
+        @Override
+        protected void compute() {
+            Map<Path, BasicFileAttributes> subDirectories = new TreeMap<>();
+            if (scanDir(library, directory, attributes, subDirectories) == null) {
+                LOG.info("Not adding directory '{}', no files found or all excluded", directory);
+            }
+
+            if (subDirectories.isEmpty()) {
+                return;
+            }
+
+            List<DirectoryScanTask> tasks = new ArrayList<>(subDirectories.size());
+            for (Entry<Path, BasicFileAttributes> entry : subDirectories.entrySet()) {
+                tasks.add(new DirectoryScanTask(library, entry.getKey(), entry.getValue()));
+            }
+            invokeAll(tasks);
+        }
+    }
 }
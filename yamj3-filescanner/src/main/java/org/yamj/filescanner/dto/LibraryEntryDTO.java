@@ -45,6 +45,7 @@ public class LibraryEntryDTO implements Serializable {
     private String exclude;
     private boolean scrape;
     private boolean watch;
+    private int threads;
 
     /**
      * Construct an empty library file
@@ -57,6 +58,7 @@ public class LibraryEntryDTO implements Serializable {
         this.exclude = "";
         this.scrape = Boolean.TRUE;
         this.watch = Boolean.TRUE;
+        this.threads = 0;
     }
 
     //<editor-fold defaultstate="collapsed" desc="Getter and Setter Methods">
@@ -193,6 +195,26 @@ public class LibraryEntryDTO implements Serializable {
     public void setWatch(boolean watch) {
         this.watch = watch;
     }
+
+    /**
+     * Get the number of threads used to scan the library
+     *
+     * @return
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads used to scan the library.
+     *
+     * A value of 0 uses the default from the properties
+     *
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
     //</editor-fold>
 
     @Override
@@ -24,9 +24,9 @@ package org.yamj.filescanner.model;
 
 import java.io.File;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.io.FilenameUtils;
@@ -44,11 +44,13 @@ public class Library implements Serializable {
     private static final long serialVersionUID = -7307516287202738381L;
 
     private boolean watch;
+    private int scanThreads;
     private String description;
     private Statistics statistics;
     private Map<String, StageDirectoryDTO> directories;
     private Map<String, Future<StatusType>> directoryStatus;
     private ImportDTO importDTO;
+    private transient LibraryManifest manifest;
     private final AtomicBoolean scanningComplete;
     private final AtomicBoolean sendingComplete;
 
@@ -59,8 +61,9 @@ public class Library implements Serializable {
         this.watch = Boolean.FALSE;
         this.description = "";
         this.statistics = new Statistics();
-        this.directories = new HashMap<>(1);
-        this.directoryStatus = new LinkedHashMap<>(1);
+        this.directories = new ConcurrentHashMap<>(1);
+        // sorted by path, so parent directories are sent before their children
+        this.directoryStatus = new ConcurrentSkipListMap<>();
         importDTO = new ImportDTO();
         this.scanningComplete = new AtomicBoolean(Boolean.FALSE);
         this.sendingComplete = new AtomicBoolean(Boolean.FALSE);
@@ -84,6 +87,24 @@ public class Library implements Serializable {
         this.watch = watch;
     }
 
+    /**
+     * Get the number of threads to scan the library with, 0 for the default
+     *
+     * @return
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Set the number of threads to scan the library with
+     *
+     * @param scanThreads
+     */
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
     /**
      * Get the library statistics
      *
@@ -130,11 +151,29 @@ public class Library implements Serializable {
      *
      * @param stageDir
      */
-    public void addDirectory(StageDirectoryDTO stageDir) {
+    public synchronized void addDirectory(StageDirectoryDTO stageDir) {
         this.directories.put(stageDir.getPath(), stageDir);
         addDirectoryStatus(stageDir.getPath());
     }
 
+    /**
+     * Remove a directory which has been sent to the core.
+     *
+     * Nothing is removed if the directory has been queued again in the meantime.
+     *
+     * @param path
+     * @param status the status of the sent directory
+     * @return true if the directory has been removed
+     */
+    public synchronized boolean removeSentDirectory(String path, Future<StatusType> status) {
+        if (directoryStatus.get(path) != status) {
+            return false;
+        }
+        this.directories.remove(path);
+        removeDirectoryStatus(path);
+        return true;
+    }
+
     /**
      * Remove a StageDirectoryDTO from the collection
      *
@@ -308,6 +347,19 @@ public class Library implements Serializable {
         this.sendingComplete.set(sendingComplete);
     }
 
+    /**
+     * Get the manifest of the last sent state, null if every directory should be sent
+     *
+     * @return
+     */
+    public LibraryManifest getManifest() {
+        return manifest;
+    }
+
+    public void setManifest(LibraryManifest manifest) {
+        this.manifest = manifest;
+    }
+
     public String getDescription() {
         return description;
     }
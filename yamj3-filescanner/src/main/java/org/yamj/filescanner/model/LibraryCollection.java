@@ -161,6 +161,7 @@ public class LibraryCollection implements Serializable {
             le.setPlayerpath(libraryEntry.getImportDTO().getPlayerPath());
             le.setScrape(true);
             le.setWatch(libraryEntry.isWatch());
+            le.setThreads(libraryEntry.getScanThreads());
             lib.addLibrary(le);
         }
 
@@ -190,6 +191,7 @@ public class LibraryCollection implements Serializable {
         library.setImportDTO(importDto);
         library.setWatch(libraryEntryDto.isWatch());
         library.setDescription(libraryEntryDto.getDescription());
+        library.setScanThreads(libraryEntryDto.getThreads());
         add(library);
     }
 
@@ -0,0 +1,329 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.filescanner.model;
+
+import java.io.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamj.common.dto.ImportDTO;
+import org.yamj.common.dto.StageDirectoryDTO;
+import org.yamj.common.dto.StageFileDTO;
+import org.yamj.common.tools.PropertyTools;
+import org.yamj.common.type.StatusType;
+
+/**
+ * Manifest of the directories and files which have been sent to the core.
+ *
+ * The manifest is stored on disk per library, so a rescan only needs to send
+ * added, changed and removed files instead of every directory of the library.
+ *
+ * The manifest is bound to the identity of the core database; if the database
+ * has been reset or replaced then all directories are sent again.
+ */
+public class LibraryManifest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LibraryManifest.class);
+    private static final String MANIFEST_DIRECTORY = PropertyTools.getProperty("filescanner.manifest.directory", "manifest");
+    private static final String MANIFEST_EXTENSION = ".manifest";
+
+    private final File manifestFile;
+    private final String key;
+    private final String databaseIdentity;
+    // the state which has been sent to the core
+    private final Map<String, DirectoryEntry> previous;
+    // the state of the actual scan
+    private final ConcurrentMap<String, DirectoryEntry> current = new ConcurrentHashMap<>();
+    // the directories which have been removed since the last scan
+    private final Set<String> removed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private LibraryManifest(File manifestFile, String key, String databaseIdentity, Map<String, DirectoryEntry> previous) {
+        this.manifestFile = manifestFile;
+        this.key = key;
+        this.databaseIdentity = databaseIdentity;
+        this.previous = previous;
+    }
+
+    /**
+     * Load the manifest of the library; if there is none then an empty manifest is returned
+     *
+     * @param importDTO the library settings
+     * @param databaseIdentity the identity of the core database, null if not known
+     * @param fullScan true to ignore the stored manifest and send all directories
+     * @return the manifest
+     */
+    public static LibraryManifest load(ImportDTO importDTO, String databaseIdentity, boolean fullScan) {
+        File directory = new File(MANIFEST_DIRECTORY);
+        if (!directory.isAbsolute()) {
+            directory = new File(System.getProperty("yamj3.home", "."), MANIFEST_DIRECTORY);
+        }
+        return load(directory, importDTO, databaseIdentity, fullScan);
+    }
+
+    static LibraryManifest load(File directory, ImportDTO importDTO, String databaseIdentity, boolean fullScan) {
+        final String key = importDTO.getClient() + "|" + importDTO.getPlayerPath() + "|" + importDTO.getBaseDirectory();
+        final File manifestFile = new File(directory, String.format("%08x", key.hashCode()) + MANIFEST_EXTENSION);
+
+        Map<String, DirectoryEntry> previous = new ConcurrentHashMap<>();
+        if (fullScan) {
+            LOG.info("Full scan requested, all directories of '{}' will be sent", importDTO.getBaseDirectory());
+        } else if (databaseIdentity == null) {
+            LOG.info("Core database identity is unknown, all directories of '{}' will be sent", importDTO.getBaseDirectory());
+        } else if (manifestFile.exists()) {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(manifestFile))))) {
+                if (!key.equals(ois.readUTF())) {
+                    LOG.info("Manifest '{}' belongs to another library, will be replaced", manifestFile.getName());
+                } else if (!databaseIdentity.equals(ois.readUTF())) {
+                    LOG.info("Core database has been changed, all directories of '{}' will be sent", importDTO.getBaseDirectory());
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Map<String, DirectoryEntry> stored = (Map<String, DirectoryEntry>) ois.readObject();
+                    previous.putAll(stored);
+                    LOG.info("Loaded manifest with {} directories for '{}'", previous.size(), importDTO.getBaseDirectory());
+                }
+            } catch (IOException | ClassNotFoundException ex) {
+                LOG.warn("Failed to read manifest '{}', all directories will be sent: {}", manifestFile.getName(), ex.getMessage());
+                LOG.trace("Exception:", ex);
+                previous.clear();
+            }
+        }
+        return new LibraryManifest(manifestFile, key, databaseIdentity, previous);
+    }
+
+    /**
+     * Determine the changes of a scanned directory compared to the last sent state.
+     *
+     * @param scanned the scanned directory with all files
+     * @return the directory with changed files and deletions, or null if nothing has been changed
+     */
+    public StageDirectoryDTO getDelta(StageDirectoryDTO scanned) {
+        DirectoryEntry entry = new DirectoryEntry(scanned.getDate());
+        for (StageFileDTO stageFile : scanned.getStageFiles()) {
+            entry.files.put(stageFile.getFileName(), new FileEntry(stageFile.getFileSize(), stageFile.getFileDate()));
+        }
+        current.put(scanned.getPath(), entry);
+
+        DirectoryEntry last = previous.get(scanned.getPath());
+        if (removed.remove(scanned.getPath()) || last == null) {
+            // new or recreated directory
+            return scanned;
+        }
+
+        StageDirectoryDTO delta = new StageDirectoryDTO();
+        delta.setPath(scanned.getPath());
+        delta.setDate(scanned.getDate());
+        for (StageFileDTO stageFile : scanned.getStageFiles()) {
+            FileEntry lastFile = last.files.get(stageFile.getFileName());
+            if (lastFile == null || lastFile.size != stageFile.getFileSize() || lastFile.date != stageFile.getFileDate()) {
+                delta.addStageFile(stageFile);
+            }
+        }
+        for (String fileName : last.files.keySet()) {
+            if (!entry.files.containsKey(fileName)) {
+                delta.addDeletedFile(fileName);
+            }
+        }
+
+        if (delta.getStageFiles().isEmpty() && delta.getDeletedFiles().isEmpty()) {
+            return null;
+        }
+        return delta;
+    }
+
+    /**
+     * Keep the last sent state of a directory tree which could not be read.
+     *
+     * The sub-directories of the tree have not been scanned either, so they
+     * are kept too and not reported as removed.
+     *
+     * @param path
+     */
+    public void keep(String path) {
+        final String subPath = path + File.separator;
+        for (Entry<String, DirectoryEntry> entry : previous.entrySet()) {
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(subPath)) {
+                if (current.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    LOG.debug("Keeping last state of directory '{}'", entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a directory tree had any content when it was sent the last time.
+     *
+     * @param root the directory tree
+     * @return true if the tree contained files or sub-directories
+     */
+    public boolean hasContent(String root) {
+        final String subPath = root + File.separator;
+        for (Entry<String, DirectoryEntry> entry : previous.entrySet()) {
+            if (entry.getKey().startsWith(subPath)) {
+                return true;
+            }
+            if (entry.getKey().equals(root) && !entry.getValue().files.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the directories which have been sent before but have not been found by the actual scan.
+     *
+     * @param root the scanned directory tree
+     * @return directories with all their files marked as deleted
+     */
+    public List<StageDirectoryDTO> getRemoved(String root) {
+        final String subPath = root + File.separator;
+        List<StageDirectoryDTO> removedDirs = new ArrayList<>();
+        for (Entry<String, DirectoryEntry> entry : previous.entrySet()) {
+            if (current.containsKey(entry.getKey()) || removed.contains(entry.getKey())) {
+                continue;
+            }
+            if (!entry.getKey().equals(root) && !entry.getKey().startsWith(subPath)) {
+                continue;
+            }
+
+            StageDirectoryDTO stageDir = new StageDirectoryDTO();
+            stageDir.setPath(entry.getKey());
+            stageDir.setDate(entry.getValue().date);
+            for (String fileName : entry.getValue().files.keySet()) {
+                stageDir.addDeletedFile(fileName);
+            }
+            removed.add(entry.getKey());
+            removedDirs.add(stageDir);
+        }
+        return removedDirs;
+    }
+
+    /**
+     * Check if there are scanned directories which have not been stored yet
+     *
+     * @return
+     */
+    public boolean hasChanges() {
+        return !current.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Store the state which has been sent to the core successfully.
+     *
+     * Directories which have not been sent yet or failed to be sent keep
+     * their last state and are stored with a later commit.
+     *
+     * @param library
+     */
+    public synchronized void commit(Library library) {
+        Map<String, DirectoryEntry> sent = new HashMap<>(previous);
+        Iterator<Entry<String, DirectoryEntry>> iter = current.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, DirectoryEntry> entry = iter.next();
+            if (isSent(library, entry.getKey())) {
+                sent.put(entry.getKey(), entry.getValue());
+                iter.remove();
+            }
+        }
+        Iterator<String> removedIter = removed.iterator();
+        while (removedIter.hasNext()) {
+            String path = removedIter.next();
+            if (isSent(library, path)) {
+                sent.remove(path);
+                removedIter.remove();
+            }
+        }
+
+        if (databaseIdentity == null) {
+            // not bound to a database, so the next scan would send everything anyway
+            previous.clear();
+            previous.putAll(sent);
+            return;
+        }
+
+        File directory = manifestFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOG.warn("Failed to create manifest directory '{}'", directory.getAbsolutePath());
+            return;
+        }
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(manifestFile))))) {
+            oos.writeUTF(key);
+            oos.writeUTF(databaseIdentity);
+            oos.writeObject(sent);
+            LOG.info("Stored manifest with {} directories for '{}'", sent.size(), library.getImportDTO().getBaseDirectory());
+        } catch (IOException ex) {
+            LOG.warn("Failed to write manifest '{}': {}", manifestFile.getName(), ex.getMessage());
+            LOG.trace("Exception:", ex);
+        }
+
+        previous.clear();
+        previous.putAll(sent);
+    }
+
+    private static boolean isSent(Library library, String path) {
+        Future<StatusType> status = library.getDirectoryStatus().get(path);
+        if (status == null) {
+            // nothing to send
+            return true;
+        }
+        if (!status.isDone()) {
+            return false;
+        }
+
+        try {
+            return status.get() == StatusType.DONE;
+        } catch (InterruptedException | ExecutionException ex) { //NOSONAR
+            return false;
+        }
+    }
+
+    private static final class DirectoryEntry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final long date;
+        private final HashMap<String, FileEntry> files = new HashMap<>();
+
+        public DirectoryEntry(long date) {
+            this.date = date;
+        }
+    }
+
+    private static final class FileEntry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final long size;
+        private final long date;
+
+        public FileEntry(long size, long date) {
+            this.size = size;
+            this.date = date;
+        }
+    }
+}
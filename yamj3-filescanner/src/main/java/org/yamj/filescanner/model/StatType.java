@@ -27,5 +27,6 @@ public enum StatType {
     FILE,
     DIRECTORY,
     BLURAY,
-    DVD;
+    DVD,
+    UNCHANGED;
 }
@@ -0,0 +1,108 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.filescanner.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+import org.springframework.remoting.httpinvoker.SimpleHttpInvokerRequestExecutor;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.yamj.common.remote.service.SystemInfoService;
+
+/**
+ * HTTP invoker request executor which sends the requests gzip compressed.
+ *
+ * Requests are only compressed if the core reports that it accepts them,
+ * older cores get uncompressed requests. Compressed responses are handled by
+ * the standard executor already.
+ */
+public class CompressingHttpInvokerRequestExecutor extends SimpleHttpInvokerRequestExecutor {
+
+    private boolean compressRequest = Boolean.TRUE;
+    private SystemInfoCore systemInfoCore;
+
+    /**
+     * Set if the requests should be compressed
+     *
+     * @param compressRequest
+     */
+    public void setCompressRequest(boolean compressRequest) {
+        this.compressRequest = compressRequest;
+    }
+
+    /**
+     * Set the service to ask the core for compression support
+     *
+     * @param systemInfoCore
+     */
+    public void setSystemInfoCore(SystemInfoCore systemInfoCore) {
+        this.systemInfoCore = systemInfoCore;
+    }
+
+    @Override
+    protected ByteArrayOutputStream getByteArrayOutputStream(RemoteInvocation invocation) throws IOException {
+        if (!compressRequest || !systemInfoCore.isFeatureSupported(SystemInfoService.FEATURE_COMPRESSED_REQUESTS)) {
+            return super.getByteArrayOutputStream(invocation);
+        }
+        // decided once per request, so body and header always match
+        ByteArrayOutputStream baos = new CompressedOutputStream();
+        writeRemoteInvocation(invocation, baos);
+        return baos;
+    }
+
+    @Override
+    protected OutputStream decorateOutputStream(OutputStream os) throws IOException {
+        if (os instanceof CompressedOutputStream) {
+            return new GZIPOutputStream(os);
+        }
+        return os;
+    }
+
+    @Override
+    protected RemoteInvocationResult doExecuteRequest(HttpInvokerClientConfiguration config, ByteArrayOutputStream baos) throws IOException, ClassNotFoundException {
+        HttpURLConnection con = openConnection(config);
+        prepareConnection(con, baos.size());
+        if (baos instanceof CompressedOutputStream) {
+            con.setRequestProperty("Content-Encoding", "gzip");
+        }
+        writeRequestBody(config, con, baos);
+        validateResponse(config, con);
+        InputStream responseBody = readResponseBody(config, con);
+        return readRemoteInvocationResult(responseBody, config.getCodebaseUrl());
+    }
+
+    /**
+     * Buffer of a request which is compressed
+     */
+    private static final class CompressedOutputStream extends ByteArrayOutputStream {
+
+        public CompressedOutputStream() {
+            super(SERIALIZED_INVOCATION_BYTE_ARRAY_INITIAL_SIZE);
+        }
+    }
+}
@@ -22,11 +22,15 @@
  */
 package org.yamj.filescanner.service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -40,6 +44,7 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.yamj.common.dto.ImportDTO;
 import org.yamj.common.dto.StageDirectoryDTO;
 import org.yamj.common.tools.PropertyTools;
 import org.yamj.common.type.StatusType;
@@ -53,8 +58,10 @@ public class LibrarySendScheduler {
 
     private static final Logger LOG = LoggerFactory.getLogger(LibrarySendScheduler.class);
     private static final int RETRY_MAX = PropertyTools.getIntProperty("filescanner.send.retry", 5);
+    private static final int SEND_BATCH_SIZE = Math.max(1, PropertyTools.getIntProperty("filescanner.send.batchSize", 50));
     private final AtomicInteger runningCount = new AtomicInteger(0);
     private final AtomicInteger retryCount = new AtomicInteger(0);
+    private final Lock sendLock = new ReentrantLock();
 
     @Autowired
     private LibraryCollection libraryCollection;
@@ -79,9 +86,28 @@ public class LibrarySendScheduler {
         yamjExecutor.shutdown();
     }
 
+    /**
+     * Send the queued directories of all libraries.
+     *
+     * Runs on a schedule, but can also be called to send changes immediately;
+     * a call while sending is in progress is skipped.
+     */
     @Async
     @Scheduled(initialDelay = 10000, fixedDelay = 15000)
-    public void sendLibraries() { //NOSONAR
+    public void sendLibraries() {
+        if (!sendLock.tryLock()) {
+            LOG.debug("Sending is already in progress");
+            return;
+        }
+
+        try {
+            processLibraries();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    private void processLibraries() { //NOSONAR
         if (retryCount.get() > RETRY_MAX) {
             LOG.info("Maximum number of retries ({}) exceeded. No further processing attempted.", RETRY_MAX);
             for (Library library : libraryCollection.getLibraries()) {
@@ -101,10 +127,16 @@ public class LibrarySendScheduler {
                     library.isScanningComplete() ? "finished" : "not finished");
 
             try {
+                List<String> pending = new ArrayList<>();
+                List<Map.Entry<String, Future<StatusType>>> completed = new ArrayList<>();
+                boolean failed = Boolean.FALSE;
                 for (Map.Entry<String, Future<StatusType>> entry : library.getDirectoryStatus().entrySet()) {
-                    LOG.info("    {}: {}", entry.getKey(), entry.getValue().isDone() ? entry.getValue().get() : "Being processed");
+                    LOG.debug("    {}: {}", entry.getKey(), entry.getValue().isDone() ? entry.getValue().get() : "Being processed");
 
-                    if (checkStatus(library, entry.getValue(), entry.getKey())) {
+                    if (checkStatus(entry.getValue(), entry.getKey(), pending)) {
+                        if (entry.getValue().isDone() && entry.getValue().get() == StatusType.DONE) {
+                            completed.add(entry);
+                        }
                         if (retryCount.get() > 0) {
                             LOG.debug("Successfully sent file to server, resetting retry count to 0 from {}.", retryCount.getAndSet(0));
                         } else {
@@ -112,13 +144,24 @@ public class LibrarySendScheduler {
                             retryCount.set(0);
                         }
                     } else {
-                        // Make sure this is set to false
-                        library.setSendingComplete(Boolean.FALSE);
-                        LOG.warn("Failed to send a file, this was failed attempt #{}. Waiting until next run...", retryCount.incrementAndGet());
-                        return;
+                        failed = Boolean.TRUE;
+                        break;
                     }
                 }
 
+                // Forget the directories which have been sent, so the library does not grow while watching
+                for (Map.Entry<String, Future<StatusType>> entry : completed) {
+                    library.removeSentDirectory(entry.getKey(), entry.getValue());
+                }
+
+                // send the pending directories in batches
+                if (!sendToCore(library, pending) || failed) {
+                    // Make sure this is set to false
+                    library.setSendingComplete(Boolean.FALSE);
+                    LOG.warn("Failed to send a file, this was failed attempt #{}. Waiting until next run...", retryCount.incrementAndGet());
+                    return;
+                }
+
                 // Don't stop sending until the scanning is completed and there are no running tasks
                 if (library.isScanningComplete() && runningCount.get() <= 0) {
                     // When we reach this point we should have completed the library sending
@@ -136,7 +179,7 @@ public class LibrarySendScheduler {
         }
     }
 
-    private boolean checkStatus(Library library, Future<StatusType> statusType, String directory) throws InterruptedException, ExecutionException {
+    private static boolean checkStatus(Future<StatusType> statusType, String directory, List<String> pending) throws InterruptedException, ExecutionException {
         boolean sendStatus;
 
         
@@ -144,16 +187,19 @@ public class LibrarySendScheduler {
             StatusType processingStatus = statusType.get();
             
             if (processingStatus == StatusType.NEW) {
-                LOG.info("    Sending '{}' to core for processing.", directory);
-                sendStatus = sendToCore(library, directory);
+                LOG.debug("    Sending '{}' to core for processing.", directory);
+                pending.add(directory);
+                sendStatus = Boolean.TRUE;
             } else if (processingStatus == StatusType.UPDATED) {
-                LOG.info("    Sending updated '{}' to core for processing.", directory);
-                sendStatus = sendToCore(library, directory);
+                LOG.debug("    Sending updated '{}' to core for processing.", directory);
+                pending.add(directory);
+                sendStatus = Boolean.TRUE;
             } else if (processingStatus == StatusType.ERROR) {
-                LOG.info("    Resending '{}' to core for processing (was in error status).", directory);
-                sendStatus = sendToCore(library, directory);
+                LOG.debug("    Resending '{}' to core for processing (was in error status).", directory);
+                pending.add(directory);
+                sendStatus = Boolean.TRUE;
             } else if (processingStatus == StatusType.DONE) {
-                LOG.info("    Completed: '{}'", directory);
+                LOG.debug("    Completed: '{}'", directory);
                 sendStatus = Boolean.TRUE;
             } else {
                 LOG.warn("    Unknown processing status {} for {}", processingStatus, directory);
@@ -168,40 +214,63 @@ public class LibrarySendScheduler {
     }
 
     /**
-     * Send the directory to the core.
+     * Send the directories to the core.
      *
-     * Will get the StageDirectoryDTO from the library for sending.
+     * Will get the StageDirectoryDTOs from the library and send them in batches,
+     * so that many directories are imported with one call to the core.
      *
      * @param library
-     * @param sendDir
+     * @param sendDirs
      */
-    private boolean sendToCore(Library library, String sendDir) {
-        StageDirectoryDTO stageDto = library.getDirectory(sendDir);
-        boolean sentOk = Boolean.FALSE;
-
-        if (stageDto == null) {
-            LOG.warn("StageDirectoryDTO for '{}' is null!", sendDir);
-            // We do not want to send this again.
-            library.addDirectoryStatus(sendDir, ConcurrentUtils.constantFuture(StatusType.INVALID));
+    private boolean sendToCore(Library library, List<String> sendDirs) {
+        List<ImportDTO> batch = new ArrayList<>(SEND_BATCH_SIZE);
+        for (String sendDir : sendDirs) {
+            StageDirectoryDTO stageDto = library.getDirectory(sendDir);
+            if (stageDto == null) {
+                LOG.warn("StageDirectoryDTO for '{}' is null!", sendDir);
+                // We do not want to send this again.
+                library.addDirectoryStatus(sendDir, ConcurrentUtils.constantFuture(StatusType.INVALID));
+                continue;
+            }
+            
+            batch.add(library.getImportDTO(stageDto));
+            if (batch.size() >= SEND_BATCH_SIZE) {
+                if (!sendBatchToCore(library, batch)) {
+                    return Boolean.FALSE;
+                }
+                batch = new ArrayList<>(SEND_BATCH_SIZE);
+            }
+        }
+        
+        if (batch.isEmpty()) {
             return Boolean.TRUE;
         }
+        return sendBatchToCore(library, batch);
+    }
 
-        LOG.info("Sending #{}: {}", runningCount.incrementAndGet(), sendDir);
+    private boolean sendBatchToCore(Library library, List<ImportDTO> batch) {
+        LOG.info("Sending #{}: {} directories", runningCount.incrementAndGet(), batch.size());
 
         ApplicationContext appContext = ApplicationContextProvider.getApplicationContext();
         SendToCore stc = (SendToCore) appContext.getBean("sendToCore");
-        stc.setImportDto(library.getImportDTO(stageDto));
+        stc.setImportDtos(batch);
         stc.setCounter(runningCount);
         FutureTask<StatusType> task = new FutureTask<>(stc);
 
+        boolean sentOk = Boolean.FALSE;
         try {
             yamjExecutor.submit(task);
-            library.addDirectoryStatus(stageDto.getPath(), task);
+            for (ImportDTO importDto : batch) {
+                library.addDirectoryStatus(importDto.getStageDirectory().getPath(), task);
+            }
             sentOk = Boolean.TRUE;
         } catch (TaskRejectedException ex) {
-            LOG.warn("Send queue full. '{}' will be sent later.", stageDto.getPath());
+            LOG.warn("Send queue full. {} directories will be sent later.", batch.size());
             LOG.trace("Exception: ", ex);
-            library.addDirectoryStatus(stageDto.getPath(), ConcurrentUtils.constantFuture(StatusType.NEW));
+            runningCount.decrementAndGet();
+            for (ImportDTO importDto : batch) {
+                library.addDirectoryStatus(importDto.getStageDirectory().getPath(), ConcurrentUtils.constantFuture(StatusType.NEW));
+            }
         }
         return sentOk;
     }
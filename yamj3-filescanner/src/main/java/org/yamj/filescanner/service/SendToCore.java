@@ -22,6 +22,8 @@
  */
 package org.yamj.filescanner.service;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -32,8 +34,10 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.remoting.RemoteAccessException;
 import org.springframework.remoting.RemoteConnectFailureException;
 import org.springframework.stereotype.Service;
+import org.yamj.common.dto.ImportBatchDTO;
 import org.yamj.common.dto.ImportDTO;
 import org.yamj.common.remote.service.FileImportService;
+import org.yamj.common.remote.service.SystemInfoService;
 import org.yamj.common.type.StatusType;
 
 @Service
@@ -41,22 +45,33 @@ import org.yamj.common.type.StatusType;
 public class SendToCore implements Callable<StatusType> {
 
     private static final Logger LOG = LoggerFactory.getLogger(SendToCore.class);
-    private ImportDTO importDto;
+    private List<ImportDTO> importDtos;
     private AtomicInteger runningCount;
 
     @Autowired
     private FileImportService fileImportService;
+    @Autowired
+    private SystemInfoCore systemInfoCore;
 
     public SendToCore() {
         // empty initialization
     }
 
     public SendToCore(ImportDTO importDto) {
-        this.importDto = importDto;
+        setImportDto(importDto);
     }
 
     public void setImportDto(ImportDTO importDto) {
-        this.importDto = importDto;
+        this.importDtos = Collections.singletonList(importDto);
+    }
+
+    /**
+     * Set the directories to send to the core with one call
+     *
+     * @param importDtos
+     */
+    public void setImportDtos(List<ImportDTO> importDtos) {
+        this.importDtos = importDtos;
     }
 
     public void setCounter(AtomicInteger runningCount) {
@@ -66,10 +81,21 @@ public class SendToCore implements Callable<StatusType> {
     @Override
     public StatusType call() {
         StatusType status;
-        String displayPath = importDto.getStageDirectory().getPath();
+        String displayPath = importDtos.get(0).getStageDirectory().getPath();
+        if (importDtos.size() > 1) {
+            displayPath = displayPath + " (+" + (importDtos.size() - 1) + " directories)";
+        }
+        
         try {
             LOG.debug("Sending: {}", displayPath);
-            fileImportService.importScanned(importDto);
+            if (importDtos.size() == 1) {
+                fileImportService.importScanned(importDtos.get(0));
+            } else if (systemInfoCore.isFeatureSupported(SystemInfoService.FEATURE_BATCH_IMPORT)) {
+                sendBatch();
+            } else {
+                // older cores don't know batch imports
+                sendSingle();
+            }
             LOG.debug("{}: Successfully queued", displayPath);
             status = StatusType.DONE;
         } catch (RemoteConnectFailureException ex) {
@@ -86,4 +112,16 @@ public class SendToCore implements Callable<StatusType> {
         LOG.info("{}: Exiting with status {}, remaining threads: {}", displayPath, status, runningCount.decrementAndGet());
         return status;
     }
+
+    private void sendBatch() {
+        ImportBatchDTO importBatch = new ImportBatchDTO();
+        importBatch.setImports(importDtos);
+        fileImportService.importScanned(importBatch);
+    }
+
+    private void sendSingle() {
+        for (ImportDTO importDto : importDtos) {
+            fileImportService.importScanned(importDto);
+        }
+    }
 }
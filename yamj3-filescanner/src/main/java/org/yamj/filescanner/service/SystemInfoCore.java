@@ -22,7 +22,10 @@
  */
 package org.yamj.filescanner.service;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +50,7 @@ public final class SystemInfoCore {
     private int numberOfRetries;
     private DateTime lastCheck;
     private boolean connected;
+    private volatile Set<String> features;
 
     @Autowired
     private SystemInfoService pingService;
@@ -129,6 +133,50 @@ public final class SystemInfoCore {
         return status;
     }
 
+    /**
+     * Get the identity of the core database
+     *
+     * @return the identity or null if the core could not be asked
+     */
+    public String getDatabaseIdentity() {
+        try {
+            return pingService.getDatabaseIdentity();
+        } catch (Exception ex) {
+            LOG.warn("Failed to get the database identity from the core server: {}", ex.getMessage());
+            LOG.trace("Exception:", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Check if the core supports a feature of the remote services.
+     *
+     * The features are asked once; if the core could not be reached, then the
+     * feature is treated as unsupported and the core is asked again next time.
+     *
+     * @param feature
+     * @return true if the feature is supported
+     */
+    public boolean isFeatureSupported(String feature) {
+        Set<String> known = features;
+        if (known == null) {
+            try {
+                known = pingService.getFeatures();
+                LOG.info("Core server supports features: {}", known);
+            } catch (Exception ex) {
+                if (ExceptionUtils.indexOfType(ex, NoSuchMethodException.class) < 0) {
+                    LOG.warn("Failed to get the features from the core server: {}", ex.getMessage());
+                    LOG.trace("Exception:", ex);
+                    return false;
+                }
+                LOG.info("Core server does not report its features, using the basic remote services");
+                known = Collections.emptySet();
+            }
+            features = known;
+        }
+        return known.contains(feature);
+    }
+
     /**
      * Get a string representation of the status
      *
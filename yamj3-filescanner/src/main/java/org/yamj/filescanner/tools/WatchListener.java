@@ -0,0 +1,49 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.filescanner.tools;
+
+import java.io.File;
+
+/**
+ * Receives the changes detected by the {@link Watcher}
+ */
+public interface WatchListener {
+
+    /**
+     * Called once the events for a directory have settled.
+     *
+     * @param directory the changed directory, may not exist anymore
+     * @param subtree true if the whole directory tree should be scanned again
+     */
+    void directoryChanged(File directory, boolean subtree);
+
+    /**
+     * Called after a set of changed directories has been handed to the listener.
+     */
+    void changesProcessed();
+
+    /**
+     * Called when all pending changes have been processed and no further events arrived.
+     */
+    void idle();
+}
@@ -27,16 +27,23 @@ import static name.pachler.nio.file.StandardWatchEventKind.ENTRY_DELETE;
 import static name.pachler.nio.file.StandardWatchEventKind.ENTRY_MODIFY;
 import static name.pachler.nio.file.ext.ExtendedWatchEventModifier.FILE_TREE;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import name.pachler.nio.file.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yamj.common.tools.PropertyTools;
 
 public class Watcher {
 
     private static final Logger LOG = LoggerFactory.getLogger(Watcher.class);
+    // Time a directory must be quiet before the changes are processed
+    private static final long DEBOUNCE_MILLIS = TimeUnit.SECONDS.toMillis(PropertyTools.getIntProperty("filescanner.watch.debounce", 5));
+    // Time to wait for events before the listener is told to be idle
+    private static final long IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
     private final WatchService watcherService;
     private final Map<WatchKey, Path> keys = new HashMap<>();
     private boolean trace = Boolean.FALSE;
@@ -44,6 +51,11 @@ public class Watcher {
     private static final WatchEvent.Kind[] STANDARD_EVENTS = {ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE};
     // keep watching the directories
     private boolean watchEnabled = Boolean.TRUE;
+    // directories with changes and the time they are due to be processed
+    private final Map<String, Long> pendingDue = new HashMap<>();
+    // directories which need a scan of the whole tree
+    private final Set<String> pendingSubtree = new HashSet<>();
+    private WatchListener listener;
 
     /**
      * Creates a WatchService
@@ -74,6 +86,15 @@ public class Watcher {
         addDirectory(dir);
     }
 
+    /**
+     * Set the listener which receives the changed directories
+     *
+     * @param listener
+     */
+    public void setListener(WatchListener listener) {
+        this.listener = listener;
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> WatchEvent<T> cast(WatchEvent<?> event) {
         return (WatchEvent<T>) event;
@@ -130,15 +151,19 @@ public class Watcher {
     }
 
     /**
-     * Process all events for keys queued to the watcher
+     * Process all events for keys queued to the watcher.
+     *
+     * Events are collected per directory and handed to the listener once the
+     * directory has been quiet for the debounce time, so that e.g. a file
+     * being copied is only processed once.
      */
     public void processEvents() {
         while (watchEnabled) {
 
-            // wait for key to be signalled
+            // wait for key to be signalled or for pending changes to be due
             WatchKey key;
             try {
-                key = watcherService.take();
+                key = watcherService.poll(getWaitTime(), TimeUnit.MILLISECONDS);
             } catch (InterruptedException ex) {
                 continue;
             } catch (ClosedWatchServiceException ex) {
@@ -148,6 +173,17 @@ public class Watcher {
                 break;
             }
 
+            if (key == null) {
+                if (pendingDue.isEmpty()) {
+                    if (listener != null) {
+                        listener.idle();
+                    }
+                } else {
+                    processPending();
+                }
+                continue;
+            }
+
             Path dir = keys.get(key);
             if (dir == null) {
                 LOG.warn("WatchKey not recognized!!");
@@ -158,20 +194,30 @@ public class Watcher {
                 @SuppressWarnings("rawtypes")
                 WatchEvent.Kind kind = event.kind();
 
-                // TBD - provide example of how OVERFLOW event is handled
                 if (kind == StandardWatchEventKind.OVERFLOW) {
-                    LOG.info("Too many watched events!");
+                    // events have been lost, so scan the whole tree again
+                    LOG.info("Too many watched events, rescanning '{}'", dir);
+                    addPending(new File(dir.toString()), true);
                     continue;
                 }
 
                 // Context for directory entry event is the file name of entry
                 WatchEvent<Path> ev = cast(event);
                 Path name = ev.context();
-                Path child = dir.resolve(name);
+                File child = new File(dir.resolve(name).toString());
 
-                // print out event
-                LOG.info("{}: {}", event.kind().name(), child);
+                LOG.debug("{}: {}", event.kind().name(), child);
 
+                if (child.isDirectory()) {
+                    // a new directory needs to be scanned completely
+                    addPending(child, kind == ENTRY_CREATE);
+                } else {
+                    if (kind == ENTRY_DELETE) {
+                        // may have been a directory, so check for removed directories
+                        addPending(child, true);
+                    }
+                    addPending(child.getParentFile(), false);
+                }
             }
 
             // reset key and remove from set if directory no longer accessible
@@ -184,6 +230,72 @@ public class Watcher {
                     break;
                 }
             }
+
+            processPending();
+        }
+    }
+
+    private void addPending(File directory, boolean subtree) {
+        if (directory == null) {
+            return;
+        }
+
+        final String path = directory.getAbsolutePath();
+        pendingDue.put(path, System.currentTimeMillis() + DEBOUNCE_MILLIS);
+        if (subtree) {
+            pendingSubtree.add(path);
+        }
+    }
+
+    private long getWaitTime() {
+        if (pendingDue.isEmpty()) {
+            return IDLE_MILLIS;
+        }
+
+        long due = Long.MAX_VALUE;
+        for (Long time : pendingDue.values()) {
+            due = Math.min(due, time);
+        }
+        return Math.max(1L, due - System.currentTimeMillis());
+    }
+
+    /**
+     * Hand the directories which are quiet long enough to the listener
+     */
+    private void processPending() {
+        final long now = System.currentTimeMillis();
+
+        // sorted, so that parent directories are processed before their children
+        SortedMap<String, Boolean> due = new TreeMap<>();
+        Iterator<Entry<String, Long>> iter = pendingDue.entrySet().iterator();
+        while (iter.hasNext()) {
+            Entry<String, Long> entry = iter.next();
+            if (entry.getValue() <= now) {
+                due.put(entry.getKey(), pendingSubtree.remove(entry.getKey()));
+                iter.remove();
+            }
+        }
+
+        String subtreeRoot = null;
+        for (Entry<String, Boolean> entry : due.entrySet()) {
+            if (subtreeRoot != null && entry.getKey().startsWith(subtreeRoot)) {
+                // already covered by the scan of the parent tree
+                continue;
+            }
+
+            if (entry.getValue()) {
+                subtreeRoot = entry.getKey() + File.separator;
+            }
+
+            if (listener == null) {
+                LOG.info("Changed: {}", entry.getKey());
+            } else {
+                listener.directoryChanged(new File(entry.getKey()), entry.getValue());
+            }
+        }
+
+        if (listener != null && !due.isEmpty()) {
+            listener.changesProcessed();
         }
     }
 
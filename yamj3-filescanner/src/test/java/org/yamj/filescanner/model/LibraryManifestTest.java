@@ -0,0 +1,173 @@
+/*
+ *      Copyright (c) 2004-2015 YAMJ Members
+ *      https://github.com/organizations/YAMJ/teams
+ *
+ *      This file is part of the Yet Another Media Jukebox (YAMJ).
+ *
+ *      YAMJ is free software: you can redistribute it and/or modify
+ *      it under the terms of the GNU General Public License as published by
+ *      the Free Software Foundation, either version 3 of the License, or
+ *      any later version.
+ *
+ *      YAMJ is distributed in the hope that it will be useful,
+ *      but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *      MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *      GNU General Public License for more details.
+ *
+ *      You should have received a copy of the GNU General Public License
+ *      along with YAMJ.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *      Web: https://github.com/YAMJ/yamj-v3
+ *
+ */
+package org.yamj.filescanner.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.yamj.common.dto.ImportDTO;
+import org.yamj.common.dto.StageDirectoryDTO;
+import org.yamj.common.dto.StageFileDTO;
+
+public class LibraryManifestTest {
+
+    private static final String ROOT = File.separator + "media";
+    private static final String MOVIES = ROOT + File.separator + "movies";
+    private static final String ALIEN = MOVIES + File.separator + "alien";
+    private static final String SERIES = ROOT + File.separator + "series";
+    private static final String IDENTITY = "db-1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Library createLibrary() {
+        ImportDTO importDTO = new ImportDTO();
+        importDTO.setClient("test");
+        importDTO.setPlayerPath("");
+        importDTO.setBaseDirectory(ROOT);
+        Library library = new Library();
+        library.setImportDTO(importDTO);
+        return library;
+    }
+
+    private static StageDirectoryDTO createDirectory(String path, long fileSize) {
+        StageDirectoryDTO stageDir = new StageDirectoryDTO();
+        stageDir.setPath(path);
+        stageDir.setDate(1000L);
+        StageFileDTO stageFile = new StageFileDTO();
+        stageFile.setFileName("movie.mkv");
+        stageFile.setFileSize(fileSize);
+        stageFile.setFileDate(2000L);
+        stageDir.addStageFile(stageFile);
+        return stageDir;
+    }
+
+    private LibraryManifest storeManifest(Library library) {
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        manifest.getDelta(createDirectory(MOVIES, 100L));
+        manifest.commit(library);
+        return manifest;
+    }
+
+    @Test
+    public void testUnchangedDirectory() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        assertNull(manifest.getDelta(createDirectory(MOVIES, 100L)));
+    }
+
+    @Test
+    public void testChangedFile() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        StageDirectoryDTO delta = manifest.getDelta(createDirectory(MOVIES, 200L));
+        assertEquals(1, delta.getStageFiles().size());
+        assertEquals(0, delta.getDeletedFiles().size());
+    }
+
+    @Test
+    public void testRemovedDirectory() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        List<StageDirectoryDTO> removed = manifest.getRemoved(ROOT);
+        assertEquals(1, removed.size());
+        assertEquals(MOVIES, removed.get(0).getPath());
+        assertEquals("movie.mkv", removed.get(0).getDeletedFiles().get(0));
+    }
+
+    @Test
+    public void testChangedDatabase() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        StageDirectoryDTO scanned = createDirectory(MOVIES, 100L);
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), "db-2", false);
+        assertSame(scanned, manifest.getDelta(scanned));
+    }
+
+    @Test
+    public void testFullScan() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        StageDirectoryDTO scanned = createDirectory(MOVIES, 100L);
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, true);
+        assertSame(scanned, manifest.getDelta(scanned));
+    }
+
+    @Test
+    public void testUnknownDatabase() {
+        Library library = createLibrary();
+        storeManifest(library);
+
+        StageDirectoryDTO scanned = createDirectory(MOVIES, 100L);
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), null, false);
+        assertSame(scanned, manifest.getDelta(scanned));
+    }
+
+    @Test
+    public void testKeepAfterListingFailure() {
+        Library library = createLibrary();
+        LibraryManifest stored = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        stored.getDelta(createDirectory(MOVIES, 100L));
+        stored.getDelta(createDirectory(ALIEN, 100L));
+        stored.getDelta(createDirectory(MOVIES + "2", 100L));
+        stored.commit(library);
+
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        manifest.keep(MOVIES);
+        List<StageDirectoryDTO> removed = manifest.getRemoved(ROOT);
+        assertEquals(1, removed.size());
+        assertEquals(MOVIES + "2", removed.get(0).getPath());
+    }
+
+    @Test
+    public void testEmptyRoot() {
+        Library library = createLibrary();
+        LibraryManifest manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        assertFalse(manifest.hasContent(ROOT));
+
+        storeManifest(library);
+        manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, false);
+        assertTrue(manifest.hasContent(ROOT));
+        assertFalse(manifest.hasContent(SERIES));
+
+        // a full scan accepts the empty library
+        manifest = LibraryManifest.load(folder.getRoot(), library.getImportDTO(), IDENTITY, true);
+        assertFalse(manifest.hasContent(ROOT));
+    }
+}